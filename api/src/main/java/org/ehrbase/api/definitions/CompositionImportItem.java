@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.api.definitions;
+
+import java.util.UUID;
+import org.ehrbase.response.ehrscape.CompositionFormat;
+
+/**
+ * A composition to create in a bulk import, see {@link org.ehrbase.api.service.CompositionImportService}.
+ */
+public class CompositionImportItem {
+
+    private final UUID ehrId;
+    private final String content;
+    private final CompositionFormat format;
+    private final String templateId;
+
+    /**
+     * @param ehrId the EHR to add the composition to
+     * @param content the serialized composition
+     * @param format the format of the content
+     * @param templateId the template of the composition, only required by the flat formats
+     */
+    public CompositionImportItem(UUID ehrId, String content, CompositionFormat format, String templateId) {
+        this.ehrId = ehrId;
+        this.content = content;
+        this.format = format;
+        this.templateId = templateId;
+    }
+
+    public UUID getEhrId() {
+        return ehrId;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public CompositionFormat getFormat() {
+        return format;
+    }
+
+    public String getTemplateId() {
+        return templateId;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.api.definitions;
+
+import java.util.UUID;
+
+/**
+ * Outcome of the import of one {@link CompositionImportItem}: either the id of the created composition or the reason
+ * of the failure.
+ */
+public class CompositionImportResult {
+
+    private final UUID compositionId;
+    private final String error;
+
+    private CompositionImportResult(UUID compositionId, String error) {
+        this.compositionId = compositionId;
+        this.error = error;
+    }
+
+    public static CompositionImportResult created(UUID compositionId) {
+        return new CompositionImportResult(compositionId, null);
+    }
+
+    public static CompositionImportResult failed(String error) {
+        return new CompositionImportResult(null, error);
+    }
+
+    public boolean isCreated() {
+        return compositionId != null;
+    }
+
+    /**
+     * @return the id of the created composition, null if the import failed
+     */
+    public UUID getCompositionId() {
+        return compositionId;
+    }
+
+    /**
+     * @return the reason of the failure, null if the composition was created
+     */
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.api.definitions;
+
+/**
+ * Level of detail of the explain section of a query result.
+ */
+public enum ExplainMode {
+    /**
+     * no explain section
+     */
+    NONE,
+    /**
+     * the generated SQL and its parameters
+     */
+    SQL,
+    /**
+     * the generated SQL and its parameters, the time spent in each execution phase and the plan of the database as
+     * given by <code>EXPLAIN (ANALYZE, BUFFERS)</code>. The statement is executed a second time to build the plan.
+     */
+    ANALYZE;
+
+    public static ExplainMode of(boolean explain) {
+        return explain ? SQL : NONE;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.api.definitions;
+
+/**
+ * Page requested from a keyset paged query. The continuation of the following page is set once the page is
+ * retrieved.
+ */
+public class QueryPage {
+
+    private final int size;
+    private final String continuation;
+    private String nextContinuation;
+
+    /**
+     * @param size the maximum number of rows of the page
+     * @param continuation the opaque token returned with the previous page, null for the first page
+     */
+    public QueryPage(int size, String continuation) {
+        this.size = size;
+        this.continuation = continuation;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public String getContinuation() {
+        return continuation;
+    }
+
+    /**
+     * @return the token of the following page, null if this page is the last one
+     */
+    public String getNextContinuation() {
+        return nextContinuation;
+    }
+
+    public void setNextContinuation(String nextContinuation) {
+        this.nextContinuation = nextContinuation;
+    }
+}
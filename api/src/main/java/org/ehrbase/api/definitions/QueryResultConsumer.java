@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.api.definitions;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Receives the result of a streamed query, the columns first then each row as it is read from the database.
+ */
+public interface QueryResultConsumer {
+
+    /**
+     * @param columns the result columns, column name mapped to its AQL path
+     */
+    void columns(Map<String, String> columns);
+
+    /**
+     * @param values the row values in the order of the columns
+     */
+    void row(List<Object> values);
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.api.definitions;
+
+/**
+ * The result of an AQL query opened for streaming: the query is compiled and its statement executed when the stream
+ * is opened, the rows are read from the database cursor while they are handed to the consumer. The stream holds a
+ * database connection until it is closed.
+ */
+public interface QueryResultStream extends AutoCloseable {
+
+    /**
+     * hand the columns and then each row to the consumer, the rows can only be consumed once
+     *
+     * @param consumer receives the columns and then the rows
+     */
+    void forEach(QueryResultConsumer consumer);
+
+    /**
+     * end the read of the rows and release the database connection
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.api.service;
+
+import java.util.List;
+import org.ehrbase.api.definitions.CompositionImportItem;
+import org.ehrbase.api.definitions.CompositionImportResult;
+
+/**
+ * Bulk creation of compositions, for instance to migrate the data of a legacy system.
+ */
+public interface CompositionImportService {
+
+  /**
+   * create new compositions: the items are parsed and validated in parallel and written with batched inserts, a
+   * transaction per batch. The failure of an item does not abort the import of the other items.
+   *
+   * @param items the compositions to create, in any number of EHRs
+   * @return the outcome of each item, in the order of the items
+   */
+  List<CompositionImportResult> importCompositions(List<CompositionImportItem> items);
+
+  /**
+   * @return the number of compositions written in one transaction
+   */
+  int getBatchSize();
+}
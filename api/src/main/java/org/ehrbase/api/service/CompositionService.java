@@ -22,6 +22,7 @@ import com.nedap.archie.rm.changecontrol.OriginalVersion;
 import com.nedap.archie.rm.composition.Composition;
 import com.nedap.archie.rm.ehr.VersionedComposition;
 import com.nedap.archie.rm.generic.RevisionHistory;
+import com.nedap.archie.rm.support.identification.ObjectVersionId;
 import java.time.LocalDateTime;
 import java.util.Optional;
 import java.util.UUID;
@@ -128,5 +129,26 @@ public interface CompositionService extends BaseService, VersionedObjectService<
 
   Composition buildComposition(String content, CompositionFormat format, String templateId);
 
+  /**
+   * Creation with a given contribution of a composition which was already checked with
+   * {@link ValidationService#check(Composition)}, e.g. while the versions of a contribution were validated.
+   * @param ehrId EHR ID of context
+   * @param objData Validated composition
+   * @param contribution Contribution for operation
+   * @return ID of the created composition
+   */
+  Optional<UUID> createValidated(UUID ehrId, Composition objData, UUID contribution);
+
+  /**
+   * Update with a given contribution to a composition which was already checked with
+   * {@link ValidationService#check(Composition)}.
+   * @param ehrId EHR ID of context
+   * @param targetObjId ID of target object
+   * @param objData Validated composition
+   * @param contribution Contribution for operation
+   * @return ID of the updated composition
+   */
+  Optional<UUID> updateValidated(UUID ehrId, ObjectVersionId targetObjId, Composition objData, UUID contribution);
+
   UUID getEhrId(UUID compositionId);
 }
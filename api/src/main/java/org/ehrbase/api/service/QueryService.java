@@ -22,7 +22,11 @@ package org.ehrbase.api.service;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import org.ehrbase.api.definitions.ExplainMode;
 import org.ehrbase.api.definitions.QueryMode;
+import org.ehrbase.api.definitions.QueryPage;
+import org.ehrbase.api.definitions.QueryResultStream;
 import org.ehrbase.response.ehrscape.QueryDefinitionResultDto;
 import org.ehrbase.response.ehrscape.QueryResultDto;
 
@@ -44,6 +48,67 @@ public interface QueryService extends BaseService {
       boolean explain,
       Map<String, Set<Object>> auditResultMap);
 
+  /**
+   * same as {@link #query(String, Map, QueryMode, boolean, Map)} for an AQL query, with the name
+   * of the stored query it originates from (used to tag the query metrics) and the level of detail
+   * of the explain section
+   *
+   * @param queryString the AQL expression
+   * @param storedQueryName the qualified name of the stored query, null for an ad-hoc query
+   * @param parameters optional parameters
+   * @param explainMode the details to return in the explain section
+   * @param auditResultMap collects the audit related data (f.e. ehr_id/value) of the rows
+   * @return the query result
+   */
+  QueryResultDto queryAql(
+      String queryString,
+      String storedQueryName,
+      Map<String, Object> parameters,
+      ExplainMode explainMode,
+      Map<String, Set<Object>> auditResultMap);
+
+  /**
+   * execute one page of an AQL query using keyset pagination: the page starts after the last row of
+   * the previous page instead of skipping an OFFSET, so that each page costs the same
+   *
+   * @param queryString the AQL expression, it must define an ORDER BY clause and neither LIMIT,
+   *     OFFSET nor TOP
+   * @param parameters optional parameters
+   * @param page the requested page, receives the continuation of the following page
+   * @param explain include the generated SQL in the result
+   * @param auditResultMap collects the audit related data (f.e. ehr_id/value) of the rows
+   * @return the rows of the page
+   */
+  QueryResultDto queryPage(
+      String queryString,
+      Map<String, Object> parameters,
+      QueryPage page,
+      boolean explain,
+      Map<String, Set<Object>> auditResultMap);
+
+  /**
+   * compile an AQL query and execute its statement, the rows are read from the database cursor
+   * while the returned stream is consumed, the result set is never held in memory as a whole
+   *
+   * @param queryString the AQL expression
+   * @param parameters optional parameters
+   * @param auditResultMap collects the audit related data (f.e. ehr_id/value) of the rows as they
+   *                       are read
+   * @return the open stream, to be closed by the caller
+   */
+  QueryResultStream openAqlStream(
+      String queryString,
+      Map<String, Object> parameters,
+      Map<String, Set<Object>> auditResultMap);
+
+  /**
+   * execute a raw SQL query on the shared bounded query pool, with the configured statement timeout
+   *
+   * @param queryString the SQL statement
+   * @return the future query result, cancelling it cancels the statement
+   */
+  CompletableFuture<QueryResultDto> querySqlAsync(String queryString);
+
     //=== DEFINITION: manage stored queries
     List<QueryDefinitionResultDto> retrieveStoredQueries(String fullyQualifiedName);
 
@@ -16,13 +16,20 @@
 
 package org.ehrbase.application.config.cache;
 
+import org.ehrbase.cache.CacheInvalidationBus;
 import org.ehrbase.cache.CacheOptions;
+import org.ehrbase.cache.InProcessCacheInvalidationBus;
+import org.ehrbase.cache.PostgresCacheInvalidationBus;
 import org.ehrbase.service.KnowledgeCacheService;
+import org.jooq.DSLContext;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
 
 /**
  * {@link Configuration} for EhCache using JCache.
@@ -40,12 +47,37 @@ public class CacheConfiguration {
     var options = new CacheOptions();
     options.setPreBuildQueries(properties.isPreBuildQueries());
     options.setPreBuildQueriesDepth(properties.getPreBuildQueriesDepth());
+    options.setWarmUpThreads(properties.getWarmUpThreads());
+    options.setAqlPlanCacheSize(properties.getAqlPlanCacheSize());
+    options.setPartyCacheSize(properties.getPartyCacheSize());
     return options;
   }
 
+  @Bean
+  @ConditionalOnProperty(prefix = "cache", name = "invalidation-bus", havingValue = "postgres")
+  public CacheInvalidationBus postgresCacheInvalidationBus(DSLContext context,
+      DataSourceProperties dataSourceProperties) {
+    // the listening connection is kept open, it is not taken from the pool
+    var listenerDataSource = new DriverManagerDataSource(dataSourceProperties.determineUrl(),
+        dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword());
+    return new PostgresCacheInvalidationBus(context, listenerDataSource);
+  }
+
+  @Bean
+  @ConditionalOnMissingBean(CacheInvalidationBus.class)
+  public CacheInvalidationBus inProcessCacheInvalidationBus() {
+    return new InProcessCacheInvalidationBus();
+  }
+
   @Bean
   @ConditionalOnProperty(prefix = "cache", name = "init-on-startup", havingValue = "true")
   public CacheInitializer cacheInitializer(KnowledgeCacheService knowledgeCacheService) {
     return new CacheInitializer(knowledgeCacheService);
   }
+
+  @Bean
+  public CacheWarmUpHealthIndicator cacheWarmUpHealthIndicator(
+      KnowledgeCacheService knowledgeCacheService, CacheProperties properties) {
+    return new CacheWarmUpHealthIndicator(knowledgeCacheService, properties.getWarmUpReadiness());
+  }
 }
@@ -22,7 +22,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Initializes caches during application startup.
+ * Starts the warm-up of the caches during application startup.
  *
  * @author Renaud Subiger
  * @since 1.0.0
@@ -39,7 +39,7 @@ public class CacheInitializer {
 
   @PostConstruct
   public void initialize() {
-    logger.info("Initializing EHRbase caches");
+    logger.info("Warming up EHRbase caches in the background");
     knowledgeCacheService.initializeCaches();
   }
 }
@@ -42,6 +42,34 @@ public class CacheProperties {
    */
   private Integer preBuildQueriesDepth = 4;
 
+  /**
+   * The number of threads building the WebTemplates and pre-built queries of the templates in the
+   * background.
+   */
+  private int warmUpThreads = 4;
+
+  /**
+   * The percentage of templates whose WebTemplate must be built during startup before the cache
+   * warm-up health indicator is up, the other templates are built on demand meanwhile.
+   */
+  private int warmUpReadiness = 100;
+
+  /**
+   * How cache invalidations are broadcast to the other nodes: "in-process" for a single node, "postgres" for a cluster
+   * sharing the database (LISTEN/NOTIFY).
+   */
+  private String invalidationBus = "in-process";
+
+  /**
+   * The maximum number of compiled AQL queries kept in the plan cache, 0 disables the cache.
+   */
+  private int aqlPlanCacheSize = 1000;
+
+  /**
+   * The maximum number of party identities kept by the party cache, 0 disables the cache.
+   */
+  private int partyCacheSize = 10000;
+
   public boolean isInitOnStartup() {
     return initOnStartup;
   }
@@ -65,4 +93,44 @@ public class CacheProperties {
   public void setPreBuildQueriesDepth(Integer preBuildQueriesDepth) {
     this.preBuildQueriesDepth = preBuildQueriesDepth;
   }
+
+  public int getWarmUpThreads() {
+    return warmUpThreads;
+  }
+
+  public void setWarmUpThreads(int warmUpThreads) {
+    this.warmUpThreads = warmUpThreads;
+  }
+
+  public int getWarmUpReadiness() {
+    return warmUpReadiness;
+  }
+
+  public void setWarmUpReadiness(int warmUpReadiness) {
+    this.warmUpReadiness = warmUpReadiness;
+  }
+
+  public String getInvalidationBus() {
+    return invalidationBus;
+  }
+
+  public void setInvalidationBus(String invalidationBus) {
+    this.invalidationBus = invalidationBus;
+  }
+
+  public int getAqlPlanCacheSize() {
+    return aqlPlanCacheSize;
+  }
+
+  public void setAqlPlanCacheSize(int aqlPlanCacheSize) {
+    this.aqlPlanCacheSize = aqlPlanCacheSize;
+  }
+
+  public int getPartyCacheSize() {
+    return partyCacheSize;
+  }
+
+  public void setPartyCacheSize(int partyCacheSize) {
+    this.partyCacheSize = partyCacheSize;
+  }
 }
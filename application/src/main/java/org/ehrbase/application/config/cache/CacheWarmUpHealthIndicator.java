@@ -0,0 +1,53 @@
+/*
+ * Copyright 2022 vitasystems GmbH and Hannover Medical School.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.application.config.cache;
+
+import org.ehrbase.cache.CacheWarmUpProgress;
+import org.ehrbase.service.KnowledgeCacheService;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+
+/**
+ * {@link HealthIndicator} reporting the warm-up of the template caches, up once the WebTemplates of
+ * the configured percentage of templates are built.
+ */
+public class CacheWarmUpHealthIndicator implements HealthIndicator {
+
+  private final KnowledgeCacheService knowledgeCacheService;
+
+  private final int readiness;
+
+  public CacheWarmUpHealthIndicator(KnowledgeCacheService knowledgeCacheService, int readiness) {
+    this.knowledgeCacheService = knowledgeCacheService;
+    this.readiness = readiness;
+  }
+
+  @Override
+  public Health health() {
+    CacheWarmUpProgress progress = knowledgeCacheService.getWarmUpProgress();
+
+    Health.Builder builder = progress.getPercentDone() >= readiness
+        ? Health.up()
+        : Health.outOfService();
+    return builder
+        .withDetail("templates", progress.getTemplates())
+        .withDetail("built", progress.getBuilt())
+        .withDetail("failed", progress.getFailed())
+        .withDetail("prebuilt", progress.getPrebuilt())
+        .build();
+  }
+}
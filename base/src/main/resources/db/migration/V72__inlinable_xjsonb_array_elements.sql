@@ -0,0 +1,32 @@
+--
+-- Copyright 2022 vitasystems GmbH and Hannover Medical School.
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+--     https://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+--
+
+-- same contract as V49: one NULL row for a NULL entry, the array elements otherwise.
+-- As a single SELECT in SQL language, neither STRICT nor VOLATILE, the function is inlined by the planner when used
+-- in a FROM clause (lateral joins generated for AQL paths): no plpgsql interpreter and no intermediate tuplestore,
+-- the row estimates come from jsonb_array_elements.
+CREATE OR REPLACE FUNCTION ehr.xjsonb_array_elements(entry JSONB)
+    RETURNS SETOF JSONB AS
+$$
+SELECT jsonb_array_elements(entry)
+WHERE entry IS NOT NULL
+UNION ALL
+SELECT NULL::jsonb
+WHERE entry IS NULL
+$$
+    LANGUAGE sql
+    IMMUTABLE
+    PARALLEL SAFE;
@@ -0,0 +1,110 @@
+--
+-- Copyright 2022 vitasystems GmbH and Hannover Medical School.
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+--     https://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+--
+
+-- Version numbers of compositions, EHR_STATUS and folders are stored with each row instead of being counted in the
+-- history tables: the current row holds the latest version, each history row the version it documents.
+
+ALTER TABLE ehr.composition ADD COLUMN version INT NOT NULL DEFAULT 1;
+ALTER TABLE ehr.composition_history ADD COLUMN version INT NOT NULL DEFAULT 1;
+ALTER TABLE ehr.status ADD COLUMN version INT NOT NULL DEFAULT 1;
+ALTER TABLE ehr.status_history ADD COLUMN version INT NOT NULL DEFAULT 1;
+ALTER TABLE ehr.folder ADD COLUMN version INT NOT NULL DEFAULT 1;
+ALTER TABLE ehr.folder_history ADD COLUMN version INT NOT NULL DEFAULT 1;
+
+-- backfill: the versions were numbered by transaction time, the current one following all history rows
+WITH numbered AS (SELECT ctid AS row_id, ROW_NUMBER() OVER (PARTITION BY id ORDER BY sys_transaction) AS version
+                  FROM ehr.composition_history)
+UPDATE ehr.composition_history h
+SET version = numbered.version
+FROM numbered
+WHERE h.ctid = numbered.row_id;
+
+WITH numbered AS (SELECT ctid AS row_id, ROW_NUMBER() OVER (PARTITION BY id ORDER BY sys_transaction) AS version
+                  FROM ehr.status_history)
+UPDATE ehr.status_history h
+SET version = numbered.version
+FROM numbered
+WHERE h.ctid = numbered.row_id;
+
+WITH numbered AS (SELECT ctid AS row_id, ROW_NUMBER() OVER (PARTITION BY id ORDER BY sys_transaction) AS version
+                  FROM ehr.folder_history)
+UPDATE ehr.folder_history h
+SET version = numbered.version
+FROM numbered
+WHERE h.ctid = numbered.row_id;
+
+-- the backfill of the current rows must not create history rows
+ALTER TABLE ehr.composition DISABLE TRIGGER USER;
+UPDATE ehr.composition c
+SET version = 1 + (SELECT count(*) FROM ehr.composition_history h WHERE h.id = c.id)
+WHERE EXISTS(SELECT 1 FROM ehr.composition_history h WHERE h.id = c.id);
+ALTER TABLE ehr.composition ENABLE TRIGGER USER;
+
+ALTER TABLE ehr.status DISABLE TRIGGER USER;
+UPDATE ehr.status s
+SET version = 1 + (SELECT count(*) FROM ehr.status_history h WHERE h.id = s.id)
+WHERE EXISTS(SELECT 1 FROM ehr.status_history h WHERE h.id = s.id);
+ALTER TABLE ehr.status ENABLE TRIGGER USER;
+
+ALTER TABLE ehr.folder DISABLE TRIGGER USER;
+UPDATE ehr.folder f
+SET version = 1 + (SELECT count(*) FROM ehr.folder_history h WHERE h.id = f.id)
+WHERE EXISTS(SELECT 1 FROM ehr.folder_history h WHERE h.id = f.id);
+ALTER TABLE ehr.folder ENABLE TRIGGER USER;
+
+CREATE INDEX composition_history_id_version_idx ON ehr.composition_history (id, version);
+CREATE INDEX status_history_id_version_idx ON ehr.status_history (id, version);
+CREATE INDEX folder_history_id_version_idx ON ehr.folder_history (id, version);
+
+-- an update creates a new version, unless the row was already modified in the same transaction, also in the
+-- sub-transaction of a savepoint: ext.versioning then does not write a history row either. The test is the one of
+-- ext.versioning (the xmin of the row within the range of the current snapshot, which includes the sub-transactions),
+-- so that the version stays the number of history rows + 1. The lower bound of sys_period is no substitute: it is
+-- moved past the transaction timestamp by the mitigation of update conflicts of ext.versioning.
+CREATE OR REPLACE FUNCTION ehr.next_version()
+    RETURNS TRIGGER AS
+$$
+DECLARE
+    transaction_info txid_snapshot;
+BEGIN
+    transaction_info := txid_current_snapshot();
+    IF OLD.xmin::text >= (txid_snapshot_xmin(transaction_info) % (2 ^ 32)::bigint)::text
+        AND OLD.xmin::text <= (txid_snapshot_xmax(transaction_info) % (2 ^ 32)::bigint)::text THEN
+        RETURN NEW;
+    END IF;
+    NEW.version := OLD.version + 1;
+    RETURN NEW;
+END
+$$
+    LANGUAGE plpgsql;
+
+CREATE TRIGGER version_trigger
+    BEFORE UPDATE
+    ON ehr.composition
+    FOR EACH ROW
+EXECUTE PROCEDURE ehr.next_version();
+
+CREATE TRIGGER version_trigger
+    BEFORE UPDATE
+    ON ehr.status
+    FOR EACH ROW
+EXECUTE PROCEDURE ehr.next_version();
+
+CREATE TRIGGER version_trigger
+    BEFORE UPDATE
+    ON ehr.folder
+    FOR EACH ROW
+EXECUTE PROCEDURE ehr.next_version();
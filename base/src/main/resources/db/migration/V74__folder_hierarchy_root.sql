@@ -0,0 +1,61 @@
+--
+-- Copyright 2022 vitasystems GmbH and Hannover Medical School.
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+--     https://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+--
+
+-- Each parent-child relation of a folder tree is keyed by the root folder of the tree, i.e. the directory of an EHR,
+-- so that the tree is read without a recursive query over the relations of all EHRs.
+
+ALTER TABLE ehr.folder_hierarchy ADD COLUMN root_folder UUID;
+ALTER TABLE ehr.folder_hierarchy_history ADD COLUMN root_folder UUID;
+
+-- backfill: walk down from the relations whose parent is not the child of another folder
+-- (the backfill must not create history rows)
+ALTER TABLE ehr.folder_hierarchy DISABLE TRIGGER USER;
+WITH RECURSIVE tree AS (SELECT fh.parent_folder AS root_folder, fh.parent_folder, fh.child_folder
+                        FROM ehr.folder_hierarchy fh
+                        WHERE NOT EXISTS(SELECT 1 FROM ehr.folder_hierarchy p WHERE p.child_folder = fh.parent_folder)
+                        UNION ALL
+                        SELECT tree.root_folder, fh.parent_folder, fh.child_folder
+                        FROM ehr.folder_hierarchy fh
+                                 JOIN tree ON fh.parent_folder = tree.child_folder)
+UPDATE ehr.folder_hierarchy fh
+SET root_folder = tree.root_folder
+FROM tree
+WHERE fh.parent_folder = tree.parent_folder
+  AND fh.child_folder = tree.child_folder;
+ALTER TABLE ehr.folder_hierarchy ENABLE TRIGGER USER;
+
+-- backfill of the history: the same walk over the current and the former relations, the versioning trigger fills the
+-- column of the relations moved to the history from now on
+WITH RECURSIVE relation AS (SELECT parent_folder, child_folder
+                            FROM ehr.folder_hierarchy
+                            UNION
+                            SELECT parent_folder, child_folder
+                            FROM ehr.folder_hierarchy_history),
+               tree AS (SELECT r.parent_folder AS root_folder, r.parent_folder, r.child_folder
+                        FROM relation r
+                        WHERE NOT EXISTS(SELECT 1 FROM relation p WHERE p.child_folder = r.parent_folder)
+                        UNION
+                        SELECT tree.root_folder, r.parent_folder, r.child_folder
+                        FROM relation r
+                                 JOIN tree ON r.parent_folder = tree.child_folder)
+UPDATE ehr.folder_hierarchy_history fh
+SET root_folder = tree.root_folder
+FROM tree
+WHERE fh.parent_folder = tree.parent_folder
+  AND fh.child_folder = tree.child_folder;
+
+CREATE INDEX folder_hierarchy_root_folder_idx ON ehr.folder_hierarchy (root_folder);
+CREATE INDEX folder_hierarchy_child_folder_idx ON ehr.folder_hierarchy (child_folder);
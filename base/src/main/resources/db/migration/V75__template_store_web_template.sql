@@ -0,0 +1,22 @@
+--
+-- Copyright 2022 vitasystems GmbH and Hannover Medical School.
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+--     https://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+--
+
+-- Serialized WebTemplate built from the template, read on cold start instead of parsing the template.
+-- The key is the md5 checksum of the content it was built from and its serialization format: a snapshot is only used
+-- while the key matches the current content.
+
+ALTER TABLE ehr.template_store ADD COLUMN web_template BYTEA;
+ALTER TABLE ehr.template_store ADD COLUMN web_template_key TEXT;
@@ -24,6 +24,7 @@ import org.ehrbase.api.exception.InvalidApiParameterException;
 import org.ehrbase.api.exception.NotAcceptableException;
 import org.ehrbase.api.exception.ObjectNotFoundException;
 import org.ehrbase.api.exception.PreconditionFailedException;
+import org.ehrbase.api.exception.ServiceUnavailableException;
 import org.ehrbase.api.exception.StateConflictException;
 import org.ehrbase.api.exception.UnprocessableEntityException;
 import org.ehrbase.api.exception.UnsupportedMediaTypeException;
@@ -117,6 +118,12 @@ public class EhrScapeExceptionHandler {
     return handleExceptionInternal(ex, ex.getMessage(), new HttpHeaders(), HttpStatus.UNSUPPORTED_MEDIA_TYPE);
   }
 
+  //503
+  @ExceptionHandler(ServiceUnavailableException.class)
+  public ResponseEntity<Object> handleServiceUnavailableException(ServiceUnavailableException ex) {
+    return handleExceptionInternal(ex, ex.getMessage(), new HttpHeaders(), HttpStatus.SERVICE_UNAVAILABLE);
+  }
+
   //custom status
   @ExceptionHandler(ResponseStatusException.class)
   public ResponseEntity<Object> handleSpringResponseStatusException(ResponseStatusException ex) {
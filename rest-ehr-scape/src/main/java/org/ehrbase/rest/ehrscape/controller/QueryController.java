@@ -21,12 +21,16 @@ package org.ehrbase.rest.ehrscape.controller;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import org.ehrbase.api.definitions.ExplainMode;
 import org.ehrbase.api.definitions.QueryMode;
 import org.ehrbase.api.exception.InvalidApiParameterException;
 import org.ehrbase.api.service.QueryService;
 import org.ehrbase.rest.ehrscape.responsedata.Action;
+import org.ehrbase.response.ehrscape.QueryResultDto;
 import org.ehrbase.rest.ehrscape.responsedata.QueryResponseData;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
@@ -36,6 +40,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
 @RestController
 @RequestMapping(path = "/rest/ecis/v1/query", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE})
@@ -49,7 +54,8 @@ public class QueryController extends BaseController {
     }
 
     @PostMapping
-    public ResponseEntity<QueryResponseData> query(@RequestParam(value = "explain", defaultValue = "false") Boolean explain,
+    public DeferredResult<ResponseEntity<QueryResponseData>> query(@RequestParam(value = "explain", defaultValue = "false") Boolean explain,
+                                                   @RequestParam(value = "analyze", defaultValue = "false") Boolean analyze,
                                                    @RequestBody() String content) {
 
         Map<String, String> kvPairs = extractQuery(new String(content.getBytes()));
@@ -65,11 +71,45 @@ public class QueryController extends BaseController {
         } else {
             throw new InvalidApiParameterException("No query parameter supplied");
         }
-    QueryResponseData responseData =
-        new QueryResponseData(
-            queryService.query(queryString, null, queryMode, explain, new HashMap<>()));
+        if (queryMode == QueryMode.SQL) {
+            return querySql(queryString);
+        }
+
+        QueryResponseData responseData;
+        if (queryMode == QueryMode.AQL && Boolean.TRUE.equals(analyze)) {
+            //timings of the execution phases and the database plan
+            responseData = new QueryResponseData(
+                queryService.queryAql(queryString, null, null, ExplainMode.ANALYZE, new HashMap<>()));
+        } else {
+            responseData = new QueryResponseData(
+                queryService.query(queryString, null, queryMode, explain, new HashMap<>()));
+        }
         responseData.setAction(Action.EXECUTE);
-        return ResponseEntity.ok(responseData);
+        DeferredResult<ResponseEntity<QueryResponseData>> result = new DeferredResult<>();
+        result.setResult(ResponseEntity.ok(responseData));
+        return result;
+    }
+
+    /**
+     * run the SQL statement on the shared query pool, the statement is cancelled when the client disconnects
+     */
+    private DeferredResult<ResponseEntity<QueryResponseData>> querySql(String queryString) {
+        //no request timeout: the execution is bounded by the statement timeout
+        DeferredResult<ResponseEntity<QueryResponseData>> result = new DeferredResult<>(0L);
+        CompletableFuture<QueryResultDto> execution = queryService.querySqlAsync(queryString);
+        result.onError(e -> execution.cancel(true));
+        result.onTimeout(() -> execution.cancel(true));
+
+        execution.whenComplete((dto, e) -> {
+            if (e != null) {
+                result.setErrorResult(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+            } else {
+                QueryResponseData responseData = new QueryResponseData(dto);
+                responseData.setAction(Action.EXECUTE);
+                result.setResult(ResponseEntity.ok(responseData));
+            }
+        });
+        return result;
     }
 
 
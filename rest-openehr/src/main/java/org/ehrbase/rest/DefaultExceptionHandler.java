@@ -24,6 +24,7 @@ import org.ehrbase.api.exception.InvalidApiParameterException;
 import org.ehrbase.api.exception.NotAcceptableException;
 import org.ehrbase.api.exception.ObjectNotFoundException;
 import org.ehrbase.api.exception.PreconditionFailedException;
+import org.ehrbase.api.exception.ServiceUnavailableException;
 import org.ehrbase.api.exception.StateConflictException;
 import org.ehrbase.api.exception.UnprocessableEntityException;
 import org.ehrbase.api.exception.UnsupportedMediaTypeException;
@@ -127,6 +128,12 @@ public class DefaultExceptionHandler {
     return handleExceptionInternal(ex, ex.getMessage(), new HttpHeaders(), HttpStatus.UNPROCESSABLE_ENTITY);
   }
 
+  //503
+  @ExceptionHandler(ServiceUnavailableException.class)
+  public ResponseEntity<Object> handleServiceUnavailableException(ServiceUnavailableException ex) {
+    return handleExceptionInternal(ex, ex.getMessage(), new HttpHeaders(), HttpStatus.SERVICE_UNAVAILABLE);
+  }
+
   //custom status
   @ExceptionHandler(ResponseStatusException.class)
   public ResponseEntity<Object> handleSpringResponseStatusException(ResponseStatusException ex) {
@@ -134,6 +141,14 @@ public class DefaultExceptionHandler {
     return handleExceptionInternal(ex, ex.getReason(), ex.getResponseHeaders(), ex.getStatus());
   }
 
+  //response already committed
+  @ExceptionHandler(ResponseAbortedException.class)
+  public void handleResponseAbortedException(ResponseAbortedException ex) {
+    logger.error("Streamed response aborted", ex.getCause());
+    //rethrown as is, the container then closes the connection without ending the body
+    throw ex;
+  }
+
   //500 - general
   @ExceptionHandler(Exception.class)
   public ResponseEntity<Object> handleUncaughtException(Exception ex) {
@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.rest;
+
+/**
+ * Failure while a response body is streamed, after the status and the headers have been sent. It is not mapped to an
+ * error response, the container aborts the connection so that the client does not take the partial body for a
+ * complete one.
+ */
+public class ResponseAbortedException extends RuntimeException {
+
+  public ResponseAbortedException(Throwable cause) {
+    super(cause);
+  }
+}
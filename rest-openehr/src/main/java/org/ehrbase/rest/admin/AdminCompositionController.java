@@ -17,31 +17,47 @@
  */
 package org.ehrbase.rest.admin;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.headers.Header;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.ehrbase.api.definitions.CompositionImportItem;
+import org.ehrbase.api.definitions.CompositionImportResult;
 import org.ehrbase.api.exception.ObjectNotFoundException;
+import org.ehrbase.api.service.CompositionImportService;
 import org.ehrbase.api.service.CompositionService;
 import org.ehrbase.api.service.EhrService;
+import org.ehrbase.response.ehrscape.CompositionFormat;
 import org.ehrbase.response.openehr.admin.AdminDeleteResponseData;
 import org.ehrbase.rest.BaseController;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
 
 /**
- * Admin API controller for Composition related data. Provides endpoint to remove compositions physically from database.
+ * Admin API controller for Composition related data. Provides endpoints to remove compositions physically from database
+ * and to import compositions in bulk.
  */
 @Tag(name = "Admin - Composition")
 @ConditionalOnProperty(prefix = "admin-api", name = "active")
@@ -51,11 +67,19 @@ public class AdminCompositionController extends BaseController {
 
     private final EhrService ehrService;
     private final CompositionService compositionService;
+    private final CompositionImportService compositionImportService;
+    private final ObjectMapper objectMapper;
+    private final int maxReportedFailures;
 
     @Autowired
-    public AdminCompositionController(EhrService ehrService, CompositionService compositionService) {
+    public AdminCompositionController(EhrService ehrService, CompositionService compositionService,
+                                      CompositionImportService compositionImportService, ObjectMapper objectMapper,
+                                      @Value("${import.max-reported-failures:1000}") int maxReportedFailures) {
         this.ehrService = Objects.requireNonNull(ehrService);
         this.compositionService = Objects.requireNonNull(compositionService);
+        this.compositionImportService = Objects.requireNonNull(compositionImportService);
+        this.objectMapper = Objects.requireNonNull(objectMapper);
+        this.maxReportedFailures = maxReportedFailures;
     }
 
     @DeleteMapping(path = "/{ehr_id}/composition/{composition_id}")
@@ -107,4 +131,87 @@ public class AdminCompositionController extends BaseController {
 
         return ResponseEntity.noContent().build();
     }
+
+    /**
+     * Bulk import of new compositions. The body holds one item per line (newline delimited JSON):
+     * <code>{"ehr_id": "...", "composition": {...}}</code> with a canonical JSON composition, or with
+     * <code>"format"</code> (XML, FLAT, STRUCTURED) and <code>"template_id"</code> and the composition as a string or
+     * object in that format. The body is read and imported batch by batch, a failed item does not abort the import.
+     */
+    @PostMapping(path = "/composition/import", consumes = "application/x-ndjson", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Import completed, the response lists the first items which could not be imported."
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Client credentials are invalid or have been expired."
+            ),
+            @ApiResponse(
+                    responseCode = "403",
+                    description = "Client has not permission to access this resource since admin role is missing."
+            )
+    })
+    public ResponseEntity<AdminCompositionImportResponseData> importCompositions(InputStream content) throws IOException {
+        AdminCompositionImportResponseData response = new AdminCompositionImportResponseData(maxReportedFailures);
+
+        List<CompositionImportItem> items = new ArrayList<>();
+        List<Long> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(content, StandardCharsets.UTF_8))) {
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    items.add(toImportItem(line));
+                    lines.add(lineNumber);
+                } catch (IOException | IllegalArgumentException e) {
+                    response.addFailure(new AdminCompositionImportResponseData.Failure(lineNumber, null, e.getMessage()));
+                }
+                if (items.size() == compositionImportService.getBatchSize()) {
+                    importBatch(items, lines, response);
+                }
+            }
+        }
+        importBatch(items, lines, response);
+
+        return ResponseEntity.ok(response);
+    }
+
+    private CompositionImportItem toImportItem(String line) throws IOException {
+        JsonNode item = objectMapper.readTree(line);
+        JsonNode composition = item.path("composition");
+        if (!item.hasNonNull("ehr_id") || composition.isMissingNode()) {
+            throw new IllegalArgumentException("ehr_id and composition are required");
+        }
+        CompositionFormat format = item.hasNonNull("format") ?
+                CompositionFormat.valueOf(item.get("format").asText().toUpperCase()) :
+                CompositionFormat.JSON;
+        return new CompositionImportItem(
+                UUID.fromString(item.get("ehr_id").asText()),
+                composition.isTextual() ? composition.asText() : composition.toString(),
+                format,
+                item.hasNonNull("template_id") ? item.get("template_id").asText() : null);
+    }
+
+    private void importBatch(List<CompositionImportItem> items, List<Long> lines, AdminCompositionImportResponseData response) {
+        if (items.isEmpty()) {
+            return;
+        }
+        List<CompositionImportResult> results = compositionImportService.importCompositions(items);
+        for (int i = 0; i < results.size(); i++) {
+            if (results.get(i).isCreated()) {
+                response.addImported();
+            } else {
+                response.addFailure(new AdminCompositionImportResponseData.Failure(
+                        lines.get(i), items.get(i).getEhrId().toString(), results.get(i).getError()));
+            }
+        }
+        items.clear();
+        lines.clear();
+    }
 }
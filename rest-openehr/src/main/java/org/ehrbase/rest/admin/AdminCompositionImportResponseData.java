@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.rest.admin;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Summary of a bulk composition import: counts and the failed lines of the input. Only the first failures are listed,
+ * up to the limit given at construction, the <code>failed</code> count includes all of them.
+ */
+public class AdminCompositionImportResponseData {
+
+    /**
+     * a line of the input which could not be imported
+     */
+    public static class Failure {
+
+        @JsonProperty("line")
+        private final long line;
+
+        @JsonProperty("ehr_id")
+        private final String ehrId;
+
+        @JsonProperty("error")
+        private final String error;
+
+        public Failure(long line, String ehrId, String error) {
+            this.line = line;
+            this.ehrId = ehrId;
+            this.error = error;
+        }
+
+        public long getLine() {
+            return line;
+        }
+
+        public String getEhrId() {
+            return ehrId;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+
+    @JsonProperty("imported")
+    private long imported;
+
+    @JsonProperty("failed")
+    private long failed;
+
+    @JsonProperty("failures")
+    private final List<Failure> failures = new ArrayList<>();
+
+    private final int maxFailures;
+
+    /**
+     * @param maxFailures the maximum number of failures listed
+     */
+    public AdminCompositionImportResponseData(int maxFailures) {
+        this.maxFailures = Math.max(maxFailures, 0);
+    }
+
+    public void addImported() {
+        imported++;
+    }
+
+    public void addFailure(Failure failure) {
+        failed++;
+        if (failures.size() < maxFailures) {
+            failures.add(failure);
+        }
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public List<Failure> getFailures() {
+        return failures;
+    }
+}
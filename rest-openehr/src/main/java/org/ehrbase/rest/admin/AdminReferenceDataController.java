@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.rest.admin;
+
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.ehrbase.api.service.ReferenceDataService;
+import org.ehrbase.response.openehr.admin.AdminStatusResponseData;
+import org.ehrbase.rest.BaseController;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Objects;
+
+/**
+ * Admin API controller for the reference data (concepts, territories and languages) kept in memory.
+ */
+@Tag(name = "Admin - Reference data")
+@ConditionalOnProperty(prefix = "admin-api", name = "active")
+@RestController
+@RequestMapping(path = "${admin-api.context-path:/rest/admin}/reference-data", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE})
+public class AdminReferenceDataController extends BaseController {
+
+    private final ReferenceDataService referenceDataService;
+
+    @Autowired
+    public AdminReferenceDataController(ReferenceDataService referenceDataService) {
+        this.referenceDataService = Objects.requireNonNull(referenceDataService);
+    }
+
+    @PostMapping(path = "/reload")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Reference data has been reloaded from the database."),
+            @ApiResponse(responseCode = "401", description = "Client credentials are invalid or have expired."),
+            @ApiResponse(responseCode = "403", description = "Client has no access permission since admin role is missing.")
+    })
+    public ResponseEntity<AdminStatusResponseData> reload() {
+
+        String loaded = referenceDataService.reload();
+
+        return ResponseEntity.ok().body(new AdminStatusResponseData("Reference data reloaded: " + loaded));
+    }
+}
@@ -16,18 +16,25 @@
 
 package org.ehrbase.rest.openehr;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import javax.servlet.http.HttpServletRequest;
+import org.ehrbase.api.definitions.ExplainMode;
 import org.ehrbase.api.definitions.QueryMode;
+import org.ehrbase.api.definitions.QueryPage;
+import org.ehrbase.api.definitions.QueryResultStream;
 import org.ehrbase.api.exception.InvalidApiParameterException;
 import org.ehrbase.api.exception.ObjectNotFoundException;
 import org.ehrbase.api.service.QueryService;
 import org.ehrbase.response.ehrscape.QueryDefinitionResultDto;
 import org.ehrbase.response.openehr.QueryResponseData;
 import org.ehrbase.rest.BaseController;
+import org.ehrbase.rest.ResponseAbortedException;
 import org.ehrbase.rest.openehr.audit.OpenEhrAuditInterceptor;
 import org.ehrbase.rest.openehr.audit.QueryAuditInterceptor;
 import org.ehrbase.rest.openehr.specification.QueryApiSpecification;
@@ -35,6 +42,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PostAuthorize;
 import org.springframework.util.CollectionUtils;
@@ -46,6 +55,7 @@ import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /**
  * Controller for openEHR REST API QUERY resource.
@@ -62,17 +72,27 @@ public class OpenehrQueryController extends BaseController
   private static final String EHR_ID_VALUE = "ehr_id/value";
   private static final String LATEST = "LATEST";
   private static final String QUERY_PARAMETERS = "query_parameters";
+  private static final String PAGE_SIZE = "page_size";
+  private static final String STREAM = "stream";
+  private static final String CONTINUATION = "continuation";
+  static final String CONTINUATION_HEADER = "Continuation";
 
   private final Logger logger = LoggerFactory.getLogger(getClass());
 
   private final QueryService queryService;
+
+  private final ObjectMapper objectMapper;
+
+  @Value("${abac.enabled:false}")
+  private boolean abacEnabled;
   
   @Autowired(required = true)
   @Qualifier("requestAwareAuditResultMapHolder")
   private RequestAwareAuditResultMapHolder auditResultMapHolder;
 
-  public OpenehrQueryController(QueryService queryService) {
+  public OpenehrQueryController(QueryService queryService, ObjectMapper objectMapper) {
     this.queryService = queryService;
+    this.objectMapper = objectMapper;
   }
 
   
@@ -141,6 +161,91 @@ public class OpenehrQueryController extends BaseController
     return ResponseEntity.ok(body);
   }
 
+  /**
+   * Streaming variant of the ad-hoc query: the result set is written to the response body row by
+   * row while it is read from the database, so that the memory usage does not depend on the result
+   * size. Not available when ABAC is enabled since the result can not be authorized after the
+   * fact, nor combined with <code>page_size</code> (rejected by the paged variant).
+   */
+  @GetMapping(path = "/aql", params = {STREAM + "=true", "!" + PAGE_SIZE})
+  public ResponseEntity<StreamingResponseBody> streamAdHocQuery(
+      @RequestParam(name = "q") String query,
+      @RequestParam(name = "offset", required = false) Integer offset,
+      @RequestParam(name = "fetch", required = false) Integer fetch,
+      @RequestParam(name = "query_parameters", required = false) Map<String, Object> queryParameters,
+      HttpServletRequest request) {
+
+    if (fetch != null) {
+      query = withFetch(query, fetch);
+    }
+
+    if (offset != null) {
+      query = withOffset(query, offset);
+    }
+
+    return streamQuery(query, queryParameters, request);
+  }
+
+  /**
+   * Streaming variant of the ad-hoc query, see {@link #streamAdHocQuery(String, Integer, Integer,
+   * Map, HttpServletRequest)}.
+   */
+  @PostMapping(path = "/aql", params = {STREAM + "=true", "!" + PAGE_SIZE})
+  @SuppressWarnings("unchecked")
+  public ResponseEntity<StreamingResponseBody> streamAdHocQuery(
+      @RequestBody Map<String, Object> queryRequest,
+      HttpServletRequest request) {
+
+    String aql = (String) queryRequest.get("q");
+    if (aql == null) {
+      throw new InvalidApiParameterException("No aql query provided");
+    }
+
+    aql = withOffsetLimit(aql, queryRequest);
+
+    return streamQuery(aql, (Map<String, Object>) queryRequest.get(QUERY_PARAMETERS), request);
+  }
+
+  /**
+   * Keyset paged variant of the ad-hoc query: returns at most <code>page_size</code> rows and, if
+   * there are more, the opaque token to pass as <code>continuation</code> to get the next page in
+   * the <code>Continuation</code> response header. The query must define an ORDER BY clause and
+   * neither LIMIT, OFFSET, TOP, DISTINCT nor aggregate functions.
+   */
+  @GetMapping(path = "/aql", params = PAGE_SIZE)
+  @PostAuthorize("checkAbacPostQuery(@requestAwareAuditResultMapHolder.getAuditResultMap())")
+  public ResponseEntity<QueryResponseData> executePagedAdHocQuery(
+      @RequestParam(name = "q") String query,
+      @RequestParam(name = PAGE_SIZE) Integer pageSize,
+      @RequestParam(name = CONTINUATION, required = false) String continuation,
+      @RequestParam(name = "query_parameters", required = false) Map<String, Object> queryParameters,
+      HttpServletRequest request) {
+
+    return executePagedQuery(query, queryParameters, new QueryPage(pageSize, continuation), request);
+  }
+
+  /**
+   * Keyset paged variant of the ad-hoc query, see {@link #executePagedAdHocQuery(String, Integer,
+   * String, Map, HttpServletRequest)}.
+   */
+  @PostMapping(path = "/aql", params = PAGE_SIZE)
+  @PostAuthorize("checkAbacPostQuery(@requestAwareAuditResultMapHolder.getAuditResultMap())")
+  @SuppressWarnings("unchecked")
+  public ResponseEntity<QueryResponseData> executePagedAdHocQuery(
+      @RequestParam(name = PAGE_SIZE) Integer pageSize,
+      @RequestParam(name = CONTINUATION, required = false) String continuation,
+      @RequestBody Map<String, Object> queryRequest,
+      HttpServletRequest request) {
+
+    String aql = (String) queryRequest.get("q");
+    if (aql == null) {
+      throw new InvalidApiParameterException("No aql query provided");
+    }
+
+    return executePagedQuery(aql, (Map<String, Object>) queryRequest.get(QUERY_PARAMETERS),
+        new QueryPage(pageSize, continuation), request);
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -180,7 +285,8 @@ public class OpenehrQueryController extends BaseController
       query = withOffset(query, offset);
     }
 
-    QueryResponseData queryResponseData = invoke(query, queryParameter, request);
+    QueryResponseData queryResponseData = invoke(query,
+        queryDefinitionResultDto.getQualifiedName(), queryParameter, request);
     queryResponseData.setName(queryDefinitionResultDto.getQualifiedName() + "/"
         + queryDefinitionResultDto.getVersion());
     return ResponseEntity.ok(queryResponseData);
@@ -231,7 +337,8 @@ public class OpenehrQueryController extends BaseController
       query = withOffsetLimit(query, queryRequest);
 
     }
-    QueryResponseData queryResponseData = invoke(query, queryParameter, request);
+    QueryResponseData queryResponseData = invoke(query,
+        queryDefinitionResultDto.getQualifiedName(), queryParameter, request);
 
     queryResponseData.setName(queryDefinitionResultDto.getQualifiedName() + "/"
         + queryDefinitionResultDto.getVersion());
@@ -255,6 +362,75 @@ public class OpenehrQueryController extends BaseController
     return queryResponseData;
   }
 
+  private ResponseEntity<QueryResponseData> executePagedQuery(String aql,
+      Map<String, Object> parameters, QueryPage page, HttpServletRequest request) {
+
+    if (page.getSize() <= 0) {
+      throw new InvalidApiParameterException("Invalid page_size: " + page.getSize());
+    }
+
+    // the streaming variants are not mapped when a page_size is given
+    if ("true".equals(request.getParameter(STREAM))) {
+      throw new InvalidApiParameterException("page_size can not be combined with stream=true");
+    }
+
+    // Enriches request attributes with aql for later audit processing
+    request.setAttribute(QueryAuditInterceptor.QUERY_ATTRIBUTE, aql);
+
+    Map<String, Set<Object>> auditResultMap = auditResultMapHolder.getAuditResultMap();
+
+    var body = new QueryResponseData(
+        queryService.queryPage(aql, parameters, page, false, auditResultMap));
+
+    // Enriches request attributes with EhrId(s) for later audit processing
+    request.setAttribute(OpenEhrAuditInterceptor.EHR_ID_ATTRIBUTE,
+        auditResultMap.get(EHR_ID_VALUE));
+
+    var response = ResponseEntity.ok();
+    if (page.getNextContinuation() != null) {
+      response.header(CONTINUATION_HEADER, page.getNextContinuation());
+    }
+    return response.body(body);
+  }
+
+  private ResponseEntity<StreamingResponseBody> streamQuery(String aql,
+      Map<String, Object> parameters, HttpServletRequest request) {
+
+    if (abacEnabled) {
+      throw new InvalidApiParameterException(
+          "Streamed query results are not available when ABAC is enabled");
+    }
+
+    // Enriches request attributes with aql for later audit processing
+    request.setAttribute(QueryAuditInterceptor.QUERY_ATTRIBUTE, aql);
+
+    // the holder is request scoped and can not be resolved from the streaming thread
+    Map<String, Set<Object>> auditResultMap = auditResultMapHolder.getAuditResultMap();
+
+    // compiled and executed before the status is sent, so that errors are mapped to the response
+    QueryResultStream resultStream = queryService.openAqlStream(aql, parameters, auditResultMap);
+
+    StreamingResponseBody body = outputStream -> {
+      try (resultStream) {
+        // an error while the rows are written must not end the document as if it was complete
+        JsonGenerator generator = objectMapper.createGenerator(outputStream)
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+        QueryResultStreamWriter writer = new QueryResultStreamWriter(generator);
+        writer.start(aql, null);
+        resultStream.forEach(writer);
+        writer.end();
+      } catch (IOException | RuntimeException e) {
+        throw new ResponseAbortedException(e);
+      }
+
+      // Enriches request attributes with EhrId(s) for later audit processing
+      request.setAttribute(OpenEhrAuditInterceptor.EHR_ID_ATTRIBUTE,
+          auditResultMap.get(EHR_ID_VALUE));
+    };
+
+    return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+  }
+
   private String withFetch(String query, String value) {
     return withFetch(query, double2int(value));
   }
@@ -297,8 +473,8 @@ public class OpenehrQueryController extends BaseController
     return (Double.valueOf(value)).intValue();
   }
 
-  private QueryResponseData invoke(String query, Map<String, Object> queryParameter,
-      HttpServletRequest request) {
+  private QueryResponseData invoke(String query, String storedQueryName,
+      Map<String, Object> queryParameter, HttpServletRequest request) {
     QueryResponseData queryResponseData;
 
     Map<String, Set<Object>> auditResultMap = auditResultMapHolder.getAuditResultMap();
@@ -306,11 +482,13 @@ public class OpenehrQueryController extends BaseController
     if (queryParameter != null && !queryParameter.isEmpty()) {
       Map<String, Object> parameters = new HashMap<>(queryParameter);
       queryResponseData = new QueryResponseData(
-          queryService.query(query, parameters, QueryMode.AQL, false, auditResultMap));
+          queryService.queryAql(query, storedQueryName, parameters, ExplainMode.NONE,
+              auditResultMap));
     } else {
       queryResponseData =
           new QueryResponseData(
-              queryService.query(query, null, QueryMode.AQL, false, auditResultMap));
+              queryService.queryAql(query, storedQueryName, null, ExplainMode.NONE,
+                  auditResultMap));
     }
 
     // Enriches request attributes with EhrId(s) for later audit processing
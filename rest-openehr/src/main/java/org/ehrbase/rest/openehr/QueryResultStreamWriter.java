@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.rest.openehr;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+import org.ehrbase.api.definitions.QueryResultConsumer;
+
+/**
+ * Writes a streamed query result as an openEHR RESULT_SET json document, each row is flushed to
+ * the generator as soon as it is received.
+ */
+class QueryResultStreamWriter implements QueryResultConsumer {
+
+  private final JsonGenerator generator;
+
+  private boolean rowsStarted = false;
+
+  QueryResultStreamWriter(JsonGenerator generator) {
+    this.generator = generator;
+  }
+
+  void start(String aql, String name) throws IOException {
+    generator.writeStartObject();
+    generator.writeObjectFieldStart("meta");
+    generator.writeStringField("_type", "RESULTSET");
+    generator.writeStringField("_created", OffsetDateTime.now().toString());
+    generator.writeStringField("_executed_aql", aql);
+    generator.writeEndObject();
+    if (name != null) {
+      generator.writeStringField("name", name);
+    }
+    generator.writeStringField("q", aql);
+  }
+
+  @Override
+  public void columns(Map<String, String> columns) {
+    try {
+      generator.writeArrayFieldStart("columns");
+      for (Map.Entry<String, String> column : columns.entrySet()) {
+        generator.writeStartObject();
+        generator.writeStringField("name", column.getKey());
+        generator.writeStringField("path", column.getValue());
+        generator.writeEndObject();
+      }
+      generator.writeEndArray();
+      generator.writeArrayFieldStart("rows");
+      rowsStarted = true;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public void row(List<Object> values) {
+    try {
+      generator.writeObject(values);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  void end() throws IOException {
+    if (rowsStarted) {
+      generator.writeEndArray();
+    }
+    generator.writeEndObject();
+    generator.flush();
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.rest.admin;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import org.ehrbase.api.definitions.CompositionImportItem;
+import org.ehrbase.api.definitions.CompositionImportResult;
+import org.ehrbase.api.service.CompositionImportService;
+import org.ehrbase.api.service.CompositionService;
+import org.ehrbase.api.service.EhrService;
+import org.ehrbase.response.ehrscape.CompositionFormat;
+import org.ehrbase.rest.DefaultExceptionHandler;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+public class AdminCompositionControllerTest {
+
+  private static final UUID EHR_ID = UUID.fromString("7d44b88c-4199-4bad-97dc-d78268e01398");
+  private static final UUID UNKNOWN_EHR_ID = UUID.fromString("0dd9a5b4-69e5-4a0e-8d5e-36c1a8d0f2a3");
+
+  private CompositionImportService compositionImportService;
+
+  //the items of each call of the import service
+  private final List<List<CompositionImportItem>> batches = new ArrayList<>();
+
+  @Before
+  public void setUp() {
+    compositionImportService = mock(CompositionImportService.class);
+    when(compositionImportService.getBatchSize()).thenReturn(2);
+    when(compositionImportService.importCompositions(anyList())).thenAnswer(invocation -> {
+      List<CompositionImportItem> items = new ArrayList<>(invocation.getArgument(0));
+      batches.add(items);
+      return items.stream()
+          .map(item -> item.getEhrId().equals(UNKNOWN_EHR_ID)
+              ? CompositionImportResult.failed("No EHR found with given ID: " + UNKNOWN_EHR_ID)
+              : CompositionImportResult.created(UUID.randomUUID()))
+          .collect(Collectors.toList());
+    });
+  }
+
+  @Test
+  public void importCompositions() throws Exception {
+    String body = String.join("\n",
+        "{\"ehr_id\": \"" + EHR_ID + "\", \"composition\": {\"_type\": \"COMPOSITION\"}}",
+        "",
+        "not json",
+        "{\"ehr_id\": \"" + UNKNOWN_EHR_ID + "\", \"composition\": {\"_type\": \"COMPOSITION\"}}",
+        "{\"ehr_id\": \"" + EHR_ID + "\", \"format\": \"flat\", \"template_id\": \"t1\", \"composition\": {\"t1/category|code\": \"433\"}}");
+
+    mockMvc(10).perform(post("/rest/admin/ehr/composition/import").contentType("application/x-ndjson").content(body))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.imported").value(2))
+        .andExpect(jsonPath("$.failed").value(2))
+        .andExpect(jsonPath("$.failures.length()").value(2))
+        .andExpect(jsonPath("$.failures[0].line").value(3))
+        .andExpect(jsonPath("$.failures[1].line").value(4))
+        .andExpect(jsonPath("$.failures[1].ehr_id").value(UNKNOWN_EHR_ID.toString()));
+
+    //read and imported batch by batch
+    assertThat(batches).extracting(List::size).containsExactly(2, 1);
+    CompositionImportItem flat = batches.get(1).get(0);
+    assertThat(flat.getFormat()).isEqualTo(CompositionFormat.FLAT);
+    assertThat(flat.getTemplateId()).isEqualTo("t1");
+    assertThat(flat.getContent()).isEqualTo("{\"t1/category|code\":\"433\"}");
+  }
+
+  @Test
+  public void importCompositionsReportedFailures() throws Exception {
+    String unknown = "{\"ehr_id\": \"" + UNKNOWN_EHR_ID + "\", \"composition\": {\"_type\": \"COMPOSITION\"}}";
+
+    mockMvc(1).perform(post("/rest/admin/ehr/composition/import").contentType("application/x-ndjson")
+            .content(String.join("\n", unknown, unknown, unknown)))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.imported").value(0))
+        .andExpect(jsonPath("$.failed").value(3))
+        .andExpect(jsonPath("$.failures.length()").value(1));
+  }
+
+  private MockMvc mockMvc(int maxReportedFailures) {
+    AdminCompositionController controller = new AdminCompositionController(mock(EhrService.class),
+        mock(CompositionService.class), compositionImportService, new ObjectMapper(), maxReportedFailures);
+    return MockMvcBuilders.standaloneSetup(controller)
+        .setControllerAdvice(new DefaultExceptionHandler())
+        .addPlaceholderValue("admin-api.context-path", "/rest/admin")
+        .build();
+  }
+}
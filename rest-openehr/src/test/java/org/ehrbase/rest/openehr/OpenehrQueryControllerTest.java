@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.rest.openehr;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Map;
+import org.ehrbase.api.definitions.QueryResultConsumer;
+import org.ehrbase.api.definitions.QueryResultStream;
+import org.ehrbase.api.exception.InternalServerException;
+import org.ehrbase.api.service.QueryService;
+import org.ehrbase.rest.DefaultExceptionHandler;
+import org.ehrbase.rest.ResponseAbortedException;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+public class OpenehrQueryControllerTest {
+
+  private static final String AQL = "SELECT c/uid/value FROM COMPOSITION c ORDER BY c/uid/value";
+
+  private QueryService queryService;
+
+  private OpenehrQueryController controller;
+
+  private MockMvc mockMvc;
+
+  @Before
+  public void setUp() {
+    queryService = mock(QueryService.class);
+    controller = new OpenehrQueryController(queryService, new ObjectMapper());
+    ReflectionTestUtils.setField(controller, "auditResultMapHolder",
+        new RequestAwareAuditResultMapHolder());
+
+    mockMvc = MockMvcBuilders.standaloneSetup(controller)
+        .setControllerAdvice(new DefaultExceptionHandler())
+        .addPlaceholderValue("openehr-api.context-path", "/rest/openehr")
+        .build();
+  }
+
+  @Test
+  public void streamInvalidQuery() throws Exception {
+    when(queryService.openAqlStream(eq("SELECT"), any(), anyMap()))
+        .thenThrow(new IllegalArgumentException("Could not process query"));
+
+    mockMvc.perform(get("/rest/openehr/v1/query/aql").param("q", "SELECT").param("stream", "true"))
+        .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  public void streamWithPageSize() throws Exception {
+    mockMvc.perform(get("/rest/openehr/v1/query/aql").param("q", AQL).param("stream", "true")
+            .param("page_size", "10"))
+        .andExpect(status().isBadRequest());
+    mockMvc.perform(post("/rest/openehr/v1/query/aql").param("stream", "true")
+            .param("page_size", "10")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(new ObjectMapper().writeValueAsString(Map.of("q", AQL))))
+        .andExpect(status().isBadRequest());
+
+    verifyNoInteractions(queryService);
+  }
+
+  @Test
+  public void streamDatabaseUnavailable() throws Exception {
+    when(queryService.openAqlStream(eq(AQL), any(), anyMap()))
+        .thenThrow(new InternalServerException("Could not open a connection"));
+
+    mockMvc.perform(get("/rest/openehr/v1/query/aql").param("q", AQL).param("stream", "true"))
+        .andExpect(status().isInternalServerError());
+  }
+
+  @Test
+  public void streamQuery() throws Exception {
+    QueryResultStream resultStream = mock(QueryResultStream.class);
+    doAnswer(invocation -> {
+      QueryResultConsumer consumer = invocation.getArgument(0);
+      consumer.columns(Map.of("#0", "/uid/value"));
+      consumer.row(List.of("8a3f::local::1"));
+      return null;
+    }).when(resultStream).forEach(any());
+    when(queryService.openAqlStream(eq(AQL), any(), anyMap())).thenReturn(resultStream);
+
+    ResponseEntity<StreamingResponseBody> response = controller.streamAdHocQuery(AQL, null, null,
+        null, new MockHttpServletRequest());
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    response.getBody().writeTo(out);
+
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(new ObjectMapper().readTree(out.toByteArray()).get("rows").get(0).get(0).asText())
+        .isEqualTo("8a3f::local::1");
+    verify(resultStream).close();
+  }
+
+  @Test
+  public void streamFailureAfterCommit() throws Exception {
+    QueryResultStream resultStream = mock(QueryResultStream.class);
+    doAnswer(invocation -> {
+      QueryResultConsumer consumer = invocation.getArgument(0);
+      consumer.columns(Map.of("#0", "/uid/value"));
+      consumer.row(List.of("8a3f::local::1"));
+      throw new IllegalStateException("cursor closed");
+    }).when(resultStream).forEach(any());
+    when(queryService.openAqlStream(eq(AQL), any(), anyMap())).thenReturn(resultStream);
+
+    ResponseEntity<StreamingResponseBody> response = controller.streamAdHocQuery(AQL, null, null,
+        null, new MockHttpServletRequest());
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    assertThatThrownBy(() -> response.getBody().writeTo(out))
+        .isInstanceOf(ResponseAbortedException.class)
+        .hasCauseInstanceOf(IllegalStateException.class);
+    // the partial document is not ended
+    assertThat(out.toString()).doesNotEndWith("]}");
+    verify(resultStream).close();
+
+    // and not mapped to an error body either
+    ResponseAbortedException aborted = new ResponseAbortedException(new IllegalStateException());
+    assertThatThrownBy(() -> new DefaultExceptionHandler().handleResponseAbortedException(aborted))
+        .isSameAs(aborted);
+  }
+}
@@ -23,6 +23,6 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.EnableAspectJAutoProxy;
 
 @Configuration
-@ComponentScan(basePackages = {"org.ehrbase.service", "org.ehrbase.plugin"})
+@ComponentScan(basePackages = {"org.ehrbase.service", "org.ehrbase.plugin", "org.ehrbase.aql", "org.ehrbase.dao"})
 @EnableAspectJAutoProxy
 public class ServiceModuleConfiguration {}
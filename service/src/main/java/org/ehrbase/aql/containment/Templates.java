@@ -35,7 +35,8 @@ public class Templates {
     }
 
     /**
-     * build the results for a jsonpath query applied to all defined templates in the KnowledgeCacheService
+     * build the results for a jsonpath query applied to the templates of the KnowledgeCacheService containing
+     * the queried archetypes
      *
      * @param jsonQueryExpression
      * @return
@@ -45,8 +46,8 @@ public class Templates {
             return null;
 
         List<JsonPathQueryResult> jsonPathQueryResults = new ArrayList<>();
-        //traverse the templates and identify the ones satisfying the query
-        for (String templateId : knowledgeCache.getAllTemplateIds()) {
+        //traverse the candidate templates and identify the ones satisfying the query
+        for (String templateId : knowledgeCache.findTemplateIdsContaining(jsonQueryExpression)) {
             JsonPathQueryResult result = resolveForTemplate(templateId, jsonQueryExpression);
             if (result != null) {
                 jsonPathQueryResults.add(result);
@@ -0,0 +1,404 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.aql.sql;
+
+import org.ehrbase.aql.sql.queryimpl.value_field.ISODateTime;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compilation of AQL query parameters into SQL bind variables.
+ * <p>
+ * Instead of their value, the parameters are substituted into the AQL expression with a marker literal of the same
+ * lexical kind (string, number or date/time). Once the SQL is rendered, each marker found as a standalone SQL literal is
+ * replaced by a typed bind variable referencing the parameter: the compiled query does not depend on the parameter
+ * values and is shared by all executions, see {@link CompiledAqlQuery#bind(Map)}. A string marker is bound only if the
+ * SQL generation gave it an explicit cast (<code>'marker'::text</code>), a date/time marker only once converted to its
+ * epoch offset.
+ * </p>
+ * <p>
+ * Some parameters shape the SQL: values in path predicates end up inside a path literal, jsquery expressions embed
+ * their operands... Such parameters are detected from their marker being embedded in a larger literal, left without
+ * a cast (or missing) and are substituted as text, their value is then part of the plan cache key.
+ * </p>
+ */
+public class AqlParameterBinding {
+
+    private static final String STRING_MARKER = "__aql_parameter_";
+    private static final Pattern STRING_MARKER_PATTERN = Pattern.compile(STRING_MARKER + "(\\d+)__");
+    private static final long NUMBER_MARKER = 918273645000L;
+    //epoch seconds of the date/time markers, far from any actual date
+    private static final long DATETIME_MARKER = Instant.parse("2999-01-01T00:00:00Z").getEpochSecond();
+
+    static final String KIND_STRING = "string";
+    static final String KIND_DATETIME = "datetime";
+    static final String KIND_INTEGER = "integer";
+    static final String KIND_DECIMAL = "decimal";
+    static final String KIND_INLINED = "inlined";
+
+    /**
+     * how a bound parameter value is passed to the statement
+     */
+    enum Mode {
+        //replaces a number literal or a bind value of the same type
+        VALUE,
+        //replaces a string literal with a cast or a string bind value
+        TEXT,
+        //replaces the epoch offset a date/time literal is converted to
+        EPOCH
+    }
+
+    /**
+     * a bind value referencing a query parameter, resolved on execution
+     */
+    static final class Reference {
+        private final String name;
+        private final Mode mode;
+
+        Reference(String name, Mode mode) {
+            this.name = name;
+            this.mode = mode;
+        }
+
+        Object resolve(Map<String, Object> parameters) {
+            Object value = parameters == null ? null : parameters.get(name);
+            if (value == null) {
+                throw new IllegalArgumentException("Could not substitute parameter in AQL expression: '$" + name + "'");
+            }
+            switch (mode) {
+                case TEXT:
+                    return value.toString();
+                case EPOCH:
+                    //as the literal converted by the WHERE binding, without milliseconds
+                    return new ISODateTime(value.toString()).toTimeStamp() / 1000;
+                default:
+                    return value;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "$" + name;
+        }
+    }
+
+    /**
+     * a rendered statement with its markers replaced by bind variables
+     */
+    static final class BoundStatement {
+        private final String sql;
+        private final List<Object> bindValues;
+        private final Set<String> bound;
+        private final Set<String> embedded;
+
+        private BoundStatement(String sql, List<Object> bindValues, Set<String> bound, Set<String> embedded) {
+            this.sql = sql;
+            this.bindValues = bindValues;
+            this.bound = bound;
+            this.embedded = embedded;
+        }
+
+        String getSql() {
+            return sql;
+        }
+
+        List<Object> getBindValues() {
+            return bindValues;
+        }
+
+        /**
+         * @return the parameters replaced by a bind variable
+         */
+        Set<String> getBound() {
+            return bound;
+        }
+
+        /**
+         * @return the parameters whose marker is part of a larger literal, they can not be bound
+         */
+        Set<String> getEmbedded() {
+            return embedded;
+        }
+    }
+
+    private final Map<String, Object> parameters;
+    private final Set<String> inlined = new HashSet<>();
+    private final Map<String, Object> substitutions = new HashMap<>();
+    private final Map<String, String> stringMarkers = new HashMap<>();
+    private final Map<String, String> numberMarkers = new HashMap<>();
+    private final Map<String, String> datetimeMarkers = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+
+    private AqlParameterBinding(Map<String, Object> parameters, Collection<String> inlined) {
+        this.parameters = parameters == null ? Collections.emptyMap() : new TreeMap<>(parameters);
+
+        for (Map.Entry<String, Object> parameter : this.parameters.entrySet()) {
+            String name = parameter.getKey();
+            Object value = parameter.getValue();
+            int index = names.size();
+            names.add(name);
+
+            String kind = kind(value);
+            if (inlined.contains(name) || kind.equals(KIND_INLINED)) {
+                this.inlined.add(name);
+                substitutions.put(name, value);
+            } else if (kind.equals(KIND_STRING)) {
+                String marker = STRING_MARKER + index + "__";
+                stringMarkers.put(marker, name);
+                substitutions.put(name, marker);
+            } else if (kind.equals(KIND_DATETIME)) {
+                long epoch = DATETIME_MARKER + index;
+                String marker = Instant.ofEpochSecond(epoch).toString();
+                datetimeMarkers.put(marker, name);
+                numberMarkers.put(Long.toString(epoch), name);
+                substitutions.put(name, marker);
+            } else {
+                BigDecimal marker = kind.equals(KIND_INTEGER) ?
+                        BigDecimal.valueOf(NUMBER_MARKER + index) :
+                        BigDecimal.valueOf(NUMBER_MARKER + index).add(new BigDecimal("0.5"));
+                numberMarkers.put(marker.toPlainString(), name);
+                substitutions.put(name, marker);
+            }
+        }
+    }
+
+    /**
+     * @param parameters the query parameters, can be null
+     * @return a binding of all the parameters supporting it
+     */
+    public static AqlParameterBinding of(Map<String, Object> parameters) {
+        return new AqlParameterBinding(parameters, Collections.emptySet());
+    }
+
+    /**
+     * @param names the parameters to substitute as text
+     * @return a binding with the given parameters substituted as text in addition to those of this binding
+     */
+    public AqlParameterBinding inline(Collection<String> names) {
+        Set<String> union = new HashSet<>(inlined);
+        union.addAll(names);
+        return new AqlParameterBinding(parameters, union);
+    }
+
+    /**
+     * @return the values to substitute into the AQL expression: a marker for bound parameters, the value otherwise
+     */
+    public Map<String, Object> getSubstitutions() {
+        return Collections.unmodifiableMap(substitutions);
+    }
+
+    /**
+     * @return the parameters substituted as text
+     */
+    public Set<String> getInlined() {
+        return Collections.unmodifiableSet(inlined);
+    }
+
+    public boolean isEmpty() {
+        return parameters.isEmpty();
+    }
+
+    /**
+     * @param literal a SQL string literal, quotes included
+     * @return true if the literal is the marker of a string parameter, the SQL generation gives it an explicit cast
+     * when the type of the expression it is compared to is known
+     */
+    public static boolean isStringMarker(String literal) {
+        return literal.length() > 2 && literal.startsWith("'") && literal.endsWith("'")
+                && STRING_MARKER_PATTERN.matcher(literal.substring(1, literal.length() - 1)).matches();
+    }
+
+    /**
+     * the lexical kind of a parameter value, parameters of a different kind produce a different SQL
+     * @param value a parameter value
+     * @return the kind, {@link #KIND_INLINED} if the value is always substituted as text
+     */
+    static String kind(Object value) {
+        if (value instanceof String || value instanceof UUID) {
+            //date/time values are compared on their epoch offset, dates and times as strings
+            if (new ISODateTime(value.toString()).isValidDateTimeExpression()) {
+                return KIND_DATETIME;
+            }
+            return KIND_STRING;
+        }
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof BigInteger) {
+            return KIND_INTEGER;
+        }
+        if (value instanceof BigDecimal
+                || (value instanceof Double && Double.isFinite((Double) value))
+                || (value instanceof Float && Float.isFinite((Float) value))) {
+            return KIND_DECIMAL;
+        }
+        return KIND_INLINED;
+    }
+
+    /**
+     * replace the markers of a rendered statement by bind variables
+     * @param sql the SQL rendered with indexed bind variables
+     * @param bindValues the bind values of the statement
+     * @return the statement with the parameter references
+     */
+    BoundStatement bind(String sql, List<Object> bindValues) {
+        StringBuilder rewritten = new StringBuilder(sql.length());
+        List<Object> values = new ArrayList<>();
+        Set<String> bound = new HashSet<>();
+        Set<String> embedded = new HashSet<>();
+        int bindIndex = 0;
+
+        int i = 0;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (c == '\'' || c == '"') {
+                int end = closingQuote(sql, i);
+                String content = sql.substring(i + 1, end);
+                String name = c == '\'' ? stringMarkers.get(content) : null;
+                if (name != null && sql.startsWith("::", end + 1)) {
+                    //the cast is kept: the parameter is typed as the expression it is compared to
+                    rewritten.append('?');
+                    values.add(new Reference(name, Mode.TEXT));
+                    bound.add(name);
+                } else {
+                    embedded.addAll(markedIn(content));
+                    rewritten.append(sql, i, Math.min(end + 1, sql.length()));
+                }
+                i = end + 1;
+            } else if (c == '?') {
+                values.add(bindValue(bindValues.get(bindIndex++), bound, embedded));
+                rewritten.append(c);
+                i++;
+            } else if (Character.isDigit(c) && (i == 0 || !isPartOfToken(sql.charAt(i - 1)))) {
+                int end = i;
+                while (end < sql.length() && (Character.isDigit(sql.charAt(end)) || sql.charAt(end) == '.')) {
+                    end++;
+                }
+                String token = sql.substring(i, end);
+                String name = numberMarkers.get(token);
+                if (name != null && (end == sql.length() || !isPartOfToken(sql.charAt(end)))) {
+                    rewritten.append('?');
+                    values.add(new Reference(name, datetimeMarkers.containsValue(name) ? Mode.EPOCH : Mode.VALUE));
+                    bound.add(name);
+                } else {
+                    rewritten.append(token);
+                }
+                i = end;
+            } else {
+                rewritten.append(c);
+                i++;
+            }
+        }
+
+        return new BoundStatement(rewritten.toString(), values, bound, embedded);
+    }
+
+    /**
+     * replace the parameter references by the parameter values
+     * @param bindValues bind values, possibly including references
+     * @param parameters the query parameters
+     * @return the bind values to execute the statement with
+     */
+    static List<Object> resolve(List<Object> bindValues, Map<String, Object> parameters) {
+        List<Object> resolved = new ArrayList<>(bindValues.size());
+        for (Object bindValue : bindValues) {
+            resolved.add(bindValue instanceof Reference ? ((Reference) bindValue).resolve(parameters) : bindValue);
+        }
+        return resolved;
+    }
+
+    static boolean hasReference(List<Object> bindValues) {
+        return bindValues.stream().anyMatch(Reference.class::isInstance);
+    }
+
+    private Object bindValue(Object value, Set<String> bound, Set<String> embedded) {
+        if (value instanceof String) {
+            String name = stringMarkers.containsKey(value) ? stringMarkers.get(value) : numberMarkers.get(value);
+            if (name != null) {
+                bound.add(name);
+                return new Reference(name, Mode.TEXT);
+            }
+            embedded.addAll(markedIn((String) value));
+        } else if (kind(value).equals(KIND_INTEGER) || kind(value).equals(KIND_DECIMAL)) {
+            String name = numberMarkers.get(new BigDecimal(value.toString()).toPlainString());
+            if (name != null) {
+                bound.add(name);
+                return new Reference(name, datetimeMarkers.containsValue(name) ? Mode.EPOCH : Mode.VALUE);
+            }
+        }
+        return value;
+    }
+
+    private Set<String> markedIn(String content) {
+        Set<String> marked = new HashSet<>();
+        Matcher matcher = STRING_MARKER_PATTERN.matcher(content);
+        while (matcher.find()) {
+            int index = Integer.parseInt(matcher.group(1));
+            if (index < names.size()) {
+                marked.add(names.get(index));
+            }
+        }
+        for (Map.Entry<String, String> marker : numberMarkers.entrySet()) {
+            if (content.contains(marker.getKey())) {
+                marked.add(marker.getValue());
+            }
+        }
+        //a date/time marker which was not converted to its epoch offset
+        for (Map.Entry<String, String> marker : datetimeMarkers.entrySet()) {
+            if (content.contains(marker.getKey())) {
+                marked.add(marker.getValue());
+            }
+        }
+        return marked;
+    }
+
+    /**
+     * @return the position of the closing quote, a doubled quote is an escaped one
+     */
+    private static int closingQuote(String sql, int opening) {
+        char quote = sql.charAt(opening);
+        int i = opening + 1;
+        while (i < sql.length()) {
+            if (sql.charAt(i) == quote) {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i;
+            }
+            i++;
+        }
+        return sql.length();
+    }
+
+    private static boolean isPartOfToken(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '.' || c == '$';
+    }
+}
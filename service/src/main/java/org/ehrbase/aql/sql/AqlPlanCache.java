@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.aql.sql;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.ehrbase.cache.CacheOptions;
+import org.ehrbase.service.KnowledgeCacheService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Bounded LRU cache of compiled AQL queries.
+ * <p>
+ * A plan is keyed by the normalized AQL text and the names and kinds of the query parameters: the parameters are
+ * compiled as bind variables (see {@link AqlParameterBinding}) and one plan serves all their values. The values of the
+ * parameters which can not be bound are added to the key, these parameters are learned on the first compilation of
+ * the query. Each plan records the template set generation
+ * of the {@link KnowledgeCacheService} at compilation time: whenever a template is added, overwritten or deleted the
+ * generation changes and the stale plans are recompiled on their next use.
+ * </p>
+ */
+@Service
+public class AqlPlanCache implements MeterBinder {
+
+    public static final String METRIC_NAME = "ehrbase.aql.plan.cache";
+
+    private final int maxSize;
+    private final LongSupplier templateSetGeneration;
+    private final Map<String, CompiledAqlQuery> plans;
+    private final Map<String, Set<String>> inlinedParameters;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @Autowired
+    public AqlPlanCache(CacheOptions cacheOptions, KnowledgeCacheService knowledgeCacheService) {
+        this(cacheOptions.getAqlPlanCacheSize(), knowledgeCacheService::getTemplateSetGeneration);
+    }
+
+    public AqlPlanCache(int maxSize, LongSupplier templateSetGeneration) {
+        this.maxSize = maxSize;
+        this.templateSetGeneration = templateSetGeneration;
+        this.plans = Collections.synchronizedMap(new LinkedHashMap<String, CompiledAqlQuery>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompiledAqlQuery> eldest) {
+                return size() > AqlPlanCache.this.maxSize;
+            }
+        });
+        this.inlinedParameters = Collections.synchronizedMap(new LinkedHashMap<String, Set<String>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Set<String>> eldest) {
+                return size() > AqlPlanCache.this.maxSize;
+            }
+        });
+    }
+
+    /**
+     * a cache that compiles every query, used when no plan cache is configured
+     * @return the disabled cache
+     */
+    public static AqlPlanCache disabled() {
+        return new AqlPlanCache(0, () -> 0L);
+    }
+
+    /**
+     * return the cached plan for the query or compile and cache it
+     * @param query the AQL expression as submitted
+     * @param parameters the query parameters, can be null
+     * @param compiler performs the actual compilation on a cache miss
+     * @return the compiled query
+     */
+    public CompiledAqlQuery get(String query, Map<String, Object> parameters, Supplier<CompiledAqlQuery> compiler) {
+        if (maxSize <= 0 || !isCacheable(query)) {
+            return compiler.get();
+        }
+
+        String signature = signature(query, parameters);
+        String key = withInlinedValues(signature, parameters, inlinedParameters.getOrDefault(signature, Collections.emptySet()));
+        long generation = templateSetGeneration.getAsLong();
+
+        CompiledAqlQuery compiledQuery = plans.get(key);
+        if (compiledQuery != null && compiledQuery.getTemplateSetGeneration() == generation) {
+            hits.incrementAndGet();
+            return compiledQuery;
+        }
+
+        misses.incrementAndGet();
+        compiledQuery = compiler.get();
+        //the generation is read before compiling: a template change during the compilation makes the plan stale
+        compiledQuery.setTemplateSetGeneration(generation);
+        inlinedParameters.put(signature, compiledQuery.getInlinedParameters());
+        plans.put(withInlinedValues(signature, parameters, compiledQuery.getInlinedParameters()), compiledQuery);
+        return compiledQuery;
+    }
+
+    public void invalidate() {
+        plans.clear();
+        inlinedParameters.clear();
+    }
+
+    public int size() {
+        return plans.size();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder(METRIC_NAME + ".gets", hits, AtomicLong::get)
+                .tag("result", "hit")
+                .description("Number of AQL executions served from a cached plan")
+                .register(registry);
+        FunctionCounter.builder(METRIC_NAME + ".gets", misses, AtomicLong::get)
+                .tag("result", "miss")
+                .description("Number of AQL executions requiring a compilation")
+                .register(registry);
+        Gauge.builder(METRIC_NAME + ".size", plans, Map::size)
+                .description("Number of compiled AQL plans in the cache")
+                .register(registry);
+    }
+
+    /**
+     * queries using TERMINOLOGY() are expanded by the terminology server at compile time and must not be cached
+     */
+    private boolean isCacheable(String query) {
+        return !query.toUpperCase().contains("TERMINOLOGY");
+    }
+
+    /**
+     * @param query the AQL expression
+     * @param parameters the query parameters, can be null
+     * @param inlined the parameters substituted as text
+     * @return the key of the plan
+     */
+    static String key(String query, Map<String, Object> parameters, Set<String> inlined) {
+        return withInlinedValues(signature(query, parameters), parameters, inlined);
+    }
+
+    /**
+     * the normalized query with the name and kind of each parameter
+     */
+    private static String signature(String query, Map<String, Object> parameters) {
+        StringBuilder signature = new StringBuilder(normalize(query));
+        if (parameters != null) {
+            for (Map.Entry<String, Object> parameter : new TreeMap<>(parameters).entrySet()) {
+                signature.append('\u0000').append(parameter.getKey()).append(':').append(AqlParameterBinding.kind(parameter.getValue()));
+            }
+        }
+        return signature.toString();
+    }
+
+    /**
+     * the values of the parameters substituted as text are part of the compiled SQL
+     */
+    private static String withInlinedValues(String signature, Map<String, Object> parameters, Set<String> inlined) {
+        if (parameters == null || inlined.isEmpty()) {
+            return signature;
+        }
+        StringBuilder key = new StringBuilder(signature);
+        for (String name : new TreeSet<>(inlined)) {
+            key.append('\u0000').append(name).append('=').append(parameters.get(name));
+        }
+        return key.toString();
+    }
+
+    /**
+     * collapse the whitespaces outside of quoted literals so that formatting variants of a query share the same plan
+     * @param query an AQL expression
+     * @return the normalized expression
+     */
+    static String normalize(String query) {
+        StringBuilder normalized = new StringBuilder(query.length());
+        char quote = 0;
+        boolean pendingSpace = false;
+
+        for (char c : query.trim().toCharArray()) {
+            if (quote == 0 && Character.isWhitespace(c)) {
+                pendingSpace = true;
+                continue;
+            }
+            if (pendingSpace) {
+                normalized.append(' ');
+                pendingSpace = false;
+            }
+            if (quote == 0 && (c == '\'' || c == '"')) {
+                quote = c;
+            } else if (c == quote) {
+                quote = 0;
+            }
+            normalized.append(c);
+        }
+        return normalized.toString();
+    }
+}
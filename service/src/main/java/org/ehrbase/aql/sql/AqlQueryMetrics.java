@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.aql.sql;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the phase timings of AQL queries as the timer <code>ehrbase.aql.phase</code>, tagged by phase and stored
+ * query name. Ad-hoc queries are not told apart by a tag, which would grow with every distinct query: the hash of the
+ * normalized AQL expression is logged with the timings instead.
+ */
+@Service
+public class AqlQueryMetrics {
+
+    public static final String METRIC_NAME = "ehrbase.aql.phase";
+
+    static final String NO_STORED_QUERY = "none";
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final MeterRegistry registry;
+
+    @Autowired
+    public AqlQueryMetrics(ObjectProvider<MeterRegistry> registry) {
+        this(registry.getIfAvailable(() -> Metrics.globalRegistry));
+    }
+
+    public AqlQueryMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * @param query the AQL expression as submitted
+     * @param storedQueryName the qualified name of the stored query, null for ad-hoc queries
+     * @param timings the timings of the query execution
+     */
+    public void record(String query, String storedQueryName, AqlQueryTimings timings) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("AQL query {} ({}): {}", queryHash(query), storedQueryName == null ? NO_STORED_QUERY : storedQueryName, timings.explain());
+        }
+        timings.getNanos().forEach((phase, duration) ->
+                Timer.builder(METRIC_NAME)
+                        .description("Time spent in each phase of the AQL query execution")
+                        .tag("phase", phase.getTag())
+                        .tag("stored_query", storedQueryName == null ? NO_STORED_QUERY : storedQueryName)
+                        .register(registry)
+                        .record(duration, TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * formatting variants of a query share the same hash
+     */
+    static String queryHash(String query) {
+        return Integer.toHexString(AqlPlanCache.normalize(query).hashCode());
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.aql.sql;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Time spent in each phase of the execution of one AQL query. Phases skipped thanks to a cached plan are not
+ * recorded.
+ */
+public class AqlQueryTimings {
+
+    public enum Phase {
+        PARSE("parse"),
+        CONTAINS("contains"),
+        SQL_GENERATION("sql_generation"),
+        EXECUTION("execution"),
+        POST_PROCESSING("post_processing"),
+        FORMATTING("formatting");
+
+        private final String tag;
+
+        Phase(String tag) {
+            this.tag = tag;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+    }
+
+    private final Map<Phase, Long> nanos = Collections.synchronizedMap(new EnumMap<>(Phase.class));
+
+    public <T> T time(Phase phase, Supplier<T> supplier) {
+        long start = System.nanoTime();
+        try {
+            return supplier.get();
+        } finally {
+            record(phase, System.nanoTime() - start);
+        }
+    }
+
+    public void time(Phase phase, Runnable runnable) {
+        time(phase, () -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    /**
+     * add a duration to a phase
+     * @param phase the phase
+     * @param duration the duration in nanoseconds
+     */
+    public void record(Phase phase, long duration) {
+        nanos.merge(phase, duration, Long::sum);
+    }
+
+    /**
+     * @return the recorded phases with their duration in nanoseconds
+     */
+    public Map<Phase, Long> getNanos() {
+        synchronized (nanos) {
+            return new EnumMap<>(nanos);
+        }
+    }
+
+    /**
+     * @return the timings formatted for the explain section of a query result
+     */
+    public List<String> explain() {
+        List<String> details = new ArrayList<>();
+        details.add("timings");
+        getNanos().forEach((phase, duration) ->
+                details.add(String.format(Locale.ROOT, "%s: %.3f ms", phase.getTag(), duration / 1_000_000.0)));
+        return details;
+    }
+}
@@ -34,6 +34,7 @@ public class AqlResult {
     private final List<List<String>> explain;
     private Map<String, String> aqlColumns;
     private Map<String, Set<Object>> auditResultMap = new HashMap<>();
+    private String continuation;
 
     AqlResult(Result<Record> records, List<List<String>> explain) {
         this.records = records;
@@ -66,6 +67,17 @@ public class AqlResult {
     }
 
 
+    /**
+     * @return the token to retrieve the next page of a keyset paged query, null if there is none
+     */
+    public String getContinuation() {
+        return continuation;
+    }
+
+    public void setContinuation(String continuation) {
+        this.continuation = continuation;
+    }
+
     public boolean variablesContains(String fieldName){
         if (aqlColumns.containsKey(fieldName))
             return true;
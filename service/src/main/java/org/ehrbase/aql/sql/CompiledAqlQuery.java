@@ -0,0 +1,382 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.aql.sql;
+
+import org.ehrbase.aql.definition.I_VariableDefinition;
+import org.ehrbase.aql.sql.binding.KeysetBinding;
+import org.ehrbase.aql.sql.postprocessing.RawJsonTransform;
+import org.ehrbase.aql.sql.queryimpl.DurationFormatter;
+import org.ehrbase.dao.access.interfaces.I_DomainAccess;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record;
+import org.jooq.Result;
+import org.jooq.ResultQuery;
+import org.jooq.Select;
+import org.jooq.Table;
+import org.jooq.impl.DSL;
+import org.jooq.exception.DataAccessException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Outcome of the AQL compilation (parse, CONTAINS resolution, statements and SQL assembly).
+ * <p>
+ * The jOOQ query built by {@link QueryProcessor} is rendered once into its SQL and bind values, a compiled query
+ * does not hold any mutable jOOQ object and can therefore be executed concurrently and kept in {@link AqlPlanCache}.
+ * </p>
+ * <p>
+ * The query parameters compiled as bind variables are referenced by the bind values, such a query is executed once
+ * bound to the parameter values, see {@link #bind(Map)}.
+ * </p>
+ */
+public class CompiledAqlQuery {
+
+    private final String sql;
+    private final List<Object> bindValues;
+    private final List<Field<?>> fields;
+    private final String formattedSql;
+    private final List<I_VariableDefinition> variableDefinitions;
+    private final String aqlExpression;
+    private KeysetBinding keysetBinding;
+    private List<ParallelBranchQuery.Branch> keysetBranches = Collections.emptyList();
+    private ParallelBranchQuery parallelBranchQuery;
+    private long templateSetGeneration;
+    private Set<String> inlinedParameters = Collections.emptySet();
+
+    CompiledAqlQuery(String sql, List<Object> bindValues, List<Field<?>> fields, String formattedSql, List<I_VariableDefinition> variableDefinitions, String aqlExpression) {
+        this.sql = sql;
+        this.bindValues = Collections.unmodifiableList(new ArrayList<>(bindValues));
+        this.fields = Collections.unmodifiableList(new ArrayList<>(fields));
+        this.formattedSql = formattedSql;
+        this.variableDefinitions = Collections.unmodifiableList(new ArrayList<>(variableDefinitions));
+        this.aqlExpression = aqlExpression;
+    }
+
+    /**
+     * resolve the parameters compiled as bind variables
+     * @param parameters the query parameters, can be null
+     * @return the query to execute with the parameter values
+     */
+    public CompiledAqlQuery bind(Map<String, Object> parameters) {
+        if (!AqlParameterBinding.hasReference(bindValues) && parallelBranchQuery == null) {
+            return this;
+        }
+
+        CompiledAqlQuery bound = new CompiledAqlQuery(sql, AqlParameterBinding.resolve(bindValues, parameters), fields, formattedSql, variableDefinitions, aqlExpression);
+        bound.keysetBinding = keysetBinding;
+        bound.keysetBranches = new ArrayList<>();
+        for (ParallelBranchQuery.Branch branch : keysetBranches) {
+            bound.keysetBranches.add(branch.bind(parameters));
+        }
+        bound.parallelBranchQuery = parallelBranchQuery == null ? null : parallelBranchQuery.bind(parameters);
+        bound.templateSetGeneration = templateSetGeneration;
+        bound.inlinedParameters = inlinedParameters;
+        return bound;
+    }
+
+    /**
+     * run the compiled SQL and perform the result post-processing
+     * @param domainAccess the access providing the jOOQ context to execute with
+     * @return the query result including the explain details
+     */
+    public AqlResult execute(I_DomainAccess domainAccess) {
+        return execute(domainAccess, ParallelBranchExecutor.disabled(), new AqlQueryTimings());
+    }
+
+    /**
+     * run the compiled SQL and perform the result post-processing, the template branches are executed concurrently
+     * if the executor is enabled and the query allows it (see {@link ParallelBranchQuery})
+     * @param domainAccess the access providing the jOOQ context to execute with
+     * @param branchExecutor the executor for the template branches
+     * @param timings records the time spent in the database and in the post-processing
+     * @return the query result including the explain details
+     */
+    public AqlResult execute(I_DomainAccess domainAccess, ParallelBranchExecutor branchExecutor, AqlQueryTimings timings) {
+        Result<Record> result;
+        long start = System.nanoTime();
+        try {
+            if (parallelBranchQuery != null && branchExecutor.isEnabled()) {
+                result = parallelBranchQuery.fetch(domainAccess.getContext(), branchExecutor);
+            } else {
+                result = domainAccess.getContext()
+                        .resultQuery(sql, bindValues.toArray())
+                        .coerce(fields)
+                        .fetch();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while performing SQL query, AQL expression:" + aqlExpression);
+        } catch (Exception e) {
+            String reason = "Could not perform SQL query:" + e.getCause() +
+                    ", AQL expression:" +
+                    aqlExpression +
+                    ", Translated SQL:" +
+                    sql;
+            throw new IllegalArgumentException(reason);
+        } finally {
+            timings.record(AqlQueryTimings.Phase.EXECUTION, System.nanoTime() - start);
+        }
+
+        //if any jsonb data field transform them into raw json
+        long postProcessing = System.nanoTime();
+        RawJsonTransform.toRawJson(result);
+        DurationFormatter.toISO8601(result);
+        timings.record(AqlQueryTimings.Phase.POST_PROCESSING, System.nanoTime() - postProcessing);
+
+        return new AqlResult(result, buildExplain());
+    }
+
+    /**
+     * run the compiled SQL with <code>EXPLAIN (ANALYZE, BUFFERS)</code>, the statement is actually executed
+     * @param domainAccess the access providing the jOOQ context to execute with
+     * @return the plan lines, preceded by the header "plan"
+     */
+    public List<String> explainAnalyze(I_DomainAccess domainAccess) {
+        List<String> plan = new ArrayList<>();
+        plan.add("plan");
+        domainAccess.getContext()
+                .resultQuery("explain (analyze, buffers) " + sql, bindValues.toArray())
+                .fetch()
+                .forEach(line -> plan.add(String.valueOf(line.get(0))));
+        return plan;
+    }
+
+    /**
+     * run one page of the compiled SQL using keyset pagination
+     * <p>
+     * The query must define an ORDER BY clause and neither LIMIT, OFFSET, TOP, DISTINCT nor aggregate functions.
+     * Instead of skipping the rows of the previous pages, each branch of the template UNION is read from the last
+     * sort key recorded in the continuation token: the cost of a page does not depend on its position in the result.
+     * </p>
+     * <p>
+     * The ORDER BY is completed by the id of the entry a row is derived from and the ordinal of the row among the
+     * rows of this entry with the same sort key (see {@link KeysetBinding}), which makes the order of the rows total.
+     * A row thus stands for its entry: equal rows of different entries are all returned.
+     * </p>
+     * @param domainAccess the access providing the jOOQ context to execute with
+     * @param pageSize the maximum number of rows of the page
+     * @param continuation the token returned with the previous page, null for the first page
+     * @param timings records the time spent in the database and in the post-processing
+     * @return the page, its continuation is null when there are no more rows
+     */
+    public AqlResult executePage(I_DomainAccess domainAccess, int pageSize, String continuation, AqlQueryTimings timings) {
+        if (keysetBinding == null) {
+            throw new IllegalArgumentException("Keyset pagination requires an ORDER BY clause and no LIMIT, OFFSET, TOP, DISTINCT or aggregate function");
+        }
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Invalid page size: " + pageSize);
+        }
+
+        ContinuationToken previous = continuation == null ? null : ContinuationToken.decode(continuation);
+        if (previous != null && !previous.getFingerprint().equals(fingerprint())) {
+            throw new IllegalArgumentException("Continuation token was not issued for this query");
+        }
+
+        //the seek on the sort key is applied to each branch
+        Select<Record> union = null;
+        for (ParallelBranchQuery.Branch branch : keysetBranches) {
+            Select<Record> seek = DSL.select(DSL.asterisk())
+                    .from(DSL.table("({0})", DSL.sql(branch.getSql(), branch.getBindValues().toArray())).as("keyset_branch"))
+                    .where(previous == null ? DSL.noCondition() : keysetBinding.seek(previous.getLastKey()));
+            union = union == null ? seek : union.union(seek);
+        }
+        Table<Record> rows = DSL.select(DSL.asterisk(), keysetBinding.ordinal("keyset_union"))
+                .from(union.asTable("keyset_union"))
+                .asTable("keyset_rows");
+
+        List<Field<?>> pageFields = new ArrayList<>(fields);
+        pageFields.add(DSL.field(DSL.name(KeysetBinding.ID), UUID.class));
+        pageFields.add(DSL.field(DSL.name(KeysetBinding.ORDINAL), Long.class));
+
+        ResultQuery<Record> pageQuery = domainAccess.getContext()
+                .select(DSL.asterisk())
+                .from(rows)
+                .where(previous == null ? DSL.noCondition() : keysetBinding.seekAfter(previous.getLastKey(), previous.getLastId(), previous.getLastOrdinal()))
+                .orderBy(keysetBinding.pageSortFields())
+                .limit(pageSize + 1)
+                .coerce(pageFields);
+
+        Result<Record> page;
+        long start = System.nanoTime();
+        try {
+            page = pageQuery.fetch();
+        } catch (Exception e) {
+            String reason = "Could not perform SQL query:" + e.getCause() +
+                    ", AQL expression:" +
+                    aqlExpression +
+                    ", Translated SQL:" +
+                    sql;
+            throw new IllegalArgumentException(reason);
+        } finally {
+            timings.record(AqlQueryTimings.Phase.EXECUTION, System.nanoTime() - start);
+        }
+
+        String next = null;
+        if (page.size() > pageSize) {
+            page.remove(pageSize);
+            next = nextToken(page.get(pageSize - 1)).encode();
+        }
+        Result<Record> result = page.into(fields.toArray(new Field<?>[0]));
+
+        long postProcessing = System.nanoTime();
+        RawJsonTransform.toRawJson(result);
+        DurationFormatter.toISO8601(result);
+        timings.record(AqlQueryTimings.Phase.POST_PROCESSING, System.nanoTime() - postProcessing);
+
+        AqlResult aqlResult = new AqlResult(result, buildExplain());
+        aqlResult.setContinuation(next);
+        return aqlResult;
+    }
+
+    /**
+     * the position of the last row of a page
+     */
+    private ContinuationToken nextToken(Record last) {
+        return new ContinuationToken(fingerprint(), keysetBinding.keyOf(last),
+                last.get(KeysetBinding.ID, UUID.class), last.get(KeysetBinding.ORDINAL, Long.class));
+    }
+
+    /**
+     * the SHA-256 digest of the SQL and the bind values: the same SQL is executed for all the values of the parameters
+     */
+    private String fingerprint() {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(sql.getBytes(StandardCharsets.UTF_8));
+        for (Object bindValue : bindValues) {
+            //the type and length delimit the values
+            String value = bindValue == null ? "" : bindValue.getClass().getName() + ":" + bindValue;
+            digest.update((byte) 0);
+            digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(value.length()).array());
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest());
+    }
+
+    /**
+     * run the compiled SQL on a lazy cursor, the records are post-processed as they are read from it
+     * <p>
+     * The statement is executed before this method returns, at most <code>fetchSize</code> rows are held in memory
+     * at any time. The cursor is only honoured by the PostgreSQL driver if the connection of the context is not in
+     * auto-commit mode.
+     * </p>
+     * @param context the jOOQ context holding the connection of the cursor
+     * @param fetchSize the number of rows fetched from the database per round trip
+     * @return the records in result order, closing the stream closes the cursor
+     */
+    public Stream<Record> stream(DSLContext context, int fetchSize) {
+        try {
+            return context.resultQuery(sql, bindValues.toArray())
+                    .coerce(fields)
+                    .fetchSize(fetchSize)
+                    .fetchLazy()
+                    .stream()
+                    .peek(record -> {
+                        RawJsonTransform.toRawJson(record);
+                        DurationFormatter.toISO8601(record);
+                    });
+        } catch (DataAccessException e) {
+            String reason = "Could not perform SQL query:" + e.getCause() +
+                    ", AQL expression:" +
+                    aqlExpression +
+                    ", Translated SQL:" +
+                    sql;
+            throw new IllegalArgumentException(reason);
+        }
+    }
+
+    private List<List<String>> buildExplain() {
+        List<List<String>> explainList = new ArrayList<>();
+        List<String> details = new ArrayList<>();
+        details.add(formattedSql);
+        for (Object bindValue : bindValues) {
+            details.add(String.valueOf(bindValue));
+        }
+        explainList.add(details);
+        return explainList;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public List<Object> getBindValues() {
+        return bindValues;
+    }
+
+    public List<I_VariableDefinition> getVariableDefinitions() {
+        return variableDefinitions;
+    }
+
+    public KeysetBinding getKeysetBinding() {
+        return keysetBinding;
+    }
+
+    /**
+     * @param keysetBinding the ORDER BY columns
+     * @param keysetBranches the branches of the UNION with the id of their rows
+     */
+    void setKeysetBinding(KeysetBinding keysetBinding, List<ParallelBranchQuery.Branch> keysetBranches) {
+        this.keysetBinding = keysetBinding;
+        this.keysetBranches = Collections.unmodifiableList(new ArrayList<>(keysetBranches));
+    }
+
+    public ParallelBranchQuery getParallelBranchQuery() {
+        return parallelBranchQuery;
+    }
+
+    void setParallelBranchQuery(ParallelBranchQuery parallelBranchQuery) {
+        this.parallelBranchQuery = parallelBranchQuery;
+    }
+
+    /**
+     * @return the parameters substituted as text into the AQL expression, their value is part of the compiled SQL
+     */
+    public Set<String> getInlinedParameters() {
+        return inlinedParameters;
+    }
+
+    void setInlinedParameters(Set<String> inlinedParameters) {
+        this.inlinedParameters = Collections.unmodifiableSet(inlinedParameters);
+    }
+
+    public long getTemplateSetGeneration() {
+        return templateSetGeneration;
+    }
+
+    void setTemplateSetGeneration(long templateSetGeneration) {
+        this.templateSetGeneration = templateSetGeneration;
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.aql.sql;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.jooq.JSONB;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Opaque position of a keyset paged query: the sort key of the last returned row, its id and ordinal (see
+ * {@link org.ehrbase.aql.sql.binding.KeysetBinding}) and a fingerprint of the query it was issued for.
+ * <p>
+ * The token is the url safe base64 encoding of a small json document, the sort key values keep their SQL type.
+ * </p>
+ */
+public class ContinuationToken {
+
+    private static final String FINGERPRINT = "q";
+    private static final String KEY = "k";
+    private static final String ID = "i";
+    private static final String ORDINAL = "o";
+
+    private final String fingerprint;
+    private final List<Object> lastKey;
+    private final UUID lastId;
+    private final long lastOrdinal;
+
+    ContinuationToken(String fingerprint, List<Object> lastKey, UUID lastId, long lastOrdinal) {
+        this.fingerprint = fingerprint;
+        this.lastKey = Collections.unmodifiableList(new ArrayList<>(lastKey));
+        this.lastId = lastId;
+        this.lastOrdinal = lastOrdinal;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public List<Object> getLastKey() {
+        return lastKey;
+    }
+
+    /**
+     * @return the id of the entry (or composition or EHR) of the last row, null if it has none
+     */
+    public UUID getLastId() {
+        return lastId;
+    }
+
+    /**
+     * @return the number of the last row among the rows of its id with the same sort key
+     */
+    public long getLastOrdinal() {
+        return lastOrdinal;
+    }
+
+    public String encode() {
+        JsonObject token = new JsonObject();
+        token.addProperty(FINGERPRINT, fingerprint);
+        JsonArray key = new JsonArray();
+        for (Object value : lastKey) {
+            key.add(encodeValue(value));
+        }
+        token.add(KEY, key);
+        if (lastId != null) {
+            token.addProperty(ID, lastId.toString());
+        }
+        token.addProperty(ORDINAL, lastOrdinal);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ContinuationToken decode(String encoded) {
+        try {
+            JsonObject token = JsonParser.parseString(new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8))
+                    .getAsJsonObject();
+            List<Object> key = new ArrayList<>();
+            for (JsonElement value : token.getAsJsonArray(KEY)) {
+                key.add(decodeValue(value.getAsJsonArray()));
+            }
+            UUID id = token.has(ID) ? UUID.fromString(token.get(ID).getAsString()) : null;
+            return new ContinuationToken(token.get(FINGERPRINT).getAsString(), key, id, token.get(ORDINAL).getAsLong());
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid continuation token: " + encoded);
+        }
+    }
+
+    private static JsonArray encodeValue(Object value) {
+        JsonArray encoded = new JsonArray();
+        if (value == null) {
+            encoded.add("null");
+            return encoded;
+        }
+
+        String type;
+        if (value instanceof String || value instanceof Integer || value instanceof Long || value instanceof Short
+                || value instanceof Double || value instanceof Float || value instanceof BigDecimal || value instanceof BigInteger
+                || value instanceof Boolean || value instanceof UUID || value instanceof OffsetDateTime || value instanceof LocalDateTime) {
+            type = value.getClass().getSimpleName();
+        } else if (value instanceof Timestamp) {
+            type = "Timestamp";
+        } else if (value instanceof JSONB) {
+            type = "JSONB";
+            value = ((JSONB) value).data();
+        } else {
+            throw new IllegalArgumentException("Keyset pagination is not supported on ORDER BY values of type " + value.getClass().getSimpleName());
+        }
+        encoded.add(type);
+        encoded.add(value.toString());
+        return encoded;
+    }
+
+    private static Object decodeValue(JsonArray encoded) {
+        String type = encoded.get(0).getAsString();
+        if (type.equals("null")) {
+            return null;
+        }
+
+        String value = encoded.get(1).getAsString();
+        switch (type) {
+            case "String":
+                return value;
+            case "Integer":
+                return Integer.valueOf(value);
+            case "Long":
+                return Long.valueOf(value);
+            case "Short":
+                return Short.valueOf(value);
+            case "Double":
+                return Double.valueOf(value);
+            case "Float":
+                return Float.valueOf(value);
+            case "BigDecimal":
+                return new BigDecimal(value);
+            case "BigInteger":
+                return new BigInteger(value);
+            case "Boolean":
+                return Boolean.valueOf(value);
+            case "UUID":
+                return UUID.fromString(value);
+            case "OffsetDateTime":
+                return OffsetDateTime.parse(value);
+            case "LocalDateTime":
+                return LocalDateTime.parse(value);
+            case "Timestamp":
+                return Timestamp.valueOf(value);
+            case "JSONB":
+                return JSONB.valueOf(value);
+            default:
+                throw new IllegalArgumentException("Unknown value type in continuation token: " + type);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.aql.sql;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded thread pool running the template branches of AQL queries concurrently, see {@link ParallelBranchQuery}.
+ * <p>
+ * Each branch is executed on its own pooled connection. The pool is shared by all queries: its size bounds the number
+ * of connections used for branch execution. When the pool and its queue are saturated the branch runs on the calling
+ * thread.
+ * </p>
+ */
+@Service
+public class ParallelBranchExecutor implements DisposableBean {
+
+    private final ExecutorService executorService;
+
+    @Autowired
+    public ParallelBranchExecutor(@Value("${query.parallel-branches:0}") int threads) {
+        if (threads > 0) {
+            executorService = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(threads * 16),
+                    new CustomizableThreadFactory("aql-branch-"),
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+            ((ThreadPoolExecutor) executorService).allowCoreThreadTimeOut(true);
+        } else {
+            executorService = null;
+        }
+    }
+
+    /**
+     * an executor running the whole UNION as a single statement
+     * @return the disabled executor
+     */
+    public static ParallelBranchExecutor disabled() {
+        return new ParallelBranchExecutor(0);
+    }
+
+    public boolean isEnabled() {
+        return executorService != null;
+    }
+
+    /**
+     * @param task the branch to run
+     * @return the future result of the branch, cancelling it interrupts the task
+     */
+    <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> running = executorService.submit(() -> {
+            try {
+                result.complete(task.call());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        result.whenComplete((value, e) -> {
+            if (result.isCancelled()) {
+                running.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public void destroy() {
+        if (executorService != null) {
+            executorService.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.aql.sql;
+
+import org.ehrbase.aql.sql.binding.KeysetBinding;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record;
+import org.jooq.Result;
+import org.jooq.ResultQuery;
+import org.jooq.SelectQuery;
+import org.jooq.impl.DSL;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Execution of the UNION of template branches of an AQL query as independent statements.
+ * <p>
+ * Each branch is run concurrently by the {@link ParallelBranchExecutor} with DISTINCT (as implied by UNION) and, if
+ * any, the ORDER BY clause and the LIMIT (increased by the OFFSET) of the query. The branch results are then merged:
+ * <ul>
+ * <li>with ORDER BY: each branch is merged into the sorted rows as soon as it completes, keeping at most LIMIT +
+ * OFFSET rows</li>
+ * <li>without ORDER BY: concatenation as the branches complete, the pending branches are cancelled as soon as LIMIT +
+ * OFFSET rows are collected</li>
+ * </ul>
+ * Duplicates across branches are removed during the merge.
+ * </p>
+ * <p>
+ * The merge compares the sort keys in the application: a query is only ordered in parallel if its sort columns are
+ * ordered the same way in the application and in the database (see {@link KeysetBinding#isMergeable(List)}), text
+ * follows the collation of the database.
+ * </p>
+ */
+public class ParallelBranchQuery {
+
+    /**
+     * a rendered branch of the UNION
+     */
+    public static class Branch {
+        private final String sql;
+        private final List<Object> bindValues;
+
+        public Branch(String sql, List<Object> bindValues) {
+            this.sql = sql;
+            this.bindValues = Collections.unmodifiableList(new ArrayList<>(bindValues));
+        }
+
+        String getSql() {
+            return sql;
+        }
+
+        List<Object> getBindValues() {
+            return bindValues;
+        }
+
+        Branch bind(Map<String, Object> parameters) {
+            return new Branch(sql, AqlParameterBinding.resolve(bindValues, parameters));
+        }
+    }
+
+    private final List<Branch> branches;
+    private final List<Field<?>> fields;
+    private final KeysetBinding sortBinding;
+    private final Integer limit;
+    private final int offset;
+
+    /**
+     * @param branches the branches of the UNION
+     * @param fields the fields of the query result
+     * @param sortBinding the ORDER BY columns, null if the query is not ordered
+     * @param limit the LIMIT or TOP window, null if none
+     * @param offset the OFFSET, null if none
+     */
+    ParallelBranchQuery(List<Branch> branches, List<Field<?>> fields, KeysetBinding sortBinding, Integer limit, Integer offset) {
+        this.branches = Collections.unmodifiableList(new ArrayList<>(branches));
+        this.fields = Collections.unmodifiableList(new ArrayList<>(fields));
+        this.sortBinding = sortBinding;
+        this.limit = limit;
+        this.offset = offset == null ? 0 : offset;
+    }
+
+    /**
+     * @param parameters the query parameters, can be null
+     * @return the query with the parameter references of the branches resolved
+     */
+    ParallelBranchQuery bind(Map<String, Object> parameters) {
+        List<Branch> bound = new ArrayList<>();
+        for (Branch branch : branches) {
+            bound.add(branch.bind(parameters));
+        }
+        return new ParallelBranchQuery(bound, fields, sortBinding, limit, offset);
+    }
+
+    /**
+     * run the branches and merge their results
+     * @param context the jOOQ context, each branch acquires its own connection from its data source
+     * @param executor the executor running the branches
+     * @return the merged result
+     * @throws InterruptedException if interrupted while waiting for the branches
+     * @throws ExecutionException if a branch failed
+     */
+    public Result<Record> fetch(DSLContext context, ParallelBranchExecutor executor) throws InterruptedException, ExecutionException {
+        List<ResultQuery<Record>> queries = new ArrayList<>();
+        List<CompletableFuture<Result<Record>>> futures = new ArrayList<>();
+        BlockingQueue<CompletableFuture<Result<Record>>> completed = new LinkedBlockingQueue<>();
+        for (Branch branch : branches) {
+            ResultQuery<Record> query = branchQuery(context, branch);
+            queries.add(query);
+            CompletableFuture<Result<Record>> future = executor.submit(query::fetch);
+            futures.add(future);
+            future.whenComplete((result, e) -> completed.add(future));
+        }
+
+        try {
+            //the branches are taken as they complete, a failed branch ends the query at once
+            List<Record> merged = new ArrayList<>();
+            //unordered rows are complete once enough are collected, sorted ones only with the last branch
+            for (int i = 0; i < futures.size() && (sortBinding != null || merged.size() < wanted()); i++) {
+                Result<Record> branchResult = completed.take().get();
+                merged = sortBinding == null ? concatenate(merged, branchResult) : merge(merged, branchResult);
+            }
+
+            Result<Record> result = context.newResult(fields.toArray(new Field<?>[0]));
+            result.addAll(merged.subList(Math.min(offset, merged.size()), merged.size()));
+            return result;
+        } finally {
+            //early termination: stop whatever is still running
+            for (int i = 0; i < futures.size(); i++) {
+                if (!futures.get(i).isDone()) {
+                    futures.get(i).cancel(true);
+                    queries.get(i).cancel();
+                }
+            }
+        }
+    }
+
+    private ResultQuery<Record> branchQuery(DSLContext context, Branch branch) {
+        SelectQuery<Record> select = context.selectQuery();
+        select.setDistinct(true);
+        select.addFrom(DSL.table("({0})", DSL.sql(branch.sql, branch.bindValues.toArray())).as("branch"));
+        if (sortBinding != null) {
+            select.addOrderBy(sortBinding.sortFields());
+        }
+        if (limit != null) {
+            select.addLimit(limit + offset);
+        }
+        return select.coerce(fields);
+    }
+
+    private int wanted() {
+        return limit == null ? Integer.MAX_VALUE : limit + offset;
+    }
+
+    /**
+     * append the rows of a branch not merged yet, up to the wanted number of rows
+     */
+    private List<Record> concatenate(List<Record> merged, Result<Record> branchResult) {
+        Set<Record> seen = new HashSet<>(merged);
+        for (Record record : branchResult) {
+            if (merged.size() >= wanted()) {
+                break;
+            }
+            if (seen.add(record)) {
+                merged.add(record);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * merge the sorted rows of a branch into the sorted rows merged so far, as soon as the branch completes, so that
+     * only the last completed branch remains to be merged once all are done
+     */
+    List<Record> merge(List<Record> merged, List<Record> branchResult) {
+        Comparator<Record> comparator = comparator();
+        Set<Record> seen = new HashSet<>(merged);
+
+        List<Record> result = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (result.size() < wanted() && (i < merged.size() || j < branchResult.size())) {
+            if (j >= branchResult.size() || (i < merged.size() && comparator.compare(merged.get(i), branchResult.get(j)) <= 0)) {
+                result.add(merged.get(i++));
+            } else {
+                Record record = branchResult.get(j++);
+                //duplicates across branches
+                if (!seen.contains(record)) {
+                    result.add(record);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * order of the records as defined by the ORDER BY clause, NULL last in ascending and first in descending order
+     */
+    Comparator<Record> comparator() {
+        return (a, b) -> {
+            List<Object> keyA = sortBinding.keyOf(a);
+            List<Object> keyB = sortBinding.keyOf(b);
+            for (int i = 0; i < keyA.size(); i++) {
+                int compared = compareValues(keyA.get(i), keyB.get(i));
+                if (compared != 0) {
+                    return sortBinding.isDescending(i) ? -compared : compared;
+                }
+            }
+            return 0;
+        };
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compareValues(Object a, Object b) {
+        if (a == null || b == null) {
+            //NULL is the greatest value
+            return a == null ? (b == null ? 0 : 1) : -1;
+        }
+        if (a instanceof Number && b instanceof Number) {
+            try {
+                return new BigDecimal(a.toString()).compareTo(new BigDecimal(b.toString()));
+            } catch (NumberFormatException e) {
+                //NaN and infinity
+                return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+            }
+        }
+        if (a instanceof Comparable && a.getClass().equals(b.getClass())) {
+            return ((Comparable) a).compareTo(b);
+        }
+        throw new IllegalStateException(String.format("Sort keys %s and %s can not be merged", a.getClass(), b.getClass()));
+    }
+}
@@ -29,13 +29,13 @@ import org.ehrbase.aql.definition.I_VariableDefinition;
 import org.ehrbase.aql.definition.LateralJoinDefinition;
 import org.ehrbase.aql.definition.Variables;
 import org.ehrbase.aql.sql.binding.*;
-import org.ehrbase.aql.sql.postprocessing.RawJsonTransform;
 import org.ehrbase.aql.sql.queryimpl.*;
 import org.ehrbase.aql.sql.queryimpl.attribute.JoinSetup;
 import org.ehrbase.dao.access.interfaces.I_DomainAccess;
 import org.ehrbase.service.IntrospectService;
 import org.jooq.*;
 import org.jooq.Record;
+import org.jooq.conf.ParamType;
 import org.jooq.conf.Settings;
 import org.jooq.impl.DSL;
 
@@ -69,12 +69,16 @@ public class QueryProcessor extends TemplateMetaData {
         private final SelectQuery<Record> selectQuery;
         private final Collection<List<QuerySteps>> querySteps;
         private boolean outputWithJson;
+        private final List<ParallelBranchQuery.Branch> branches;
+        private final List<ParallelBranchQuery.Branch> keysetBranches;
 
 
-        AqlSelectQuery(SelectQuery<Record> selectQuery, Collection<List<QuerySteps>> querySteps, boolean outputWithJson) {
+        AqlSelectQuery(SelectQuery<Record> selectQuery, Collection<List<QuerySteps>> querySteps, boolean outputWithJson, List<ParallelBranchQuery.Branch> branches, List<ParallelBranchQuery.Branch> keysetBranches) {
             this.selectQuery = selectQuery;
             this.querySteps = querySteps;
             this.outputWithJson = outputWithJson;
+            this.branches = branches;
+            this.keysetBranches = keysetBranches;
         }
 
         public SelectQuery<Record> getSelectQuery() {
@@ -88,6 +92,21 @@ public class QueryProcessor extends TemplateMetaData {
         Collection<List<QuerySteps>> getQuerySteps() {
             return querySteps;
         }
+
+        /**
+         * @return the branches of the UNION rendered before assembly, empty if they were not rendered
+         */
+        List<ParallelBranchQuery.Branch> getBranches() {
+            return branches;
+        }
+
+        /**
+         * @return the branches of the UNION with the id of their rows, empty if they were not rendered, see
+         * {@link KeysetBinding}
+         */
+        List<ParallelBranchQuery.Branch> getKeysetBranches() {
+            return keysetBranches;
+        }
     }
 
     private final I_DomainAccess domainAccess;
@@ -106,20 +125,129 @@ public class QueryProcessor extends TemplateMetaData {
 
 
     public AqlResult execute() {
-        AqlSelectQuery aqlSelectQuery = buildAqlSelectQuery();
+        return compile().execute(domainAccess);
+    }
+
+    /**
+     * build the SQL query and render it with its bind values, the returned query can be executed
+     * repeatedly without going through the AQL compilation again
+     * @return the compiled query
+     */
+    public CompiledAqlQuery compile() {
+        return compile(AqlParameterBinding.of(null));
+    }
+
+    /**
+     * build the SQL query and render it with its bind values, the markers of the query parameters are replaced by
+     * bind variables referencing them
+     * @param parameterBinding the binding the AQL expression was parsed with
+     * @return the compiled query, see {@link CompiledAqlQuery#getInlinedParameters()} for the parameters which could
+     * not be bound
+     */
+    public CompiledAqlQuery compile(AqlParameterBinding parameterBinding) {
+        return compile(parameterBinding, false);
+    }
+
+    /**
+     * build the SQL query and render it with its bind values, see {@link #compile(AqlParameterBinding)}
+     * @param parameterBinding the binding the AQL expression was parsed with
+     * @param parallelBranches true to also render the template branches for their concurrent execution, see
+     * {@link ParallelBranchQuery}
+     * @return the compiled query
+     */
+    public CompiledAqlQuery compile(AqlParameterBinding parameterBinding, boolean parallelBranches) {
+        AqlSelectQuery aqlSelectQuery = buildAqlSelectQuery(parallelBranches, isKeysetPageable());
+        SelectQuery<Record> selectQuery = aqlSelectQuery.getSelectQuery();
 
-        Result<Record> result = fetchResultSet(aqlSelectQuery.getSelectQuery(), null);
+        List<I_VariableDefinition> variableDefinitions = new ArrayList<>();
+        statements.getVariables().iterator().forEachRemaining(variableDefinitions::add);
 
-        //if any jsonb data field transform them into raw json
-        RawJsonTransform.toRawJson(result);
-        DurationFormatter.toISO8601(result);
+        DSLContext pretty = DSL.using(domainAccess.getContext().dialect(), new Settings().withRenderFormatted(true));
+
+        AqlParameterBinding.BoundStatement statement = parameterBinding.bind(selectQuery.getSQL(ParamType.INDEXED), selectQuery.getBindValues());
+
+        CompiledAqlQuery compiledQuery = new CompiledAqlQuery(
+                statement.getSql(),
+                statement.getBindValues(),
+                selectQuery.getSelect(),
+                parameterBinding.bind(pretty.render(selectQuery), selectQuery.getBindValues()).getSql(),
+                variableDefinitions,
+                statements.getParsedExpression());
+
+        //parameters not found as a standalone literal are either unused or shape the SQL
+        Set<String> inlined = new HashSet<>(parameterBinding.getSubstitutions().keySet());
+        inlined.removeAll(statement.getBound());
+        inlined.addAll(statement.getEmbedded());
+
+        List<ParallelBranchQuery.Branch> branches = new ArrayList<>();
+        for (ParallelBranchQuery.Branch branch : aqlSelectQuery.getBranches()) {
+            AqlParameterBinding.BoundStatement boundBranch = parameterBinding.bind(branch.getSql(), branch.getBindValues());
+            inlined.addAll(boundBranch.getEmbedded());
+            branches.add(new ParallelBranchQuery.Branch(boundBranch.getSql(), boundBranch.getBindValues()));
+        }
+
+        List<ParallelBranchQuery.Branch> keysetBranches = new ArrayList<>();
+        for (ParallelBranchQuery.Branch branch : aqlSelectQuery.getKeysetBranches()) {
+            AqlParameterBinding.BoundStatement boundBranch = parameterBinding.bind(branch.getSql(), branch.getBindValues());
+            inlined.addAll(boundBranch.getEmbedded());
+            keysetBranches.add(new ParallelBranchQuery.Branch(boundBranch.getSql(), boundBranch.getBindValues()));
+        }
+        compiledQuery.setInlinedParameters(inlined);
+
+        KeysetBinding sortBinding = null;
+        if (statements.getOrderAttributes() != null && !statements.getOrderAttributes().isEmpty()) {
+            sortBinding = new KeysetBinding(statements.getVariables(), statements.getOrderAttributes());
+        }
+
+        Integer limit = Optional
+                .ofNullable(statements.getTopAttributes())
+                .map(TopAttributes::getWindow)
+                .orElse(statements.getLimitAttribute());
+
+        if (!keysetBranches.isEmpty()) {
+            compiledQuery.setKeysetBinding(sortBinding, keysetBranches);
+        }
 
-        List<List<String>> explainList = buildExplain(aqlSelectQuery.getSelectQuery());
+        //aggregates and DISTINCT are computed over the whole union and can not be merged from the branches, nor can
+        //text sort keys in the collation of the database
+        Variables variables = new Variables(statements.getVariables());
+        if (parallelBranches && aqlSelectQuery.getBranches().size() > 1 && !variables.hasDefinedDistinct() && !variables.hasDefinedFunction()
+                && (sortBinding == null || sortBinding.isMergeable(selectQuery.getSelect()))) {
+            compiledQuery.setParallelBranchQuery(new ParallelBranchQuery(
+                    branches,
+                    selectQuery.getSelect(),
+                    sortBinding,
+                    limit,
+                    statements.getOffsetAttribute()));
+        }
+
+        return compiledQuery;
+    }
 
-        return new AqlResult(result, explainList);
+    /**
+     * keyset pagination relies on a total order and replaces LIMIT/OFFSET, the seek condition is applied to the rows
+     * of the template branches which are neither aggregated nor made DISTINCT
+     */
+    private boolean isKeysetPageable() {
+        Variables variables = new Variables(statements.getVariables());
+        return statements.getOrderAttributes() != null && !statements.getOrderAttributes().isEmpty()
+                && Optional.ofNullable(statements.getTopAttributes()).map(TopAttributes::getWindow).orElse(statements.getLimitAttribute()) == null
+                && statements.getOffsetAttribute() == null
+                && !variables.hasDefinedDistinct()
+                && !variables.hasDefinedFunction();
     }
 
     public AqlSelectQuery buildAqlSelectQuery() {
+        return buildAqlSelectQuery(false, false);
+    }
+
+    /**
+     * @param renderBranches true to render each branch of the UNION, see {@link AqlSelectQuery#getBranches()}
+     * @param renderKeysetBranches true to render each branch of the UNION for keyset pagination, see
+     * {@link AqlSelectQuery#getKeysetBranches()}
+     * @return the query
+     */
+    public AqlSelectQuery buildAqlSelectQuery(boolean renderBranches, boolean renderKeysetBranches) {
 
         Map<String, List<QuerySteps>> cacheQuery = new HashMap<>();
 
@@ -142,31 +270,30 @@ public class QueryProcessor extends TemplateMetaData {
         //assemble the query from the cache
         SelectQuery unionSetQuery = domainAccess.getContext().selectQuery();
         boolean first = true;
+        List<ParallelBranchQuery.Branch> branches = new ArrayList<>();
+        List<ParallelBranchQuery.Branch> keysetBranches = new ArrayList<>();
 
         for (List<QuerySteps> queryStepList : cacheQuery.values()) {
 
             for (QuerySteps queryStep : queryStepList) {
 
-                SelectQuery select = queryStep.getSelectQuery();
-
-                if (!queryStep.getTemplateId().equalsIgnoreCase(NIL_TEMPLATE))
-                    joinSetup.setUseEntry(true);
-
-                JoinBinder joinBinder = new JoinBinder(domainAccess, joinSetup);
-
-                select.addFrom(joinBinder.initialFrom());
-
-                select = joinBinder.addJoinClause(select);
+                //the keyset branch repeats the select list of the step before it is assembled with its joins
+                SelectQuery<?> keysetSelect = null;
+                if (renderKeysetBranches) {
+                    keysetSelect = domainAccess.getContext().selectQuery();
+                    keysetSelect.addSelect(queryStep.getSelectQuery().getSelect());
+                }
 
-                select = setLateralJoins(queryStep.getLateralJoins(), select);
+                SelectQuery select = assembleBranch(queryStep.getSelectQuery(), queryStep, false);
 
-                //this deals with 'contains c' which adds an implicit where on template id
-                if (!queryStep.getTemplateId().equals(NIL_TEMPLATE)) {
-                    select.addConditions(ENTRY.TEMPLATE_ID.eq(queryStep.getTemplateId()));
+                //the first branch becomes the union: render it before
+                if (renderBranches) {
+                    branches.add(new ParallelBranchQuery.Branch(select.getSQL(ParamType.INDEXED), select.getBindValues()));
+                }
+                if (renderKeysetBranches) {
+                    keysetSelect = assembleBranch(keysetSelect, queryStep, true);
+                    keysetBranches.add(new ParallelBranchQuery.Branch(keysetSelect.getSQL(ParamType.INDEXED), keysetSelect.getBindValues()));
                 }
-                Condition whereCondition = queryStep.getWhereCondition();
-                if (whereCondition != null)
-                    select.addConditions(Operator.AND, whereCondition);
 
                 if (first) {
                     unionSetQuery = select;
@@ -200,7 +327,39 @@ public class QueryProcessor extends TemplateMetaData {
 
         unionSetQuery = limitBinding.bind();
 
-        return new AqlSelectQuery(unionSetQuery, cacheQuery.values(), containsJson);
+        return new AqlSelectQuery(unionSetQuery, cacheQuery.values(), containsJson, branches, keysetBranches);
+    }
+
+    /**
+     * add the FROM, JOIN and WHERE clauses of a query step to its select list
+     * @param select the select list of the step
+     * @param identified true to add the id of the rows as {@link KeysetBinding#ID}
+     * @return the branch of the UNION
+     */
+    private SelectQuery<?> assembleBranch(SelectQuery<?> select, QuerySteps queryStep, boolean identified) {
+        if (!queryStep.getTemplateId().equalsIgnoreCase(NIL_TEMPLATE))
+            joinSetup.setUseEntry(true);
+
+        JoinBinder joinBinder = new JoinBinder(domainAccess, joinSetup);
+
+        select.addFrom(joinBinder.initialFrom());
+
+        select = joinBinder.addJoinClause(select);
+
+        if (identified)
+            select.addSelect(joinBinder.rowIdentifier().as(KeysetBinding.ID));
+
+        select = setLateralJoins(queryStep.getLateralJoins(), select);
+
+        //this deals with 'contains c' which adds an implicit where on template id
+        if (!queryStep.getTemplateId().equals(NIL_TEMPLATE)) {
+            select.addConditions(ENTRY.TEMPLATE_ID.eq(queryStep.getTemplateId()));
+        }
+        Condition whereCondition = queryStep.getWhereCondition();
+        if (whereCondition != null)
+            select.addConditions(Operator.AND, whereCondition);
+
+        return select;
     }
 
     private List<QuerySteps> buildQuerySteps(String templateId) {
@@ -354,41 +513,6 @@ public class QueryProcessor extends TemplateMetaData {
         return lateralJoinsList;
     }
 
-    private Result<Record> fetchResultSet(Select<?> select, Result<Record> result) {
-        Result<Record> intermediary;
-        try {
-            intermediary = (Result<Record>) select.fetch();
-        } catch (Exception e) {
-
-            String reason = "Could not perform SQL query:" + e.getCause() +
-                    ", AQL expression:" +
-                    statements.getParsedExpression() +
-                    ", Translated SQL:" +
-                    select.getSQL();
-            throw new IllegalArgumentException(reason);
-        }
-        if (result != null) {
-            result.addAll(intermediary);
-        } else if (intermediary != null) {
-            result = intermediary;
-        }
-        return result;
-    }
-
-    private List<List<String>> buildExplain(Select<?> select) {
-        List<List<String>> explainList = new ArrayList<>();
-
-        DSLContext pretty = DSL.using(domainAccess.getContext().dialect(), new Settings().withRenderFormatted(true));
-        String sql = pretty.render(select);
-        List<String> details = new ArrayList<>();
-        details.add(sql);
-        for (Param<?> parameter : select.getParams().values()) {
-            details.add(parameter.getValue().toString());
-        }
-        explainList.add(details);
-        return explainList;
-    }
-
     private List<QuerySteps> buildNullSelect(String templateId) {
 
         List<QuerySteps> queryStepsList = buildQuerySteps(templateId);
@@ -30,6 +30,7 @@ import org.jooq.SelectQuery;
 import org.jooq.Table;
 import org.jooq.impl.DSL;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
@@ -60,6 +61,7 @@ public class JoinBinder implements IJoinBinder {
     private boolean composerJoined = false;
     private boolean ehrJoined = false;
     private boolean systemJoined = false;
+    private Table<?> from;
 
     private final I_DomainAccess domainAccess;
     private final JoinSetup joinSetup;
@@ -129,15 +131,41 @@ public class JoinBinder implements IJoinBinder {
      */
     public Table initialFrom(){
         if (joinSetup.isUseEntry())
-            return ENTRY;
+            from = ENTRY;
         else {
             if (joinSetup.isJoinEhrStatus() || joinSetup.isJoinSubject()) {
                 joinSetup.setJoinEhr(false); //since this is the initial table
-                return EHR_.as(EHR_JOIN); //we keep the logic re ref table ids
+                from = ehrRecordTable; //we keep the logic re ref table ids
             }
             else
-                return ENTRY;
+                from = ENTRY;
         }
+        return from;
+    }
+
+    /**
+     * identify the row of the initial table a result row is derived from, once the join clause is added: the entry,
+     * or the composition or EHR of the outer joins when there is no entry
+     * @return the id column, a NULL UUID if the query has no table
+     */
+    public Field<UUID> rowIdentifier() {
+        List<Field<UUID>> ids = new ArrayList<>();
+        if (from == ENTRY) {
+            ids.add(ENTRY.ID);
+        } else if (from != null) {
+            ids.add(from.field(ENTRY.ID.getName(), UUID.class));
+        }
+        if (compositionJoined) {
+            ids.add(compositionRecordTable.field(COMPOSITION.ID));
+        }
+        if (ehrJoined) {
+            ids.add(ehrRecordTable.field(EHR_.ID));
+        }
+
+        if (ids.isEmpty()) {
+            return DSL.castNull(UUID.class);
+        }
+        return ids.size() == 1 ? ids.get(0) : DSL.coalesce(ids.get(0), ids.subList(1, ids.size()).toArray(new Field<?>[0]));
     }
 
 
@@ -148,14 +176,19 @@ public class JoinBinder implements IJoinBinder {
         selectQuery1.addSelect(selectFields);
 
         if (joinSetup.isJoinEhr()){
-            selectQuery1.addFrom(EHR_.as(EHR_JOIN));
+            from = ehrRecordTable;
         }
         else if (joinSetup.isJoinComposition()){
-            selectQuery1.addFrom(COMPOSITION.as(COMPOSITION_JOIN));
+            from = compositionRecordTable;
         }
         else if (joinSetup.isJoinSystem()){
-            selectQuery1.addFrom(SYSTEM.as(SYSTEM_JOIN));
+            from = systemRecordTable;
         }
+        else
+            from = null;
+
+        if (from != null)
+            selectQuery1.addFrom(from);
         return selectQuery1;
     }
 
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.aql.sql.binding;
+
+import org.ehrbase.aql.compiler.OrderAttribute;
+import org.ehrbase.aql.definition.VariableDefinitions;
+import org.jooq.Condition;
+import org.jooq.Field;
+import org.jooq.Record;
+import org.jooq.SortField;
+import org.jooq.impl.DSL;
+
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Seek (keyset) condition on the ORDER BY columns of a query.
+ * <p>
+ * A page is read with the condition "sort key at or after the last key of the previous page" instead of an OFFSET.
+ * The condition only references the output columns of the query, it is applied to each branch of the template UNION.
+ * The rows sharing the last key are then told apart by the tiebreaker columns {@link #ID} (the entry, or the
+ * composition or EHR of a row without entry) and {@link #ORDINAL} (the number of the row among the rows of this id
+ * with the same sort key), which complete the sort key to a total order.
+ * </p>
+ * <p>
+ * PostgreSQL sorts NULL last in ascending and first in descending order, the condition follows this convention.
+ * </p>
+ * <p>
+ * The sort columns are also used to merge the sorted results of concurrently executed template branches.
+ * </p>
+ */
+public class KeysetBinding {
+
+    public static final String ID = "keyset_id";
+    public static final String ORDINAL = "keyset_ordinal";
+
+    private final List<String> columns = new ArrayList<>();
+    private final List<Boolean> descending = new ArrayList<>();
+
+    public KeysetBinding(VariableDefinitions variableDefinitions, List<OrderAttribute> orderAttributes) {
+        for (OrderAttribute orderAttribute : orderAttributes) {
+            columns.add(OrderByBinder.fieldIdentifier(variableDefinitions, orderAttribute));
+            descending.add(OrderAttribute.OrderDirection.DESC.equals(orderAttribute.getDirection()));
+        }
+    }
+
+    public List<String> getColumns() {
+        return Collections.unmodifiableList(columns);
+    }
+
+    /**
+     * @param index the position of the column in the ORDER BY clause
+     * @return true if the column is sorted in descending order
+     */
+    public boolean isDescending(int index) {
+        return Boolean.TRUE.equals(descending.get(index));
+    }
+
+    /**
+     * the sort columns can be merged in the application in the order of the database if they hold numbers, booleans,
+     * dates or uuids: text is ordered by the collation of the database, as are the strings of jsonb values
+     * @param fields the fields of the query result
+     * @return true if the type of each sort column is known and ordered the same way in the application
+     */
+    public boolean isMergeable(List<Field<?>> fields) {
+        for (String column : columns) {
+            Field<?> field = fields.stream()
+                    .filter(f -> f.getName().equals(unquote(column)))
+                    .findFirst()
+                    .orElse(null);
+            if (field == null || !isOrderedAsInDatabase(field.getType())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isOrderedAsInDatabase(Class<?> type) {
+        return Number.class.isAssignableFrom(type)
+                || Boolean.class.equals(type)
+                || UUID.class.equals(type)
+                || Temporal.class.isAssignableFrom(type)
+                || Date.class.isAssignableFrom(type);
+    }
+
+    /**
+     * @return the ORDER BY fields of the paged query
+     */
+    public List<SortField<Object>> sortFields() {
+        List<SortField<Object>> sortFields = new ArrayList<>();
+        for (int i = 0; i < columns.size(); i++) {
+            Field<Object> column = DSL.field(columns.get(i));
+            sortFields.add(Boolean.TRUE.equals(descending.get(i)) ? column.desc() : column.asc());
+        }
+        return sortFields;
+    }
+
+    /**
+     * extract the sort key of a record
+     * @param record a record of the (not yet post-processed) query result
+     * @return the values of the ORDER BY columns
+     */
+    public List<Object> keyOf(Record record) {
+        List<Object> key = new ArrayList<>();
+        for (int i = 0; i < columns.size(); i++) {
+            key.add(record.get(unquote(columns.get(i))));
+        }
+        return key;
+    }
+
+    /**
+     * @return the ORDER BY fields of the paged query, the sort fields completed by the tiebreaker columns
+     */
+    public List<SortField<?>> pageSortFields() {
+        List<SortField<?>> sortFields = new ArrayList<>(sortFields());
+        sortFields.add(DSL.field(DSL.name(ID)).asc());
+        sortFields.add(DSL.field(DSL.name(ORDINAL)).asc());
+        return sortFields;
+    }
+
+    /**
+     * build the ordinal tiebreaker column
+     * <p>
+     * The rows are numbered among the rows of the same id with the same sort key: the seek condition selects or
+     * skips all of them together, the numbering is the same on every page. They are ordered by their text, which
+     * only takes effect among these few rows: rows of the same text are identical and interchangeable.
+     * </p>
+     * @param rows the name of the derived table holding the rows and the {@link #ID} column
+     * @return the numbering of the rows, aliased as {@link #ORDINAL}
+     */
+    public Field<Integer> ordinal(String rows) {
+        List<Field<?>> partition = new ArrayList<>();
+        partition.add(DSL.field(DSL.name(ID)));
+        for (String column : columns) {
+            partition.add(DSL.field(column));
+        }
+        return DSL.rowNumber()
+                .over(DSL.partitionBy(partition).orderBy(DSL.field("{0}::text", DSL.name(rows))))
+                .as(ORDINAL);
+    }
+
+    /**
+     * build the condition selecting the rows whose sort key is equal to or after a given key
+     * @param lastKey the sort key of the last row of the previous page
+     * @return the seek condition on the output columns of the query
+     */
+    public Condition seek(List<Object> lastKey) {
+        checkKey(lastKey);
+
+        Condition seek = equalTo(lastKey, columns.size());
+        for (int i = columns.size() - 1; i >= 0; i--) {
+            seek = seek.or(equalTo(lastKey, i).and(after(i, lastKey.get(i))));
+        }
+        return seek;
+    }
+
+    /**
+     * build the condition selecting the rows strictly after a given row in the order of {@link #pageSortFields()}
+     * @param lastKey the sort key of the last row of the previous page
+     * @param lastId the id of this row, null if it has none
+     * @param lastOrdinal the ordinal of this row
+     * @return the seek condition on the output and tiebreaker columns
+     */
+    public Condition seekAfter(List<Object> lastKey, UUID lastId, long lastOrdinal) {
+        checkKey(lastKey);
+
+        Field<UUID> id = DSL.field(DSL.name(ID), UUID.class);
+        Field<Long> ordinal = DSL.field(DSL.name(ORDINAL), Long.class);
+        //NULLS LAST
+        Condition afterId = lastId == null ? DSL.falseCondition() : id.gt(lastId).or(id.isNull());
+        Condition seek = equalTo(lastKey, columns.size())
+                .and(afterId.or(id.isNotDistinctFrom(lastId).and(ordinal.gt(lastOrdinal))));
+        for (int i = columns.size() - 1; i >= 0; i--) {
+            seek = seek.or(equalTo(lastKey, i).and(after(i, lastKey.get(i))));
+        }
+        return seek;
+    }
+
+    private void checkKey(List<Object> lastKey) {
+        if (lastKey.size() != columns.size()) {
+            throw new IllegalArgumentException("Continuation token does not match the ORDER BY clause of the query");
+        }
+    }
+
+    /**
+     * the first <code>count</code> columns are equal to the key
+     */
+    private Condition equalTo(List<Object> key, int count) {
+        Condition equal = DSL.trueCondition();
+        for (int j = 0; j < count; j++) {
+            equal = equal.and(DSL.field(columns.get(j)).isNotDistinctFrom(DSL.val(key.get(j))));
+        }
+        return equal;
+    }
+
+    private Condition after(int index, Object value) {
+        Field<Object> column = DSL.field(columns.get(index));
+
+        if (Boolean.TRUE.equals(descending.get(index))) {
+            //NULLS FIRST
+            return value == null ? column.isNotNull() : column.lt(DSL.val(value));
+        } else {
+            //NULLS LAST
+            return value == null ? DSL.falseCondition() : column.gt(DSL.val(value)).or(column.isNull());
+        }
+    }
+
+    private static String unquote(String identifier) {
+        return identifier.startsWith("\"") && identifier.endsWith("\"") ?
+                identifier.substring(1, identifier.length() - 1) :
+                identifier;
+    }
+}
@@ -59,36 +59,7 @@ public class OrderByBinder {
 
         for (OrderAttribute orderAttribute : orderAttributes) {
             SortField<Object> field;
-            String fieldIdentifier = null;
-
-            //get the corresponding variable definition
-            if (variableDefinitions != null) {
-                Iterator<I_VariableDefinition> localIterator = variableDefinitions.iterator();
-
-                while (localIterator.hasNext()) {
-                    I_VariableDefinition variableDefinition = localIterator.next();
-                    if (orderAttribute.getVariableDefinition().getPath() != null && orderAttribute.getVariableDefinition().getPath().equals(variableDefinition.getPath())) {
-                        if (variableDefinition.getAlias() != null)
-                            fieldIdentifier = variableDefinition.getAlias();
-                        else
-                            fieldIdentifier = "/" + orderAttribute.getVariableDefinition().getPath();
-                        break;
-                    }
-                    else if (orderAttribute.getVariableDefinition().getAlias() != null)
-                        fieldIdentifier = orderAttribute.getVariableDefinition().getAlias();
-                }
-
-            }
-
-            if (fieldIdentifier == null) { //hidden field
-                fieldIdentifier = orderAttribute.getVariableDefinition().getAlias() == null ?
-                    "/"+orderAttribute.getVariableDefinition().getPath() :
-                    orderAttribute.getVariableDefinition().getAlias();
-                orderAttribute.getVariableDefinition().setHidden(true);
-            }
-
-            if (!fieldIdentifier.startsWith("\""))
-                fieldIdentifier = "\""+fieldIdentifier+"\""; //by postgresql convention
+            String fieldIdentifier = fieldIdentifier(variableDefinitions, orderAttribute);
 
             if (orderAttribute.getDirection() != null && orderAttribute.getDirection().equals(OrderAttribute.OrderDirection.DESC)) {
                 field = DSL.field(fieldIdentifier).desc();
@@ -100,6 +71,47 @@ public class OrderByBinder {
         return orderFields;
     }
 
+    /**
+     * resolve the column of the outer query an order attribute refers to
+     * @param variableDefinitions the SELECT variables
+     * @param orderAttribute the ORDER BY attribute
+     * @return the double quoted column identifier
+     */
+    static String fieldIdentifier(VariableDefinitions variableDefinitions, OrderAttribute orderAttribute) {
+        String fieldIdentifier = null;
+
+        //get the corresponding variable definition
+        if (variableDefinitions != null) {
+            Iterator<I_VariableDefinition> localIterator = variableDefinitions.iterator();
+
+            while (localIterator.hasNext()) {
+                I_VariableDefinition variableDefinition = localIterator.next();
+                if (orderAttribute.getVariableDefinition().getPath() != null && orderAttribute.getVariableDefinition().getPath().equals(variableDefinition.getPath())) {
+                    if (variableDefinition.getAlias() != null)
+                        fieldIdentifier = variableDefinition.getAlias();
+                    else
+                        fieldIdentifier = "/" + orderAttribute.getVariableDefinition().getPath();
+                    break;
+                }
+                else if (orderAttribute.getVariableDefinition().getAlias() != null)
+                    fieldIdentifier = orderAttribute.getVariableDefinition().getAlias();
+            }
+
+        }
+
+        if (fieldIdentifier == null) { //hidden field
+            fieldIdentifier = orderAttribute.getVariableDefinition().getAlias() == null ?
+                "/"+orderAttribute.getVariableDefinition().getPath() :
+                orderAttribute.getVariableDefinition().getAlias();
+            orderAttribute.getVariableDefinition().setHidden(true);
+        }
+
+        if (!fieldIdentifier.startsWith("\""))
+            fieldIdentifier = "\""+fieldIdentifier+"\""; //by postgresql convention
+
+        return fieldIdentifier;
+    }
+
     public SelectQuery<Record> bind() {
 
         if (CollectionUtils.isNotEmpty(orderAttributes)) {
@@ -26,11 +26,13 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.UUID;
 import org.apache.commons.lang3.StringUtils;
 import org.ehrbase.aql.definition.I_VariableDefinition;
 import org.ehrbase.aql.definition.LateralJoinDefinition;
 import org.ehrbase.aql.definition.LateralVariable;
 import org.ehrbase.aql.definition.VariableDefinition;
+import org.ehrbase.aql.sql.AqlParameterBinding;
 import org.ehrbase.aql.sql.PathResolver;
 import org.ehrbase.aql.sql.queryimpl.CompositionAttributeQuery;
 import org.ehrbase.aql.sql.queryimpl.IQueryImpl;
@@ -68,6 +70,9 @@ public class WhereBinder {
     //from AQL grammar
     private static final Set<String> sqloperators = new HashSet<>(Arrays.asList(
             "=", "!=", ">", ">=", "<", "<=", MATCHES, EXISTS, NOT, IS, TRUE, FALSE, NULL, UNKNOWN, DISTINCT, FROM, BETWEEN, "(", ")", "{", "}"));
+    //comparisons of a variable with a string parameter bound with an explicit cast
+    private static final Set<String> comparisonOperators = new HashSet<>(Arrays.asList(
+            "=", "!=", "<>", ">", ">=", "<", "<=", "LIKE", "ILIKE"));
     public static final String COMPOSITION = "COMPOSITION";
     public static final String CONTENT = "content";
     public static final String EHR = "EHR";
@@ -88,6 +93,8 @@ public class WhereBinder {
     private String sqlConditionalFunctionalOperatorRegexp = "(?i)(like|ilike|substr|in|not in)"; //list of subquery and operators
     private boolean requiresJSQueryClosure = false;
     private boolean isFollowedBySQLConditionalOperator = false;
+    //SQL type of the last variable, null if unknown
+    private String operandType = null;
 
     public WhereBinder(I_DomainAccess domainAccess, CompositionAttributeQuery compositionAttributeQuery, List<Object> whereClause, PathResolver pathResolver) {
         this.compositionAttributeQuery = compositionAttributeQuery;
@@ -196,6 +203,7 @@ public class WhereBinder {
                         } else {
                             item = hackItem(taggedBuffer, (String) item, null);
                             taggedBuffer.append((String) item);
+                            taggedBuffer.append(parameterCast(whereItems, cursor, (String) item));
                         }
                         break;
 
@@ -270,6 +278,18 @@ public class WhereBinder {
                 }
 
                 if (taggedStringBuilder != null) {
+                    operandType = operandType(whereCursor, multiWhereFieldsMap, (I_VariableDefinition) item, taggedStringBuilder.toString());
+                    String jsonPathCondition = jsonPathCondition(whereCursor, multiWhereFieldsMap, (I_VariableDefinition) item, whereItems, cursor);
+                    if (jsonPathCondition != null) {
+                        //(jsonpath AND variable operator operand): the jsonpath selects the candidate entries using the index
+                        String operand = hackItem(taggedBuffer, whereItems.get(cursor + 2).toString(), null).toString();
+                        taggedBuffer.append("(" + jsonPathCondition + " AND " + taggedStringBuilder
+                                + " " + ((String) whereItems.get(cursor + 1)).trim() + " "
+                                + operand + parameterCast(whereItems, cursor + 2, operand) + ")");
+                        taggedBuffer.setTagField(taggedStringBuilder.getTagField());
+                        cursor += 2;
+                        continue;
+                    }
                     taggedBuffer.append(taggedStringBuilder.toString());
                     taggedBuffer.setTagField(taggedStringBuilder.getTagField());
                 }
@@ -292,6 +312,103 @@ public class WhereBinder {
 
 
 
+    /**
+     * the type of a variable compared to a string parameter: the parameter is bound with an explicit cast to it
+     * (see {@link AqlParameterBinding}) so that its type does not depend on the inference of the database
+     * @param expression the SQL expression of the variable
+     * @return the SQL type, null if it is unknown and the parameter is substituted as a literal
+     */
+    private String operandType(int whereCursor, MultiFieldsMap multiWhereFieldsMap, I_VariableDefinition variableDefinition, String expression) {
+        String trimmed = expression.trim();
+        //text value of an entry path
+        if (trimmed.contains("#>>") && trimmed.endsWith("}'"))
+            return "text";
+
+        Field<?> field = multiWhereFieldsMap.get(variableDefinition.getIdentifier(), variableDefinition.getPath()).getQualifiedFieldOrLast(whereCursor).getSQLField();
+        //not a lateral join or a subquery
+        if (field == null || !trimmed.equals(field.toString().trim()))
+            return null;
+        if (field.getType().equals(UUID.class))
+            return "uuid";
+        if (field.getType().equals(String.class))
+            return "text";
+        return null;
+    }
+
+    /**
+     * @return the cast of a string parameter compared to the variable preceding it, empty if the literal is not a
+     * parameter or the type of the variable is unknown
+     */
+    private String parameterCast(List<Object> whereItems, int cursor, String literal) {
+        if (operandType != null && cursor >= 2
+                && whereItems.get(cursor - 2) instanceof I_VariableDefinition
+                && whereItems.get(cursor - 1) instanceof String
+                && comparisonOperators.contains(((String) whereItems.get(cursor - 1)).trim().toUpperCase())
+                && AqlParameterBinding.isStringMarker(literal))
+            return "::" + operandType;
+        return "";
+    }
+
+    /**
+     * look ahead for an equality with a literal or an existence test supported by a jsonpath condition
+     * @return the jsonpath condition, null if not applicable
+     */
+    private String jsonPathCondition(int whereCursor, MultiFieldsMap multiWhereFieldsMap, I_VariableDefinition variableDefinition, List<Object> whereItems, int cursor) {
+        if (!WhereJsonPathExpression.isEnabled() || requiresJSQueryClosure || isFollowedBySQLConditionalOperator
+                || !isNegationFree(whereClause) || cursor + 2 >= whereItems.size() || !(whereItems.get(cursor + 1) instanceof String))
+            return null;
+
+        Object operand = whereItems.get(cursor + 2);
+        if (!(operand instanceof String || operand instanceof Long))
+            return null;
+
+        //the path the field of the variable is built from, not its rendered SQL
+        List<String> entryPath = multiWhereFieldsMap.get(variableDefinition.getIdentifier(), variableDefinition.getPath())
+                .getQualifiedFieldOrLast(whereCursor).getEntryPath();
+        if (entryPath == null)
+            return null;
+
+        String operator = ((String) whereItems.get(cursor + 1)).trim();
+        String literal = operand.toString().trim();
+        if (operator.equals("=") && !new ISODateTime(literal.replace("'", "")).isValidDateTimeExpression())
+            return WhereJsonPathExpression.equality(entryPath, operand);
+        else if (operator.equalsIgnoreCase("IS NOT") && literal.equalsIgnoreCase(NULL))
+            return WhereJsonPathExpression.exists(entryPath);
+        return null;
+    }
+
+    /**
+     * the jsonpath rewrite is equivalent only if the result of the predicate is used as is: a path missing in the entry
+     * yields <code>(false AND NULL) = false</code> instead of <code>NULL</code>, which differs once negated
+     * (<code>NOT false</code> selects the entry, <code>NOT NULL</code> does not).
+     * @return true if no predicate of the WHERE clause can be negated (NOT, XOR or IS [NOT] TRUE/FALSE/UNKNOWN);
+     * NOT EXISTS is rewritten as IS NULL and is not a negation
+     */
+    static boolean isNegationFree(List<?> whereItems) {
+        for (int i = 0; i < whereItems.size(); i++) {
+            Object item = whereItems.get(i);
+            if (item instanceof List) {
+                if (!isNegationFree((List<?>) item))
+                    return false;
+            } else if (item instanceof String) {
+                String token = ((String) item).trim().toUpperCase();
+                if (token.equals(XOR) || token.equals(TRUE) || token.equals(FALSE) || token.equals(UNKNOWN))
+                    return false;
+                if (token.equals(NOT) && !precededBy(whereItems, i, IS) && !followedBy(whereItems, i, EXISTS))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean precededBy(List<?> whereItems, int index, String token) {
+        return index > 0 && whereItems.get(index - 1).toString().trim().equalsIgnoreCase(token);
+    }
+
+    private static boolean followedBy(List<?> whereItems, int index, String token) {
+        return index + 1 < whereItems.size() && whereItems.get(index + 1).toString().trim().equalsIgnoreCase(token);
+    }
+
     private String encodeForSubquery(String sqlExpression, boolean inSubqueryOperator){
         if (inSubqueryOperator)
             return "(SELECT " + sqlExpression+")";
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.aql.sql.binding;
+
+import org.ehrbase.aql.sql.queryimpl.IterativeNodeConstants;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.ehrbase.aql.sql.queryimpl.QueryImplConstants.AQL_NODE_ITERATIVE_MARKER;
+
+/**
+ * handles jsonpath expressions (PostgreSQL 12+) evaluated on the whole entry with the <code>@@</code> operator, which
+ * is supported by the <code>gin(entry jsonb_path_ops)</code> index.
+ * <p>
+ * The jsonpath condition is not a translation of the AQL predicate but a necessary condition of it: it is combined with
+ * the SQL condition as <code>(jsonpath AND condition)</code>, which lets the planner use the index to select the
+ * candidate entries. It is equivalent to the condition alone in a positive context only: if the path is missing, the
+ * condition is NULL but the conjunction is false, hence the rewrite is not applied to a WHERE clause containing a
+ * negation (see {@link WhereBinder#isNegationFree(java.util.List)}). The jsonpath is evaluated in lax mode and matches
+ * any element of the arrays on the path.
+ * </p>
+ * <p>
+ * Supported: equality of a path of the entry (possibly iterated with {@link org.ehrbase.aql.sql.queryimpl.QueryImplConstants#AQL_NODE_ITERATIVE_FUNCTION})
+ * with a string or number literal, and existence of such a path. The path is the one the field of the variable is
+ * built from (see {@link org.ehrbase.aql.sql.queryimpl.QualifiedAqlField#getEntryPath()}), the literal the operand of
+ * the WHERE clause.
+ * </p>
+ */
+public class WhereJsonPathExpression {
+
+    private static final String ENTRY = "\"ehr\".\"entry\".\"entry\"";
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'([^'\"\\\\]*)'");
+    //a json number as rendered by PostgreSQL
+    private static final Pattern NUMBER = Pattern.compile("-?(0|[1-9]\\d*)(\\.\\d+)?");
+    //a path segment which can be quoted as is in a jsonpath
+    private static final Pattern SEGMENT = Pattern.compile("[^'\"\\\\]+");
+
+    private WhereJsonPathExpression() {
+    }
+
+    /**
+     * @return true if the jsonpath conditions are generated, see {@link IterativeNodeConstants#ENV_AQL_USE_JSONPATH}
+     */
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(System.getProperty(IterativeNodeConstants.ENV_AQL_USE_JSONPATH, "false"));
+    }
+
+    /**
+     * @param entryPath the path of the WHERE variable in the entry, null if it is not a plain path of the entry
+     * @param operand the operand of the WHERE clause the variable is compared to
+     * @return the jsonpath condition, null if not supported for this path or operand
+     */
+    public static String equality(List<String> entryPath, Object operand) {
+        String path = jsonPath(entryPath);
+        if (path == null) {
+            return null;
+        }
+
+        //the field is compared as text: the value is either the json string or the json number/boolean rendered as text
+        String value;
+        if (operand instanceof Long || operand instanceof Integer) {
+            value = operand.toString();
+        } else if (operand instanceof String) {
+            String literal = ((String) operand).trim();
+            Matcher stringLiteral = STRING_LITERAL.matcher(literal);
+            if (stringLiteral.matches()) {
+                value = stringLiteral.group(1);
+            } else if (NUMBER.matcher(literal).matches()) {
+                value = literal;
+            } else {
+                return null;
+            }
+        } else {
+            return null;
+        }
+
+        StringBuilder predicate = new StringBuilder();
+        predicate.append(path).append(" == \"").append(value).append('"');
+        if (NUMBER.matcher(value).matches() || value.equals("true") || value.equals("false")) {
+            predicate.append(" || ").append(path).append(" == ").append(value);
+        }
+        return condition(predicate.toString());
+    }
+
+    /**
+     * @param entryPath the path of the WHERE variable in the entry, null if it is not a plain path of the entry
+     * @return the jsonpath condition, null if not supported for this path
+     */
+    public static String exists(List<String> entryPath) {
+        String path = jsonPath(entryPath);
+        if (path == null) {
+            return null;
+        }
+        return condition("exists(" + path + ")");
+    }
+
+    /**
+     * @param entryPath the segments of a path in the entry, with an iteration marker at the arrays iterated on
+     * @return the jsonpath of the segments, null if one cannot be expressed in a jsonpath
+     */
+    static String jsonPath(List<String> entryPath) {
+        if (entryPath == null || entryPath.isEmpty()) {
+            return null;
+        }
+
+        StringBuilder path = new StringBuilder("$");
+        for (String segment : entryPath) {
+            if (segment.equals(AQL_NODE_ITERATIVE_MARKER)) {
+                path.append("[*]");
+            } else if (segment.matches("\\d+")) {
+                path.append('[').append(segment).append(']');
+            } else if (SEGMENT.matcher(segment).matches()) {
+                path.append(".\"").append(segment).append('"');
+            } else {
+                return null;
+            }
+        }
+        return path.toString();
+    }
+
+    private static String condition(String jsonPath) {
+        return "(" + ENTRY + " @@ '" + jsonPath + "'::jsonpath)";
+    }
+}
@@ -49,45 +49,49 @@ public class RawJsonTransform implements IRawJsonTransform {
             return;
 
         for (Record record : result) {
+            toRawJson(record);
+        }
+    }
 
-            for (Field field : record.fields()) {
-                //get associated value
-                if (record.getValue(field) instanceof String || record.getValue(field) instanceof JSONB) {
-                    String value = record.getValue(field).toString();
-                    String jsonbOrigin = null;
-                    if (value.startsWith("[")) {
-                        //check if this is a valid array
-                        JsonReader jsonReader =  Json.createReader(new StringReader(value));
-                        try {
-                            jsonReader.readArray();
-                            jsonbOrigin = "{\"$array$\":" + value + "}";
-                        } catch (JsonException e) {
-                            //not a json array, do nothing
-                        }
-                        finally {
-                            jsonReader.close();
-                        }
-                    } else if (value.startsWith("{")) {
-                        JsonReader jsonReader =  Json.createReader(new StringReader(value));
-                        try {
-                            jsonReader.readObject();
-                            jsonbOrigin = value;
-                        } catch (JsonException e) {
-                            //not a json object, do nothing
-                        }
-                        finally {
-                            jsonReader.close();
-                        }
+    public static void toRawJson(Record record) {
+
+        for (Field field : record.fields()) {
+            //get associated value
+            if (record.getValue(field) instanceof String || record.getValue(field) instanceof JSONB) {
+                String value = record.getValue(field).toString();
+                String jsonbOrigin = null;
+                if (value.startsWith("[")) {
+                    //check if this is a valid array
+                    JsonReader jsonReader =  Json.createReader(new StringReader(value));
+                    try {
+                        jsonReader.readArray();
+                        jsonbOrigin = "{\"$array$\":" + value + "}";
+                    } catch (JsonException e) {
+                        //not a json array, do nothing
+                    }
+                    finally {
+                        jsonReader.close();
                     }
-                    //apply the transformation
-                    if (jsonbOrigin != null) {
-                        JsonElement jsonElement = new LightRawJsonEncoder(jsonbOrigin).encodeContentAsJson(null);
-                        if (jsonElement.getAsJsonObject().has(ARRAY_MARKER)) {
-                            jsonElement = jsonElement.getAsJsonObject().getAsJsonArray(ARRAY_MARKER);
+                } else if (value.startsWith("{")) {
+                    JsonReader jsonReader =  Json.createReader(new StringReader(value));
+                    try {
+                        jsonReader.readObject();
+                        jsonbOrigin = value;
+                    } catch (JsonException e) {
+                        //not a json object, do nothing
+                    }
+                    finally {
+                        jsonReader.close();
+                    }
+                }
+                //apply the transformation
+                if (jsonbOrigin != null) {
+                    JsonElement jsonElement = new LightRawJsonEncoder(jsonbOrigin).encodeContentAsJson(null);
+                    if (jsonElement.getAsJsonObject().has(ARRAY_MARKER)) {
+                        jsonElement = jsonElement.getAsJsonObject().getAsJsonArray(ARRAY_MARKER);
 
-                        }
-                        record.setValue(field, jsonElement);
                     }
+                    record.setValue(field, jsonElement);
                 }
             }
         }
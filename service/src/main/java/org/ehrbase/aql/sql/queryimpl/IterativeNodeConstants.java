@@ -32,4 +32,6 @@ public class IterativeNodeConstants {
     public static final String ENV_AQL_ARRAY_DEPTH = "aql.iterationScanDepth";
     //True force to use jsQuery
     public static final String ENV_AQL_USE_JSQUERY = "aql.useJsQuery";
+    //True adds jsonpath conditions supported by the GIN index on entry (requires PostgreSQL 12+)
+    public static final String ENV_AQL_USE_JSONPATH = "aql.useJsonPath";
 }
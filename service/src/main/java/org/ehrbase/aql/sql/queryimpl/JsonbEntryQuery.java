@@ -172,6 +172,8 @@ public class JsonbEntryQuery extends ObjectQuery implements IQueryImpl {
 
             resolveArrayIndex(itemPathArray);
 
+            List<String> entryPath = new ArrayList<>(itemPathArray);
+
             List<String> referenceItemPathArray = new ArrayList<>();
             referenceItemPathArray.addAll(itemPathArray);
             Collections.replaceAll(referenceItemPathArray, AQL_NODE_ITERATIVE_MARKER, "0");
@@ -219,6 +221,11 @@ public class JsonbEntryQuery extends ObjectQuery implements IQueryImpl {
                                                 dataTypeFromTemplate.getItemType(),
                                                 dataTypeFromTemplate.getItemCategory()
                                                 );
+            //the text of the path, supported by a jsonpath condition (see WhereJsonPathExpression)
+            if (clause.equals(Clause.WHERE) && castTypeAs == null
+                    && !entryPath.contains(QueryImplConstants.AQL_NODE_NAME_PREDICATE_MARKER)
+                    && !itemPath.contains("/item_count"))
+                aqlField.setEntryPath(entryPath);
 
             fieldList.add(aqlField);
         }
@@ -21,11 +21,14 @@ package org.ehrbase.aql.sql.queryimpl;
 
 import org.jooq.Field;
 
+import java.util.List;
+
 public class QualifiedAqlField {
 
     protected String itemType = null; //the actual data type as specified in the template
     protected String itemCategory = null; //the category of the object as per the WebTemplate (f.e. CLUSTER, ELEMENT ...)
     private Field<?> field; //the actual field
+    private List<String> entryPath = null; //the segments of the path of the field in the entry, if it is a plain path
 
     public QualifiedAqlField(Field<?> field) {
         this.field = field;
@@ -45,8 +48,23 @@ public class QualifiedAqlField {
         this.field = field;
     }
 
+    /**
+     * @return the segments of the path the field selects in the entry, with an iteration marker at the arrays
+     * iterated on (see {@link QueryImplConstants#AQL_NODE_ITERATIVE_MARKER}); null if the field is not the text of a
+     * plain path of the entry (f.e. it is cast or uses a node predicate)
+     */
+    public List<String> getEntryPath() {
+        return entryPath;
+    }
+
+    public void setEntryPath(List<String> entryPath) {
+        this.entryPath = entryPath;
+    }
+
     public QualifiedAqlField duplicate() {
-        return new QualifiedAqlField(this.getSQLField(), this.itemType, this.itemCategory);
+        QualifiedAqlField duplicate = new QualifiedAqlField(this.getSQLField(), this.itemType, this.itemCategory);
+        duplicate.setEntryPath(this.entryPath);
+        return duplicate;
     }
 
     public boolean isQualified() {
@@ -26,6 +26,7 @@ public class QueryImplConstants {
     public static final String AQL_NODE_NAME_PREDICATE_FUNCTION = "ehr.aql_node_name_predicate";
     //we use an extended jsonb array elements function that returns a null jsonb object instead of an empty resultset
     //see  https://www.postgresql.org/docs/current/static/functions-json.html for more on usage
+    //the function is a plain SQL function (V72) which the planner inlines in lateral joins
     public static final String AQL_NODE_ITERATIVE_FUNCTION = "ehr.xjsonb_array_elements";
 
     private QueryImplConstants() {
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.cache;
+
+import java.util.Objects;
+
+/**
+ * A change of cached data, published on the {@link CacheInvalidationBus} so that the other nodes evict it.
+ */
+public class CacheInvalidation {
+
+  public enum Type {
+    /**
+     * a template was added, overwritten or deleted, the key is the template id
+     */
+    TEMPLATE,
+    /**
+     * a composition was physically deleted, the key is <code>uid::lastVersion</code>
+     */
+    COMPOSITION,
+    /**
+     * compositions were physically deleted, f.e. with their EHR
+     */
+    COMPOSITIONS,
+    /**
+     * unused parties were purged
+     */
+    PARTIES,
+    /**
+     * the reference data was reloaded
+     */
+    REFERENCE_DATA,
+    /**
+     * changes may have been missed, f.e. while the connection to the other nodes was lost
+     */
+    ALL
+  }
+
+  private final Type type;
+
+  private final String key;
+
+  public CacheInvalidation(Type type, String key) {
+    this.type = Objects.requireNonNull(type);
+    this.key = key;
+  }
+
+  public CacheInvalidation(Type type) {
+    this(type, null);
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public String getKey() {
+    return key;
+  }
+
+  /**
+   * @return <code>TYPE</code> or <code>TYPE:key</code>
+   */
+  public String format() {
+    return key == null ? type.name() : type.name() + ":" + key;
+  }
+
+  /**
+   * @param value as returned by {@link #format()}
+   * @return the invalidation
+   * @throws IllegalArgumentException if the type is unknown
+   */
+  public static CacheInvalidation parse(String value) {
+    int separator = value.indexOf(':');
+    if (separator < 0) {
+      return new CacheInvalidation(Type.valueOf(value));
+    }
+    return new CacheInvalidation(Type.valueOf(value.substring(0, separator)),
+        value.substring(separator + 1));
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    CacheInvalidation that = (CacheInvalidation) o;
+    return type == that.type && Objects.equals(key, that.key);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(type, key);
+  }
+
+  @Override
+  public String toString() {
+    return format();
+  }
+}
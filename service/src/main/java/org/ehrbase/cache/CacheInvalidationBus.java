@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * Broadcasts the changes of cached data to the other nodes of a cluster, each node evicting the stale entries of its
+ * local caches. A node applies its own changes to its caches directly and is not notified of them.
+ *
+ * @see InProcessCacheInvalidationBus
+ * @see PostgresCacheInvalidationBus
+ */
+public interface CacheInvalidationBus {
+
+  /**
+   * Publish a change to the other nodes, once the current transaction is committed.
+   *
+   * @param invalidation the change
+   */
+  void publish(CacheInvalidation invalidation);
+
+  /**
+   * Register a listener of the changes published by the other nodes. The listener may be called on another thread.
+   *
+   * @param listener evicts the changed data
+   */
+  void subscribe(Consumer<CacheInvalidation> listener);
+}
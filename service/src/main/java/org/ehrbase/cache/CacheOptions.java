@@ -32,10 +32,18 @@ public class CacheOptions {
 
   public static final String MULTI_VALUE_CACHE = "multivaluedCache";
 
+  public static final String COMPOSITION_CACHE = "compositionCache";
+
   private boolean preBuildQueries;
 
   private int preBuildQueriesDepth;
 
+  private int warmUpThreads;
+
+  private int aqlPlanCacheSize;
+
+  private int partyCacheSize;
+
   public boolean isPreBuildQueries() {
     return preBuildQueries;
   }
@@ -51,4 +59,28 @@ public class CacheOptions {
   public void setPreBuildQueriesDepth(int preBuildQueriesDepth) {
     this.preBuildQueriesDepth = preBuildQueriesDepth;
   }
+
+  public int getWarmUpThreads() {
+    return warmUpThreads;
+  }
+
+  public void setWarmUpThreads(int warmUpThreads) {
+    this.warmUpThreads = warmUpThreads;
+  }
+
+  public int getAqlPlanCacheSize() {
+    return aqlPlanCacheSize;
+  }
+
+  public void setAqlPlanCacheSize(int aqlPlanCacheSize) {
+    this.aqlPlanCacheSize = aqlPlanCacheSize;
+  }
+
+  public int getPartyCacheSize() {
+    return partyCacheSize;
+  }
+
+  public void setPartyCacheSize(int partyCacheSize) {
+    this.partyCacheSize = partyCacheSize;
+  }
 }
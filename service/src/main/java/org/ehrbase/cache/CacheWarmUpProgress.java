@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.cache;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Progress of the warm-up of the template caches: the WebTemplates of all stored templates are built first, then
+ * their queries are pre-built if enabled. Until then the queries build the WebTemplates of the templates they need.
+ * A template whose WebTemplate failed to build counts as done, it is left out of the queries until it is changed.
+ */
+public class CacheWarmUpProgress {
+
+  private final int templates;
+
+  private final AtomicInteger built = new AtomicInteger();
+
+  private final AtomicInteger failed = new AtomicInteger();
+
+  private final AtomicInteger prebuilt = new AtomicInteger();
+
+  /**
+   * @param templates the number of templates to warm up
+   */
+  public CacheWarmUpProgress(int templates) {
+    this.templates = templates;
+  }
+
+  public void webTemplateBuilt() {
+    built.incrementAndGet();
+  }
+
+  public void webTemplateFailed() {
+    failed.incrementAndGet();
+  }
+
+  public void queriesPrebuilt() {
+    prebuilt.incrementAndGet();
+  }
+
+  public int getTemplates() {
+    return templates;
+  }
+
+  public int getBuilt() {
+    return built.get();
+  }
+
+  public int getFailed() {
+    return failed.get();
+  }
+
+  public int getPrebuilt() {
+    return prebuilt.get();
+  }
+
+  /**
+   * @return the percentage of the templates whose WebTemplate is done, 100 if there are no templates
+   */
+  public int getPercentDone() {
+    if (templates == 0) {
+      return 100;
+    }
+    return (int) ((built.get() + failed.get()) * 100L / templates);
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.cache;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+/**
+ * A version of a composition in the {@link CacheOptions#COMPOSITION_CACHE}, as canonical JSON so that it can be
+ * stored off-heap and each retrieval gets its own instance.
+ */
+public class CachedCompositionVersion implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final UUID ehrId;
+
+  private final boolean current;
+
+  private final String canonicalJson;
+
+  /**
+   * @param ehrId         the EHR of the composition
+   * @param current       true if the version was the current version of the composition when cached: it is only
+   *                      valid while the composition is not deleted
+   * @param canonicalJson the composition
+   */
+  public CachedCompositionVersion(UUID ehrId, boolean current, String canonicalJson) {
+    this.ehrId = ehrId;
+    this.current = current;
+    this.canonicalJson = canonicalJson;
+  }
+
+  public UUID getEhrId() {
+    return ehrId;
+  }
+
+  public boolean isCurrent() {
+    return current;
+  }
+
+  public String getCanonicalJson() {
+    return canonicalJson;
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.cache;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * {@link CacheInvalidationBus} between the nodes of the same JVM: a single node, which has no other node to notify,
+ * or the nodes of a test created by {@link #newNode()}.
+ */
+public class InProcessCacheInvalidationBus implements CacheInvalidationBus {
+
+  private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+  private final Set<InProcessCacheInvalidationBus> nodes;
+
+  private final List<Consumer<CacheInvalidation>> listeners = new CopyOnWriteArrayList<>();
+
+  public InProcessCacheInvalidationBus() {
+    this(new CopyOnWriteArraySet<>());
+  }
+
+  private InProcessCacheInvalidationBus(Set<InProcessCacheInvalidationBus> nodes) {
+    this.nodes = nodes;
+    nodes.add(this);
+  }
+
+  /**
+   * @return the bus of another node notified of the changes published by this node, and vice versa
+   */
+  public InProcessCacheInvalidationBus newNode() {
+    return new InProcessCacheInvalidationBus(nodes);
+  }
+
+  @Override
+  public void publish(CacheInvalidation invalidation) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          deliver(invalidation);
+        }
+      });
+    } else {
+      deliver(invalidation);
+    }
+  }
+
+  @Override
+  public void subscribe(Consumer<CacheInvalidation> listener) {
+    listeners.add(listener);
+  }
+
+  private void deliver(CacheInvalidation invalidation) {
+    nodes.stream()
+        .filter(node -> node != this)
+        .forEach(node -> node.receive(invalidation));
+  }
+
+  private void receive(CacheInvalidation invalidation) {
+    for (Consumer<CacheInvalidation> listener : listeners) {
+      try {
+        listener.accept(invalidation);
+      } catch (RuntimeException e) {
+        log.error("Cache invalidation {} failed", invalidation, e);
+      }
+    }
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.cache;
+
+import static org.jooq.impl.DSL.field;
+import static org.jooq.impl.DSL.inline;
+import static org.jooq.impl.DSL.val;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import javax.sql.DataSource;
+import org.jooq.DSLContext;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * {@link CacheInvalidationBus} over Postgres <code>LISTEN/NOTIFY</code>.
+ * <p>
+ * A change is published with <code>pg_notify</code> in the current transaction, Postgres delivers it to the listening
+ * nodes once the transaction is committed, and not at all if it is rolled back. Each node listens on a dedicated
+ * connection outside of the connection pool, and ignores its own notifications. When the connection is lost the
+ * notifications sent meanwhile are lost as well: on reconnect the listeners are notified of
+ * {@link CacheInvalidation.Type#ALL}.
+ * </p>
+ */
+public class PostgresCacheInvalidationBus implements CacheInvalidationBus, DisposableBean {
+
+  public static final String CHANNEL = "ehrbase_cache_invalidation";
+
+  private static final int POLL_MILLIS = 500;
+  private static final long RECONNECT_MILLIS = 5000;
+
+  private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+  private final DSLContext context;
+  private final DataSource listenerDataSource;
+  private final String nodeId = UUID.randomUUID().toString();
+  private final List<Consumer<CacheInvalidation>> listeners = new CopyOnWriteArrayList<>();
+
+  private final Thread listenerThread;
+  private volatile boolean running = true;
+
+  /**
+   * @param context            publishes the changes, in the current transaction
+   * @param listenerDataSource provides the connection listening to the changes of the other nodes, it is kept open
+   */
+  public PostgresCacheInvalidationBus(DSLContext context, DataSource listenerDataSource) {
+    this.context = context;
+    this.listenerDataSource = listenerDataSource;
+
+    listenerThread = new Thread(this::listen, "cache-invalidation-listener");
+    listenerThread.setDaemon(true);
+    listenerThread.start();
+  }
+
+  @Override
+  public void publish(CacheInvalidation invalidation) {
+    context.select(field("pg_notify({0}, {1})", inline(CHANNEL), val(nodeId + "|" + invalidation.format())))
+        .fetch();
+  }
+
+  @Override
+  public void subscribe(Consumer<CacheInvalidation> listener) {
+    listeners.add(listener);
+  }
+
+  @Override
+  public void destroy() {
+    running = false;
+    listenerThread.interrupt();
+  }
+
+  private void listen() {
+    boolean reconnect = false;
+    while (running) {
+      try (Connection connection = listenerDataSource.getConnection()) {
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        try (Statement statement = connection.createStatement()) {
+          statement.execute("LISTEN " + CHANNEL);
+        }
+        if (reconnect) {
+          log.info("Listening to cache invalidations again");
+          receive(new CacheInvalidation(CacheInvalidation.Type.ALL));
+        }
+        reconnect = true;
+
+        while (running) {
+          PGNotification[] notifications = pgConnection.getNotifications(POLL_MILLIS);
+          if (notifications != null) {
+            for (PGNotification notification : notifications) {
+              receive(notification.getParameter());
+            }
+          }
+        }
+      } catch (SQLException e) {
+        if (running) {
+          log.warn("Listening to cache invalidations failed, retrying in {} ms: {}", RECONNECT_MILLIS,
+              e.getMessage());
+          sleep();
+        }
+      }
+    }
+  }
+
+  private void receive(String payload) {
+    int separator = payload.indexOf('|');
+    if (separator < 0 || nodeId.equals(payload.substring(0, separator))) {
+      return;
+    }
+    try {
+      receive(CacheInvalidation.parse(payload.substring(separator + 1)));
+    } catch (IllegalArgumentException e) {
+      // published by another version
+      log.warn("Unknown cache invalidation {}, evicting all", payload);
+      receive(new CacheInvalidation(CacheInvalidation.Type.ALL));
+    }
+  }
+
+  private void receive(CacheInvalidation invalidation) {
+    for (Consumer<CacheInvalidation> listener : listeners) {
+      try {
+        listener.accept(invalidation);
+      } catch (RuntimeException e) {
+        log.error("Cache invalidation {} failed", invalidation, e);
+      }
+    }
+  }
+
+  private void sleep() {
+    try {
+      Thread.sleep(RECONNECT_MILLIS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      running = false;
+    }
+  }
+}
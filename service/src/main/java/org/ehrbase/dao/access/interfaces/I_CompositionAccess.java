@@ -25,7 +25,6 @@ import static org.ehrbase.jooq.pg.Tables.COMPOSITION;
 import static org.ehrbase.jooq.pg.Tables.CONCEPT;
 import static org.ehrbase.jooq.pg.Tables.EVENT_CONTEXT;
 import static org.ehrbase.jooq.pg.Tables.IDENTIFIER;
-import static org.ehrbase.jooq.pg.Tables.LANGUAGE;
 import static org.ehrbase.jooq.pg.Tables.PARTICIPATION;
 import static org.ehrbase.jooq.pg.Tables.PARTY_IDENTIFIED;
 import static org.ehrbase.jooq.pg.Tables.TERRITORY;
@@ -141,7 +140,7 @@ public interface I_CompositionAccess extends I_VersionedCRUD {
      * @throws IllegalArgumentException when retrieval failed because of wrong input
      */
     static I_CompositionAccess getNewInstance(I_DomainAccess domain, Composition composition, UUID ehrId) {
-        return new CompositionAccess(domain.getContext(), domain.getKnowledgeManager(), domain.getIntrospectService(), domain.getServerConfig(), composition, ehrId);
+        return new CompositionAccess(domain, composition, ehrId);
     }
 
     /**
@@ -158,6 +157,16 @@ public interface I_CompositionAccess extends I_VersionedCRUD {
         return CompositionAccess.retrieveCompositionVersion(domainAccess, id, version);
     }
 
+    /**
+     * Retrieve composition(s) for an identified version, when the number of the current version is known already
+     *
+     * @param lastVersion the number of the current version
+     * @see #retrieveCompositionVersion(I_DomainAccess, UUID, int)
+     */
+    static I_CompositionAccess retrieveCompositionVersion(I_DomainAccess domainAccess, UUID id, int version, int lastVersion) {
+        return CompositionAccess.retrieveCompositionVersion(domainAccess, id, version, lastVersion);
+    }
+
     /**
      * Calculate the version corresponding to a {@link com.nedap.archie.rm.ehr.VersionedComposition}  which is the closest in time (before) the {@link Timestamp} provided.
      *
@@ -244,16 +253,26 @@ public interface I_CompositionAccess extends I_VersionedCRUD {
         return CompositionAccess.getLastVersionNumber(domainAccess, compositionId);
     }
 
-    // TODO: doc! what's the logic behind the returned int code?
+    /**
+     * @param domainAccess  SQL context
+     * @param compositionId the versioned object id
+     * @return true if the composition has a current version, i.e. it exists and is not deleted
+     */
+    static boolean hasCurrentVersion(I_DomainAccess domainAccess, UUID compositionId) {
+        return domainAccess.getContext().fetchExists(COMPOSITION, COMPOSITION.ID.eq(compositionId));
+    }
+
+    /**
+     * @param domainAccess      SQL context
+     * @param territoryAsString ISO 3166-1 two letter code
+     * @return the code of the territory in <code>ehr.territory</code> or -1 if not found
+     */
     static Integer fetchTerritoryCode(I_DomainAccess domainAccess, String territoryAsString) {
-        Result<TerritoryRecord> result = domainAccess.getContext().selectFrom(TERRITORY).where(TERRITORY.TWOLETTER.equal(territoryAsString)).fetch();
-        if (result.isEmpty())
-            return -1;
-        return result.get(0).getCode();
+        return domainAccess.getReferenceData().getTerritoryCode(territoryAsString);
     }
 
     static boolean isValidLanguageCode(I_DomainAccess domainAccess, String languageCode) {
-        return !domainAccess.getContext().selectFrom(LANGUAGE).where(LANGUAGE.CODE.equal(languageCode)).fetch().isEmpty();
+        return domainAccess.getReferenceData().isLanguage(languageCode);
     }
 
   static UUID getEhrId(I_DomainAccess domainAccess, UUID compositionId) {
@@ -21,6 +21,7 @@
  */
 package org.ehrbase.dao.access.interfaces;
 
+import org.ehrbase.dao.access.util.ReferenceDataRegistry;
 import org.ehrbase.jooq.pg.tables.records.ConceptRecord;
 import com.nedap.archie.rm.datatypes.CodePhrase;
 import com.nedap.archie.rm.datavalues.DvCodedText;
@@ -28,10 +29,8 @@ import com.nedap.archie.rm.support.identification.TerminologyId;
 
 import java.util.UUID;
 
-import static org.ehrbase.jooq.pg.Tables.CONCEPT;
-
 /**
- * access layer to Concepts
+ * access layer to Concepts, the look-ups are served by the {@link ReferenceDataRegistry}
  * ETHERCIS Project ehrservice
  * Created by Christian Chevalley on 4/27/2015.
  */
@@ -56,23 +55,39 @@ public interface I_ConceptAccess {
      * @param domainAccess SQL context
      * @param conceptId    integer code
      * @param language     language code ('en', 'fr' etc.)
-     * @return the record {@link UUID} or null if not found
+     * @return the record {@link UUID}
+     * @throws IllegalArgumentException when the concept can't be found
      */
     static UUID fetchConcept(I_DomainAccess domainAccess, Integer conceptId, String language) {
-        return domainAccess.getContext().fetchAny(CONCEPT, CONCEPT.CONCEPTID.eq(conceptId).and(CONCEPT.LANGUAGE.equal(language))).getId();
+        UUID id = domainAccess.getReferenceData().getConceptId(conceptId, language);
+        if (id == null) {
+            throw new IllegalArgumentException("Unknown concept: " + conceptId + " (" + language + ")");
+        }
+        return id;
     }
 
     static DvCodedText fetchConceptText(I_DomainAccess domainAccess, UUID uuid) {
-        ConceptRecord conceptRecord = domainAccess.getContext().fetchAny(CONCEPT, CONCEPT.ID.eq(uuid));
+        ConceptRecord conceptRecord = fetchConceptRecord(domainAccess, uuid);
         return new DvCodedText(conceptRecord.getDescription(), new CodePhrase(new TerminologyId("openehr"), "" + conceptRecord.getConceptid()));
     }
 
     static String fetchConceptLiteral(I_DomainAccess domainAccess, Integer conceptId, String language) {
-        return domainAccess.getContext().fetchAny(CONCEPT, CONCEPT.CONCEPTID.eq(conceptId).and(CONCEPT.LANGUAGE.equal(language))).getDescription();
+        return fetchConceptRecord(domainAccess, fetchConcept(domainAccess, conceptId, language)).getDescription();
     }
 
     static String fetchConceptLiteral(I_DomainAccess domainAccess, UUID uuid) {
-        return domainAccess.getContext().fetchAny(CONCEPT, CONCEPT.ID.eq(uuid)).getDescription();
+        return fetchConceptRecord(domainAccess, uuid).getDescription();
+    }
+
+    /**
+     * @throws IllegalArgumentException when the concept can't be found
+     */
+    private static ConceptRecord fetchConceptRecord(I_DomainAccess domainAccess, UUID uuid) {
+        ConceptRecord conceptRecord = uuid != null ? domainAccess.getReferenceData().getConcept(uuid) : null;
+        if (conceptRecord == null) {
+            throw new IllegalArgumentException("Unknown concept: " + uuid);
+        }
+        return conceptRecord;
     }
 
     /**
@@ -85,15 +100,13 @@ public interface I_ConceptAccess {
      */
     static UUID fetchContributionChangeType(I_DomainAccess domainAccess, String changeTypeStr) {
         ContributionChangeType contributionChangeType = ContributionChangeType.valueOf(changeTypeStr.toUpperCase());
-        int code = contributionChangeType.getCode();
-        return domainAccess.getContext().fetchAny(CONCEPT, CONCEPT.CONCEPTID.eq(code).and(CONCEPT.LANGUAGE.equal("en"))).getId();
+        return fetchConcept(domainAccess, contributionChangeType.getCode(), "en");
     }
 
     static UUID fetchContributionChangeType(I_DomainAccess domainAccess, ContributionChangeType contributionChangeType) {
         if (contributionChangeType == null)
             return null;
-        int code = contributionChangeType.getCode();
-        return domainAccess.getContext().fetchAny(CONCEPT, CONCEPT.CONCEPTID.eq(code).and(CONCEPT.LANGUAGE.equal("en"))).getId();
+        return fetchConcept(domainAccess, contributionChangeType.getCode(), "en");
     }
 
     /**
@@ -104,7 +117,7 @@ public interface I_ConceptAccess {
      * @return the record {@link UUID}
      */
     static UUID getVlcsDraft(I_DomainAccess domainAccess) {
-        return domainAccess.getContext().fetchAny(CONCEPT, CONCEPT.CONCEPTID.eq(244).and(CONCEPT.LANGUAGE.equal("en"))).getId();
+        return fetchConcept(domainAccess, 244, "en");
     }
 
     /**
@@ -115,7 +128,7 @@ public interface I_ConceptAccess {
      * @return the record {@link UUID}
      */
     static UUID getVlcsActive(I_DomainAccess domainAccess) {
-        return domainAccess.getContext().fetchAny(CONCEPT, CONCEPT.CONCEPTID.eq(245).and(CONCEPT.LANGUAGE.equal("en"))).getId();
+        return fetchConcept(domainAccess, 245, "en");
     }
 
     /**
@@ -126,7 +139,7 @@ public interface I_ConceptAccess {
      * @return the record {@link UUID}
      */
     static UUID getVlcsInactive(I_DomainAccess domainAccess) {
-        return domainAccess.getContext().fetchAny(CONCEPT, CONCEPT.CONCEPTID.eq(246).and(CONCEPT.LANGUAGE.equal("en"))).getId();
+        return fetchConcept(domainAccess, 246, "en");
     }
 
     /**
@@ -137,6 +150,6 @@ public interface I_ConceptAccess {
      * @return the record {@link UUID}
      */
     static UUID getVlcsAwaitingApproval(I_DomainAccess domainAccess) {
-        return domainAccess.getContext().fetchAny(CONCEPT, CONCEPT.CONCEPTID.eq(247).and(CONCEPT.LANGUAGE.equal("en"))).getId();
+        return fetchConcept(domainAccess, 247, "en");
     }
 }
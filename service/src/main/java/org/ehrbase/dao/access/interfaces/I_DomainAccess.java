@@ -22,8 +22,10 @@
 package org.ehrbase.dao.access.interfaces;
 
 import org.ehrbase.api.definitions.ServerConfig;
+import org.ehrbase.dao.access.jooq.party.PartyIdentityCache;
 import org.ehrbase.dao.access.support.DataAccess;
 import org.ehrbase.dao.access.support.ServiceDataAccess;
+import org.ehrbase.dao.access.util.ReferenceDataRegistry;
 import org.ehrbase.ehr.knowledge.I_KnowledgeCache;
 import org.ehrbase.service.IntrospectService;
 import org.jooq.DSLContext;
@@ -110,5 +112,20 @@ public interface I_DomainAccess {
 
     ServerConfig getServerConfig();
 
+    /**
+     * get the reference data (concepts, territories and languages)
+     *
+     * @return ReferenceDataRegistry
+     * @throws IllegalStateException if this access has been created without a registry
+     */
+    ReferenceDataRegistry getReferenceData();
+
+    /**
+     * get the cache of the resolved parties
+     *
+     * @return PartyIdentityCache or null if the parties are resolved without cache
+     */
+    PartyIdentityCache getPartyIdentityCache();
+
     DataAccess getDataAccess();
 }
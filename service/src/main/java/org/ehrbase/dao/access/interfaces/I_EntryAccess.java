@@ -26,8 +26,9 @@ import static org.ehrbase.jooq.pg.Tables.ENTRY;
 import com.nedap.archie.rm.composition.Composition;
 import java.util.Map;
 import java.util.UUID;
-import org.ehrbase.api.exception.InternalServerException;
+import java.util.concurrent.CompletableFuture;
 import org.ehrbase.dao.access.jooq.EntryAccess;
+import org.ehrbase.dao.access.query.QueryExecutor;
 import org.ehrbase.jooq.pg.udt.records.DvCodedTextRecord;
 import org.jooq.JSONB;
 
@@ -65,6 +66,20 @@ public interface I_EntryAccess extends I_SimpleCRUD {
     return EntryAccess.retrieveInstanceInComposition(domainAccess, compositionAccess);
   }
 
+  /**
+   * Retrieve the {@link I_EntryAccess} of the current version of a composition.
+   *
+   * @param domainAccess      SQL context
+   * @param compositionAccess the composition
+   * @param version           the number of the current version
+   * @return the entry access
+   * @throws IllegalArgumentException if DB is inconsistent or operation fails
+   */
+  static I_EntryAccess retrieveInstanceInComposition(I_DomainAccess domainAccess,
+      I_CompositionAccess compositionAccess, int version) {
+    return EntryAccess.retrieveInstanceInComposition(domainAccess, compositionAccess, version);
+  }
+
   /**
    * Retrieve the {@link I_EntryAccess} linked to given composition history.
    *
@@ -103,15 +118,15 @@ public interface I_EntryAccess extends I_SimpleCRUD {
   }
 
   /**
-   * perform an arbitrary SQL query on entries and return the result set as a JSON string
+   * perform an arbitrary SQL query on entries on the shared query pool and return the result set as a JSON string
    *
    * @param domainAccess SQL access
    * @param query        a valid SQL queryJSON string
-   * @return a JSON formatted result set
-   * @throws InternalServerException when the query failed
+   * @param executor     the shared query pool
+   * @return the future JSON formatted result set, cancelling it cancels the statement
    */
-  static Map<String, Object> queryJSON(I_DomainAccess domainAccess, String query) {
-    return EntryAccess.queryJSON(domainAccess, query);
+  static CompletableFuture<Map<String, Object>> queryJSON(I_DomainAccess domainAccess, String query, QueryExecutor executor) {
+    return EntryAccess.queryJSON(domainAccess, query, executor);
   }
 
   /**
@@ -82,10 +82,18 @@ public interface I_FolderAccess extends I_VersionedCRUD {
         return FolderHistoryAccess.retrieveInstanceForExistingFolder(domainAccess, folderId, timestamp);
     }
 
-    static I_FolderAccess getInstanceForExistingFolder(I_DomainAccess domainAccess, ObjectVersionId folderId){
+    /**
+     * Retrieve the latest version of a folder, or of one of its sub folders, with its sub-folders.
+     * @param domainAccess providing the information about the DB connection.
+     * @param folderId the {@link  com.nedap.archie.rm.directory.Folder} to be fetched from the DB.
+     * @param path names of the sub folders leading to the folder to retrieve, none to retrieve the folder itself.
+     * @return the {@link I_FolderAccess} of the folder at the path.
+     */
+    static I_FolderAccess getInstanceForExistingFolder(I_DomainAccess domainAccess, ObjectVersionId folderId, String... path){
         return FolderAccess.retrieveInstanceForExistingFolder(
                 domainAccess,
-                FolderUtils.extractUuidFromObjectVersionId(folderId)
+                FolderUtils.extractUuidFromObjectVersionId(folderId),
+                path
         );
     }
 
@@ -171,6 +171,17 @@ public interface I_StatusAccess extends I_VersionedCRUD {
         return StatusAccess.getVersionMapOfStatus(domainAccess, statusId);
     }
 
+    /**
+     * Get a single version of the status.
+     * @param domainAccess Access
+     * @param statusId ID of the versioned status
+     * @param version version number
+     * @return the version, null if there is no such version
+     */
+    static I_StatusAccess retrieveInstanceByVersion(I_DomainAccess domainAccess, UUID statusId, int version) {
+        return StatusAccess.retrieveInstanceByVersion(domainAccess, statusId, version);
+    }
+
     /**
      * Get current record as {@link EhrStatus} representation.
      * @return Current status object
@@ -21,9 +21,11 @@
 package org.ehrbase.dao.access.interfaces;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import org.ehrbase.dao.access.jooq.TemplateStoreAccess;
 import org.ehrbase.ehr.knowledge.TemplateMetaData;
+import org.ehrbase.jooq.pg.tables.records.TemplateStoreRecord;
 import org.openehr.schemas.v1.OPERATIONALTEMPLATE;
 
 public interface I_TemplateStoreAccess extends I_SimpleCRUD {
@@ -61,4 +63,14 @@ public interface I_TemplateStoreAccess extends I_SimpleCRUD {
   static int adminDeleteAllTemplates(I_DomainAccess domainAccess) {
     return TemplateStoreAccess.adminDeleteAllTemplates(domainAccess);
   }
+
+  static Optional<TemplateStoreRecord> fetchWebTemplate(I_DomainAccess domainAccess,
+      String templateId, String format) {
+    return TemplateStoreAccess.fetchWebTemplate(domainAccess, templateId, format);
+  }
+
+  static boolean storeWebTemplate(I_DomainAccess domainAccess, OPERATIONALTEMPLATE template,
+      String format, byte[] webTemplate) {
+    return TemplateStoreAccess.storeWebTemplate(domainAccess, template, format, webTemplate);
+  }
 }
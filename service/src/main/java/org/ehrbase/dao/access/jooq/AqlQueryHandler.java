@@ -23,11 +23,11 @@ package org.ehrbase.dao.access.jooq;
 
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import org.apache.commons.collections4.MapUtils;
+import java.util.stream.Stream;
 import org.apache.commons.lang3.StringUtils;
 import org.ehrbase.aql.compiler.AqlExpression;
 import org.ehrbase.aql.compiler.AqlExpressionWithParameters;
@@ -35,12 +35,18 @@ import org.ehrbase.aql.compiler.AuditVariables;
 import org.ehrbase.aql.compiler.Contains;
 import org.ehrbase.aql.compiler.Statements;
 import org.ehrbase.aql.definition.I_VariableDefinition;
+import org.ehrbase.aql.sql.AqlParameterBinding;
+import org.ehrbase.aql.sql.AqlPlanCache;
+import org.ehrbase.aql.sql.AqlQueryTimings;
 import org.ehrbase.aql.sql.AqlResult;
+import org.ehrbase.aql.sql.CompiledAqlQuery;
+import org.ehrbase.aql.sql.ParallelBranchExecutor;
 import org.ehrbase.aql.sql.QueryProcessor;
 import org.ehrbase.dao.access.interfaces.I_DomainAccess;
 import org.ehrbase.dao.access.support.DataAccess;
 import org.ehrbase.service.KnowledgeCacheService;
 import org.ehrbase.validation.terminology.ExternalTerminologyValidation;
+import org.jooq.DSLContext;
 import org.jooq.Record;
 import org.jooq.Result;
 import org.springframework.lang.Nullable;
@@ -51,57 +57,159 @@ import org.springframework.lang.Nullable;
 public class AqlQueryHandler extends DataAccess {
 
     private ExternalTerminologyValidation tsAdapter;
+    private final AqlPlanCache aqlPlanCache;
+    private final ParallelBranchExecutor branchExecutor;
+    private final AqlQueryTimings timings = new AqlQueryTimings();
+    private CompiledAqlQuery compiledQuery;
     private Map<String, Set<Object>> auditResultMap = new HashMap<>(); //we add a map of audit related data (f.e. ehr_id/value)
 
     public AqlQueryHandler(I_DomainAccess domainAccess, ExternalTerminologyValidation tsAdapter) {
+        this(domainAccess, tsAdapter, AqlPlanCache.disabled(), ParallelBranchExecutor.disabled());
+    }
+
+    public AqlQueryHandler(I_DomainAccess domainAccess, ExternalTerminologyValidation tsAdapter, AqlPlanCache aqlPlanCache, ParallelBranchExecutor branchExecutor) {
         super(domainAccess);
         this.tsAdapter = tsAdapter;
+        this.aqlPlanCache = aqlPlanCache;
+        this.branchExecutor = branchExecutor;
     }
 
   public AqlResult process(String query, @Nullable Map<String, Object> parameters) {
-    AqlExpression aqlExpression;
+    compiledQuery = aqlPlanCache.get(query, parameters, () -> compile(query, parameters)).bind(parameters);
+    return execute(compiledQuery, compiledQuery.execute(this, branchExecutor, timings));
+  }
 
-    if (MapUtils.isEmpty(parameters)) {
-      aqlExpression = new AqlExpression().parse(query);
-    } else {
+    /**
+     * execute one page of a query using keyset pagination
+     * @param query the AQL expression, it must define an ORDER BY clause and neither LIMIT, OFFSET, TOP, DISTINCT nor
+     * aggregate functions
+     * @param parameters the query parameters, can be null
+     * @param pageSize the maximum number of rows returned
+     * @param continuation the token returned with the previous page, null for the first page
+     * @return the page with the token of the next page, see {@link AqlResult#getContinuation()}
+     */
+    public AqlResult processPage(String query, @Nullable Map<String, Object> parameters, int pageSize, @Nullable String continuation) {
+        compiledQuery = aqlPlanCache.get(query, parameters, () -> compile(query, parameters)).bind(parameters);
+        return execute(compiledQuery, compiledQuery.executePage(this, pageSize, continuation, timings));
+    }
 
-      aqlExpression = new AqlExpressionWithParameters().parse(query, parameters);
+    /**
+     * run the statement of the last processed query with <code>EXPLAIN (ANALYZE, BUFFERS)</code>
+     * @return the database plan
+     */
+    public List<String> explainAnalyze() {
+        if (compiledQuery == null) {
+            throw new IllegalStateException("No query processed");
+        }
+        return compiledQuery.explainAnalyze(this);
     }
-    return execute(aqlExpression);
+
+    /**
+     * @return the time spent in each phase by this handler
+     */
+    public AqlQueryTimings getTimings() {
+        return timings;
+    }
+
+  /**
+   * compile the query with its parameters as bind variables, the parameters shaping the SQL (e.g. used in a path
+   * predicate) are detected on a first compilation and substituted as text on the next one
+   */
+  private CompiledAqlQuery compile(String query, @Nullable Map<String, Object> parameters) {
+    AqlParameterBinding parameterBinding = AqlParameterBinding.of(parameters);
+    CompiledAqlQuery compiled = compile(query, parameterBinding);
+
+    //terminates since the inlined parameters are only ever added
+    while (!compiled.getInlinedParameters().equals(parameterBinding.getInlined())) {
+      parameterBinding = parameterBinding.inline(compiled.getInlinedParameters());
+      compiled = compile(query, parameterBinding);
+    }
+    return compiled;
   }
 
-    @SuppressWarnings("unchecked")
-    private AqlResult execute(AqlExpression aqlExpression){
+  private CompiledAqlQuery compile(String query, AqlParameterBinding parameterBinding) {
+    AqlExpression aqlExpression;
 
-        AuditVariables auditVariables = new AuditVariables();
+    if (parameterBinding.isEmpty()) {
+      aqlExpression = timings.time(AqlQueryTimings.Phase.PARSE, () -> new AqlExpression().parse(query));
+    } else {
 
-        Contains contains = new Contains(aqlExpression.getParseTree(), (KnowledgeCacheService)this.getDataAccess().getIntrospectService()).process();
+      aqlExpression = timings.time(AqlQueryTimings.Phase.PARSE, () -> new AqlExpressionWithParameters().parse(query, parameterBinding.getSubstitutions()));
+    }
 
-        Statements statements = new Statements(aqlExpression.getParseTree(), contains.getIdentifierMapper(), tsAdapter).process();
+    Contains contains = timings.time(AqlQueryTimings.Phase.CONTAINS,
+        () -> new Contains(aqlExpression.getParseTree(), (KnowledgeCacheService)this.getDataAccess().getIntrospectService()).process());
 
-        QueryProcessor queryProcessor = new QueryProcessor(this, this.getIntrospectService(), contains, statements, getDataAccess().getServerConfig().getNodename());
+    return timings.time(AqlQueryTimings.Phase.SQL_GENERATION, () -> {
+      Statements statements = new Statements(aqlExpression.getParseTree(), contains.getIdentifierMapper(), tsAdapter).process();
 
-        AqlResult aqlResult = queryProcessor.execute();
+      QueryProcessor queryProcessor = new QueryProcessor(this, this.getIntrospectService(), contains, statements, getDataAccess().getServerConfig().getNodename());
 
-        //add the variable from statements
-        Map<String, String> variables = new LinkedHashMap<>();
+      return queryProcessor.compile(parameterBinding, branchExecutor.isEnabled());
+    });
+  }
 
-        Iterator<I_VariableDefinition> iterator = statements.getVariables().iterator();
-        int serial = 0;
-        while (iterator.hasNext()) {
-            I_VariableDefinition variableDefinition = iterator.next();
+    private AqlResult execute(CompiledAqlQuery compiledQuery, AqlResult aqlResult){
 
+        AuditVariables auditVariables = new AuditVariables();
+
+        for (I_VariableDefinition variableDefinition : compiledQuery.getVariableDefinitions()) {
             if (auditVariables.isAuditVariable(variableDefinition)){
                 //add the result to the list of audit variables
                 auditVariables.addResults(auditResultMap, variableDefinition.getPath(), resultSetForVariable(variableDefinition, aqlResult.getRecords()));
             }
+        }
+        aqlResult.setVariables(variables(compiledQuery));
+        aqlResult.setAuditResultMap(auditResultMap);
+        return aqlResult;
+    }
 
+    /**
+     * compile the query and execute its statement on a lazy cursor, the result set is never materialized
+     * @param context the jOOQ context holding the connection of the cursor, not in auto-commit mode
+     * @param query the AQL expression
+     * @param parameters the query parameters, can be null
+     * @param fetchSize the number of rows fetched from the database per round trip
+     * @return the records in result order, their audit values are collected in {@link #getAuditResultMap()} as they
+     * are read, closing the stream closes the cursor
+     */
+    public Stream<Record> stream(DSLContext context, String query, @Nullable Map<String, Object> parameters, int fetchSize) {
+        compiledQuery = aqlPlanCache.get(query, parameters, () -> compile(query, parameters)).bind(parameters);
+
+        AuditVariables auditVariables = new AuditVariables();
+        Map<I_VariableDefinition, Set<Object>> auditResultSets = new LinkedHashMap<>();
+        for (I_VariableDefinition variableDefinition : compiledQuery.getVariableDefinitions()) {
+            if (auditVariables.isAuditVariable(variableDefinition)) {
+                Set<Object> resultSet = new HashSet<>();
+                auditVariables.addResults(auditResultMap, variableDefinition.getPath(), resultSet);
+                auditResultSets.put(variableDefinition, resultSet);
+            }
+        }
+
+        return compiledQuery.stream(context, fetchSize)
+                .peek(record -> auditResultSets.forEach((variableDefinition, resultSet) -> addAuditValue(variableDefinition, record, resultSet)));
+    }
+
+    /**
+     * @return the result columns of the last processed query, name to path as in {@link AqlResult#getVariables()}
+     */
+    public Map<String, String> getVariables() {
+        if (compiledQuery == null) {
+            throw new IllegalStateException("No query processed");
+        }
+        return variables(compiledQuery);
+    }
+
+    private Map<String, String> variables(CompiledAqlQuery compiledQuery) {
+        //add the variable from statements
+        Map<String, String> variables = new LinkedHashMap<>();
+
+        int serial = 0;
+        for (I_VariableDefinition variableDefinition : compiledQuery.getVariableDefinitions()) {
             if (!variableDefinition.isHidden())
                 variables.put(variableDefinition.getAlias() == null || variableDefinition.isVoidAlias() ? "#" + serial++ : variableDefinition.getAlias(), StringUtils.isNotBlank(variableDefinition.getPath()) ? "/" + variableDefinition.getPath() : variableDefinition.getIdentifier());
         }
-        aqlResult.setVariables(variables);
-        aqlResult.setAuditResultMap(auditResultMap);
-        return aqlResult;
+        return variables;
     }
 
     @Override
@@ -112,16 +220,20 @@ public class AqlQueryHandler extends DataAccess {
     public Set<Object> resultSetForVariable(I_VariableDefinition variableDefinition, Result<Record> recordResult){
         Set<Object> resultSet = new HashSet<>();
 
-        String columnIdentifier = variableDefinition.getAlias() != null ? variableDefinition.getAlias() : "/"+variableDefinition.getPath();
-
         for (Record record: recordResult){
-            if (variableDefinition.getAlias() == null || !variableDefinition.getAlias().startsWith("_FCT")) { //if the variable is a function parameter, ignore it (f.e. count())
-                resultSet.add(record.get(columnIdentifier));
-            }
+            addAuditValue(variableDefinition, record, resultSet);
         }
         return resultSet;
     }
 
+    private void addAuditValue(I_VariableDefinition variableDefinition, Record record, Set<Object> resultSet) {
+        String columnIdentifier = variableDefinition.getAlias() != null ? variableDefinition.getAlias() : "/"+variableDefinition.getPath();
+
+        if (variableDefinition.getAlias() == null || !variableDefinition.getAlias().startsWith("_FCT")) { //if the variable is a function parameter, ignore it (f.e. count())
+            resultSet.add(record.get(columnIdentifier));
+        }
+    }
+
     public Map<String, Set<Object>> getAuditResultMap() {
         return auditResultMap;
     }
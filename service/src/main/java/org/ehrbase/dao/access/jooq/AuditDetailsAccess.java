@@ -45,12 +45,12 @@ public class AuditDetailsAccess extends DataAccess implements I_AuditDetailsAcce
     private AuditDetailsRecord auditDetailsRecord;
 
     public AuditDetailsAccess(I_DomainAccess dataAccess) {
-        super(dataAccess.getContext(), null, null, dataAccess.getServerConfig());
+        super(dataAccess);
         this.auditDetailsRecord = dataAccess.getContext().newRecord(AUDIT_DETAILS);
     }
 
     public AuditDetailsAccess(I_DomainAccess dataAccess, UUID systemId, UUID committer, I_ConceptAccess.ContributionChangeType changeType, String description) {
-        super(dataAccess.getContext(), null, null, dataAccess.getServerConfig());
+        super(dataAccess);
         this.auditDetailsRecord = dataAccess.getContext().newRecord(AUDIT_DETAILS);
         auditDetailsRecord.setSystemId(systemId);
         auditDetailsRecord.setCommitter(committer);
@@ -84,8 +84,7 @@ public class AuditDetailsAccess extends DataAccess implements I_AuditDetailsAcce
      */
     @Override
     public UUID commit(Timestamp transactionTime) {
-        auditDetailsRecord.setTimeCommitted(transactionTime);
-        auditDetailsRecord.setTimeCommittedTzid(ZonedDateTime.now().getZone().getId()); // extracting only TZ, ignoring now() itself
+        setTimeCommitted(transactionTime);
         int result = auditDetailsRecord.insert();
         if (result == 1) {
             return auditDetailsRecord.getId();
@@ -99,6 +98,23 @@ public class AuditDetailsAccess extends DataAccess implements I_AuditDetailsAcce
         return commit(TransactionTime.millis());
     }
 
+    /**
+     * prepare the record inserted by {@link #commit(Timestamp)} for a batch insert, the id is set beforehand since it
+     * can not be returned by the batch
+     */
+    AuditDetailsRecord prepareCommit(Timestamp transactionTime) {
+        if (auditDetailsRecord.getId() == null) {
+            auditDetailsRecord.setId(UUID.randomUUID());
+        }
+        setTimeCommitted(transactionTime);
+        return auditDetailsRecord;
+    }
+
+    private void setTimeCommitted(Timestamp transactionTime) {
+        auditDetailsRecord.setTimeCommitted(transactionTime);
+        auditDetailsRecord.setTimeCommittedTzid(ZonedDateTime.now().getZone().getId()); // extracting only TZ, ignoring now() itself
+    }
+
     @Override
     public UUID commit(UUID systemId, UUID committerId, String description) {
         if (systemId == null || committerId == null)
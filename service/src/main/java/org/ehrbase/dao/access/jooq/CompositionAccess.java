@@ -20,8 +20,6 @@ import static org.ehrbase.jooq.pg.Tables.AUDIT_DETAILS;
 import static org.ehrbase.jooq.pg.Tables.COMPOSITION;
 import static org.ehrbase.jooq.pg.Tables.COMPOSITION_HISTORY;
 import static org.ehrbase.jooq.pg.Tables.EVENT_CONTEXT;
-import static org.jooq.impl.DSL.count;
-import static org.jooq.impl.DSL.max;
 
 import com.nedap.archie.rm.archetyped.FeederAudit;
 import com.nedap.archie.rm.archetyped.Link;
@@ -29,10 +27,6 @@ import com.nedap.archie.rm.composition.Composition;
 import com.nedap.archie.rm.composition.EventContext;
 import com.nedap.archie.rm.generic.PartyProxy;
 import com.nedap.archie.rm.support.identification.ObjectVersionId;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.HashMap;
@@ -42,7 +36,6 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
-import org.ehrbase.api.definitions.ServerConfig;
 import org.ehrbase.api.exception.InternalServerException;
 import org.ehrbase.api.exception.ObjectNotFoundException;
 import org.ehrbase.dao.access.interfaces.I_AuditDetailsAccess;
@@ -56,7 +49,7 @@ import org.ehrbase.dao.access.jooq.party.PersistedPartyProxy;
 import org.ehrbase.dao.access.support.DataAccess;
 import org.ehrbase.dao.access.util.ContributionDef;
 import org.ehrbase.dao.access.util.TransactionTime;
-import org.ehrbase.ehr.knowledge.I_KnowledgeCache;
+import org.ehrbase.dao.access.util.VersionNumbers;
 import org.ehrbase.jooq.pg.enums.ContributionChangeType;
 import org.ehrbase.jooq.pg.enums.ContributionDataType;
 import org.ehrbase.jooq.pg.tables.records.AuditDetailsRecord;
@@ -65,11 +58,8 @@ import org.ehrbase.jooq.pg.tables.records.CompositionRecord;
 import org.ehrbase.jooq.pg.tables.records.EventContextRecord;
 import org.ehrbase.serialisation.dbencoding.rmobject.FeederAuditEncoding;
 import org.ehrbase.serialisation.dbencoding.rmobject.LinksEncoding;
-import org.ehrbase.service.IntrospectService;
 import org.ehrbase.util.PartyUtils;
-import org.jooq.DSLContext;
 import org.jooq.JSONB;
-import org.jooq.Record;
 import org.jooq.Result;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -96,52 +86,6 @@ public class CompositionAccess extends DataAccess implements I_CompositionAccess
   private I_AuditDetailsAccess auditDetailsAccess;  // audit associated with this composition
 
 
-  /**
-   * Basic constructor for composition.
-   *
-   * @param context          DB context object of current server context
-   * @param knowledgeManager Knowledge cache object of current server context
-   * @param introspectCache  Introspect cache object of current server context
-   * @param serverConfig     Server config object of current server context
-   * @param composition      Object representation of given new composition
-   * @param ehrId            Given ID of EHR this composition will be created for
-   * @throws IllegalArgumentException when seeking language code, territory code or composer ID
-   *                                  failed
-   */
-  public CompositionAccess(DSLContext context, I_KnowledgeCache knowledgeManager,
-      IntrospectService introspectCache, ServerConfig serverConfig, Composition composition,
-      UUID ehrId) {
-    super(context, knowledgeManager, introspectCache, serverConfig);
-
-    this.composition = composition;
-
-    String territoryCode = composition.getTerritory().getCodeString();
-    String languageCode = composition.getLanguage().getCodeString();
-
-    compositionRecord = context.newRecord(COMPOSITION);
-    compositionRecord.setId(UUID.randomUUID());
-
-    compositionRecord.setTerritory(seekTerritoryCode(territoryCode));
-
-    compositionRecord.setLanguage(seekLanguageCode(languageCode));
-    compositionRecord.setActive(true);
-    compositionRecord.setEhrId(ehrId);
-
-    compositionRecord.setComposer(seekComposerId(composition.getComposer()));
-
-    //new Locatable attributes
-    setFeederAudit(composition.getFeederAudit());
-    setLinks(composition.getLinks());
-
-    //associate a contribution with this composition
-    contributionAccess = I_ContributionAccess.getInstance(this, compositionRecord.getEhrId());
-    contributionAccess.setState(ContributionDef.ContributionState.COMPLETE);
-
-    // associate composition's own audit with this composition access instance
-    auditDetailsAccess = I_AuditDetailsAccess.getInstance(getDataAccess());
-
-  }
-
   /**
    * Constructor with convenient {@link I_DomainAccess} parameter, for better readability.
    *
@@ -278,6 +222,40 @@ public class CompositionAccess extends DataAccess implements I_CompositionAccess
     return compositionRecord.getId();
   }
 
+  /**
+   * prepare the rows inserted by {@link #commit(LocalDateTime, UUID)} for a batch insert, see {@link CompositionBatchWriter}
+   *
+   * @param batch          the batch collecting the rows
+   * @param contributionId the contribution of the composition, already stored
+   */
+  void prepareCommit(CompositionBatchWriter batch, UUID contributionId) {
+    setContributionId(contributionId);
+
+    auditDetailsAccess.setChangeType(batch.getCreationChangeType());
+    auditDetailsAccess.setSystemId(batch.getSystemId());
+    auditDetailsAccess.setCommitter(batch.getCommitterId());
+    auditDetailsAccess.setDescription(batch.getDescription());
+    batch.add(((AuditDetailsAccess) auditDetailsAccess).prepareCommit(batch.getTransactionTime()));
+    compositionRecord.setHasAudit(auditDetailsAccess.getId());
+
+    compositionRecord.setSysTransaction(batch.getTransactionTime());
+    batch.add(compositionRecord);
+
+    if (entryAccess != null) {
+      batch.add(((EntryAccess) entryAccess).prepareCommit(batch.getTransactionTime()));
+    } else {
+      logger.warn("Composition has no entry");
+    }
+
+    if (!composition.getCategory().getDefiningCode().getCodeString().equals("431")) {
+      I_ContextAccess contextAccess = I_ContextAccess.getInstance(this, composition.getContext());
+      if (!contextAccess.isVoid()) {
+        contextAccess.setCompositionId(compositionRecord.getId());
+        ((ContextAccess) contextAccess).prepareCommit(batch.getTransactionTime()).forEach(batch::add);
+      }
+    }
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -440,6 +418,8 @@ public class CompositionAccess extends DataAccess implements I_CompositionAccess
     newRecord.setTerritory(compositionRecord.getTerritory());
     newRecord.setComposer(compositionRecord.getComposer());
     newRecord.setHasAudit(delAuditId);
+    // the deleted row was moved to _history, the version documenting the deletion follows it
+    newRecord.setVersion(VersionNumbers.COMPOSITIONS.last(getDataAccess().getContext(), compositionRecord.getId()) + 1);
     newDeletedVersionAsHistoryAccess.setRecord(newRecord);
     if (newDeletedVersionAsHistoryAccess.commit()
         == null) // commit and throw error if nothing was inserted into DB
@@ -458,62 +438,34 @@ public class CompositionAccess extends DataAccess implements I_CompositionAccess
     if (version < 1) {
       throw new IllegalArgumentException("Version number must be > 0  please check your code");
     }
+    return retrieveCompositionVersion(domainAccess, id, version, getLastVersionNumber(domainAccess, id));
+  }
 
-    //check if this version number matches the current version
-    if (getLastVersionNumber(domainAccess, id) == version) { //current version
-      return retrieveInstance(domainAccess, id);
+  /**
+   * @param lastVersion the number of the current version
+   * @throws IllegalArgumentException when version number is not greater 0
+   * @throws ObjectNotFoundException  when no composition could be found with given input
+   */
+  public static I_CompositionAccess retrieveCompositionVersion(I_DomainAccess domainAccess, UUID id,
+      int version, int lastVersion) {
+
+    if (version < 1) {
+      throw new IllegalArgumentException("Version number must be > 0  please check your code");
     }
 
-    // FIXME make jooq compliant
-    String versionQuery =
-        "select " +
-            "row_id, " +
-            "in_contribution, " +
-            "ehr_id, " +
-            "language, " +
-            "territory, " +
-            "composer, " +
-            "sys_transaction, " +
-            "has_audit," +
-            "attestation_ref, " +
-            "feeder_audit, " +
-            "links from \n" +
-            "  (select ROW_NUMBER() OVER (ORDER BY sys_transaction ASC ) AS row_id, * from ehr.composition_history "
-            +
-            "       WHERE id = ?) \n" +
-            "    AS Version WHERE row_id = ?;";
-
-    Connection connection = domainAccess.getConnection();
+    //check if this version number matches the current version
+    if (lastVersion == version) { //current version
+      return retrieveInstance(domainAccess, id, version);
+    }
 
     I_CompositionAccess compositionHistoryAccess = null;
-    try (PreparedStatement preparedStatement = connection.prepareStatement(versionQuery)) {
-      preparedStatement.setObject(1, id);
-      preparedStatement.setInt(2, version);
-
-      try (ResultSet resultSet = preparedStatement.executeQuery()) {
-
-        while (resultSet.next()) {
-          CompositionRecord compositionRecord1 = domainAccess.getContext().newRecord(COMPOSITION);
-          compositionRecord1.setId(id);
-          compositionRecord1.setInContribution(
-              UUID.fromString(resultSet.getString("in_contribution")));
-          compositionRecord1.setEhrId(UUID.fromString(resultSet.getString("ehr_id")));
-          compositionRecord1.setLanguage(resultSet.getString("language"));
-          compositionRecord1.setTerritory(resultSet.getInt("territory"));
-          compositionRecord1.setComposer(UUID.fromString(resultSet.getString("composer")));
-          compositionRecord1.setSysTransaction(resultSet.getTimestamp("sys_transaction"));
-          compositionRecord1.setHasAudit(UUID.fromString(resultSet.getString("has_audit")));
-          compositionRecord1.setFeederAudit(JSONB.valueOf(resultSet.getString("feeder_audit")));
-
-                    /* TODO: uncomment when links encode/decode is fully implemented
-                    compositionRecord1.setLinks(JSONB.valueOf(resultSet.getString("links")));
-                     */
-          compositionHistoryAccess = new CompositionAccess(domainAccess, compositionRecord1);
-        }
-      }
-    } catch (SQLException e) {
-      throw new ObjectNotFoundException(COMPOSITION_LITERAL,
-          "Composition not found or or invalid DB content", e);
+    CompositionHistoryRecord historyRecord = domainAccess.getContext()
+        .fetchAny(COMPOSITION_HISTORY,
+            COMPOSITION_HISTORY.ID.eq(id).and(COMPOSITION_HISTORY.VERSION.eq(version)));
+    if (historyRecord != null) {
+      CompositionRecord compositionRecord1 = domainAccess.getContext().newRecord(COMPOSITION);
+      compositionRecord1.from(historyRecord);
+      compositionHistoryAccess = new CompositionAccess(domainAccess, compositionRecord1);
     }
 
     if (compositionHistoryAccess != null) {
@@ -530,31 +482,13 @@ public class CompositionAccess extends DataAccess implements I_CompositionAccess
           domainAccess.getDataAccess()).retrieveInstance(domainAccess.getDataAccess(),
           compositionHistoryAccess.getAuditDetailsId());
       compositionHistoryAccess.setAuditDetailsAccess(auditDetailsAccess);
-
-      //retrieve versioned context
-      EventContext historicalEventContext = I_ContextAccess.retrieveHistoricalEventContext(
-          domainAccess, id, compositionHistoryAccess.getSysTransaction());
-      //adjust context for entries
-      if (historicalEventContext != null) {
-        I_EntryAccess entryAccess = compositionHistoryAccess.getContent();
-        entryAccess.getComposition().setContext(historicalEventContext);
-      }
     }
 
-    domainAccess.releaseConnection(connection);
-
     return compositionHistoryAccess;
   }
 
   public static Integer getLastVersionNumber(I_DomainAccess domainAccess, UUID compositionId) {
-    // check if compositionId is valid (version count = 1) and add number of existing older versions
-    if (domainAccess.getContext().fetchExists(COMPOSITION, COMPOSITION.ID.eq(compositionId))) {
-      return 1 + domainAccess.getContext()
-          .fetchCount(COMPOSITION_HISTORY, COMPOSITION_HISTORY.ID.eq(compositionId));
-    } else {
-      return domainAccess.getContext()
-          .fetchCount(COMPOSITION_HISTORY, COMPOSITION_HISTORY.ID.eq(compositionId));
-    }
+    return VersionNumbers.COMPOSITIONS.last(domainAccess.getContext(), compositionId);
   }
 
   public static boolean hasPreviousVersion(I_DomainAccess domainAccess, UUID compositionId) {
@@ -563,6 +497,14 @@ public class CompositionAccess extends DataAccess implements I_CompositionAccess
   }
 
   public static I_CompositionAccess retrieveInstance(I_DomainAccess domainAccess, UUID id) {
+    return retrieveInstance(domainAccess, id, null);
+  }
+
+  /**
+   * @param version the number of the current version if known by the caller, otherwise null
+   */
+  private static I_CompositionAccess retrieveInstance(I_DomainAccess domainAccess, UUID id,
+      Integer version) {
     I_CompositionAccess compositionAccess = new CompositionAccess(domainAccess);
 
     CompositionRecord compositionRecord = domainAccess.getContext().selectFrom(COMPOSITION)
@@ -574,7 +516,7 @@ public class CompositionAccess extends DataAccess implements I_CompositionAccess
 
     compositionAccess.setCompositionRecord(compositionRecord);
     compositionAccess.setContent(
-        I_EntryAccess.retrieveInstanceInComposition(domainAccess, compositionAccess));
+        EntryAccess.retrieveInstanceInComposition(domainAccess, compositionAccess, version));
     //retrieve the corresponding contribution
     I_ContributionAccess contributionAccess = I_ContributionAccess.retrieveInstance(domainAccess,
         compositionAccess.getContributionId());
@@ -598,32 +540,13 @@ public class CompositionAccess extends DataAccess implements I_CompositionAccess
     if (timeCommitted == null) {
       return getLastVersionNumber(domainAccess, vCompositionUid);
     }
-    //get the latest composition time (available in ehr.composition) table
-    Record result;
+    int versionComHist;
     try {
-      result = domainAccess.getContext()
-          .select(max(COMPOSITION.SYS_TRANSACTION).as("mostRecentInTable")).from(COMPOSITION)
-          .where(COMPOSITION.ID.eq(vCompositionUid)).fetchOne();
+      versionComHist = VersionNumbers.COMPOSITIONS.atTime(domainAccess.getContext(), vCompositionUid,
+          timeCommitted);
     } catch (RuntimeException e) {  // generalize SQL exceptions
       throw new InternalServerException("Problem with SQL statement or input", e);
     }
-    Timestamp latestCompoTime = (Timestamp) result.get("mostRecentInTable");
-
-    //get the latest version (if more than one) time (available in ehr.composition_history) table
-    Record result2;
-    try {
-      result2 = domainAccess.getContext().select(count().as("countVersionInTable"))
-          .from(COMPOSITION_HISTORY).where(
-              COMPOSITION_HISTORY.SYS_TRANSACTION.lessOrEqual(timeCommitted)
-                  .and(COMPOSITION_HISTORY.ID.eq(vCompositionUid))).fetchOne();
-    } catch (RuntimeException e) { // generalize SQL exceptions
-      throw new InternalServerException("Problem with SQL statement or input", e);
-    }
-    int versionComHist = (int) result2.get("countVersionInTable");
-    if (timeCommitted.compareTo(latestCompoTime)
-        >= 0) {//if the timestamp is after or equal to the sys_transaction of the latest composition available, add one since its version has not been counted for being the one stored in the ehr.composition table
-      versionComHist++;
-    }
     if (versionComHist == 0) {
       throw new ObjectNotFoundException("composition",
           "There are no versions available prior to date " + timeCommitted
@@ -684,9 +607,6 @@ public class CompositionAccess extends DataAccess implements I_CompositionAccess
       I_DomainAccess domainAccess, UUID compositionId) {
     Map<Integer, I_CompositionAccess> versionMap = new HashMap<>();
 
-    // create counter with highest version, to keep track of version number and allow check in the end
-    Integer versionCounter = getLastVersionNumber(domainAccess, compositionId);
-
     // fetch matching entry
     CompositionRecord compositionRecord = domainAccess.getContext()
         .fetchOne(COMPOSITION, COMPOSITION.ID.eq(compositionId));
@@ -694,17 +614,15 @@ public class CompositionAccess extends DataAccess implements I_CompositionAccess
       I_CompositionAccess compositionAccess = new CompositionAccess(domainAccess);
       compositionAccess.setCompositionRecord(compositionRecord);
       compositionAccess.setContent(
-          I_EntryAccess.retrieveInstanceInComposition(domainAccess, compositionAccess));
-      versionMap.put(versionCounter, compositionAccess);
-
-      versionCounter--;
+          I_EntryAccess.retrieveInstanceInComposition(domainAccess, compositionAccess,
+              compositionRecord.getVersion()));
+      versionMap.put(compositionRecord.getVersion(), compositionAccess);
     }
 
     // if composition was removed (i.e. from "COMPOSITION" table) *or* other versions are existing
     Result<CompositionHistoryRecord> historyRecords = domainAccess.getContext()
         .selectFrom(COMPOSITION_HISTORY)
         .where(COMPOSITION_HISTORY.ID.eq(compositionId))
-        .orderBy(COMPOSITION_HISTORY.SYS_TRANSACTION.desc())
         .fetch();
 
     for (CompositionHistoryRecord historyRecord : historyRecords) {
@@ -712,12 +630,7 @@ public class CompositionAccess extends DataAccess implements I_CompositionAccess
       historyAccess.setCompositionRecord(historyRecord);
       historyAccess.setContent(
           I_EntryAccess.retrieveInstanceInComposition(domainAccess, historyAccess));
-      versionMap.put(versionCounter, historyAccess);
-      versionCounter--;
-    }
-
-    if (versionCounter != 0) {
-      throw new InternalServerException("Version Map generation failed");
+      versionMap.put(historyRecord.getVersion(), historyAccess);
     }
 
     return versionMap;
@@ -920,7 +833,8 @@ public class CompositionAccess extends DataAccess implements I_CompositionAccess
         historyRecord.getHasAudit(),
         historyRecord.getAttestationRef(),
         historyRecord.getFeederAudit(),
-        historyRecord.getLinks()
+        historyRecord.getLinks(),
+        historyRecord.getVersion()
     );
   }
 
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.dao.access.jooq;
+
+import com.nedap.archie.rm.composition.Composition;
+import org.ehrbase.dao.access.interfaces.I_ConceptAccess;
+import org.ehrbase.dao.access.interfaces.I_DomainAccess;
+import org.ehrbase.dao.access.interfaces.I_EntryAccess;
+import org.ehrbase.dao.access.util.ContributionDef;
+import org.ehrbase.jooq.pg.enums.ContributionDataType;
+import org.jooq.Table;
+import org.jooq.TableRecord;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+import static org.ehrbase.jooq.pg.Tables.AUDIT_DETAILS;
+import static org.ehrbase.jooq.pg.Tables.COMPOSITION;
+import static org.ehrbase.jooq.pg.Tables.CONTRIBUTION;
+import static org.ehrbase.jooq.pg.Tables.ENTRY;
+import static org.ehrbase.jooq.pg.Tables.EVENT_CONTEXT;
+import static org.ehrbase.jooq.pg.Tables.PARTICIPATION;
+
+/**
+ * Batched creation of new compositions: the rows of the added compositions are collected and inserted by
+ * {@link #flush()} with one JDBC batch per table, instead of the round trips per row of
+ * {@link CompositionAccess#commit(LocalDateTime, UUID, UUID, String)}.
+ * <p>
+ * The compositions of an EHR added to the same writer share one contribution, inserted with the first composition of the
+ * EHR which could be prepared, so that a failed composition does not leave an empty contribution. The identifiers referenced by other rows are generated by the application since a batch does not
+ * return the generated keys. The party look-ups are still executed when a composition is added.
+ * </p>
+ */
+public class CompositionBatchWriter {
+
+    private final I_DomainAccess domainAccess;
+    private final UUID systemId;
+    private final UUID committerId;
+    private final String description;
+    private final Timestamp transactionTime;
+
+    private final Map<UUID, UUID> contributions = new HashMap<>();
+    //rows to insert per table, in the order of the foreign keys
+    private final Map<Table<?>, List<TableRecord<?>>> records = new LinkedHashMap<>();
+    //rows of the composition being added
+    private final List<TableRecord<?>> pending = new ArrayList<>();
+    private UUID creationChangeType;
+
+    /**
+     * @param domainAccess SQL access
+     * @param systemId     audit system of the contributions and compositions
+     * @param committerId  audit committer of the contributions and compositions
+     * @param description  (optional) audit description
+     */
+    public CompositionBatchWriter(I_DomainAccess domainAccess, UUID systemId, UUID committerId, String description) {
+        this.domainAccess = domainAccess;
+        this.systemId = Objects.requireNonNull(systemId);
+        this.committerId = Objects.requireNonNull(committerId);
+        this.description = description;
+        this.transactionTime = Timestamp.valueOf(LocalDateTime.now());
+        List.of(AUDIT_DETAILS, CONTRIBUTION, COMPOSITION, ENTRY, EVENT_CONTEXT, PARTICIPATION)
+                .forEach(table -> records.put(table, new ArrayList<>()));
+    }
+
+    /**
+     * prepare the creation of a composition, its rows are inserted by {@link #flush()}
+     *
+     * @param ehrId       the EHR of the composition, it must exist and be modifiable
+     * @param composition a validated composition
+     * @return the id of the composition
+     * @throws IllegalArgumentException when the composition could not be mapped to its rows
+     */
+    public UUID add(UUID ehrId, Composition composition) {
+        var compositionAccess = new CompositionAccess(domainAccess, composition, ehrId);
+        var entryAccess = I_EntryAccess.getNewInstance(
+                domainAccess,
+                Objects.requireNonNull(composition.getArchetypeDetails().getTemplateId()).getValue(),
+                0,
+                compositionAccess.getId(),
+                composition);
+        compositionAccess.setContent(entryAccess);
+        return add(ehrId, compositionAccess);
+    }
+
+    UUID add(UUID ehrId, CompositionAccess compositionAccess) {
+        //the rows of a composition, and of the contribution of its EHR, are only kept if all of them could be prepared
+        pending.clear();
+        try {
+            UUID contributionId = contributions.get(ehrId);
+            boolean newContribution = contributionId == null;
+            if (newContribution) {
+                ContributionAccess contributionAccess = newContribution(ehrId);
+                contributionAccess.prepareCommit(transactionTime).forEach(this::add);
+                contributionId = contributionAccess.getContributionId();
+            }
+            compositionAccess.prepareCommit(this, contributionId);
+
+            if (newContribution) {
+                contributions.put(ehrId, contributionId);
+            }
+            pending.forEach(record -> records.computeIfAbsent(record.getTable(), t -> new ArrayList<>()).add(record));
+            return compositionAccess.getId();
+        } finally {
+            pending.clear();
+        }
+    }
+
+    /**
+     * insert the rows of the compositions added since the last flush
+     */
+    public void flush() {
+        for (List<TableRecord<?>> tableRecords : records.values()) {
+            if (!tableRecords.isEmpty()) {
+                domainAccess.getContext().batchInsert(tableRecords).execute();
+                tableRecords.clear();
+            }
+        }
+    }
+
+    /**
+     * @return the number of rows waiting for {@link #flush()}
+     */
+    public int size() {
+        return records.values().stream().mapToInt(List::size).sum();
+    }
+
+    void add(TableRecord<?> record) {
+        pending.add(record);
+    }
+
+    UUID getCreationChangeType() {
+        if (creationChangeType == null) {
+            creationChangeType = I_ConceptAccess.fetchContributionChangeType(domainAccess, I_ConceptAccess.ContributionChangeType.CREATION);
+        }
+        return creationChangeType;
+    }
+
+    UUID getSystemId() {
+        return systemId;
+    }
+
+    UUID getCommitterId() {
+        return committerId;
+    }
+
+    String getDescription() {
+        return description;
+    }
+
+    Timestamp getTransactionTime() {
+        return transactionTime;
+    }
+
+    private ContributionAccess newContribution(UUID ehrId) {
+        var contributionAccess = new ContributionAccess(domainAccess, ehrId);
+        contributionAccess.setDataType(ContributionDataType.composition);
+        contributionAccess.setState(ContributionDef.ContributionState.COMPLETE);
+        contributionAccess.setAuditDetailsChangeType(getCreationChangeType());
+        contributionAccess.setAuditDetailsCommitter(committerId);
+        contributionAccess.setAuditDetailsSystemId(systemId);
+        if (description != null) {
+            contributionAccess.setAuditDetailsDescription(description);
+        }
+        return contributionAccess;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.dao.access.jooq;
+
+import com.nedap.archie.rm.composition.EventContext;
+import com.nedap.archie.rm.generic.PartyProxy;
+import org.ehrbase.dao.access.interfaces.I_DomainAccess;
+import org.ehrbase.dao.access.jooq.party.PersistedPartyProxy;
+import org.ehrbase.jooq.pg.tables.records.EntryRecord;
+import org.ehrbase.jooq.pg.tables.records.EventContextRecord;
+import org.ehrbase.jooq.pg.tables.records.IdentifierRecord;
+import org.ehrbase.jooq.pg.tables.records.ParticipationRecord;
+import org.ehrbase.jooq.pg.tables.records.PartyIdentifiedRecord;
+import org.jooq.Condition;
+import org.jooq.Field;
+import org.jooq.Record;
+import org.jooq.Table;
+import org.jooq.impl.DSL;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.ehrbase.jooq.pg.Tables.ENTRY;
+import static org.ehrbase.jooq.pg.Tables.ENTRY_HISTORY;
+import static org.ehrbase.jooq.pg.Tables.EVENT_CONTEXT;
+import static org.ehrbase.jooq.pg.Tables.EVENT_CONTEXT_HISTORY;
+import static org.ehrbase.jooq.pg.Tables.IDENTIFIER;
+import static org.ehrbase.jooq.pg.Tables.PARTICIPATION;
+import static org.ehrbase.jooq.pg.Tables.PARTICIPATION_HISTORY;
+import static org.ehrbase.jooq.pg.Tables.PARTY_IDENTIFIED;
+import static org.jooq.impl.DSL.select;
+
+/**
+ * Fetch what is needed to rebuild a composition from its entry in two statements, whatever the number of parties:
+ * <ol>
+ *     <li>the entry joined with its event context</li>
+ *     <li>the composer, the facility and the performers joined with their identifiers and participations</li>
+ * </ol>
+ * The event context columns are user defined types, so the rows are not nested with <code>MULTISET</code> but
+ * grouped in memory.
+ */
+final class CompositionContentQuery {
+
+    private final EntryRecord entryRecord;
+    private final PartyProxy composer;
+    private final EventContext eventContext;
+
+    private CompositionContentQuery(EntryRecord entryRecord, PartyProxy composer, EventContext eventContext) {
+        this.entryRecord = entryRecord;
+        this.composer = composer;
+        this.eventContext = eventContext;
+    }
+
+    /**
+     * @param domainAccess  SQL context
+     * @param compositionId the composition
+     * @param composerId    the composer of the composition
+     * @return the content of the current version, empty if the composition has no entry
+     */
+    static Optional<CompositionContentQuery> current(I_DomainAccess domainAccess, UUID compositionId, UUID composerId) {
+        Record row = domainAccess.getContext()
+                .select(fields(ENTRY, EVENT_CONTEXT))
+                .from(ENTRY)
+                .leftJoin(EVENT_CONTEXT).on(EVENT_CONTEXT.COMPOSITION_ID.eq(ENTRY.COMPOSITION_ID))
+                .where(ENTRY.COMPOSITION_ID.eq(compositionId))
+                .limit(1)
+                .fetchOne();
+        if (row == null) {
+            return Optional.empty();
+        }
+
+        EventContextRecord eventContextRecord = row.get(EVENT_CONTEXT.ID) != null ? row.into(EVENT_CONTEXT) : null;
+        return Optional.of(build(domainAccess, row.into(ENTRY), composerId, eventContextRecord, PARTICIPATION, null));
+    }
+
+    /**
+     * @param domainAccess   SQL context
+     * @param compositionId  the composition
+     * @param sysTransaction the transaction time of the version
+     * @param composerId     the composer of the version
+     * @return the content of the version, empty if the version has no entry
+     */
+    static Optional<CompositionContentQuery> version(I_DomainAccess domainAccess, UUID compositionId, Timestamp sysTransaction, UUID composerId) {
+        //the current context is used when the context was not changed by the version
+        Record row = domainAccess.getContext()
+                .select(fields(ENTRY_HISTORY, EVENT_CONTEXT_HISTORY, EVENT_CONTEXT))
+                .from(ENTRY_HISTORY)
+                .leftJoin(EVENT_CONTEXT_HISTORY).on(EVENT_CONTEXT_HISTORY.COMPOSITION_ID.eq(ENTRY_HISTORY.COMPOSITION_ID)
+                        .and(EVENT_CONTEXT_HISTORY.SYS_TRANSACTION.eq(ENTRY_HISTORY.SYS_TRANSACTION)))
+                .leftJoin(EVENT_CONTEXT).on(EVENT_CONTEXT.COMPOSITION_ID.eq(ENTRY_HISTORY.COMPOSITION_ID))
+                .where(ENTRY_HISTORY.COMPOSITION_ID.eq(compositionId))
+                .and(ENTRY_HISTORY.SYS_TRANSACTION.eq(sysTransaction))
+                .limit(1)
+                .fetchOne();
+        if (row == null) {
+            return Optional.empty();
+        }
+
+        EntryRecord entryRecord = domainAccess.getContext().newRecord(ENTRY);
+        entryRecord.from(row.into(ENTRY_HISTORY));
+
+        if (row.get(EVENT_CONTEXT_HISTORY.ID) != null) {
+            EventContextRecord eventContextRecord = row.into(EVENT_CONTEXT_HISTORY).into(EVENT_CONTEXT);
+            return Optional.of(build(domainAccess, entryRecord, composerId, eventContextRecord,
+                    PARTICIPATION_HISTORY, PARTICIPATION_HISTORY.SYS_TRANSACTION.eq(sysTransaction)));
+        }
+        EventContextRecord eventContextRecord = row.get(EVENT_CONTEXT.ID) != null ? row.into(EVENT_CONTEXT) : null;
+        return Optional.of(build(domainAccess, entryRecord, composerId, eventContextRecord, PARTICIPATION, null));
+    }
+
+    EntryRecord getEntryRecord() {
+        return entryRecord;
+    }
+
+    PartyProxy getComposer() {
+        return composer;
+    }
+
+    /**
+     * @return the event context, null for a composition without context
+     */
+    EventContext getEventContext() {
+        return eventContext;
+    }
+
+    /**
+     * fetch the parties of the composition and the participations of its context with one statement
+     *
+     * @param participationTable     either <code>participation</code> or <code>participation_history</code>
+     * @param participationCondition (optional) restriction of the participations to a version
+     */
+    private static CompositionContentQuery build(I_DomainAccess domainAccess, EntryRecord entryRecord, UUID composerId,
+                                                 EventContextRecord eventContextRecord, Table<?> participationTable, Condition participationCondition) {
+
+        Field<UUID> performer = participationTable.field(PARTICIPATION.PERFORMER);
+        Set<UUID> partyIds = Stream.of(composerId, eventContextRecord != null ? eventContextRecord.getFacility() : null)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Condition ofParties = PARTY_IDENTIFIED.ID.in(partyIds);
+
+        Condition ofEventContext = DSL.falseCondition();
+        if (eventContextRecord != null) {
+            ofEventContext = participationTable.field(PARTICIPATION.EVENT_CONTEXT).eq(eventContextRecord.getId());
+            if (participationCondition != null) {
+                ofEventContext = ofEventContext.and(participationCondition);
+            }
+            ofParties = ofParties.or(PARTY_IDENTIFIED.ID.in(select(performer).from(participationTable).where(ofEventContext)));
+        }
+
+        Map<UUID, PartyIdentifiedRecord> partyRecords = new LinkedHashMap<>();
+        Map<UUID, Set<IdentifierRecord>> identifierRecords = new HashMap<>();
+        Map<UUID, ParticipationRecord> participationRecords = new LinkedHashMap<>();
+
+        domainAccess.getContext()
+                .select(fields(PARTY_IDENTIFIED, IDENTIFIER, participationTable))
+                .from(PARTY_IDENTIFIED)
+                .leftJoin(IDENTIFIER).on(IDENTIFIER.PARTY.eq(PARTY_IDENTIFIED.ID))
+                .leftJoin(participationTable).on(performer.eq(PARTY_IDENTIFIED.ID).and(ofEventContext))
+                .where(ofParties)
+                .fetch()
+                .forEach(row -> {
+                    //a party is repeated for each of its identifiers and participations
+                    UUID partyId = row.get(PARTY_IDENTIFIED.ID);
+                    partyRecords.computeIfAbsent(partyId, id -> row.into(PARTY_IDENTIFIED));
+                    Set<IdentifierRecord> identifiers = identifierRecords.computeIfAbsent(partyId, id -> new LinkedHashSet<>());
+                    if (row.get(IDENTIFIER.PARTY) != null) {
+                        identifiers.add(row.into(IDENTIFIER));
+                    }
+                    UUID participationId = row.get(participationTable.field(PARTICIPATION.ID));
+                    if (participationId != null) {
+                        participationRecords.computeIfAbsent(participationId, id -> row.into(participationTable).into(PARTICIPATION));
+                    }
+                });
+
+        PersistedPartyProxy persistedPartyProxy = new PersistedPartyProxy(domainAccess);
+        Map<UUID, PartyProxy> parties = new HashMap<>();
+        partyRecords.forEach((id, partyRecord) ->
+                parties.put(id, persistedPartyProxy.render(partyRecord, new ArrayList<>(identifierRecords.get(id)))));
+
+        EventContext eventContext = eventContextRecord != null
+                ? ContextAccess.buildEventContext(eventContextRecord, new ArrayList<>(participationRecords.values()), parties)
+                : null;
+        return new CompositionContentQuery(entryRecord, parties.get(composerId), eventContext);
+    }
+
+    private static List<Field<?>> fields(Table<?>... tables) {
+        return Arrays.stream(tables)
+                .flatMap(table -> Arrays.stream(table.fields()))
+                .collect(Collectors.toList());
+    }
+}
@@ -20,21 +20,17 @@
  */
 package org.ehrbase.dao.access.jooq;
 
+import org.ehrbase.dao.access.interfaces.I_ConceptAccess;
 import org.ehrbase.dao.access.interfaces.I_DomainAccess;
-import org.jooq.Record1;
-import org.jooq.Result;
 
 import java.util.UUID;
 
-import static org.ehrbase.jooq.pg.Tables.CONCEPT;
-
 /**
  * Created by Christian Chevalley on 4/10/2015.
  */
 public class ConceptAccess {
 
     static public UUID fetchConceptUUID(I_DomainAccess domainAccess, Integer conceptId, String language) {
-        Result<Record1<UUID>> uuids = domainAccess.getContext().select(CONCEPT.ID).from(CONCEPT).where(CONCEPT.CONCEPTID.eq(conceptId)).and(CONCEPT.LANGUAGE.equal(language)).fetch();
-        return (UUID) uuids.get(0).getValue(0);
+        return I_ConceptAccess.fetchConcept(domainAccess, conceptId, language);
     }
 }
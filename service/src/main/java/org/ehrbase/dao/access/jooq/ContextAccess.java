@@ -29,7 +29,6 @@ import com.nedap.archie.rm.generic.PartyProxy;
 import com.nedap.archie.rm.support.identification.ObjectId;
 import com.nedap.archie.rm.support.identification.PartyRef;
 import org.apache.commons.collections4.CollectionUtils;
-import org.ehrbase.api.definitions.ServerConfig;
 import org.ehrbase.api.exception.InternalServerException;
 import org.ehrbase.dao.access.interfaces.I_CompositionAccess;
 import org.ehrbase.dao.access.interfaces.I_ContextAccess;
@@ -46,11 +45,11 @@ import org.ehrbase.serialisation.dbencoding.RawJson;
 import org.ehrbase.service.RecordedDvCodedText;
 import org.ehrbase.service.RecordedDvDateTime;
 import org.ehrbase.service.RecordedDvText;
-import org.jooq.DSLContext;
 import org.jooq.InsertQuery;
 import org.jooq.JSONB;
 import org.jooq.Record;
 import org.jooq.Result;
+import org.jooq.TableRecord;
 import org.jooq.UpdateQuery;
 import org.jooq.exception.DataAccessException;
 import org.slf4j.Logger;
@@ -59,6 +58,7 @@ import org.slf4j.LoggerFactory;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import static org.ehrbase.jooq.pg.Tables.EVENT_CONTEXT;
@@ -84,11 +84,11 @@ public class ContextAccess extends DataAccess implements I_ContextAccess {
 
     private EventContextRecord eventContextRecord;
 
-    public ContextAccess(DSLContext context, ServerConfig serverConfig, EventContext eventContext) {
-        super(context, null, null, serverConfig);
+    public ContextAccess(I_DomainAccess domainAccess, EventContext eventContext) {
+        super(domainAccess);
         if (eventContext == null)
             return;
-        eventContextRecord = context.newRecord(EVENT_CONTEXT);
+        eventContextRecord = domainAccess.getContext().newRecord(EVENT_CONTEXT);
         setRecordFields(UUID.randomUUID(), eventContext);
     }
 
@@ -161,8 +161,8 @@ public class ContextAccess extends DataAccess implements I_ContextAccess {
                     PartyProxy performer = new PersistedPartyProxy(domainAccess).retrieve(record.getPerformer());
 
 
-                    DvInterval<DvDateTime> startTime = convertDvIntervalDvDateTimeFromRecord(eventContextHistoryRecord);
-                    DvCodedText mode = convertModeFromRecord(eventContextHistoryRecord);
+                    DvInterval<DvDateTime> startTime = convertDvIntervalDvDateTimeFromRecord(record);
+                    DvCodedText mode = convertModeFromRecord(record);
 
                     Participation participation = new Participation(performer,
                             (DvText) new RecordedDvCodedText().fromDB(record, PARTICIPATION.FUNCTION),
@@ -319,6 +319,23 @@ public class ContextAccess extends DataAccess implements I_ContextAccess {
         return eventContextRecord.getId();
     }
 
+    /**
+     * prepare the records inserted by {@link #commit(Timestamp)} for a batch insert
+     * @return the event context record followed by its participations
+     */
+    List<TableRecord<?>> prepareCommit(Timestamp transactionTime) {
+        eventContextRecord.setSysTransaction(transactionTime);
+        List<TableRecord<?>> records = new ArrayList<>();
+        records.add(eventContextRecord);
+        participations.forEach(participation -> {
+                    participation.setEventContext(eventContextRecord.getId());
+                    participation.setSysTransaction(transactionTime);
+                    records.add(participation);
+                }
+        );
+        return records;
+    }
+
     /**
      * @throws InternalServerException  when database operation or
      * @throws IllegalArgumentException when context commit failed
@@ -494,6 +511,47 @@ public class ContextAccess extends DataAccess implements I_ContextAccess {
 
     }
 
+    /**
+     * Build the event context from rows already fetched, without further queries.
+     *
+     * @param eventContextRecord the context, or a version of it
+     * @param participations     the participations of the context, or of the version
+     * @param parties            at least the facility and the performers by id
+     * @throws InternalServerException on failure of decoding DvText or DvDateTime
+     */
+    static EventContext buildEventContext(EventContextRecord eventContextRecord, List<ParticipationRecord> participations, Map<UUID, PartyProxy> parties) {
+
+        PartyIdentified healthCareFacility = null;
+        PartyProxy facility = parties.get(eventContextRecord.getFacility());
+        if (facility instanceof PartyIdentified) {
+            healthCareFacility = (PartyIdentified) facility;
+        }
+
+        List<Participation> participationList = new ArrayList<>();
+        for (ParticipationRecord record : participations) {
+            participationList.add(new Participation(parties.get(record.getPerformer()),
+                    (DvText) new RecordedDvCodedText().fromDB(record, PARTICIPATION.FUNCTION),
+                    convertModeFromRecord(record),
+                    convertDvIntervalDvDateTimeFromRecord(record)));
+        }
+
+        DvCodedText setting = (DvCodedText) new RecordedDvCodedText().fromDB(eventContextRecord, EVENT_CONTEXT.SETTING);
+
+        ItemStructure otherContext = null;
+        if (eventContextRecord.getOtherContext() != null) {
+            otherContext = new RawJson().unmarshal((eventContextRecord.getOtherContext().data()), ItemStructure.class);
+        }
+
+        return new EventContext(healthCareFacility,
+                new RecordedDvDateTime().decodeDvDateTime(eventContextRecord.getStartTime(), eventContextRecord.getStartTimeTzid()),
+                new RecordedDvDateTime().decodeDvDateTime(eventContextRecord.getEndTime(), eventContextRecord.getEndTimeTzid()),
+                participationList.isEmpty() ? null : participationList,
+                eventContextRecord.getLocation(),
+                setting,
+                otherContext
+        );
+    }
+
     private static DvInterval<DvDateTime> convertDvIntervalDvDateTimeFromRecord(Record record) {
         DvInterval<DvDateTime> dvDateTimeDvInterval = null;
         if (record.get(PARTICIPATION.TIME_LOWER) != null) { //start time null value is allowed for participation
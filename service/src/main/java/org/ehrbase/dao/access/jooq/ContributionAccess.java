@@ -22,7 +22,6 @@
 package org.ehrbase.dao.access.jooq;
 
 import com.nedap.archie.rm.generic.AuditDetails;
-import org.ehrbase.api.definitions.ServerConfig;
 import org.ehrbase.api.exception.InternalServerException;
 import org.ehrbase.dao.access.interfaces.*;
 import org.ehrbase.dao.access.interfaces.I_ConceptAccess.ContributionChangeType;
@@ -30,7 +29,6 @@ import org.ehrbase.dao.access.jooq.party.PersistedPartyProxy;
 import org.ehrbase.dao.access.support.DataAccess;
 import org.ehrbase.dao.access.util.ContributionDef;
 import org.ehrbase.dao.access.util.TransactionTime;
-import org.ehrbase.ehr.knowledge.I_KnowledgeCache;
 import org.ehrbase.jooq.pg.Routines;
 import org.ehrbase.jooq.pg.enums.ContributionDataType;
 import org.ehrbase.jooq.pg.enums.ContributionState;
@@ -38,14 +36,15 @@ import org.ehrbase.jooq.pg.tables.AdminDeleteStatusHistory;
 import org.ehrbase.jooq.pg.tables.records.AdminDeleteStatusRecord;
 import org.ehrbase.jooq.pg.tables.records.AdminGetLinkedCompositionsForContribRecord;
 import org.ehrbase.jooq.pg.tables.records.AdminGetLinkedStatusForContribRecord;
+import org.ehrbase.jooq.pg.tables.records.AuditDetailsRecord;
 import org.ehrbase.jooq.pg.tables.records.ContributionRecord;
-import org.ehrbase.service.IntrospectService;
-import org.jooq.DSLContext;
 import org.jooq.Result;
+import org.jooq.TableRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.Timestamp;
+import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
 
@@ -60,26 +59,6 @@ public class ContributionAccess extends DataAccess implements I_ContributionAcce
     private ContributionRecord contributionRecord;
     private I_AuditDetailsAccess auditDetails; // audit associated with this contribution
 
-    /**
-     * Basic constructor for contribution.
-     * @param context DB context object of current server context
-     * @param knowledgeManager Knowledge cache object of current server context
-     * @param introspectCache Introspect cache object of current server context
-     * @param serverConfig Server config object of current server context
-     * @param ehrId Given ID of EHR this contribution will be created for
-     */
-    public ContributionAccess(DSLContext context, I_KnowledgeCache knowledgeManager, IntrospectService introspectCache, ServerConfig serverConfig, UUID ehrId) {
-
-        super(context, knowledgeManager, introspectCache, serverConfig);
-
-        this.contributionRecord = context.newRecord(CONTRIBUTION);
-
-        contributionRecord.setEhrId(ehrId);
-
-        // create and attach new minimal audit instance to this contribution
-        this.auditDetails = I_AuditDetailsAccess.getInstance(this.getDataAccess());
-    }
-
     /**
      * Constructor with convenient {@link I_DomainAccess} parameter, for better readability.
      * @param domainAccess Current domain access object
@@ -87,7 +66,7 @@ public class ContributionAccess extends DataAccess implements I_ContributionAcce
      */
     public ContributionAccess(I_DomainAccess domainAccess, UUID ehrId) {
 
-        super(domainAccess.getContext(), domainAccess.getKnowledgeManager(), domainAccess.getIntrospectService(), domainAccess.getServerConfig());
+        super(domainAccess);
 
         this.contributionRecord = domainAccess.getContext().newRecord(CONTRIBUTION);
 
@@ -148,6 +127,20 @@ public class ContributionAccess extends DataAccess implements I_ContributionAcce
         return commit(TransactionTime.millis());
     }
 
+    /**
+     * prepare the records inserted by {@link #commit(Timestamp)} for a batch insert, see {@link CompositionBatchWriter}
+     * @return the audit record followed by the contribution record
+     */
+    List<TableRecord<?>> prepareCommit(Timestamp transactionTime) {
+        if (contributionRecord.getId() == null) {
+            contributionRecord.setId(UUID.randomUUID());
+        }
+        AuditDetailsRecord auditRecord = ((AuditDetailsAccess) auditDetails).prepareCommit(transactionTime);
+        contributionRecord.setHasAudit(auditRecord.getId());
+        contributionRecord.setEhrId(this.getEhrId());
+        return List.of(auditRecord, contributionRecord);
+    }
+
     /**
      * Commit the contribution with optional values, excluding audit, which needs to be created and set beforehand.
      */
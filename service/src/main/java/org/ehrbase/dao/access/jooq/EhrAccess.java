@@ -47,7 +47,6 @@ import java.util.Objects;
 import java.util.UUID;
 import org.apache.commons.collections.map.MultiValueMap;
 import org.apache.commons.lang3.BooleanUtils;
-import org.ehrbase.api.definitions.ServerConfig;
 import org.ehrbase.api.exception.InternalServerException;
 import org.ehrbase.api.exception.InvalidApiParameterException;
 import org.ehrbase.dao.access.interfaces.I_ConceptAccess;
@@ -113,11 +112,11 @@ public class EhrAccess extends DataAccess implements I_EhrAccess {
   /**
    * @throws InternalServerException if creating or retrieving system failed
    */
-  public EhrAccess(DSLContext context, ServerConfig serverConfig, UUID partyId, UUID systemId,
+  public EhrAccess(I_DomainAccess domainAccess, UUID partyId, UUID systemId,
       UUID directoryId, UUID accessId, UUID ehrId) {
-    super(context, null, null, serverConfig);
+    super(domainAccess);
 
-    this.ehrRecord = context.newRecord(EHR_);
+    this.ehrRecord = domainAccess.getContext().newRecord(EHR_);
     // checking for and executing case of custom ehr ID
     ehrRecord.setId(Objects.requireNonNullElseGet(ehrId, UUID::randomUUID));
 
@@ -272,26 +271,18 @@ public class EhrAccess extends DataAccess implements I_EhrAccess {
     I_StatusAccess statusAccess = I_StatusAccess.retrieveInstance(domainAccess, status);
     ehrAccess.setStatusAccess(statusAccess);
 
-    // first step of retrieving a particular version is to query for the amount of versions, which depends on the latest one above
-    Integer versions = domainAccess.getContext().fetchCount(STATUS_HISTORY,
-        STATUS_HISTORY.EHR_ID.eq(ehrAccess.getStatusAccess().getStatusRecord().getEhrId())) + 1;
+    // the latest version is the one already set above
+    Integer versions = I_StatusAccess.getLatestVersionNumber(domainAccess, status);
     // check if input version number fits into existing amount of versions, but is not the same (same equals latest version)
     // when either there is only one version or the requested one is the latest, continue with record already set
-    if (versions > version && !version.equals(
-        versions)) { // or get the particular requested version
-      // sonarlint says that the expression above is always true? tested it, it can be true and false!?
-      // note: here version is > 1 and there has to be at least one history entry
-      Result<StatusHistoryRecord> result = domainAccess.getContext().selectFrom(STATUS_HISTORY)
-          .where(STATUS_HISTORY.EHR_ID.eq(ehrId))
-          .orderBy(STATUS_HISTORY.SYS_TRANSACTION.asc())  // oldest at top, i.e. [0]
-          .fetch();
-
-      if (result.isEmpty()) {
+    if (versions > version) { // or get the particular requested version
+      StatusHistoryRecord statusHistoryRecord = domainAccess.getContext()
+          .fetchAny(STATUS_HISTORY, STATUS_HISTORY.ID.eq(status).and(STATUS_HISTORY.VERSION.eq(version)));
+
+      if (statusHistoryRecord == null) {
         throw new InternalServerException("Error retrieving EHR_STATUS"); // should never be reached
       }
 
-      // result set of history table is always version+1, because the latest is in non-history table
-      StatusHistoryRecord statusHistoryRecord = result.get(version - 1);
       // FIXME EHR_STATUS: manually converting types. dirty, formally break jooq-style, right? the record would considered to be updated when calling methods like .store()
       ehrAccess.getStatusAccess().getStatusRecord().setEhrId(statusHistoryRecord.getEhrId());
       ehrAccess.getStatusAccess().getStatusRecord()
@@ -315,6 +306,7 @@ public class EhrAccess extends DataAccess implements I_EhrAccess {
       ehrAccess.getStatusAccess().getStatusRecord()
           .setArchetypeNodeId(statusHistoryRecord.getArchetypeNodeId());
       ehrAccess.getStatusAccess().getStatusRecord().setName(statusHistoryRecord.getName());
+      ehrAccess.getStatusAccess().getStatusRecord().setVersion(statusHistoryRecord.getVersion());
 
     }
 
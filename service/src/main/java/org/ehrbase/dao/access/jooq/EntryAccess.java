@@ -22,8 +22,6 @@
 package org.ehrbase.dao.access.jooq;
 
 import static org.ehrbase.jooq.pg.Tables.ENTRY;
-import static org.ehrbase.jooq.pg.Tables.ENTRY_HISTORY;
-import static org.ehrbase.jooq.pg.Tables.TERRITORY;
 
 import com.nedap.archie.rm.archetyped.Archetyped;
 import com.nedap.archie.rm.archetyped.FeederAudit;
@@ -51,16 +49,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import org.ehrbase.api.exception.InternalServerException;
 import org.ehrbase.dao.access.interfaces.I_CompositionAccess;
-import org.ehrbase.dao.access.interfaces.I_ContextAccess;
 import org.ehrbase.dao.access.interfaces.I_DomainAccess;
 import org.ehrbase.dao.access.interfaces.I_EntryAccess;
-import org.ehrbase.dao.access.jooq.party.PersistedPartyProxy;
 import org.ehrbase.dao.access.query.AsyncSqlQuery;
+import org.ehrbase.dao.access.query.QueryExecutor;
 import org.ehrbase.dao.access.support.DataAccess;
 import org.ehrbase.jooq.pg.enums.EntryType;
-import org.ehrbase.jooq.pg.tables.records.EntryHistoryRecord;
 import org.ehrbase.jooq.pg.tables.records.EntryRecord;
 import org.ehrbase.jooq.pg.udt.records.DvCodedTextRecord;
 import org.ehrbase.serialisation.dbencoding.RawJson;
@@ -68,7 +65,6 @@ import org.ehrbase.serialisation.dbencoding.rmobject.FeederAuditEncoding;
 import org.ehrbase.serialisation.dbencoding.rmobject.LinksEncoding;
 import org.ehrbase.service.RecordedDvCodedText;
 import org.ehrbase.service.RecordedDvText;
-import org.jooq.Condition;
 import org.jooq.JSONB;
 import org.jooq.Record;
 import org.jooq.UpdateQuery;
@@ -105,8 +101,7 @@ public class EntryAccess extends DataAccess implements I_EntryAccess {
    */
   public EntryAccess(I_DomainAccess domainAccess, String templateId, Integer sequence,
       UUID compositionId, Composition composition) {
-    super(domainAccess.getContext(), domainAccess.getKnowledgeManager(),
-        domainAccess.getIntrospectService(), domainAccess.getServerConfig());
+    super(domainAccess);
     setFields(templateId, sequence, compositionId, composition);
   }
 
@@ -120,29 +115,34 @@ public class EntryAccess extends DataAccess implements I_EntryAccess {
    */
   public static I_EntryAccess retrieveInstanceInComposition(I_DomainAccess domainAccess,
       I_CompositionAccess compositionAccess) {
+    return retrieveInstanceInComposition(domainAccess, compositionAccess, null);
+  }
+
+  /**
+   * @param version the version number of the composition if known by the caller, otherwise null
+   * @throws IllegalArgumentException if DB is inconsistent or operation fails
+   */
+  public static I_EntryAccess retrieveInstanceInComposition(I_DomainAccess domainAccess,
+      I_CompositionAccess compositionAccess, Integer version) {
 
-    Optional<EntryRecord> existingEntry = domainAccess.getContext()
-        .fetchOptional(ENTRY, ENTRY.COMPOSITION_ID.eq(compositionAccess.getId()));
-    if (existingEntry.isEmpty()) {
+    Optional<CompositionContentQuery> content = CompositionContentQuery.current(domainAccess,
+        compositionAccess.getId(), compositionAccess.getComposerId());
+    if (content.isEmpty()) {
       return null;
     }
 
     //build the list of parameters to recreate the composition
     Map<SystemValue, Object> values = new EnumMap<>(SystemValue.class);
-    values.put(SystemValue.COMPOSER,
-        new PersistedPartyProxy(domainAccess).retrieve(compositionAccess.getComposerId()));
+    values.put(SystemValue.COMPOSER, content.get().getComposer());
 
     // optional handling for persistent compositions that do not have a context
-    Optional<I_ContextAccess> opContextAccess = compositionAccess.getContextId()
-        .map(id -> I_ContextAccess.retrieveInstance(domainAccess, id));
-    opContextAccess.ifPresent(
-        context -> values.put(SystemValue.CONTEXT, context.mapRmEventContext()));
+    if (content.get().getEventContext() != null) {
+      values.put(SystemValue.CONTEXT, content.get().getEventContext());
+    }
 
     values.put(SystemValue.LANGUAGE,
         new CodePhrase(new TerminologyId("ISO_639-1"), compositionAccess.getLanguageCode()));
-    String territory2letters = domainAccess.getContext()
-        .fetchSingle(TERRITORY, TERRITORY.CODE.eq(compositionAccess.getTerritoryCode()))
-        .getTwoletter();
+    String territory2letters = fetchTerritoryTwoLetter(domainAccess, compositionAccess.getTerritoryCode());
 
     values.put(SystemValue.TERRITORY,
         new CodePhrase(new TerminologyId("ISO_3166-1"), territory2letters));
@@ -160,21 +160,19 @@ public class EntryAccess extends DataAccess implements I_EntryAccess {
       EntryAccess entryAccess = new EntryAccess(domainAccess);
 
       //set the record UID in the composition with matching version number
-      Integer version = I_CompositionAccess.getLastVersionNumber(domainAccess,
-          compositionAccess.getId());
+      if (version == null) {
+        version = I_CompositionAccess.getLastVersionNumber(domainAccess, compositionAccess.getId());
+      }
       values.put(SystemValue.UID,
           new ObjectVersionId(
               compositionAccess.getId().toString() + "::" + domainAccess.getServerConfig()
                   .getNodename() + "::" + version));
 
-      EntryRecord entryRecord = existingEntry.get();
+      EntryRecord entryRecord = content.get().getEntryRecord();
       entryAccess.entryRecord = entryRecord;
       String value = entryRecord.getEntry().data();
       entryAccess.composition = new RawJson().unmarshal(value, Composition.class);
 
-      // continuing optional handling for persistent compositions
-      opContextAccess.map(I_ContextAccess::mapRmEventContext)
-          .ifPresent(ec -> values.put(SystemValue.CONTEXT, ec));
       values.put(SystemValue.CATEGORY,
           new RecordedDvCodedText().fromDB(entryRecord, ENTRY.CATEGORY));
       setCompositionAttributes(entryAccess.composition, values);
@@ -196,37 +194,36 @@ public class EntryAccess extends DataAccess implements I_EntryAccess {
     entryAccess.composition.setArchetypeDetails(archetypeDetails);
   }
 
+  /**
+   * @throws InternalServerException when the territory of a stored composition can't be found
+   */
+  private static String fetchTerritoryTwoLetter(I_DomainAccess domainAccess, Integer territoryCode) {
+    String territory2letters = territoryCode != null
+        ? domainAccess.getReferenceData().getTerritoryTwoLetter(territoryCode) : null;
+    if (territory2letters == null) {
+      throw new InternalServerException(DB_INCONSISTENCY + " unknown territory: " + territoryCode);
+    }
+    return territory2letters;
+  }
+
   public static I_EntryAccess retrieveInstanceInCompositionVersion(
       I_DomainAccess domainAccess, I_CompositionAccess compositionHistoryAccess, int version) {
 
-    Condition condition = ENTRY_HISTORY.COMPOSITION_ID.eq(compositionHistoryAccess.getId())
-        .and(ENTRY_HISTORY.SYS_TRANSACTION.eq(compositionHistoryAccess.getSysTransaction()));
-
-    Optional<EntryHistoryRecord> existingEntryHistory = domainAccess.getContext()
-        .fetchOptional(ENTRY_HISTORY, condition);
-    if (existingEntryHistory.isEmpty()) {
+    Optional<CompositionContentQuery> content = CompositionContentQuery.version(domainAccess,
+        compositionHistoryAccess.getId(), compositionHistoryAccess.getSysTransaction(),
+        compositionHistoryAccess.getComposerId());
+    if (content.isEmpty()) {
       return null;
     }
 
     //build the list of parameters to recreate the composition
     Map<SystemValue, Object> values = new EnumMap<>(SystemValue.class);
-    values.put(SystemValue.COMPOSER,
-        new PersistedPartyProxy(domainAccess).retrieve(compositionHistoryAccess.getComposerId()));
-
-    EventContext context = I_ContextAccess.retrieveHistoricalEventContext(domainAccess,
-        compositionHistoryAccess.getId(), compositionHistoryAccess.getSysTransaction());
-    if (context == null) {//unchanged context use the current one!
-      // also optional handling of context, because persistent compositions don't have a context
-      compositionHistoryAccess.getContextId().ifPresent(
-          uuid -> I_ContextAccess.retrieveInstance(domainAccess, uuid).mapRmEventContext());
-    }
-    values.put(SystemValue.CONTEXT, context);
+    values.put(SystemValue.COMPOSER, content.get().getComposer());
+    values.put(SystemValue.CONTEXT, content.get().getEventContext());
 
     values.put(SystemValue.LANGUAGE,
         new CodePhrase(new TerminologyId("ISO_639-1"), compositionHistoryAccess.getLanguageCode()));
-    String territory2letters = domainAccess.getContext()
-        .fetchSingle(TERRITORY, TERRITORY.CODE.eq(compositionHistoryAccess.getTerritoryCode()))
-        .getTwoletter();
+    String territory2letters = fetchTerritoryTwoLetter(domainAccess, compositionHistoryAccess.getTerritoryCode());
     values.put(SystemValue.TERRITORY,
         new CodePhrase(new TerminologyId("ISO_3166-1"), territory2letters));
 
@@ -242,10 +239,8 @@ public class EntryAccess extends DataAccess implements I_EntryAccess {
           compositionId.toString() + "::" + domainAccess.getServerConfig().getNodename() + "::"
               + version));
 
-      EntryHistoryRecord entryHistoryRecord = existingEntryHistory.get();
-      entryAccess.entryRecord = domainAccess.getContext().newRecord(ENTRY);
-      entryAccess.entryRecord.from(entryHistoryRecord);
-      entryAccess.composition = new RawJson().unmarshal(entryHistoryRecord.getEntry().data(),
+      entryAccess.entryRecord = content.get().getEntryRecord();
+      entryAccess.composition = new RawJson().unmarshal(entryAccess.entryRecord.getEntry().data(),
           Composition.class);
 
       setCompositionAttributes(entryAccess.composition, values);
@@ -258,10 +253,10 @@ public class EntryAccess extends DataAccess implements I_EntryAccess {
   }
 
   /**
-   * @throws InternalServerException when the query failed
+   * @throws org.springframework.web.server.ResponseStatusException when the query pool is saturated
    */
-  public static Map<String, Object> queryJSON(I_DomainAccess domainAccess, String queryString) {
-    return new AsyncSqlQuery(domainAccess, queryString).fetch();
+  public static CompletableFuture<Map<String, Object>> queryJSON(I_DomainAccess domainAccess, String queryString, QueryExecutor executor) {
+    return new AsyncSqlQuery(domainAccess, queryString, executor.getTimeout()).fetch(executor);
   }
 
   private static void setCompositionAttributes(Composition composition,
@@ -415,6 +410,14 @@ public class EntryAccess extends DataAccess implements I_EntryAccess {
     return result.getValue(ENTRY.ID);
   }
 
+  /**
+   * prepare the record inserted by {@link #commit(Timestamp)} for a batch insert, the id is generated by the database
+   */
+  EntryRecord prepareCommit(Timestamp transactionTime) {
+    entryRecord.setSysTransaction(transactionTime);
+    return entryRecord;
+  }
+
   /**
    * @throws InternalServerException because inherited interface function isn't implemented in this
    *                                 class
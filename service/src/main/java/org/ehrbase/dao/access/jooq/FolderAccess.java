@@ -22,7 +22,6 @@ import com.nedap.archie.rm.support.identification.ObjectId;
 import com.nedap.archie.rm.support.identification.ObjectRef;
 import com.nedap.archie.rm.support.identification.ObjectVersionId;
 import com.nedap.archie.rm.support.identification.UIDBasedId;
-import org.apache.commons.lang3.ArrayUtils;
 import org.ehrbase.api.exception.InternalServerException;
 import org.ehrbase.api.exception.ObjectNotFoundException;
 import org.ehrbase.dao.access.interfaces.I_AuditDetailsAccess;
@@ -35,8 +34,7 @@ import org.ehrbase.dao.access.support.DataAccess;
 import org.ehrbase.dao.access.util.ContributionDef;
 import org.ehrbase.dao.access.util.FolderUtils;
 import org.ehrbase.dao.access.util.TransactionTime;
-import org.ehrbase.jooq.binding.OtherDetailsJsonbBinder;
-import org.ehrbase.jooq.binding.SysPeriodBinder;
+import org.ehrbase.dao.access.util.VersionNumbers;
 import org.ehrbase.jooq.pg.enums.ContributionDataType;
 import org.ehrbase.jooq.pg.tables.FolderHierarchy;
 import org.ehrbase.jooq.pg.tables.records.ContributionRecord;
@@ -49,9 +47,9 @@ import org.joda.time.DateTime;
 import org.jooq.DSLContext;
 import org.jooq.Field;
 import org.jooq.Record;
-import org.jooq.Record8;
 import org.jooq.Result;
 import org.jooq.Table;
+import org.jooq.TableRecord;
 
 import java.sql.Timestamp;
 import java.time.Instant;
@@ -62,22 +60,24 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.UUID;
 
+import static org.ehrbase.jooq.pg.Tables.AUDIT_DETAILS;
 import static org.ehrbase.jooq.pg.Tables.CONTRIBUTION;
 import static org.ehrbase.jooq.pg.Tables.FOLDER;
 import static org.ehrbase.jooq.pg.Tables.FOLDER_HIERARCHY;
 import static org.ehrbase.jooq.pg.Tables.FOLDER_HISTORY;
 import static org.ehrbase.jooq.pg.Tables.FOLDER_ITEMS;
 import static org.ehrbase.jooq.pg.Tables.OBJECT_REF;
+import static org.jooq.impl.DSL.coalesce;
 import static org.jooq.impl.DSL.field;
-import static org.jooq.impl.DSL.name;
 import static org.jooq.impl.DSL.select;
-import static org.jooq.impl.DSL.table;
+import static org.jooq.impl.DSL.val;
 
 /**
  * Persistence operations on Folder.
@@ -158,8 +158,11 @@ public class FolderAccess extends DataAccess implements I_FolderAccess, Comparab
 
         newContribution = folderRecord.getInContribution();
 
-        return this.internalUpdate(Timestamp.valueOf(transactionTime), true, null,
-                oldContribution, newContribution, systemId, committerId, description, changeType);
+        var rows = new FolderTreeRows();
+        boolean result = this.internalUpdate(Timestamp.valueOf(transactionTime), true, null, null,
+                oldContribution, newContribution, systemId, committerId, description, changeType, rows);
+        rows.insert(getContext());
+        return result;
     }
 
     /**
@@ -183,20 +186,25 @@ public class FolderAccess extends DataAccess implements I_FolderAccess, Comparab
         String description = newContributionAccess.getAuditsDescription();
         ContributionChangeType changeType = newContributionAccess.getAuditsChangeType();
 
-        return this.internalUpdate(Timestamp.valueOf(transactionTime), true, null,
-                oldContribution, newContribution, systemId, committerId, description, changeType);
+        var rows = new FolderTreeRows();
+        boolean result = this.internalUpdate(Timestamp.valueOf(transactionTime), true, null, null,
+                oldContribution, newContribution, systemId, committerId, description, changeType, rows);
+        rows.insert(getContext());
+        return result;
     }
 
     @SuppressWarnings("java:S107")
     private Boolean internalUpdate(final Timestamp transactionTime,
                                    boolean rootFolder,
                                    UUID parentFolder,
+                                   UUID rootFolderId,
                                    UUID oldContribution,
                                    UUID newContribution,
                                    UUID systemId,
                                    UUID committerId,
                                    String description,
-                                   ContributionChangeType contributionChangeType) {
+                                   ContributionChangeType contributionChangeType,
+                                   FolderTreeRows rows) {
 
         boolean result;
 
@@ -204,23 +212,28 @@ public class FolderAccess extends DataAccess implements I_FolderAccess, Comparab
         this.setInContribution(newContribution);
 
         // create new folder audit with given values
-        auditDetailsAccess = new AuditDetailsAccess(this);
-        auditDetailsAccess.setSystemId(systemId);
-        auditDetailsAccess.setCommitter(committerId);
-        auditDetailsAccess.setDescription(description);
-        auditDetailsAccess.setChangeType(
+        var newAuditDetailsAccess = new AuditDetailsAccess(this);
+        newAuditDetailsAccess.setSystemId(systemId);
+        newAuditDetailsAccess.setCommitter(committerId);
+        newAuditDetailsAccess.setDescription(description);
+        newAuditDetailsAccess.setChangeType(
                 I_ConceptAccess.fetchContributionChangeType(this, contributionChangeType));
-        UUID auditId = this.auditDetailsAccess.commit();
+        auditDetailsAccess = newAuditDetailsAccess;
+        UUID auditId = rows.add(newAuditDetailsAccess.prepareCommit(TransactionTime.millis())).getId();
 
-        if (rootFolder) {//if it is the root folder preserve the original id, otherwise let the DB provide a new one for the overridden subfolders.
+        // the new sub folders are keyed by the root of the folder tree, which is not necessarily the updated folder
+        UUID treeRootId = rootFolder ? rootFolderOf(getContext(), folderRecord.getId()) : rootFolderId;
+
+        if (rootFolder) {//if it is the root folder preserve the original id, otherwise use a new one for the overridden subfolders.
             folderRecord.setInContribution(newContribution);
             folderRecord.setSysTransaction(transactionTime);
             getContext().attach(folderRecord);
             result = folderRecord.update() > 0;
         } else {
-            // Copy into new instance and attach to DB context.
+            // Copy into new instance, the id is set beforehand since it can not be returned by the batch
             var updatedFolderRecord = new FolderRecord();
 
+            updatedFolderRecord.setId(UUID.randomUUID());
             updatedFolderRecord.setInContribution(newContribution);
             updatedFolderRecord.setName(this.getFolderName());
             updatedFolderRecord.setArchetypeNodeId(this.getFolderArchetypeNodeId());
@@ -230,10 +243,9 @@ public class FolderAccess extends DataAccess implements I_FolderAccess, Comparab
             updatedFolderRecord.setSysPeriod(this.getFolderSysPeriod());
             updatedFolderRecord.setHasAudit(auditId);
 
-            // attach to context DB
-            getContext().attach(updatedFolderRecord);
-            // Save new Folder entry to the database
-            result = updatedFolderRecord.insert() > 0;
+            // Save new Folder entry to the database with the rows of the tree
+            rows.add(updatedFolderRecord);
+            result = true;
             // Finally overwrite original FolderRecord on this FolderAccess instance to have the
             // new data available at service layer. Thus we do not need to re-fetch the updated folder
             // tree from DB
@@ -243,22 +255,20 @@ public class FolderAccess extends DataAccess implements I_FolderAccess, Comparab
             var updatedFhR = new FolderHierarchyRecord();
             updatedFhR.setParentFolder(parentFolder);
             updatedFhR.setChildFolder(updatedFolderRecord.getId());
+            updatedFhR.setRootFolder(treeRootId);
             updatedFhR.setInContribution(newContribution);
             updatedFhR.setSysTransaction(transactionTime);
             updatedFhR.setSysPeriod(folderRecord.getSysPeriod());
-            getContext().attach(updatedFhR);
-            updatedFhR.store();
-
+            rows.add(updatedFhR);
         }
         // Get new folder id for folder items and hierarchy
         UUID updatedFolderId = this.folderRecord.getId();
 
         // Update items -> Save new list of all items in this folder
         this.saveFolderItems(updatedFolderId,
-                oldContribution,
                 newContribution,
                 transactionTime,
-                getContext());
+                rows);
 
         boolean anySubfolderModified = this.getSubfoldersList() // Map of sub folders with UUID
                 .values() // Get all I_FolderAccess entries
@@ -268,35 +278,33 @@ public class FolderAccess extends DataAccess implements I_FolderAccess, Comparab
                                 ((FolderAccess) subfolder).internalUpdate(transactionTime,
                                         false,
                                         updatedFolderId,
+                                        treeRootId,
                                         oldContribution,
                                         newContribution,
                                         systemId,
                                         committerId,
                                         description,
-                                        contributionChangeType)
+                                        contributionChangeType,
+                                        rows)
                         )).reduce((b1, b2) -> b1 || b2).orElse(false);
 
         return result || anySubfolderModified;
     }
 
-    private void saveFolderItems(final UUID folderId, final UUID oldContribution,
-                                 final UUID newContribution, final Timestamp transactionTime, DSLContext context) {
+    private void saveFolderItems(final UUID folderId, final UUID newContribution,
+                                 final Timestamp transactionTime, FolderTreeRows rows) {
 
         for (ObjectRef<?> or : this.getItems()) {
 
             //insert in object_ref
-            ObjectRefRecord orr = new ObjectRefRecord(or.getNamespace(), or.getType(),
+            rows.addObjectRef(new ObjectRefRecord(or.getNamespace(), or.getType(),
                     UUID.fromString(or.getId().getValue()), newContribution, transactionTime,
-                    folderRecord.getSysPeriod());
-            context.attach(orr);
-            orr.store();
+                    folderRecord.getSysPeriod()));
 
             //insert in folder_item
-            FolderItemsRecord fir = new FolderItemsRecord(folderId,
+            rows.add(new FolderItemsRecord(folderId,
                     UUID.fromString(or.getId().getValue()), newContribution, transactionTime,
-                    folderRecord.getSysPeriod());
-            context.attach(fir);
-            fir.store();
+                    folderRecord.getSysPeriod()));
         }
     }
 
@@ -339,107 +347,160 @@ public class FolderAccess extends DataAccess implements I_FolderAccess, Comparab
      */
     @Override
     public UUID commit(LocalDateTime transactionTime, UUID contributionId) {
-
-        this.getFolderRecord().setInContribution(contributionId);
         var inputContributionAccess = I_ContributionAccess.retrieveInstance(this.getDataAccess(),
                 contributionId);
+        UUID creation = I_ConceptAccess.fetchContributionChangeType(this,
+                I_ConceptAccess.ContributionChangeType.CREATION);
+
+        var rows = new FolderTreeRows();
+        UUID folderId = this.prepareCommit(Timestamp.valueOf(transactionTime), inputContributionAccess, creation,
+                null, rows);
+        rows.insert(getContext());
+        return folderId;
+    }
+
+    /**
+     * prepare the rows of this folder and of its sub folders
+     *
+     * @param rootFolderId the root of the folder tree, null if this folder is the root
+     * @return the id of the folder
+     */
+    private UUID prepareCommit(Timestamp transactionTime, I_ContributionAccess inputContributionAccess,
+                               UUID changeType, UUID rootFolderId, FolderTreeRows rows) {
+        UUID contributionId = inputContributionAccess.getId();
+
+        this.getFolderRecord().setInContribution(contributionId);
         // create new folder audit with given values
-        auditDetailsAccess = new AuditDetailsAccess(this);
-        auditDetailsAccess.setSystemId(inputContributionAccess.getAuditsSystemId());
-        auditDetailsAccess.setCommitter(inputContributionAccess.getAuditsCommitter());
-        auditDetailsAccess.setDescription(inputContributionAccess.getAuditsDescription());
-        auditDetailsAccess.setChangeType(I_ConceptAccess.fetchContributionChangeType(this,
-                I_ConceptAccess.ContributionChangeType.CREATION));
-        UUID auditId = this.auditDetailsAccess.commit();
-        this.setAudit(auditId);
-
-        // Save the folder record to database
-        this.getFolderRecord().store();
+        var newAuditDetailsAccess = new AuditDetailsAccess(this);
+        newAuditDetailsAccess.setSystemId(inputContributionAccess.getAuditsSystemId());
+        newAuditDetailsAccess.setCommitter(inputContributionAccess.getAuditsCommitter());
+        newAuditDetailsAccess.setDescription(inputContributionAccess.getAuditsDescription());
+        newAuditDetailsAccess.setChangeType(changeType);
+        auditDetailsAccess = newAuditDetailsAccess;
+        this.setAudit(rows.add(newAuditDetailsAccess.prepareCommit(TransactionTime.millis())).getId());
+
+        // Save the folder record to database, the id is set beforehand since it can not be returned by the batch
+        if (this.getFolderRecord().getId() == null) {
+            this.getFolderRecord().setId(UUID.randomUUID());
+        }
+        rows.add(this.getFolderRecord());
 
         //Save folder items
-        this.saveFolderItems(this.getFolderRecord().getId(), contributionId, contributionId,
-                Timestamp.valueOf(transactionTime), getContext());
+        this.saveFolderItems(this.getFolderRecord().getId(), contributionId, transactionTime, rows);
 
         // Save list of sub folders to database with parent <-> child ID relations
+        UUID treeRootId = rootFolderId != null ? rootFolderId : this.getFolderRecord().getId();
         this.getSubfoldersList().values().forEach(child -> {
-            child.commit(transactionTime, contributionId);
-            FolderHierarchyRecord fhRecord = this.buildFolderHierarchyRecord(
+            UUID childId = ((FolderAccess) child).prepareCommit(transactionTime, inputContributionAccess, changeType,
+                    treeRootId, rows);
+            rows.add(this.buildFolderHierarchyRecord(
                     this.getFolderRecord().getId(),
-                    ((FolderAccess) child).getFolderRecord().getId(),
+                    childId,
+                    treeRootId,
                     contributionId,
-                    Timestamp.valueOf(transactionTime)
-            );
-            fhRecord.store();
+                    transactionTime
+            ));
         });
         return this.getFolderRecord().getId();
-
     }
 
     /**
      * Retrieve instance of {@link I_FolderAccess} with the information needed retrieve the folder and
      * its sub-folders.
+     * <p>
+     * Only the folder tree the folder belongs to is read, by the root key of its parent-child
+     * relations, and only the folders and items of the requested sub tree are loaded. Three statements
+     * are run whatever the depth and the size of the tree.
      *
      * @param domainAccess providing the information about the DB connection.
      * @param folderId     {@link java.util.UUID} of the {@link  com.nedap.archie.rm.directory.Folder}
      *                     to be fetched from the DB.
+     * @param path         names of the sub folders leading from the folder to the one to retrieve,
+     *                     none to retrieve the folder itself.
      * @return the {@link I_FolderAccess} that provides DB access to the {@link
-     * com.nedap.archie.rm.directory.Folder} that corresponds to the provided folderId param.
+     * com.nedap.archie.rm.directory.Folder} that corresponds to the provided folderId param and path.
      */
     public static I_FolderAccess retrieveInstanceForExistingFolder(I_DomainAccess domainAccess,
-                                                                   UUID folderId) {
-
-        // 1 - retrieve CTE as a table that contains all the rows that allow to infer each parent-child relationship
-        Table<?> sfTable = table(
-                select()
-                        .from(FOLDER_HIERARCHY));
-
-        Table<?> folderTable = table(
-                select()
-                        .from(FOLDER)).as("t_folder1");
-        Table<?> folderTable2 = table(
-                select()
-                        .from(FOLDER)).as("t_folder2");
-
-        Table<?> initialTable = table(
-                select()
-                        .from(FOLDER_HIERARCHY)
-                        .where(
-                                FOLDER_HIERARCHY.PARENT_FOLDER.eq(folderId)));
-
-        Field<UUID> subfolderChildFolder = field("subfolders.{0}",
-                FOLDER_HIERARCHY.CHILD_FOLDER.getDataType(),
-                FOLDER_HIERARCHY.CHILD_FOLDER.getUnqualifiedName());
-        Result<Record> folderSelectedRecordSub = domainAccess.getContext().withRecursive(
-                SUBFOLDERS).as(
-                select(ArrayUtils.addAll(initialTable.fields(), folderTable.fields())).
-                        from(initialTable).
-                        leftJoin(folderTable)
-                        .on(initialTable.field(PARENT_FOLDER, FOLDER_HIERARCHY.PARENT_FOLDER.getType()).eq(
-                                folderTable.field("id", FOLDER.ID.getType()))).
-                        union(
-                                (select(ArrayUtils.addAll(sfTable.fields(), folderTable2.fields())).from(sfTable).
-                                        innerJoin(SUBFOLDERS)
-                                        .on(sfTable.field(PARENT_FOLDER, FOLDER_HIERARCHY.PARENT_FOLDER.getType()).
-                                                eq(subfolderChildFolder))).leftJoin(folderTable2).on(
-                                        folderTable2.field("id", FOLDER.ID.getType()).eq(subfolderChildFolder)))
-        ).select().from(table(name(SUBFOLDERS))).fetch();
-
-        // 2 - Reconstruct hierarchical structure from DB result
-        Map<UUID, Map<UUID, I_FolderAccess>> fHierarchyMap = new TreeMap<>();
-        for (Record rec : folderSelectedRecordSub) {
-
-            //1-create a folder access for the record if needed
-            if (!fHierarchyMap.containsKey(rec.getValue(PARENT_FOLDER, UUID.class))) {
-                fHierarchyMap.put((UUID) rec.getValue(PARENT_FOLDER), new TreeMap<>());
+                                                                   UUID folderId, String... path) {
+        DSLContext context = domainAccess.getContext();
+
+        // 1 - the parent-child relations of the folder tree, with the names of the children for the path look-up
+        Map<UUID, Map<UUID, String>> children = new HashMap<>();
+        context.select(FOLDER_HIERARCHY.PARENT_FOLDER, FOLDER_HIERARCHY.CHILD_FOLDER, FOLDER.NAME)
+                .from(FOLDER_HIERARCHY)
+                .join(FOLDER).on(FOLDER.ID.eq(FOLDER_HIERARCHY.CHILD_FOLDER))
+                .where(FOLDER_HIERARCHY.ROOT_FOLDER.eq(rootFolderField(folderId)))
+                .fetch()
+                .forEach(rec -> children.computeIfAbsent(rec.value1(), parent -> new TreeMap<>())
+                        .put(rec.value2(), rec.value3()));
+
+        // 2 - follow the path
+        UUID targetId = folderId;
+        for (String folderName : path) {
+            targetId = children.getOrDefault(targetId, Map.of()).entrySet().stream()
+                    .filter(child -> folderName.equals(child.getValue()))
+                    .map(Map.Entry::getKey)
+                    .findFirst()
+                    .orElseThrow(() -> new ObjectNotFoundException("DIRECTORY", "Folder at path '" + folderName + "' could not be found."));
+        }
+
+        // 3 - the sub tree, parents before their children
+        List<UUID> subtree = new ArrayList<>();
+        subtree.add(targetId);
+        for (var i = 0; i < subtree.size(); i++) {
+            subtree.addAll(children.getOrDefault(subtree.get(i), Map.of()).keySet());
+        }
+
+        Map<UUID, FolderRecord> folderRecords = context.selectFrom(FOLDER)
+                .where(FOLDER.ID.in(subtree))
+                .fetchMap(FOLDER.ID);
+
+        Map<UUID, List<ObjectRef<?>>> items = new HashMap<>();
+        context.select(FOLDER_ITEMS.FOLDER_ID)
+                .select(OBJECT_REF.fields())
+                .from(FOLDER_ITEMS)
+                .join(OBJECT_REF).on(OBJECT_REF.ID.eq(FOLDER_ITEMS.OBJECT_REF_ID)
+                        .and(OBJECT_REF.IN_CONTRIBUTION.eq(FOLDER_ITEMS.IN_CONTRIBUTION)))
+                .where(FOLDER_ITEMS.FOLDER_ID.in(subtree))
+                .fetch()
+                .forEach(rec -> items.computeIfAbsent(rec.get(FOLDER_ITEMS.FOLDER_ID), id -> new ArrayList<>())
+                        .add(parseObjectRefRecordIntoObjectRef(rec.into(OBJECT_REF))));
+
+        // 4 - assemble the hierarchy
+        Map<UUID, FolderAccess> folderAccesses = new HashMap<>();
+        for (UUID id : subtree) {
+            FolderRecord folderSelectedRecord = folderRecords.get(id);
+            if (folderSelectedRecord == null) {
+                throw new ObjectNotFoundException(
+                        "folder", "Folder with id " + id + " could not be found"
+                );
             }
-            fHierarchyMap.get(rec.getValue(PARENT_FOLDER, UUID.class))
-                    .put((UUID) rec.getValue(CHILD_FOLDER), buildFolderAccessFromFolderId((UUID) rec.getValue(
-                            CHILD_FOLDER), domainAccess, folderSelectedRecordSub));
+            var folderAccess = new FolderAccess(domainAccess);
+            folderAccess.folderRecord = folderSelectedRecord;
+            folderAccess.getItems().addAll(items.getOrDefault(id, List.of()));
+            folderAccesses.put(id, folderAccess);
+        }
+        for (UUID id : subtree) {
+            children.getOrDefault(id, Map.of()).keySet()
+                    .forEach(child -> folderAccesses.get(id).subfoldersList.put(child, folderAccesses.get(child)));
         }
 
-        // 3 - populate result and return
-        return FolderAccess.buildFolderAccessHierarchy(fHierarchyMap, folderId, null,
-                folderSelectedRecordSub, domainAccess);
+        return folderAccesses.get(targetId);
+    }
+
+    /**
+     * @param folderId a folder
+     * @return the root of the folder tree the folder belongs to: the folder itself when it is not a sub folder
+     */
+    private static Field<UUID> rootFolderField(UUID folderId) {
+        FolderHierarchy relation = FOLDER_HIERARCHY.as("relation");
+        return coalesce(
+                field(select(relation.ROOT_FOLDER).from(relation).where(relation.CHILD_FOLDER.eq(folderId)).limit(1)),
+                val(folderId));
+    }
+
+    private static UUID rootFolderOf(DSLContext context, UUID folderId) {
+        return context.select(rootFolderField(folderId)).fetchOne(0, UUID.class);
     }
 
     /**
@@ -465,7 +526,6 @@ public class FolderAccess extends DataAccess implements I_FolderAccess, Comparab
 
         // get whole "version map" of each matching folder and do fine-grain check for matching contribution
         // precondition: each UUID in `folders` set is unique, so for each the "version map" is only created once below
-        // (meta: can't do that as jooq query, because the specific version number isn't stored in DB)
         Set<ObjectVersionId> result = new HashSet<>();
 
         for (UUID folderId : folders) {
@@ -509,31 +569,20 @@ public class FolderAccess extends DataAccess implements I_FolderAccess, Comparab
                                                               UUID folderId) {
         Map<Record, Integer> versionMap = new HashMap<>();
 
-        // create counter with highest version, to keep track of version number and allow check in the end
-        Integer versionCounter = getLastVersionNumber(domainAccess, folderId);
-
         // fetch matching entry
         FolderRecord rec = domainAccess.getContext().fetchOne(FOLDER, FOLDER.ID.eq(folderId));
         if (rec != null) {
-            versionMap.put(rec, versionCounter);
-
-            versionCounter--;
+            versionMap.put(rec, rec.getVersion());
         }
 
         // if composition was removed (i.e. from "COMPOSITION" table) *or* other versions are existing
         Result<FolderHistoryRecord> historyRecords = domainAccess.getContext()
                 .selectFrom(FOLDER_HISTORY)
                 .where(FOLDER_HISTORY.ID.eq(folderId))
-                .orderBy(FOLDER_HISTORY.SYS_TRANSACTION.desc())
                 .fetch();
 
         for (FolderHistoryRecord historyRecord : historyRecords) {
-            versionMap.put(historyRecord, versionCounter);
-            versionCounter--;
-        }
-
-        if (versionCounter != 0) {
-            throw new InternalServerException("Version Map generation failed");
+            versionMap.put(historyRecord, historyRecord.getVersion());
         }
 
         return versionMap;
@@ -662,6 +711,8 @@ public class FolderAccess extends DataAccess implements I_FolderAccess, Comparab
         newRecord.setActive(folderRecord.getActive());
         newRecord.setDetails(folderRecord.getDetails());
         newRecord.setHasAudit(delAuditId);
+        // the deleted row was moved to _history, the version documenting the deletion follows it
+        newRecord.setVersion(VersionNumbers.FOLDERS.last(getDataAccess().getContext(), folderRecord.getId()) + 1);
         newRecord.setSysTransaction(TransactionTime.millis());
         newRecord.setSysPeriod(new AbstractMap.SimpleEntry<>(OffsetDateTime.now(), null));
         if (newRecord.insert() != 1) // commit and throw error if nothing was inserted into DB
@@ -670,133 +721,6 @@ public class FolderAccess extends DataAccess implements I_FolderAccess, Comparab
         }
     }
 
-    /**
-     * Create a new FolderAccess that contains the full hierarchy of its corresponding {@link
-     * I_FolderAccess} children that represents the subfolders.
-     *
-     * @param fHierarchyMap           {@link java.util.Map} containing as key the UUID of each Folder,
-     *                                and as value an internal Map. For the internal Map the key is
-     *                                the the UUID of a child {@link  com.nedap.archie.rm.directory.Folder},
-     *                                and the value is the {@link I_FolderAccess} for enabling DB
-     *                                access to this child.
-     * @param currentFolder           {@link java.util.UUID} of the current {@link
-     *                                com.nedap.archie.rm.directory.Folder} to treat in the current
-     *                                recursive call of the method.
-     * @param parentFa                the parent {@link I_FolderAccess} that corresponds to the parent
-     *                                {@link  com.nedap.archie.rm.directory.Folder} of the {@link
-     *                                com.nedap.archie.rm.directory.Folder} identified as current.
-     * @param folderSelectedRecordSub {@link org.jooq.Result} containing the Records that represent
-     *                                the rows to retrieve from the DB corresponding to the children
-     *                                hierarchy.
-     * @param domainAccess            containing the information of the DB connection.
-     * @return I_FolderAccess populated with its appropriate subfolders as FolderAccess objects.
-     */
-    private static I_FolderAccess buildFolderAccessHierarchy(
-            final Map<UUID, Map<UUID, I_FolderAccess>> fHierarchyMap, final UUID currentFolder,
-            final I_FolderAccess parentFa, final Result<Record> folderSelectedRecordSub,
-            final I_DomainAccess domainAccess) {
-        if ((parentFa != null) && (parentFa.getSubfoldersList().containsKey(currentFolder))) {
-            return parentFa.getSubfoldersList().get(currentFolder);
-        }
-        I_FolderAccess folderAccess = buildFolderAccessFromFolderId(currentFolder, domainAccess,
-                folderSelectedRecordSub);
-        if (parentFa != null) {
-            parentFa.getSubfoldersList().put(currentFolder, folderAccess);
-        }
-        if (fHierarchyMap.get(currentFolder) != null) {//if not leave node call children
-
-            for (UUID newChild : fHierarchyMap.get(currentFolder).keySet()) {
-                buildFolderAccessHierarchy(fHierarchyMap, newChild, folderAccess, folderSelectedRecordSub,
-                        domainAccess);
-            }
-        }
-        return folderAccess;
-    }
-
-    /**
-     * Create a new {@link FolderAccess} from a {@link org.jooq.Record} DB record
-     *
-     * @param folderRecord record containing all the information to build one folder-subfolder
-     *                     relationship.
-     * @param domainAccess containing the DB connection information.
-     * @return FolderAccess instance
-     */
-    private static FolderAccess buildFolderAccessFromGenericRecord(final Record folderRecord,
-                                                                   final I_DomainAccess domainAccess) {
-
-        UUID folderId = folderRecord.get(org.ehrbase.jooq.pg.tables.Folder.FOLDER.ID);
-        UUID contributionId = folderRecord.get(org.ehrbase.jooq.pg.tables.Folder.FOLDER.IN_CONTRIBUTION);
-
-        FolderAccess folderAccess = new FolderAccess(domainAccess);
-        folderAccess.folderRecord = new FolderRecord();
-        folderAccess.setFolderId(folderId);
-        folderAccess.setInContribution(contributionId);
-        folderAccess.setFolderName(folderRecord.get(org.ehrbase.jooq.pg.tables.Folder.FOLDER.NAME));
-        folderAccess.setFolderNArchetypeNodeId(folderRecord.get(org.ehrbase.jooq.pg.tables.Folder.FOLDER.ARCHETYPE_NODE_ID));
-        folderAccess.setIsFolderActive(folderRecord.get(org.ehrbase.jooq.pg.tables.Folder.FOLDER.ACTIVE));
-        folderAccess.setFolderDetails(folderRecord.get(org.ehrbase.jooq.pg.tables.Folder.FOLDER.DETAILS.getName(), new OtherDetailsJsonbBinder().converter()));
-        folderAccess.setFolderSysTransaction(folderRecord.get(org.ehrbase.jooq.pg.tables.Folder.FOLDER.SYS_TRANSACTION));
-        folderAccess.setFolderSysPeriod(folderRecord.get(org.ehrbase.jooq.pg.tables.Folder.FOLDER.SYS_PERIOD.getName(), new SysPeriodBinder().converter()));
-
-        folderAccess.getItems()
-                .addAll(FolderAccess.retrieveItemsByFolderAndContributionId(folderId, contributionId, domainAccess));
-
-        return folderAccess;
-    }
-
-    /**
-     * Create a new FolderAccess from a {@link FolderRecord} DB record
-     *
-     * @param folderRecord containing the information of a {@link  com.nedap.archie.rm.directory.Folder}
-     *                     in the DB.
-     * @param domainAccess containing the DB connection information.
-     * @return FolderAccess instance corresponding to the org.ehrbase.jooq.pg.tables.records.FolderRecord
-     * provided.
-     */
-    private static FolderAccess buildFolderAccessFromFolderRecord(final FolderRecord folderRecord,
-                                                                  final I_DomainAccess domainAccess) {
-        var folderAccess = new FolderAccess(domainAccess);
-        folderAccess.folderRecord = folderRecord;
-        folderAccess.getItems()
-                .addAll(FolderAccess.retrieveItemsByFolderAndContributionId(folderRecord.getId(),
-                        folderRecord.getInContribution(),
-                        domainAccess));
-        return folderAccess;
-    }
-
-    /**
-     * Given a UUID for a folder creates the corresponding FolderAccess from the information conveyed
-     * by the {@link org.jooq.Result} provided. Alternatively queries the DB if the information needed
-     * is not in {@link org.jooq.Result}. * @param id of the folder to define a {@link FolderAccess}
-     * from. * @param {@link org.jooq.Result} containing the Records that represent the rows to
-     * retrieve from the DB corresponding to the children hierarchy.
-     *
-     * @return a FolderAccess corresponding to the Folder id provided
-     */
-    private static FolderAccess buildFolderAccessFromFolderId(final UUID id,
-                                                              final I_DomainAccess domainAccess, final Result<Record> folderSelectedRecordSub) {
-
-        for (Record current : folderSelectedRecordSub) {
-            //if the FOLDER items were returned in the recursive query use them and avoid a DB transaction
-            if (current.getValue(PARENT_FOLDER).equals(id)) {
-
-                return buildFolderAccessFromGenericRecord(current, domainAccess);
-            }
-        }
-
-        //if no data from the Folder has been already recovered for the id of the folder, then query the DB for it.
-        FolderRecord folderSelectedRecord = domainAccess.getContext().selectFrom(FOLDER)
-                .where(FOLDER.ID.eq(id)).fetchOne();
-
-        if (folderSelectedRecord == null || folderSelectedRecord.size() < 1) {
-            throw new ObjectNotFoundException(
-                    "folder", "Folder with id " + id + " could not be found"
-            );
-        }
-
-        return buildFolderAccessFromFolderRecord(folderSelectedRecord, domainAccess);
-    }
-
     /**
      * Builds the FolderAccess with the collection of subfolders empty.
      *
@@ -842,46 +766,6 @@ public class FolderAccess extends DataAccess implements I_FolderAccess, Comparab
         return folderAccessInstance;
     }
 
-    /**
-     * Retrieves a list containing the items as ObjectRefs of the folder corresponding to the id
-     * provided.
-     *
-     * @param folderId       of the FOLDER that the items correspond to.
-     * @param inContribution contribution that establishes the reference between a FOLDER and its
-     *                       item.
-     * @param domainAccess   connection DB data.
-     * @return
-     */
-    private static List<ObjectRef<?>> retrieveItemsByFolderAndContributionId(UUID folderId,
-                                                                             UUID inContribution, I_DomainAccess domainAccess) {
-        Result<Record> retrievedRecords = domainAccess.getContext().with("folderItemsSelect").as(
-                        select(FOLDER_ITEMS.OBJECT_REF_ID.as("object_ref_id"),
-                                FOLDER_ITEMS.IN_CONTRIBUTION.as("item_in_contribution"))
-                                .from(FOLDER_ITEMS)
-                                .where(FOLDER_ITEMS.FOLDER_ID.eq(folderId)))
-                .select()
-                .from(OBJECT_REF, table(name("folderItemsSelect")))
-
-                .where(field(name("object_ref_id"), FOLDER_ITEMS.OBJECT_REF_ID.getType()).eq(OBJECT_REF.ID)
-                        .and(field(name("item_in_contribution"), FOLDER_ITEMS.IN_CONTRIBUTION.getType()).eq(
-                                OBJECT_REF.IN_CONTRIBUTION))).fetch();
-
-        List<ObjectRef<?>> result = new ArrayList<>();
-        for (Record recordRecord : retrievedRecords) {
-            Record8<String, String, UUID, UUID, Timestamp, AbstractMap.SimpleEntry<OffsetDateTime, OffsetDateTime>, UUID, UUID> recordParam = (Record8<String, String, UUID, UUID, Timestamp, AbstractMap.SimpleEntry<OffsetDateTime, OffsetDateTime>, UUID, UUID>) recordRecord;
-            ObjectRefRecord objectRef = new ObjectRefRecord();
-            objectRef.setIdNamespace(recordParam.value1());
-            objectRef.setType(recordParam.value2());
-            objectRef.setId(recordParam.value3());
-            objectRef.setInContribution(recordParam.value4());
-            objectRef.setSysTransaction(recordParam.value5());
-            objectRef.setSysPeriod(new SysPeriodBinder().converter().from(recordParam.value6()));
-            objectRef.setId(recordParam.value7());
-            result.add(parseObjectRefRecordIntoObjectRef(objectRef));
-        }
-        return result;
-    }
-
     /**
      * Transforms a ObjectRef DB record into a Reference Model object.
      *
@@ -985,6 +869,7 @@ public class FolderAccess extends DataAccess implements I_FolderAccess, Comparab
     /**
      * @param parentFolder   identifier.
      * @param childFolder    identifier to define the {@link FolderHierarchyRecord} from.
+     * @param rootFolder     identifier of the root of the folder tree.
      * @param inContribution contribution that the {@link  com.nedap.archie.rm.directory.Folder}
      *                       refers to.
      * @param sysTransaction date of the transaction.
@@ -992,10 +877,12 @@ public class FolderAccess extends DataAccess implements I_FolderAccess, Comparab
      * childFolder param.
      */
     private FolderHierarchyRecord buildFolderHierarchyRecord(final UUID parentFolder,
-                                                             final UUID childFolder, final UUID inContribution, final Timestamp sysTransaction) {
+                                                             final UUID childFolder, final UUID rootFolder,
+                                                             final UUID inContribution, final Timestamp sysTransaction) {
         FolderHierarchyRecord fhRecord = getContext().newRecord(FolderHierarchy.FOLDER_HIERARCHY);
         fhRecord.setParentFolder(parentFolder);
         fhRecord.setChildFolder(childFolder);
+        fhRecord.setRootFolder(rootFolder);
         fhRecord.setInContribution(inContribution);
         fhRecord.setSysTransaction(sysTransaction);
         //fhRecord.setSysPeriod(sysPeriod); sys period can be left to null so the system sets it for the temporal tables.
@@ -1003,9 +890,8 @@ public class FolderAccess extends DataAccess implements I_FolderAccess, Comparab
     }
 
     /**
-     * Returns the last version number of a given folder by counting all previous versions of a given
-     * folder id. If there are no previous versions in the history table the version number will be 1.
-     * Otherwise the current version equals the count of entries in the folder history table plus 1.
+     * Returns the last version number of a given folder, as stored with the folder or, for a deleted
+     * folder, with its latest history entry.
      *
      * @param domainAccess - Database connection access context
      * @param folderId     - ObjectVersionUid of the folder to check for the last version
@@ -1021,16 +907,8 @@ public class FolderAccess extends DataAccess implements I_FolderAccess, Comparab
 
     // whole ObjectVersionId is just not necessary for DB query, so this works on access layer (without info like the nodeName), too.
     private static Integer getLastVersionNumber(I_DomainAccess domainAccess, UUID folderUuid) {
-
-        if (!hasPreviousVersion(domainAccess, folderUuid)) {
-            return 1;
-        }
-        // Get number of entries as the history table of folders
-        int versionCount = domainAccess
-                .getContext()
-                .fetchCount(FOLDER_HISTORY, FOLDER_HISTORY.ID.eq(folderUuid));
-        // Latest version will be entries plus actual entry count (always 1)
-        return versionCount + 1;
+        // a folder always has at least one version
+        return Math.max(VersionNumbers.FOLDERS.last(domainAccess.getContext(), folderUuid), 1);
     }
 
 
@@ -1050,10 +928,9 @@ public class FolderAccess extends DataAccess implements I_FolderAccess, Comparab
     }
 
     /**
-     * Evaluates the version for a folder at a given timestamp by counting all rows from folder
-     * history with root folder id and a sys_period timestamp before or at given timestamp value as
-     * also from the current folder entry if the sys_period provided is also newer than the sys_period
-     * of the current folder.
+     * Evaluates the version for a folder at a given timestamp, i.e. the version stored with the
+     * current folder entry if its sys_transaction is before or at the given timestamp, otherwise with
+     * the latest folder history entry before or at the timestamp.
      *
      * @param domainAccess   - Database access instance
      * @param rootFolderId   - Root folder id
@@ -1065,35 +942,15 @@ public class FolderAccess extends DataAccess implements I_FolderAccess, Comparab
 
         UUID folderUuid = FolderUtils.extractUuidFromObjectVersionId(rootFolderId);
 
-        // Check if the timestamp also includes the current folder
-        int folderCount = domainAccess
-                .getContext()
-                .fetchCount(FOLDER,
-                        FOLDER.ID.equal(folderUuid).and(FOLDER.SYS_TRANSACTION.lessOrEqual(sysTransaction)));
-
-        // Count all history entries for the root folder
-        int folderHistoryCount = domainAccess
-                .getContext()
-                .fetchCount(FOLDER_HISTORY, FOLDER_HISTORY.ID.equal(folderUuid)
-                        .and(FOLDER_HISTORY.SYS_TRANSACTION.lessOrEqual(sysTransaction)));
-
-        if (folderHistoryCount <= 0) {
-            // No history entries found
-
-            if (folderCount <= 0) {
-                // Also no current entries
-                throw new ObjectNotFoundException(
-                        "directory",
-                        "No folder found for " + rootFolderId + " at time " + sysTransaction.toLocalDateTime()
-                                .toString()
-                );
-            }
-
-            return folderCount;
+        int version = VersionNumbers.FOLDERS.atTime(domainAccess.getContext(), folderUuid, sysTransaction);
+        if (version == 0) {
+            throw new ObjectNotFoundException(
+                    "directory",
+                    "No folder found for " + rootFolderId + " at time " + sysTransaction.toLocalDateTime()
+                            .toString()
+            );
         }
-
-        // If we found entries in both tables return the sum. If there is no current entry the count will be 0
-        return folderHistoryCount + folderCount;
+        return version;
     }
 
     public static Timestamp getTimestampForVersion(I_DomainAccess domainAccess,
@@ -1104,22 +961,21 @@ public class FolderAccess extends DataAccess implements I_FolderAccess, Comparab
         int currentVersion = FolderAccess.getVersionNumberAtTime(domainAccess, rootFolderId, timestamp);
 
         if (currentVersion > version) {
-            // Select number of rows from folder history record that are required
-            Result<FolderHistoryRecord> folderHistoryRecords = domainAccess
+            // Return sys_transaction timestamp of the history entry of the version if existing
+            Timestamp versionTimestamp = domainAccess
                     .getContext()
-                    .selectFrom(FOLDER_HISTORY)
+                    .select(FOLDER_HISTORY.SYS_TRANSACTION)
+                    .from(FOLDER_HISTORY)
                     .where(FOLDER_HISTORY.ID.equal(rootFolderUuid))
-                    .orderBy(FOLDER_HISTORY.SYS_TRANSACTION.desc())
-                    .limit(currentVersion - version)
-                    .fetch();
-            // Return sys_transaction timestamp of last entry if existing
-            if (!folderHistoryRecords.isEmpty()) {
-                timestamp = folderHistoryRecords.get(folderHistoryRecords.size() - 1)
-                        .get(FOLDER_HISTORY.SYS_TRANSACTION);
+                    .and(FOLDER_HISTORY.VERSION.equal(version))
+                    .limit(1)
+                    .fetchOne(FOLDER_HISTORY.SYS_TRANSACTION);
+            if (versionTimestamp != null) {
+                timestamp = versionTimestamp;
             }
         }
-        // The timestamp now contains either the last entry found in folder history or the current time if the desired
-        // version matches or is greater than the latest.
+        // The timestamp now contains either the entry of the version found in folder history or the current time if
+        // the desired version matches or is greater than the latest.
         return timestamp;
     }
 
@@ -1284,4 +1140,42 @@ public class FolderAccess extends DataAccess implements I_FolderAccess, Comparab
             super(value);
         }
     }
+
+    /**
+     * Rows written for a folder tree on create and update. They are inserted with one JDBC batch per
+     * table, in the order of the foreign keys, instead of one round trip per row.
+     */
+    private static class FolderTreeRows {
+
+        private final Map<Table<?>, List<TableRecord<?>>> records = new LinkedHashMap<>();
+        private final Set<UUID> objectRefs = new HashSet<>();
+
+        FolderTreeRows() {
+            List.of(AUDIT_DETAILS, FOLDER, OBJECT_REF, FOLDER_ITEMS, FOLDER_HIERARCHY)
+                    .forEach(table -> records.put(table, new ArrayList<>()));
+        }
+
+        <R extends TableRecord<?>> R add(R record) {
+            records.get(record.getTable()).add(record);
+            return record;
+        }
+
+        /**
+         * all rows of the tree are in the same contribution: an object referenced by several folders
+         * has a single object_ref row
+         */
+        void addObjectRef(ObjectRefRecord objectRef) {
+            if (objectRefs.add(objectRef.getId())) {
+                add(objectRef);
+            }
+        }
+
+        void insert(DSLContext context) {
+            records.values().stream()
+                    .filter(tableRecords -> !tableRecords.isEmpty())
+                    .forEach(tableRecords -> context.batchInsert(tableRecords).execute());
+            records.values().forEach(List::clear);
+            objectRefs.clear();
+        }
+    }
 }
\ No newline at end of file
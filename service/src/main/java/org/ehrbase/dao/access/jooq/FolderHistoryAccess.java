@@ -24,7 +24,6 @@ import static org.ehrbase.jooq.pg.Tables.FOLDER_ITEMS;
 import static org.ehrbase.jooq.pg.Tables.FOLDER_ITEMS_HISTORY;
 import static org.ehrbase.jooq.pg.Tables.OBJECT_REF;
 import static org.ehrbase.jooq.pg.Tables.OBJECT_REF_HISTORY;
-import static org.jooq.impl.DSL.count;
 import static org.jooq.impl.DSL.field;
 import static org.jooq.impl.DSL.max;
 import static org.jooq.impl.DSL.name;
@@ -55,6 +54,7 @@ import org.ehrbase.dao.access.interfaces.I_FolderAccess;
 import org.ehrbase.dao.access.support.DataAccess;
 import org.ehrbase.dao.access.util.ContributionDef;
 import org.ehrbase.dao.access.util.FolderUtils;
+import org.ehrbase.dao.access.util.VersionNumbers;
 import org.ehrbase.jooq.binding.OtherDetailsJsonbBinder;
 import org.ehrbase.jooq.binding.SysPeriodBinder;
 import org.ehrbase.jooq.pg.tables.records.FolderRecord;
@@ -324,24 +324,16 @@ public class FolderHistoryAccess extends DataAccess implements I_FolderAccess,
   }
 
   /**
-   * Returns the last version number of a given folder by counting all previous versions of a given
-   * folder id. If there are no previous versions in the history table the version number will be 1.
-   * Otherwise the current version equals the count of entries in the folder history table plus 1.
+   * Returns the last version number of a given folder, as stored with the folder or, for a deleted
+   * folder, with its latest history entry.
    *
    * @param domainAccess - Database connection access context
    * @param folderId     - UUID of the folder to check for the last version
    * @return Latest version number for the folder
    */
   public static Integer getLastVersionNumber(I_DomainAccess domainAccess, UUID folderId) {
-
-    if (!hasPreviousVersion(domainAccess, folderId)) {
-      return 1;
-    }
-    // Get number of entries as the history table of folders
-    int versionCount = domainAccess.getContext()
-        .fetchCount(FOLDER_HISTORY, FOLDER_HISTORY.ID.eq(folderId));
-    // Latest version will be entries plus actual entry count (always 1)
-    return versionCount + 1;
+    // a folder always has at least one version
+    return Math.max(VersionNumbers.FOLDERS.last(domainAccess.getContext(), folderId), 1);
   }
 
   /**
@@ -510,30 +502,13 @@ public class FolderHistoryAccess extends DataAccess implements I_FolderAccess,
     if (timeCommitted == null) {
       return getLastVersionNumber(domainAccess, vFolderUid);
     }
-    //get the latest FOLDER time (available in ehr.folder) table
-    Record result;
+    int versionComHist;
     try {
-      result = domainAccess.getContext().select(max(FOLDER.SYS_TRANSACTION).as("mostRecentInTable"))
-          .from(FOLDER).where(FOLDER.ID.eq(vFolderUid)).fetchOne();
+      versionComHist = VersionNumbers.FOLDERS.atTime(domainAccess.getContext(), vFolderUid,
+          timeCommitted);
     } catch (RuntimeException e) {  // generalize SQL exceptions
       throw new InternalServerException("Problem with SQL statement or input", e);
     }
-    Timestamp latestCompoTime = (Timestamp) result.get("mostRecentInTable");
-
-    //get the latest version (if more than one) time (available in ehr.FOLDER_history) table
-    Record result2;
-    try {
-      result2 = domainAccess.getContext().select(count().as("countVersionInTable")).from(FOLDER)
-          .where(FOLDER_HISTORY.SYS_TRANSACTION.lessOrEqual(timeCommitted)
-              .and(FOLDER_HISTORY.ID.eq(vFolderUid))).fetchOne();
-    } catch (RuntimeException e) { // generalize SQL exceptions
-      throw new InternalServerException("Problem with SQL statement or input", e);
-    }
-    int versionComHist = (int) result2.get("countVersionInTable");
-    if (timeCommitted.compareTo(latestCompoTime)
-        >= 0) {//if the timestamp is after or equal to the sys_transaction of the latest folder available, add one since its version has not been counted for being the one stored in the ehr.folder table
-      versionComHist++;
-    }
     if (versionComHist == 0) {
       throw new ObjectNotFoundException("FOLDER VERSION",
           "There are no versions available prior to date " + timeCommitted
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.dao.access.jooq;
+
+import com.nedap.archie.rm.datatypes.CodePhrase;
+import com.nedap.archie.rm.datavalues.DvCodedText;
+import com.nedap.archie.rm.datavalues.DvText;
+import com.nedap.archie.rm.datavalues.quantity.datetime.DvDateTime;
+import com.nedap.archie.rm.generic.AuditDetails;
+import com.nedap.archie.rm.generic.PartyProxy;
+import com.nedap.archie.rm.generic.RevisionHistory;
+import com.nedap.archie.rm.generic.RevisionHistoryItem;
+import com.nedap.archie.rm.support.identification.ObjectVersionId;
+import com.nedap.archie.rm.support.identification.TerminologyId;
+import org.ehrbase.dao.access.interfaces.I_ConceptAccess;
+import org.ehrbase.dao.access.interfaces.I_DomainAccess;
+import org.ehrbase.dao.access.jooq.party.PersistedPartyProxy;
+import org.ehrbase.jooq.pg.tables.records.AuditDetailsRecord;
+import org.ehrbase.jooq.pg.tables.records.IdentifierRecord;
+import org.ehrbase.jooq.pg.tables.records.PartyIdentifiedRecord;
+import org.jooq.Field;
+import org.jooq.Record3;
+import org.jooq.Select;
+import org.jooq.Table;
+import org.jooq.TableField;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.ehrbase.jooq.pg.Tables.ATTESTATION;
+import static org.ehrbase.jooq.pg.Tables.AUDIT_DETAILS;
+import static org.ehrbase.jooq.pg.Tables.COMPOSITION;
+import static org.ehrbase.jooq.pg.Tables.COMPOSITION_HISTORY;
+import static org.ehrbase.jooq.pg.Tables.IDENTIFIER;
+import static org.ehrbase.jooq.pg.Tables.PARTY_IDENTIFIED;
+import static org.ehrbase.jooq.pg.Tables.STATUS;
+import static org.ehrbase.jooq.pg.Tables.STATUS_HISTORY;
+import static org.jooq.impl.DSL.select;
+
+/**
+ * Build the revision history of a versioned object from the audit metadata of its versions only: the version bodies
+ * are not loaded. Three statements are run whatever the number of versions:
+ * <ol>
+ *     <li>the current and history rows joined with the audit of each version</li>
+ *     <li>the attestations of the versions joined with their audits, if any version is attested</li>
+ *     <li>the committers joined with their identifiers</li>
+ * </ol>
+ */
+public final class RevisionHistoryQuery {
+
+    private static final Field<Integer> VERSION = COMPOSITION.VERSION.as("version");
+    private static final Field<UUID> HAS_AUDIT = COMPOSITION.HAS_AUDIT.as("has_audit");
+    private static final Field<UUID> ATTESTATION_REF = COMPOSITION.ATTESTATION_REF.as("attestation_ref");
+
+    private RevisionHistoryQuery() {
+    }
+
+    /**
+     * @param domainAccess  SQL context
+     * @param compositionId the versioned composition
+     * @param node          the node name of the version ids
+     * @return the revision history, without items if the composition does not exist
+     */
+    public static RevisionHistory ofComposition(I_DomainAccess domainAccess, UUID compositionId, String node) {
+        return build(domainAccess, compositionId, node,
+                versions(COMPOSITION.ID, COMPOSITION.VERSION, COMPOSITION.HAS_AUDIT, COMPOSITION.ATTESTATION_REF, compositionId)
+                        .unionAll(versions(COMPOSITION_HISTORY.ID, COMPOSITION_HISTORY.VERSION, COMPOSITION_HISTORY.HAS_AUDIT,
+                                COMPOSITION_HISTORY.ATTESTATION_REF, compositionId)));
+    }
+
+    /**
+     * @param domainAccess SQL context
+     * @param statusId     the versioned EHR_STATUS
+     * @param node         the node name of the version ids
+     * @return the revision history, without items if the status does not exist
+     */
+    public static RevisionHistory ofStatus(I_DomainAccess domainAccess, UUID statusId, String node) {
+        return build(domainAccess, statusId, node,
+                versions(STATUS.ID, STATUS.VERSION, STATUS.HAS_AUDIT, STATUS.ATTESTATION_REF, statusId)
+                        .unionAll(versions(STATUS_HISTORY.ID, STATUS_HISTORY.VERSION, STATUS_HISTORY.HAS_AUDIT,
+                                STATUS_HISTORY.ATTESTATION_REF, statusId)));
+    }
+
+    private static Select<Record3<Integer, UUID, UUID>> versions(TableField<?, UUID> id, TableField<?, Integer> version,
+                                                                TableField<?, UUID> hasAudit, TableField<?, UUID> attestationRef,
+                                                                UUID objectId) {
+        return select(version.as(VERSION), hasAudit.as(HAS_AUDIT), attestationRef.as(ATTESTATION_REF))
+                .from(id.getTable())
+                .where(id.eq(objectId));
+    }
+
+    private static RevisionHistory build(I_DomainAccess domainAccess, UUID objectId, String node,
+                                         Select<Record3<Integer, UUID, UUID>> versionSelect) {
+
+        Table<Record3<Integer, UUID, UUID>> versions = versionSelect.asTable("versions");
+        Field<Integer> version = versions.field(VERSION);
+        Field<UUID> attestationRef = versions.field(ATTESTATION_REF);
+
+        // a version is listed once, even if the history holds legacy duplicates
+        Map<Integer, AuditDetailsRecord> audits = new TreeMap<>();
+        Map<Integer, UUID> attestationRefs = new HashMap<>();
+        domainAccess.getContext()
+                .select(withAudit(version, attestationRef))
+                .from(versions)
+                .join(AUDIT_DETAILS).on(AUDIT_DETAILS.ID.eq(versions.field(HAS_AUDIT)))
+                .fetch()
+                .forEach(row -> {
+                    Integer versionNumber = row.get(version);
+                    if (audits.putIfAbsent(versionNumber, row.into(AUDIT_DETAILS)) == null && row.get(attestationRef) != null) {
+                        attestationRefs.put(versionNumber, row.get(attestationRef));
+                    }
+                });
+
+        Map<UUID, List<AuditDetailsRecord>> attestations = new HashMap<>();
+        if (!attestationRefs.isEmpty()) {
+            domainAccess.getContext()
+                    .select(withAudit(ATTESTATION.REFERENCE))
+                    .from(ATTESTATION)
+                    .join(AUDIT_DETAILS).on(AUDIT_DETAILS.ID.eq(ATTESTATION.HAS_AUDIT))
+                    .where(ATTESTATION.REFERENCE.in(new HashSet<>(attestationRefs.values())))
+                    .fetch()
+                    .forEach(row -> attestations.computeIfAbsent(row.get(ATTESTATION.REFERENCE), ref -> new ArrayList<>())
+                            .add(row.into(AUDIT_DETAILS)));
+        }
+
+        Map<UUID, PartyProxy> committers = committers(domainAccess,
+                Stream.concat(audits.values().stream(), attestations.values().stream().flatMap(List::stream))
+                        .map(AuditDetailsRecord::getCommitter)
+                        .collect(Collectors.toSet()));
+
+        RevisionHistory revisionHistory = new RevisionHistory();
+        audits.forEach((versionNumber, audit) -> {
+            // Note: is List but only has more than one item when there are contributions regarding this object of change type attestation
+            List<AuditDetails> auditDetailsList = new ArrayList<>();
+            auditDetailsList.add(toAuditDetails(audit, committers));
+            attestations.getOrDefault(attestationRefs.get(versionNumber), List.of())
+                    .forEach(attestation -> auditDetailsList.add(toAuditDetails(attestation, committers)));
+
+            ObjectVersionId versionId = new ObjectVersionId(objectId + "::" + node + "::" + versionNumber);
+            revisionHistory.addItem(new RevisionHistoryItem(versionId, auditDetailsList));
+        });
+        return revisionHistory;
+    }
+
+    /**
+     * fetch the committers joined with their identifiers with one statement
+     */
+    private static Map<UUID, PartyProxy> committers(I_DomainAccess domainAccess, Set<UUID> committerIds) {
+        Map<UUID, PartyIdentifiedRecord> partyRecords = new LinkedHashMap<>();
+        Map<UUID, Set<IdentifierRecord>> identifierRecords = new HashMap<>();
+        domainAccess.getContext()
+                .select(Stream.of(PARTY_IDENTIFIED.fields(), IDENTIFIER.fields())
+                        .flatMap(Arrays::stream)
+                        .collect(Collectors.toList()))
+                .from(PARTY_IDENTIFIED)
+                .leftJoin(IDENTIFIER).on(IDENTIFIER.PARTY.eq(PARTY_IDENTIFIED.ID))
+                .where(PARTY_IDENTIFIED.ID.in(committerIds))
+                .fetch()
+                .forEach(row -> {
+                    UUID partyId = row.get(PARTY_IDENTIFIED.ID);
+                    partyRecords.computeIfAbsent(partyId, id -> row.into(PARTY_IDENTIFIED));
+                    Set<IdentifierRecord> identifiers = identifierRecords.computeIfAbsent(partyId, id -> new LinkedHashSet<>());
+                    if (row.get(IDENTIFIER.PARTY) != null) {
+                        identifiers.add(row.into(IDENTIFIER));
+                    }
+                });
+
+        PersistedPartyProxy persistedPartyProxy = new PersistedPartyProxy(domainAccess);
+        Map<UUID, PartyProxy> parties = new HashMap<>();
+        partyRecords.forEach((id, partyRecord) ->
+                parties.put(id, persistedPartyProxy.render(partyRecord, new ArrayList<>(identifierRecords.get(id)))));
+        return parties;
+    }
+
+    /**
+     * same representation as {@link AuditDetailsAccess#getAsAuditDetails()}
+     */
+    static AuditDetails toAuditDetails(AuditDetailsRecord audit, Map<UUID, PartyProxy> committers) {
+        String systemId = audit.getSystemId().toString();
+        PartyProxy party = committers.get(audit.getCommitter());
+        DvDateTime time = new DvDateTime(audit.getTimeCommitted().toLocalDateTime());
+        DvCodedText changeType = new DvCodedText(audit.getChangeType().getLiteral(),
+                new CodePhrase(new TerminologyId("openehr"), Integer.toString(I_ConceptAccess.ContributionChangeType.valueOf(audit.getChangeType().getLiteral().toUpperCase()).getCode())));
+        DvText description = new DvText(audit.getDescription());
+        return new AuditDetails(systemId, party, time, changeType, description);
+    }
+
+    private static List<Field<?>> withAudit(Field<?>... fields) {
+        List<Field<?>> result = new ArrayList<>(Arrays.asList(fields));
+        result.addAll(Arrays.asList(AUDIT_DETAILS.fields()));
+        return result;
+    }
+}
@@ -52,6 +52,7 @@ import org.ehrbase.dao.access.interfaces.I_StatusAccess;
 import org.ehrbase.dao.access.jooq.party.PersistedPartyProxy;
 import org.ehrbase.dao.access.support.DataAccess;
 import org.ehrbase.dao.access.util.ContributionDef;
+import org.ehrbase.dao.access.util.VersionNumbers;
 import org.ehrbase.jooq.pg.tables.records.StatusHistoryRecord;
 import org.ehrbase.jooq.pg.tables.records.StatusRecord;
 import org.ehrbase.service.RecordedDvCodedText;
@@ -216,6 +217,8 @@ public class StatusAccess extends DataAccess implements I_StatusAccess {
     newRecord.setOtherDetails(statusRecord.getOtherDetails());
     newRecord.setParty(statusRecord.getParty());
     newRecord.setHasAudit(delAuditId);
+    // the deleted row was moved to _history, the version documenting the deletion follows it
+    newRecord.setVersion(VersionNumbers.STATUSES.last(getDataAccess().getContext(), statusRecord.getId()) + 1);
 
     getDataAccess().getContext().attach(newRecord);
     if (newRecord.insert() != 1) {
@@ -342,7 +345,6 @@ public class StatusAccess extends DataAccess implements I_StatusAccess {
 
     // get whole "version map" of each matching status and do fine-grain check for matching contribution
     // precondition: each UUID in `statuses` set is unique, so for each the "version map" is only created once below
-    // (meta: can't do that as jooq query, because the specific version number isn't stored in DB)
     Map<ObjectVersionId, I_StatusAccess> resultMap = new HashMap<>();
     for (UUID statusId : statuses) {
       Map<Integer, I_StatusAccess> map = getVersionMapOfStatus(domainAccess, statusId);
@@ -361,37 +363,42 @@ public class StatusAccess extends DataAccess implements I_StatusAccess {
       UUID statusId) {
     Map<Integer, I_StatusAccess> versionMap = new HashMap<>();
 
-    // create counter with highest version, to keep track of version number and allow check in the end
-    Integer versionCounter = getLatestVersionNumber(domainAccess, statusId);
-
     // fetch matching entry
     StatusRecord record = domainAccess.getContext().fetchOne(STATUS, STATUS.ID.eq(statusId));
     if (record != null) {
       I_StatusAccess statusAccess = createStatusAccessForRetrieval(domainAccess, record, null);
-      versionMap.put(versionCounter, statusAccess);
-
-      versionCounter--;
+      versionMap.put(record.getVersion(), statusAccess);
     }
 
     // if composition was removed (i.e. from "COMPOSITION" table) *or* other versions are existing
     Result<StatusHistoryRecord> historyRecords = domainAccess.getContext()
         .selectFrom(STATUS_HISTORY)
         .where(STATUS_HISTORY.ID.eq(statusId))
-        .orderBy(STATUS_HISTORY.SYS_TRANSACTION.desc())
         .fetch();
 
     for (StatusHistoryRecord historyRecord : historyRecords) {
       I_StatusAccess historyAccess = createStatusAccessForRetrieval(domainAccess, null,
           historyRecord);
-      versionMap.put(versionCounter, historyAccess);
-      versionCounter--;
+      versionMap.put(historyRecord.getVersion(), historyAccess);
     }
 
-    if (versionCounter != 0) {
-      throw new InternalServerException("Version Map generation failed");
+    return versionMap;
+  }
+
+  public static I_StatusAccess retrieveInstanceByVersion(I_DomainAccess domainAccess,
+      UUID statusId, int version) {
+    StatusRecord record = domainAccess.getContext()
+        .fetchOne(STATUS, STATUS.ID.eq(statusId).and(STATUS.VERSION.eq(version)));
+    if (record != null) {
+      return createStatusAccessForRetrieval(domainAccess, record, null);
     }
 
-    return versionMap;
+    StatusHistoryRecord historyRecord = domainAccess.getContext()
+        .fetchAny(STATUS_HISTORY, STATUS_HISTORY.ID.eq(statusId).and(STATUS_HISTORY.VERSION.eq(version)));
+    if (historyRecord != null) {
+      return createStatusAccessForRetrieval(domainAccess, null, historyRecord);
+    }
+    return null;
   }
 
   /**
@@ -461,7 +468,8 @@ public class StatusAccess extends DataAccess implements I_StatusAccess {
         input.getAttestationRef(),
         input.getInContribution(),
         input.getArchetypeNodeId(),
-        input.getName()
+        input.getName(),
+        input.getVersion()
     );
   }
 
@@ -538,24 +546,14 @@ public class StatusAccess extends DataAccess implements I_StatusAccess {
         statusHistoryRecord.getAttestationRef(),
         statusHistoryRecord.getInContribution(),
         statusHistoryRecord.getArchetypeNodeId(),
-        statusHistoryRecord.getName()
+        statusHistoryRecord.getName(),
+        statusHistoryRecord.getVersion()
     );
   }
 
   public static Integer getLatestVersionNumber(I_DomainAccess domainAccess, UUID statusId) {
-
-    if (!hasPreviousVersionOfStatus(domainAccess, statusId)) {
-      return 1;
-    }
-
-    int versionCount = domainAccess.getContext()
-        .fetchCount(STATUS_HISTORY, STATUS_HISTORY.ID.eq(statusId));
-
-    return versionCount + 1;
-  }
-
-  private static boolean hasPreviousVersionOfStatus(I_DomainAccess domainAccess, UUID ehrStatusId) {
-    return domainAccess.getContext().fetchExists(STATUS_HISTORY, STATUS_HISTORY.ID.eq(ehrStatusId));
+    // a status always has at least one version
+    return Math.max(VersionNumbers.STATUSES.last(domainAccess.getContext(), statusId), 1);
   }
 
   public static boolean exists(I_DomainAccess domainAccess, UUID ehrStatusId) {
@@ -563,54 +561,26 @@ public class StatusAccess extends DataAccess implements I_StatusAccess {
   }
 
   @Override
-  @SuppressWarnings("rawtypes")   // `result` is raw so later iterating also gets the version number
   public int getEhrStatusVersionFromTimeStamp(Timestamp time) {
     UUID statusUid = this.statusRecord.getId();
-    // retrieve current version from status tables
-    I_StatusAccess retStatusAccess = I_StatusAccess.retrieveInstance(this.getDataAccess(),
-        statusUid);
-
-    // retrieve all other versions from status_history and sort by time
-    Result result = getDataAccess().getContext().selectFrom(STATUS_HISTORY)
-        .where(STATUS_HISTORY.ID.eq(statusUid))
-        .orderBy(STATUS_HISTORY.SYS_TRANSACTION.desc())    // latest at top, i.e. [0]
-        .fetch();
 
     // see 'what version was the top version at moment T?'
-    // first: is time T after current version? then current version is result
-    if (time.after(retStatusAccess.getStatusRecord().getSysTransaction())) {
-      return getLatestVersionNumber(getDataAccess(), statusUid);
+    int version = VersionNumbers.STATUSES.atTime(getDataAccess().getContext(), statusUid, time);
+    if (version == 0) {
+      throw new ObjectNotFoundException("EHR_STATUS",
+          "Could not find EHR_STATUS version matching given timestamp");
     }
-    // second: if not, which one of the historical versions matches?
-    for (int i = 0; i < result.size(); i++) {
-      if (result.get(i) instanceof StatusHistoryRecord) {
-        // is time T after this version? then return its version number
-        if (time.after(((StatusHistoryRecord) result.get(i)).getSysTransaction())) {
-          return result.size()
-              - i;   // reverses iterator because order was reversed above and always get non zero
-        }
-      } else {
-        throw new InternalServerException("Problem comparing timestamps of EHR_STATUS versions");
-      }
-    }
-
-    throw new ObjectNotFoundException("EHR_STATUS",
-        "Could not find EHR_STATUS version matching given timestamp");
+    return version;
   }
 
   @Override
   public Timestamp getInitialTimeOfVersionedEhrStatus() {
-    Result<StatusHistoryRecord> result = getDataAccess().getContext().selectFrom(STATUS_HISTORY)
-        .where(STATUS_HISTORY.EHR_ID.eq(statusRecord.getEhrId())) // ehrId from this instance
-        .orderBy(STATUS_HISTORY.SYS_TRANSACTION.asc())  // oldest at top, i.e. [0]
-        .fetch();
-
-    if (!result.isEmpty()) {
-      StatusHistoryRecord statusHistoryRecord = result.get(0); // get oldest
-      return statusHistoryRecord.getSysTransaction();
+    Timestamp timeCreated = VersionNumbers.STATUSES.timeOf(getDataAccess().getContext(), statusRecord.getId(), 1);
+    if (timeCreated != null) {
+      return timeCreated;
     }
 
-    // if haven't returned above use time from latest version (already available in this instance)
+    // if no version 1 was found use time from latest version (already available in this instance)
     return statusRecord.getSysTransaction();
   }
 
@@ -21,11 +21,14 @@
 package org.ehrbase.dao.access.jooq;
 
 import static org.ehrbase.jooq.pg.tables.TemplateStore.TEMPLATE_STORE;
+import static org.jooq.impl.DSL.md5;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.Timestamp;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
@@ -47,6 +50,7 @@ import org.ehrbase.ehr.knowledge.TemplateMetaData;
 import org.ehrbase.jooq.pg.Routines;
 import org.ehrbase.jooq.pg.tables.records.AdminGetTemplateUsageRecord;
 import org.ehrbase.jooq.pg.tables.records.TemplateStoreRecord;
+import org.jooq.Field;
 import org.jooq.Record1;
 import org.jooq.Record2;
 import org.jooq.Result;
@@ -151,10 +155,14 @@ public class TemplateStoreAccess extends DataAccess implements I_TemplateStoreAc
   public void setTemplate(OPERATIONALTEMPLATE template) {
     templateStoreRecord.setId(UUID.fromString(template.getUid().getValue()));
     templateStoreRecord.setTemplateId(template.getTemplateId().getValue());
+    templateStoreRecord.setContent(content(template));
+
+  }
+
+  private static String content(OPERATIONALTEMPLATE template) {
     XmlOptions opts = new XmlOptions();
     opts.setSaveSyntheticDocumentElement(new QName("http://schemas.openehr.org/v1", "template"));
-    templateStoreRecord.setContent(template.xmlText(opts));
-
+    return template.xmlText(opts);
   }
 
   public static I_TemplateStoreAccess retrieveInstanceByTemplateId(I_DomainAccess domainAccess,
@@ -269,6 +277,70 @@ public class TemplateStoreAccess extends DataAccess implements I_TemplateStoreAc
     return Routines.adminDeleteAllTemplates(domainAccess.getContext().configuration());
   }
 
+  /**
+   * Fetch the serialized WebTemplate of a template, if it was built from the current content of the
+   * template and serialized in the given format.
+   *
+   * @param domainAccess - Database access instance
+   * @param templateId   - Target template_id
+   * @param format       - Serialization format of the WebTemplate
+   * @return - Record with the id and the serialized WebTemplate of the template
+   */
+  public static Optional<TemplateStoreRecord> fetchWebTemplate(I_DomainAccess domainAccess,
+      String templateId, String format) {
+    return domainAccess.getContext()
+        .select(TEMPLATE_STORE.ID, TEMPLATE_STORE.WEB_TEMPLATE)
+        .from(TEMPLATE_STORE)
+        .where(TEMPLATE_STORE.TEMPLATE_ID.eq(templateId))
+        .and(TEMPLATE_STORE.WEB_TEMPLATE_KEY.eq(webTemplateKey(format)))
+        .fetchOptionalInto(TEMPLATE_STORE);
+  }
+
+  /**
+   * Stores the serialized WebTemplate of a template next to it. It is not stored if the content of
+   * the template differs from the given template, f.e. because it was overwritten meanwhile, nor if
+   * a WebTemplate of the same content and format is stored already.
+   *
+   * @param domainAccess - Database access instance
+   * @param template     - Template the WebTemplate was built from
+   * @param format       - Serialization format of the WebTemplate
+   * @param webTemplate  - Serialized WebTemplate
+   * @return - The WebTemplate was stored or not
+   */
+  public static boolean storeWebTemplate(I_DomainAccess domainAccess, OPERATIONALTEMPLATE template,
+      String format, byte[] webTemplate) {
+    String contentMd5 = md5Hex(content(template));
+    String key = contentMd5 + ":" + format;
+    return domainAccess.getContext()
+        .update(TEMPLATE_STORE)
+        .set(TEMPLATE_STORE.WEB_TEMPLATE, webTemplate)
+        .set(TEMPLATE_STORE.WEB_TEMPLATE_KEY, key)
+        .where(TEMPLATE_STORE.TEMPLATE_ID.eq(template.getTemplateId().getValue()))
+        .and(md5(TEMPLATE_STORE.CONTENT).eq(contentMd5))
+        .and(TEMPLATE_STORE.WEB_TEMPLATE_KEY.isDistinctFrom(key))
+        .execute() == 1;
+  }
+
+  // same as md5() of postgres for a database encoded in UTF8
+  static String md5Hex(String content) {
+    try {
+      byte[] digest = MessageDigest.getInstance("MD5")
+          .digest(content.getBytes(StandardCharsets.UTF_8));
+      StringBuilder hex = new StringBuilder(digest.length * 2);
+      for (byte b : digest) {
+        hex.append(String.format("%02x", b));
+      }
+      return hex.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new InternalServerException(e.getMessage(), e);
+    }
+  }
+
+  // a WebTemplate is only valid for the content it was built from
+  private static Field<String> webTemplateKey(String format) {
+    return md5(TEMPLATE_STORE.CONTENT).concat(":" + format);
+  }
+
   private static TemplateMetaData buildMetadata(Record2<String, Timestamp> r) {
     TemplateMetaData templateMetaData = new TemplateMetaData();
     templateMetaData.setOperationaltemplate(
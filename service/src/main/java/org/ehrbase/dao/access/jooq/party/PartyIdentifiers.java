@@ -101,6 +101,10 @@ class PartyIdentifiers {
         return identifier;
     };
     
+    static DvIdentifier toDvIdentifier(IdentifierRecord identifierRecord) {
+        return idConvert.apply(identifierRecord);
+    }
+
     List<DvIdentifier> retrieve(PartyIdentifiedRecord partyIdentifiedRecord){
         return domainAccess.getContext()
             .fetch(IDENTIFIER, IDENTIFIER.PARTY.eq(partyIdentifiedRecord.getId()))
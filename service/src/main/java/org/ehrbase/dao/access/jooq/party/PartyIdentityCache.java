@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.dao.access.jooq.party;
+
+import com.nedap.archie.rm.datatypes.CodePhrase;
+import com.nedap.archie.rm.datavalues.DvCodedText;
+import com.nedap.archie.rm.datavalues.DvIdentifier;
+import com.nedap.archie.rm.generic.PartyIdentified;
+import com.nedap.archie.rm.generic.PartyProxy;
+import com.nedap.archie.rm.generic.PartyRelated;
+import com.nedap.archie.rm.support.identification.GenericId;
+import com.nedap.archie.rm.support.identification.ObjectId;
+import com.nedap.archie.rm.support.identification.PartyRef;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.ehrbase.cache.CacheInvalidation;
+import org.ehrbase.cache.CacheInvalidationBus;
+import org.ehrbase.cache.CacheOptions;
+import org.ehrbase.cache.InProcessCacheInvalidationBus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Bounded LRU cache of the <code>party_identified</code> ids resolved by
+ * {@link PersistedPartyProxy#getOrCreate(PartyProxy)}.
+ * <p>
+ * A party is keyed by a canonical representation of its type, name, relationship, external ref and identifiers, so
+ * that only identical parties share an entry. The cache is filled when the transaction which resolved the party
+ * commits: it only ever holds ids of committed rows, which are never updated. Rows are only deleted by the purge of
+ * unused parties, which {@link #invalidate()}s the cache of each node through the {@link CacheInvalidationBus}.
+ * </p>
+ */
+@Component
+public class PartyIdentityCache implements MeterBinder {
+
+    public static final String METRIC_NAME = "ehrbase.party.cache";
+
+    private final int maxSize;
+    private final Map<String, UUID> parties;
+    private final CacheInvalidationBus invalidationBus;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @Autowired
+    public PartyIdentityCache(CacheOptions cacheOptions, CacheInvalidationBus invalidationBus) {
+        this(cacheOptions.getPartyCacheSize(), invalidationBus);
+    }
+
+    public PartyIdentityCache(int maxSize) {
+        this(maxSize, new InProcessCacheInvalidationBus());
+    }
+
+    public PartyIdentityCache(int maxSize, CacheInvalidationBus invalidationBus) {
+        this.maxSize = maxSize;
+        this.invalidationBus = invalidationBus;
+        this.parties = Collections.synchronizedMap(new LinkedHashMap<String, UUID>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, UUID> eldest) {
+                return size() > PartyIdentityCache.this.maxSize;
+            }
+        });
+        invalidationBus.subscribe(invalidation -> {
+            //a purge on another node
+            if (invalidation.getType() == CacheInvalidation.Type.PARTIES || invalidation.getType() == CacheInvalidation.Type.ALL) {
+                parties.clear();
+            }
+        });
+    }
+
+    /**
+     * return the cached id of the party or resolve it
+     *
+     * @param partyProxy the party
+     * @param resolver   finds or creates the party in the database on a cache miss
+     * @return the id of the party
+     */
+    public UUID getOrCreate(PartyProxy partyProxy, Function<PartyProxy, UUID> resolver) {
+        if (maxSize <= 0) {
+            return resolver.apply(partyProxy);
+        }
+
+        String key = key(partyProxy);
+        UUID id = parties.get(key);
+        if (id != null) {
+            hits.incrementAndGet();
+            return id;
+        }
+
+        misses.incrementAndGet();
+        id = resolver.apply(partyProxy);
+        if (id != null) {
+            putAfterCommit(key, id);
+        }
+        return id;
+    }
+
+    /**
+     * clear the cache of each node once the purge of the parties is committed: until then, a transaction may still
+     * resolve and cache the ids of the parties being purged
+     */
+    public void invalidate() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    parties.clear();
+                }
+            });
+        } else {
+            parties.clear();
+        }
+        invalidationBus.publish(new CacheInvalidation(CacheInvalidation.Type.PARTIES));
+    }
+
+    public int size() {
+        return parties.size();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder(METRIC_NAME + ".gets", hits, AtomicLong::get)
+                .tag("result", "hit")
+                .description("Number of parties resolved from the cache")
+                .register(registry);
+        FunctionCounter.builder(METRIC_NAME + ".gets", misses, AtomicLong::get)
+                .tag("result", "miss")
+                .description("Number of parties resolved in the database")
+                .register(registry);
+        Gauge.builder(METRIC_NAME + ".size", parties, Map::size)
+                .description("Number of parties in the cache")
+                .register(registry);
+    }
+
+    /**
+     * a party found or created in a transaction which is rolled back must not be cached
+     */
+    private void putAfterCommit(String key, UUID id) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    parties.put(key, id);
+                }
+            });
+        } else {
+            parties.put(key, id);
+        }
+    }
+
+    /**
+     * @param partyProxy the party
+     * @return the canonical representation of the party
+     */
+    static String key(PartyProxy partyProxy) {
+        StringBuilder key = new StringBuilder(partyProxy.getClass().getSimpleName());
+        if (partyProxy instanceof PartyIdentified) {
+            append(key, ((PartyIdentified) partyProxy).getName());
+        }
+        if (partyProxy instanceof PartyRelated) {
+            DvCodedText relationship = ((PartyRelated) partyProxy).getRelationship();
+            if (relationship != null) {
+                append(key, relationship.getValue());
+                append(key, codePhrase(relationship.getDefiningCode()));
+            }
+        }
+
+        PartyRef externalRef = partyProxy.getExternalRef();
+        if (externalRef != null) {
+            append(key, externalRef.getNamespace());
+            append(key, externalRef.getType());
+            ObjectId id = externalRef.getId();
+            if (id != null) {
+                append(key, id.getClass().getSimpleName());
+                append(key, id.getValue());
+                if (id instanceof GenericId) {
+                    append(key, ((GenericId) id).getScheme());
+                }
+            }
+        }
+
+        if (partyProxy instanceof PartyIdentified) {
+            List<DvIdentifier> identifiers = ((PartyIdentified) partyProxy).getIdentifiers();
+            if (identifiers != null) {
+                //the identifiers are stored as a set
+                identifiers.stream()
+                        .map(PartyIdentityCache::identifier)
+                        .sorted()
+                        .forEach(identifier -> append(key, identifier));
+            }
+        }
+        return key.toString();
+    }
+
+    private static String identifier(DvIdentifier identifier) {
+        return String.join("\u0001", nullToEmpty(identifier.getIssuer()), nullToEmpty(identifier.getAssigner()),
+                nullToEmpty(identifier.getId()), nullToEmpty(identifier.getType()));
+    }
+
+    private static String codePhrase(CodePhrase codePhrase) {
+        if (codePhrase == null) {
+            return null;
+        }
+        return (codePhrase.getTerminologyId() != null ? codePhrase.getTerminologyId().getValue() : "") + "::" + codePhrase.getCodeString();
+    }
+
+    private static void append(StringBuilder key, String value) {
+        //null and empty values are distinct
+        key.append('\u0000').append(value == null ? "\u0002" : value);
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
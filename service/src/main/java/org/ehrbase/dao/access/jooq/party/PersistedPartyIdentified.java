@@ -67,17 +67,16 @@ public class PersistedPartyIdentified extends PersistedParty {
         List<Pair<PartyIdentifiedRecord, List<DvIdentifier>>> partyIdPair = new PartyIdentifiers(domainAccess).retrieveMultiple(partyIdentifiedRecords);
 
         return partyIdPair.stream()
-            .map(pair -> {
-                PartyIdentifiedRecord pir = pair.getLeft();
+            .map(pair -> toPartyIdentified(pair.getLeft(), pair.getRight()))
+            .collect(Collectors.toList());
+    }
 
-                PartyRef partyRef = Optional.ofNullable(pir.getPartyRefType())
-                    .map(ref -> new PartyRef(new PersistedObjectId().fromDB(pir), pir.getPartyRefNamespace(), pir.getPartyRefType()))
-                    .orElse(null);
+    static PartyIdentified toPartyIdentified(PartyIdentifiedRecord pir, List<DvIdentifier> identifierList) {
+        PartyRef partyRef = Optional.ofNullable(pir.getPartyRefType())
+            .map(ref -> new PartyRef(new PersistedObjectId().fromDB(pir), pir.getPartyRefNamespace(), pir.getPartyRefType()))
+            .orElse(null);
 
-                List<DvIdentifier> identifierList = pair.getRight();
-                return new PartyIdentified(partyRef, pir.getName(), identifierList.isEmpty() ? null : identifierList);
-            })
-            .collect(Collectors.toList());
+        return new PartyIdentified(partyRef, pir.getName(), identifierList.isEmpty() ? null : identifierList);
     }
 
     @Override
@@ -34,6 +34,7 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.ehrbase.api.exception.InternalServerException;
 import org.ehrbase.dao.access.interfaces.I_DomainAccess;
 import org.ehrbase.jooq.pg.enums.PartyType;
+import org.ehrbase.jooq.pg.tables.records.IdentifierRecord;
 import org.ehrbase.jooq.pg.tables.records.PartyIdentifiedRecord;
 import org.ehrbase.util.PartyUtils;
 import org.jooq.Result;
@@ -107,12 +108,44 @@ public class PersistedPartyProxy {
         return allParties;
     }
     
+    /**
+     * Render a party fetched together with its identifiers, without further queries.
+     *
+     * @param partyIdentifiedRecord the party
+     * @param identifierRecords     the identifiers of the party
+     * @return the party
+     */
+    public PartyProxy render(PartyIdentifiedRecord partyIdentifiedRecord, List<IdentifierRecord> identifierRecords) {
+        List<DvIdentifier> identifiers = identifierRecords.stream()
+            .map(PartyIdentifiers::toDvIdentifier)
+            .collect(Collectors.toList());
+
+        switch (partyIdentifiedRecord.getPartyType()) {
+            case party_self:
+                return new PersistedPartySelf(domainAccess).render(partyIdentifiedRecord);
+            case party_identified:
+                return PersistedPartyIdentified.toPartyIdentified(partyIdentifiedRecord, identifiers);
+            case party_related:
+                return PersistedPartyRelated.toPartyRelated(partyIdentifiedRecord, identifiers);
+            default:
+                throw new InternalServerException("Inconsistent Party type detected:" + partyIdentifiedRecord.getPartyRefType());
+        }
+    }
+
     public PartyProxy retrieve(UUID id){
         Iterator<PartyProxy> proxy = retrieveMany(List.of(id)).iterator();
         return proxy.hasNext() ? proxy.next() : null;
     }
 
+    /**
+     * Get or create the party, the ids of the parties already resolved are served by the {@link PartyIdentityCache}.
+     */
     public UUID getOrCreate(PartyProxy partyProxy){
+        PartyIdentityCache cache = domainAccess.getPartyIdentityCache();
+        return cache != null ? cache.getOrCreate(partyProxy, this::findOrStore) : findOrStore(partyProxy);
+    }
+
+    private UUID findOrStore(PartyProxy partyProxy){
         if (PartyUtils.isPartySelf(partyProxy)) {
             return new PersistedPartySelf(domainAccess).getOrCreate(partyProxy);
         } else if (PartyUtils.isPartyRelated(partyProxy)) {
@@ -38,6 +38,7 @@ import org.jooq.Record;
 import org.jooq.impl.DSL;
 
 import com.nedap.archie.rm.datavalues.DvCodedText;
+import com.nedap.archie.rm.datavalues.DvIdentifier;
 import com.nedap.archie.rm.generic.PartyIdentified;
 import com.nedap.archie.rm.generic.PartyProxy;
 import com.nedap.archie.rm.generic.PartyRelated;
@@ -71,6 +72,10 @@ class PersistedPartyRelated extends PersistedParty {
         return partyRelated;      
     };
 
+    static PartyProxy toPartyRelated(PartyIdentifiedRecord partyIdentifiedRecord, List<DvIdentifier> identifiers) {
+        return partyIdentConvert.apply(PersistedPartyIdentified.toPartyIdentified(partyIdentifiedRecord, identifiers), partyIdentifiedRecord);
+    }
+
     private I_DomainAccess getDomainAccess() { return domainAccess; }
     Supplier<PersistedPartyIdentified> persistedPartyIdentifiedCreator = () ->  new PersistedPartyIdentified(getDomainAccess()); 
     
@@ -16,11 +16,11 @@
 
 package org.ehrbase.dao.access.query;
 
-import org.ehrbase.api.exception.InternalServerException;
 import org.ehrbase.dao.access.interfaces.I_DomainAccess;
 import org.jooq.Field;
 import org.jooq.Record;
 import org.jooq.Result;
+import org.jooq.ResultQuery;
 import org.jooq.exception.DataAccessException;
 
 import java.util.ArrayList;
@@ -28,9 +28,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.function.Supplier;
 
 /**
@@ -45,9 +42,20 @@ public class AsyncAqlQuery implements Supplier<Map<String, Object>> {
 
     private final String queryString;
 
-    public AsyncAqlQuery(I_DomainAccess domainAccess, String queryString) {
+    private final int timeout;
+
+    //the statement being executed, to cancel it
+    private volatile ResultQuery<Record> query;
+
+    private volatile boolean cancelled;
+
+    /**
+     * @param timeout the statement timeout in seconds, 0 for none
+     */
+    public AsyncAqlQuery(I_DomainAccess domainAccess, String queryString, int timeout) {
         this.domainAccess = domainAccess;
         this.queryString = queryString;
+        this.timeout = timeout;
     }
 
     /**
@@ -58,7 +66,11 @@ public class AsyncAqlQuery implements Supplier<Map<String, Object>> {
      */
     public Result<Record> fetchQueryResults() {
         try {
-            return domainAccess.getContext().fetch(queryString);
+            query = domainAccess.getContext().resultQuery(queryString).queryTimeout(timeout);
+            if (cancelled) {
+                throw new IllegalArgumentException("The AQL statement has been cancelled");
+            }
+            return query.fetch();
         } catch (DataAccessException e) {
             throw new IllegalArgumentException("Error occurred while executing the AQL statement", e);
         }
@@ -91,14 +103,23 @@ public class AsyncAqlQuery implements Supplier<Map<String, Object>> {
     }
 
     /**
-     * Executes the fetch asynchronously.
+     * Executes the fetch asynchronously on the shared query pool.
      *
-     * @return the query result
-     * @throws InternalServerException if fetching failed
+     * @param executor the query pool
+     * @return the future query result, cancelling it cancels the statement
      */
-    public Map<String, Object> fetch() throws ExecutionException, InterruptedException {
-        ExecutorService executorService = Executors.newSingleThreadExecutor();
-        CompletableFuture<Map<String, Object>> fetch = CompletableFuture.supplyAsync(this, executorService);
-        return fetch.get();
+    public CompletableFuture<Map<String, Object>> fetch(QueryExecutor executor) {
+        return executor.submit(this, this::cancel);
+    }
+
+    /**
+     * Cancels the statement being executed, or prevents its execution if not yet started.
+     */
+    public void cancel() {
+        cancelled = true;
+        ResultQuery<Record> running = query;
+        if (running != null) {
+            running.cancel();
+        }
     }
 }
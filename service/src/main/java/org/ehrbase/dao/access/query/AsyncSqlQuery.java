@@ -16,11 +16,11 @@
 
 package org.ehrbase.dao.access.query;
 
-import org.ehrbase.api.exception.InternalServerException;
 import org.ehrbase.dao.access.interfaces.I_DomainAccess;
 import org.jooq.Field;
 import org.jooq.Record;
 import org.jooq.Result;
+import org.jooq.ResultQuery;
 import org.jooq.exception.DataAccessException;
 
 import java.util.ArrayList;
@@ -28,9 +28,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.function.Supplier;
 
 /**
@@ -46,9 +43,20 @@ public class AsyncSqlQuery implements Supplier<Map<String, Object>> {
 
     private final String queryString;
 
-    public AsyncSqlQuery(I_DomainAccess domainAccess, String queryString) {
+    private final int timeout;
+
+    //the statement being executed, to cancel it
+    private volatile ResultQuery<Record> query;
+
+    private volatile boolean cancelled;
+
+    /**
+     * @param timeout the statement timeout in seconds, 0 for none
+     */
+    public AsyncSqlQuery(I_DomainAccess domainAccess, String queryString, int timeout) {
         this.domainAccess = domainAccess;
         this.queryString = queryString;
+        this.timeout = timeout;
     }
 
     /**
@@ -59,7 +67,11 @@ public class AsyncSqlQuery implements Supplier<Map<String, Object>> {
      */
     public Result<Record> fetchQueryResults() {
         try {
-            return domainAccess.getContext().fetch(queryString);
+            query = domainAccess.getContext().resultQuery(queryString).queryTimeout(timeout);
+            if (cancelled) {
+                throw new IllegalArgumentException("The SQL statement has been cancelled");
+            }
+            return query.fetch();
         } catch (DataAccessException e) {
             throw new IllegalArgumentException("Error occurred while executing the SQL statement", e);
         }
@@ -92,21 +104,23 @@ public class AsyncSqlQuery implements Supplier<Map<String, Object>> {
     }
 
     /**
-     * Executes the fetch asynchronously.
+     * Executes the fetch asynchronously on the shared query pool.
      *
-     * @return the query result
-     * @throws InternalServerException if fetching failed
+     * @param executor the query pool
+     * @return the future query result, cancelling it cancels the statement
      */
-    public Map<String, Object> fetch() throws InternalServerException {
-        ExecutorService executorService = Executors.newSingleThreadExecutor();
-        CompletableFuture<Map<String, Object>> fetch = CompletableFuture.supplyAsync(this, executorService);
-        try {
-            return fetch.get();
-        } catch (ExecutionException e) {
-            throw new InternalServerException("fetching of async SQL query failed", e);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt(); // Restore interrupted state, according to https://rules.sonarsource.com/java/RSPEC-2142
-            throw new InternalServerException("ThreadDeath", e);
+    public CompletableFuture<Map<String, Object>> fetch(QueryExecutor executor) {
+        return executor.submit(this, this::cancel);
+    }
+
+    /**
+     * Cancels the statement being executed, or prevents its execution if not yet started.
+     */
+    public void cancel() {
+        cancelled = true;
+        ResultQuery<Record> running = query;
+        if (running != null) {
+            running.cancel();
         }
     }
 }
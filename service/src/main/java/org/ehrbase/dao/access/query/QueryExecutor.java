@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.dao.access.query;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.ehrbase.api.exception.ServiceUnavailableException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Bounded thread pool shared by the raw SQL (and AQL) queries executed asynchronously, see {@link AsyncSqlQuery}.
+ * <p>
+ * A query submitted while all the threads are busy waits in a bounded queue, a query submitted while the queue is full
+ * is rejected with a {@link ServiceUnavailableException} (503 status). Cancelling the future of a query cancels its statement.
+ * </p>
+ * <p>
+ * Publishes the gauges <code>ehrbase.query.executor.queue</code> and <code>ehrbase.query.executor.active</code> and
+ * the counter <code>ehrbase.query.executor.rejected</code>.
+ * </p>
+ */
+@Service
+public class QueryExecutor implements DisposableBean {
+
+    public static final String METRIC_PREFIX = "ehrbase.query.executor";
+
+    private final ThreadPoolExecutor executorService;
+
+    private final int timeout;
+
+    private final Counter rejected;
+
+    @Autowired
+    public QueryExecutor(@Value("${query.sql-threads:4}") int threads,
+                         @Value("${query.sql-queue-size:16}") int queueSize,
+                         @Value("${query.sql-timeout:60}") int timeout,
+                         ObjectProvider<MeterRegistry> registry) {
+        this(threads, queueSize, timeout, registry.getIfAvailable(() -> Metrics.globalRegistry));
+    }
+
+    public QueryExecutor(int threads, int queueSize, int timeout, MeterRegistry registry) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("query.sql-threads must be at least 1");
+        }
+        executorService = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(Math.max(queueSize, 1)),
+                new CustomizableThreadFactory("sql-query-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        executorService.allowCoreThreadTimeOut(true);
+        this.timeout = Math.max(timeout, 0);
+
+        Gauge.builder(METRIC_PREFIX + ".queue", executorService, e -> e.getQueue().size())
+                .description("Queries waiting for a thread of the query pool")
+                .register(registry);
+        Gauge.builder(METRIC_PREFIX + ".active", executorService, ThreadPoolExecutor::getActiveCount)
+                .description("Queries being executed by the query pool")
+                .register(registry);
+        rejected = Counter.builder(METRIC_PREFIX + ".rejected")
+                .description("Queries rejected because the query pool was saturated")
+                .register(registry);
+    }
+
+    /**
+     * @return the statement timeout in seconds, 0 if none
+     */
+    public int getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * @param task the query execution
+     * @param cancellation cancels the running statement, called when the returned future is cancelled
+     * @return the future result of the query
+     * @throws ServiceUnavailableException if the pool is saturated
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task, Runnable cancellation) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> execution;
+        try {
+            execution = executorService.submit(() -> {
+                try {
+                    result.complete(task.get());
+                } catch (Throwable e) {
+                    //an Error as well, the caller would otherwise wait for the future forever
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new ServiceUnavailableException("Too many concurrent queries, please retry later", e);
+        }
+
+        result.whenComplete((value, e) -> {
+            if (result.isCancelled()) {
+                //a queued query is skipped, a running one is cancelled on the database
+                execution.cancel(false);
+                cancellation.run();
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public void destroy() {
+        executorService.shutdownNow();
+    }
+}
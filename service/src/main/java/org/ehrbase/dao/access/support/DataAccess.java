@@ -23,6 +23,8 @@ package org.ehrbase.dao.access.support;
 
 import org.ehrbase.api.definitions.ServerConfig;
 import org.ehrbase.dao.access.interfaces.I_DomainAccess;
+import org.ehrbase.dao.access.jooq.party.PartyIdentityCache;
+import org.ehrbase.dao.access.util.ReferenceDataRegistry;
 import org.ehrbase.ehr.knowledge.I_KnowledgeCache;
 import org.ehrbase.service.IntrospectService;
 import org.jooq.DSLContext;
@@ -41,11 +43,20 @@ public abstract class DataAccess implements I_DomainAccess {
 
     private final ServerConfig serverConfig;
 
+    private final ReferenceDataRegistry referenceData;
+    private final PartyIdentityCache partyIdentityCache;
+
     public DataAccess(DSLContext context, I_KnowledgeCache knowledgeManager, IntrospectService introspectService, ServerConfig serverConfig) {
+        this(context, knowledgeManager, introspectService, serverConfig, null, null);
+    }
+
+    public DataAccess(DSLContext context, I_KnowledgeCache knowledgeManager, IntrospectService introspectService, ServerConfig serverConfig, ReferenceDataRegistry referenceData, PartyIdentityCache partyIdentityCache) {
         this.context = context;
         this.knowledgeManager = knowledgeManager;
         this.introspectService = introspectService;
         this.serverConfig = serverConfig;
+        this.referenceData = referenceData;
+        this.partyIdentityCache = partyIdentityCache;
     }
 
     public DataAccess(I_DomainAccess domainAccess) {
@@ -53,6 +64,8 @@ public abstract class DataAccess implements I_DomainAccess {
         this.knowledgeManager = domainAccess.getKnowledgeManager();
         this.introspectService = domainAccess.getIntrospectService();
         this.serverConfig = domainAccess.getServerConfig();
+        this.referenceData = domainAccess.getDataAccess().referenceData;
+        this.partyIdentityCache = domainAccess.getPartyIdentityCache();
     }
 
     @Override
@@ -91,4 +104,17 @@ public abstract class DataAccess implements I_DomainAccess {
         return this.serverConfig;
     }
 
+    @Override
+    public ReferenceDataRegistry getReferenceData() {
+        if (referenceData == null) {
+            throw new IllegalStateException("No reference data registry in this data access");
+        }
+        return referenceData;
+    }
+
+    @Override
+    public PartyIdentityCache getPartyIdentityCache() {
+        return partyIdentityCache;
+    }
+
 }
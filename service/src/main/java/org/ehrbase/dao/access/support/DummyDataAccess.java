@@ -21,6 +21,7 @@
 package org.ehrbase.dao.access.support;
 
 import org.ehrbase.api.definitions.ServerConfig;
+import org.ehrbase.dao.access.util.ReferenceDataRegistry;
 import org.ehrbase.ehr.knowledge.I_KnowledgeCache;
 import org.ehrbase.service.IntrospectService;
 import org.jooq.DSLContext;
@@ -35,6 +36,10 @@ public class DummyDataAccess extends DataAccess {
 //        this.connection = connectionHandler.getConnection();
     }
 
+    public DummyDataAccess(DSLContext context, I_KnowledgeCache knowledge, IntrospectService introspectCache, ServerConfig serverConfig, ReferenceDataRegistry referenceData) {
+        super(context, knowledge, introspectCache, serverConfig, referenceData, null);
+    }
+
 
     @Override
     public DataAccess getDataAccess() {
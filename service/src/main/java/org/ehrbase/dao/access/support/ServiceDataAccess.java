@@ -23,6 +23,8 @@ package org.ehrbase.dao.access.support;
 
 import org.ehrbase.api.definitions.ServerConfig;
 import org.ehrbase.dao.access.interfaces.I_DomainAccess;
+import org.ehrbase.dao.access.jooq.party.PartyIdentityCache;
+import org.ehrbase.dao.access.util.ReferenceDataRegistry;
 import org.ehrbase.ehr.knowledge.I_KnowledgeCache;
 import org.ehrbase.service.IntrospectService;
 import org.jooq.DSLContext;
@@ -39,6 +41,10 @@ public class ServiceDataAccess extends DataAccess {
         super(context, knowledgeManager, introspectService, serverConfig);
     }
 
+    public ServiceDataAccess(DSLContext context, I_KnowledgeCache knowledgeManager, IntrospectService introspectService, ServerConfig serverConfig, ReferenceDataRegistry referenceData, PartyIdentityCache partyIdentityCache) {
+        super(context, knowledgeManager, introspectService, serverConfig, referenceData, partyIdentityCache);
+    }
+
     public ServiceDataAccess(I_DomainAccess dataAccess) {
         super(dataAccess);
     }
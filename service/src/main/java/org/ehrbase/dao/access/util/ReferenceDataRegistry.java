@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.dao.access.util;
+
+import org.ehrbase.jooq.pg.tables.records.ConceptRecord;
+import org.ehrbase.jooq.pg.tables.records.TerritoryRecord;
+import org.jooq.DSLContext;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.ehrbase.jooq.pg.Tables.CONCEPT;
+import static org.ehrbase.jooq.pg.Tables.LANGUAGE;
+import static org.ehrbase.jooq.pg.Tables.TERRITORY;
+
+/**
+ * Holds an immutable snapshot of the reference data (<code>ehr.concept</code>, <code>ehr.territory</code> and
+ * <code>ehr.language</code>), which is only changed by migrations.
+ * <p>
+ * The snapshot is loaded at startup by the {@link org.ehrbase.service.ReferenceDataServiceImp} and replaced by
+ * {@link #reload(DSLContext)}. A look-up before the first load fails with an {@link IllegalStateException}.
+ * Concepts and territories are looked up by their integer code in sorted arrays, without boxing.
+ * </p>
+ */
+@Component
+public class ReferenceDataRegistry {
+
+    private volatile Snapshot snapshot;
+
+    public ReferenceDataRegistry() {
+    }
+
+    ReferenceDataRegistry(Collection<ConceptRecord> concepts, Collection<TerritoryRecord> territories, Collection<String> languages) {
+        this.snapshot = new Snapshot(concepts, territories, languages);
+    }
+
+    /**
+     * replace the current snapshot by the reference data in the database
+     *
+     * @param context SQL context
+     */
+    public void reload(DSLContext context) {
+        snapshot = new Snapshot(
+                context.selectFrom(CONCEPT).fetch(),
+                context.selectFrom(TERRITORY).fetch(),
+                context.select(LANGUAGE.CODE).from(LANGUAGE).fetch(LANGUAGE.CODE));
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            throw new IllegalStateException("Reference data not loaded");
+        }
+        return current;
+    }
+
+    /**
+     * @param conceptId integer code
+     * @param language  language code ('en', 'fr' etc.)
+     * @return the concept {@link UUID} or null if not found
+     */
+    public UUID getConceptId(int conceptId, String language) {
+        IntKeyMap<UUID> ids = snapshot().conceptIds.get(language);
+        return ids != null ? ids.get(conceptId) : null;
+    }
+
+    /**
+     * @param id concept {@link UUID}
+     * @return the concept or null if not found
+     */
+    public ConceptRecord getConcept(UUID id) {
+        return snapshot().concepts.get(id);
+    }
+
+    /**
+     * @param code territory code
+     * @return the ISO 3166-1 two letter code or null if not found
+     */
+    public String getTerritoryTwoLetter(int code) {
+        return snapshot().territoryTwoLetters.get(code);
+    }
+
+    /**
+     * @param twoLetter ISO 3166-1 two letter code
+     * @return the territory code or -1 if not found
+     */
+    public int getTerritoryCode(String twoLetter) {
+        return snapshot().territoryCodes.getOrDefault(twoLetter, -1);
+    }
+
+    /**
+     * @param code ISO 639-1 language code
+     * @return true if the language is known
+     */
+    public boolean isLanguage(String code) {
+        return code != null && snapshot().languages.contains(code);
+    }
+
+    public int getConceptCount() {
+        return snapshot().concepts.size();
+    }
+
+    public int getTerritoryCount() {
+        return snapshot().territoryCodes.size();
+    }
+
+    public int getLanguageCount() {
+        return snapshot().languages.size();
+    }
+
+    private static final class Snapshot {
+
+        //concept UUID by language and concept id
+        private final Map<String, IntKeyMap<UUID>> conceptIds;
+        private final Map<UUID, ConceptRecord> concepts;
+        private final IntKeyMap<String> territoryTwoLetters;
+        private final Map<String, Integer> territoryCodes;
+        private final Set<String> languages;
+
+        Snapshot(Collection<ConceptRecord> concepts, Collection<TerritoryRecord> territories, Collection<String> languages) {
+            Map<String, List<ConceptRecord>> byLanguage = concepts.stream().collect(Collectors.groupingBy(ConceptRecord::getLanguage));
+            Map<String, IntKeyMap<UUID>> ids = new HashMap<>();
+            byLanguage.forEach((language, records) -> ids.put(language, new IntKeyMap<>(records, ConceptRecord::getConceptid, ConceptRecord::getId)));
+            this.conceptIds = Map.copyOf(ids);
+            this.concepts = concepts.stream().collect(Collectors.toUnmodifiableMap(ConceptRecord::getId, c -> c, (a, b) -> a));
+
+            this.territoryTwoLetters = new IntKeyMap<>(territories, TerritoryRecord::getCode, TerritoryRecord::getTwoletter);
+            this.territoryCodes = territories.stream()
+                    .collect(Collectors.toUnmodifiableMap(TerritoryRecord::getTwoletter, TerritoryRecord::getCode, (a, b) -> a));
+            this.languages = Set.copyOf(languages);
+        }
+    }
+
+    /**
+     * Immutable map with int keys, stored in a sorted array.
+     */
+    private static final class IntKeyMap<V> {
+
+        private final int[] keys;
+        private final Object[] values;
+
+        <T> IntKeyMap(Collection<T> entries, Function<T, Integer> key, Function<T, V> value) {
+            List<T> sorted = new ArrayList<>(entries);
+            sorted.sort((a, b) -> Integer.compare(key.apply(a), key.apply(b)));
+
+            int[] k = new int[sorted.size()];
+            Object[] v = new Object[sorted.size()];
+            int size = 0;
+            for (T entry : sorted) {
+                int entryKey = key.apply(entry);
+                //keep the first of duplicated keys
+                if (size == 0 || k[size - 1] != entryKey) {
+                    k[size] = entryKey;
+                    v[size] = value.apply(entry);
+                    size++;
+                }
+            }
+            this.keys = Arrays.copyOf(k, size);
+            this.values = Arrays.copyOf(v, size);
+        }
+
+        @SuppressWarnings("unchecked")
+        V get(int key) {
+            int i = Arrays.binarySearch(keys, key);
+            return i >= 0 ? (V) values[i] : null;
+        }
+    }
+}
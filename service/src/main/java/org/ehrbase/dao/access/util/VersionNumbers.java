@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.dao.access.util;
+
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.TableField;
+
+import java.sql.Timestamp;
+import java.util.UUID;
+
+import static org.ehrbase.jooq.pg.Tables.COMPOSITION;
+import static org.ehrbase.jooq.pg.Tables.COMPOSITION_HISTORY;
+import static org.ehrbase.jooq.pg.Tables.FOLDER;
+import static org.ehrbase.jooq.pg.Tables.FOLDER_HISTORY;
+import static org.ehrbase.jooq.pg.Tables.STATUS;
+import static org.ehrbase.jooq.pg.Tables.STATUS_HISTORY;
+import static org.jooq.impl.DSL.coalesce;
+import static org.jooq.impl.DSL.field;
+import static org.jooq.impl.DSL.inline;
+import static org.jooq.impl.DSL.max;
+import static org.jooq.impl.DSL.select;
+
+/**
+ * Look-ups of the version numbers stored with the versioned objects: the current row of an object holds its latest
+ * version, each row of its history table the version it documents. The numbers are maintained by the
+ * <code>ehr.next_version()</code> trigger on update, and by the write path for the history rows documenting a
+ * deletion.
+ */
+public final class VersionNumbers {
+
+    public static final VersionNumbers COMPOSITIONS = new VersionNumbers(
+            COMPOSITION.ID, COMPOSITION.VERSION, COMPOSITION.SYS_TRANSACTION,
+            COMPOSITION_HISTORY.ID, COMPOSITION_HISTORY.VERSION, COMPOSITION_HISTORY.SYS_TRANSACTION);
+
+    public static final VersionNumbers STATUSES = new VersionNumbers(
+            STATUS.ID, STATUS.VERSION, STATUS.SYS_TRANSACTION,
+            STATUS_HISTORY.ID, STATUS_HISTORY.VERSION, STATUS_HISTORY.SYS_TRANSACTION);
+
+    public static final VersionNumbers FOLDERS = new VersionNumbers(
+            FOLDER.ID, FOLDER.VERSION, FOLDER.SYS_TRANSACTION,
+            FOLDER_HISTORY.ID, FOLDER_HISTORY.VERSION, FOLDER_HISTORY.SYS_TRANSACTION);
+
+    private final TableField<?, UUID> id;
+    private final TableField<?, Integer> version;
+    private final TableField<?, Timestamp> sysTransaction;
+    private final TableField<?, UUID> historyId;
+    private final TableField<?, Integer> historyVersion;
+    private final TableField<?, Timestamp> historySysTransaction;
+
+    private VersionNumbers(TableField<?, UUID> id, TableField<?, Integer> version, TableField<?, Timestamp> sysTransaction,
+                           TableField<?, UUID> historyId, TableField<?, Integer> historyVersion, TableField<?, Timestamp> historySysTransaction) {
+        this.id = id;
+        this.version = version;
+        this.sysTransaction = sysTransaction;
+        this.historyId = historyId;
+        this.historyVersion = historyVersion;
+        this.historySysTransaction = historySysTransaction;
+    }
+
+    /**
+     * @param context  SQL context
+     * @param objectId the versioned object
+     * @return the latest version, also when the object is deleted, 0 if the object does not exist
+     */
+    public int last(DSLContext context, UUID objectId) {
+        Field<Integer> current = field(select(version).from(version.getTable()).where(id.eq(objectId)));
+        Field<Integer> latestHistory = field(select(max(historyVersion)).from(historyVersion.getTable()).where(historyId.eq(objectId)));
+
+        //the history is only looked up when there is no current row
+        return context.select(coalesce(current, latestHistory, inline(0))).fetchOne(0, int.class);
+    }
+
+    /**
+     * @param context  SQL context
+     * @param objectId the versioned object
+     * @param time     the point in time
+     * @return the version which was the latest one at the given time, 0 if the object did not exist yet
+     */
+    public int atTime(DSLContext context, UUID objectId, Timestamp time) {
+        Field<Integer> current = field(select(version).from(version.getTable())
+                .where(id.eq(objectId))
+                .and(sysTransaction.lessOrEqual(time)));
+        Field<Integer> latestHistory = field(select(max(historyVersion)).from(historyVersion.getTable())
+                .where(historyId.eq(objectId))
+                .and(historySysTransaction.lessOrEqual(time)));
+
+        return context.select(coalesce(current, latestHistory, inline(0))).fetchOne(0, int.class);
+    }
+
+    /**
+     * @param context       SQL context
+     * @param objectId      the versioned object
+     * @param versionNumber the version
+     * @return the transaction time of the version, null if there is no such version
+     */
+    public Timestamp timeOf(DSLContext context, UUID objectId, int versionNumber) {
+        Field<Timestamp> current = field(select(sysTransaction).from(version.getTable())
+                .where(id.eq(objectId))
+                .and(version.eq(versionNumber)));
+        Field<Timestamp> history = field(select(historySysTransaction).from(historyVersion.getTable())
+                .where(historyId.eq(objectId))
+                .and(historyVersion.eq(versionNumber))
+                .limit(1));
+
+        return context.select(coalesce(current, history)).fetchOne(0, Timestamp.class);
+    }
+}
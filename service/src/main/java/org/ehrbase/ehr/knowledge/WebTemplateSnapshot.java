@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.ehr.knowledge;
+
+import java.util.UUID;
+import org.ehrbase.webtemplate.model.WebTemplate;
+
+/**
+ * A {@link WebTemplate} read from the template store, built from the current content of the
+ * template.
+ */
+public class WebTemplateSnapshot {
+
+  private final UUID uid;
+
+  private final WebTemplate webTemplate;
+
+  /**
+   * @param uid         the uid of the template
+   * @param webTemplate the WebTemplate built from the template
+   */
+  public WebTemplateSnapshot(UUID uid, WebTemplate webTemplate) {
+    this.uid = uid;
+    this.webTemplate = webTemplate;
+  }
+
+  public UUID getUid() {
+    return uid;
+  }
+
+  public WebTemplate getWebTemplate() {
+    return webTemplate;
+  }
+}
@@ -31,8 +31,10 @@ import org.ehrbase.api.definitions.ServerConfig;
 import org.ehrbase.api.service.BaseService;
 import org.ehrbase.dao.access.interfaces.I_DomainAccess;
 import org.ehrbase.dao.access.interfaces.I_SystemAccess;
+import org.ehrbase.dao.access.jooq.party.PartyIdentityCache;
 import org.ehrbase.dao.access.jooq.party.PersistedPartyIdentified;
 import org.ehrbase.dao.access.support.ServiceDataAccess;
+import org.ehrbase.dao.access.util.ReferenceDataRegistry;
 import org.jooq.DSLContext;
 import org.springframework.beans.factory.annotation.Autowired;
 
@@ -50,6 +52,12 @@ public class BaseServiceImp implements BaseService {
   @Autowired
   private IAuthenticationFacade authenticationFacade;
 
+  @Autowired
+  private ReferenceDataRegistry referenceData;
+
+  @Autowired
+  private PartyIdentityCache partyIdentityCache;
+
   public BaseServiceImp(KnowledgeCacheService knowledgeCacheService, DSLContext context,
       ServerConfig serverConfig) {
     this.knowledgeCacheService = knowledgeCacheService;
@@ -59,7 +67,7 @@ public class BaseServiceImp implements BaseService {
 
   protected I_DomainAccess getDataAccess() {
     return new ServiceDataAccess(context, knowledgeCacheService, knowledgeCacheService,
-        this.serverConfig);
+        this.serverConfig, referenceData, partyIdentityCache);
   }
 
   /**
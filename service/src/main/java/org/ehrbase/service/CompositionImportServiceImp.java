@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.service;
+
+import com.nedap.archie.rm.composition.Composition;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.ehrbase.api.definitions.CompositionImportItem;
+import org.ehrbase.api.definitions.CompositionImportResult;
+import org.ehrbase.api.definitions.ServerConfig;
+import org.ehrbase.api.exception.InternalServerException;
+import org.ehrbase.api.service.CompositionImportService;
+import org.ehrbase.api.service.CompositionService;
+import org.ehrbase.api.service.EhrService;
+import org.ehrbase.api.service.ValidationService;
+import org.ehrbase.dao.access.jooq.CompositionBatchWriter;
+import org.jooq.DSLContext;
+import org.jooq.exception.DataAccessException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Bulk import of compositions.
+ * <p>
+ * The items are parsed and validated on a bounded thread pool, then written by {@link CompositionBatchWriter} in
+ * transactions of <code>import.batch-size</code> compositions. When the database rejects a batch, or fails while an item
+ * is prepared, the transaction is rolled back and its items are written one by one so that only the failing items are
+ * reported.
+ * </p>
+ */
+@Service
+public class CompositionImportServiceImp extends BaseServiceImp implements CompositionImportService, DisposableBean {
+
+  private final Logger logger = LoggerFactory.getLogger(getClass());
+
+  private final CompositionService compositionService;
+  private final ValidationService validationService;
+  private final EhrService ehrService;
+  private final TransactionTemplate transactionTemplate;
+  private final ThreadPoolExecutor executorService;
+  private final int batchSize;
+
+  public CompositionImportServiceImp(
+      KnowledgeCacheService knowledgeCacheService,
+      CompositionService compositionService,
+      ValidationService validationService,
+      EhrService ehrService,
+      DSLContext context,
+      ServerConfig serverConfig,
+      PlatformTransactionManager transactionManager,
+      @Value("${import.threads:4}") int threads,
+      @Value("${import.batch-size:500}") int batchSize) {
+
+    super(knowledgeCacheService, context, serverConfig);
+    this.compositionService = compositionService;
+    this.validationService = validationService;
+    this.ehrService = ehrService;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.batchSize = Math.max(batchSize, 1);
+
+    int poolSize = Math.max(threads, 1);
+    executorService = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(poolSize * 16),
+        new CustomizableThreadFactory("composition-import-"),
+        new ThreadPoolExecutor.CallerRunsPolicy());
+    executorService.allowCoreThreadTimeOut(true);
+  }
+
+  @Override
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  @Override
+  public List<CompositionImportResult> importCompositions(List<CompositionImportItem> items) {
+    CompositionImportResult[] results = new CompositionImportResult[items.size()];
+
+    // parse and validate in parallel
+    List<Future<Composition>> parsed = new ArrayList<>(items.size());
+    for (CompositionImportItem item : items) {
+      parsed.add(executorService.submit(() -> parseAndValidate(item)));
+    }
+    Composition[] compositions = new Composition[items.size()];
+    for (int i = 0; i < items.size(); i++) {
+      try {
+        compositions[i] = parsed.get(i).get();
+      } catch (ExecutionException e) {
+        results[i] = CompositionImportResult.failed(message(e.getCause()));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InternalServerException("Composition import interrupted", e);
+      }
+    }
+
+    // check each EHR once
+    Map<UUID, String> ehrFailures = new HashMap<>();
+    for (int i = 0; i < items.size(); i++) {
+      if (results[i] != null) {
+        continue;
+      }
+      String failure = ehrFailures.computeIfAbsent(items.get(i).getEhrId(), this::checkEhr);
+      if (!failure.isEmpty()) {
+        results[i] = CompositionImportResult.failed(failure);
+      }
+    }
+
+    // write the valid items in batches
+    UUID systemId = getSystemUuid();
+    UUID committerId = getCurrentUserId();
+    List<Integer> batch = new ArrayList<>();
+    for (int i = 0; i < items.size(); i++) {
+      if (results[i] == null) {
+        batch.add(i);
+      }
+      if (batch.size() == batchSize || (i == items.size() - 1 && !batch.isEmpty())) {
+        write(batch, items, compositions, results, systemId, committerId);
+        batch = new ArrayList<>();
+      }
+    }
+
+    return List.of(results);
+  }
+
+  private Composition parseAndValidate(CompositionImportItem item) throws Exception {
+    if (item.getEhrId() == null || item.getContent() == null || item.getFormat() == null) {
+      throw new IllegalArgumentException("EHR id, composition and format are required");
+    }
+    Composition composition = compositionService.buildComposition(item.getContent(), item.getFormat(), item.getTemplateId());
+    validationService.check(composition);
+    return composition;
+  }
+
+  /**
+   * @return the reason why compositions can not be added to the EHR, empty if they can
+   */
+  private String checkEhr(UUID ehrId) {
+    try {
+      ehrService.checkEhrExistsAndIsModifiable(ehrId);
+      return "";
+    } catch (RuntimeException e) {
+      return message(e);
+    }
+  }
+
+  /**
+   * write a batch in one transaction, if it fails write its items one by one
+   */
+  private void write(List<Integer> batch, List<CompositionImportItem> items, Composition[] compositions,
+      CompositionImportResult[] results, UUID systemId, UUID committerId) {
+
+    Map<Integer, CompositionImportResult> batchResults = new HashMap<>();
+    try {
+      transactionTemplate.executeWithoutResult(status -> {
+        batchResults.clear();
+        CompositionBatchWriter writer = newWriter(systemId, committerId);
+        for (Integer i : batch) {
+          try {
+            batchResults.put(i, CompositionImportResult.created(writer.add(items.get(i).getEhrId(), compositions[i])));
+          } catch (RuntimeException e) {
+            if (isDatabaseFailure(e)) {
+              //the transaction is aborted: the batch is rolled back and written one by one
+              throw e;
+            }
+            batchResults.put(i, CompositionImportResult.failed(message(e)));
+          }
+        }
+        writer.flush();
+      });
+    } catch (RuntimeException e) {
+      if (batch.size() == 1) {
+        results[batch.get(0)] = CompositionImportResult.failed(message(e));
+      } else {
+        logger.warn("Batch of {} compositions rejected, importing one by one: {}", batch.size(), e.getMessage());
+        batch.forEach(i -> write(List.of(i), items, compositions, results, systemId, committerId));
+      }
+      return;
+    }
+    batchResults.forEach((i, result) -> results[i] = result);
+  }
+
+  CompositionBatchWriter newWriter(UUID systemId, UUID committerId) {
+    return new CompositionBatchWriter(getDataAccess(), systemId, committerId, null);
+  }
+
+  /**
+   * @return true if the exception, or one of its causes, was raised by the database
+   */
+  private static boolean isDatabaseFailure(Throwable e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof DataAccessException
+          || cause instanceof org.springframework.dao.DataAccessException
+          || cause instanceof SQLException) {
+        return true;
+      }
+      if (cause.getCause() == cause) {
+        break;
+      }
+    }
+    return false;
+  }
+
+  private static String message(Throwable e) {
+    return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+  }
+
+  @Override
+  public void destroy() {
+    executorService.shutdownNow();
+  }
+}
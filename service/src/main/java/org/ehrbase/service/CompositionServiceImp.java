@@ -21,7 +21,6 @@ import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
@@ -36,11 +35,14 @@ import org.ehrbase.api.exception.ValidationException;
 import org.ehrbase.api.service.CompositionService;
 import org.ehrbase.api.service.EhrService;
 import org.ehrbase.api.service.ValidationService;
+import org.ehrbase.cache.CachedCompositionVersion;
 import org.ehrbase.dao.access.interfaces.I_AttestationAccess;
 import org.ehrbase.dao.access.interfaces.I_CompositionAccess;
 import org.ehrbase.dao.access.interfaces.I_ConceptAccess.ContributionChangeType;
 import org.ehrbase.dao.access.interfaces.I_EntryAccess;
 import org.ehrbase.dao.access.jooq.AttestationAccess;
+import org.ehrbase.dao.access.jooq.RevisionHistoryQuery;
+import org.ehrbase.dao.access.util.VersionNumbers;
 import org.ehrbase.response.ehrscape.CompositionDto;
 import org.ehrbase.response.ehrscape.CompositionFormat;
 import org.ehrbase.response.ehrscape.StructuredString;
@@ -68,7 +70,6 @@ import com.nedap.archie.rm.ehr.VersionedComposition;
 import com.nedap.archie.rm.generic.Attestation;
 import com.nedap.archie.rm.generic.AuditDetails;
 import com.nedap.archie.rm.generic.RevisionHistory;
-import com.nedap.archie.rm.generic.RevisionHistoryItem;
 import com.nedap.archie.rm.support.identification.HierObjectId;
 import com.nedap.archie.rm.support.identification.ObjectRef;
 import com.nedap.archie.rm.support.identification.ObjectVersionId;
@@ -90,31 +91,40 @@ public class CompositionServiceImp extends BaseServiceImp implements Composition
   private final ValidationService validationService;
   private final KnowledgeCacheService knowledgeCacheService;
   private final EhrService ehrService;
+  private final CompositionVersionCache compositionVersionCache;
 
   public CompositionServiceImp(
       KnowledgeCacheService knowledgeCacheService,
       ValidationService validationService,
       EhrService ehrService,
       DSLContext context,
-      ServerConfig serverConfig) {
+      ServerConfig serverConfig,
+      CompositionVersionCache compositionVersionCache) {
 
     super(knowledgeCacheService, context, serverConfig);
     this.validationService = validationService;
     this.ehrService = ehrService;
     this.knowledgeCacheService = knowledgeCacheService;
+    this.compositionVersionCache = compositionVersionCache;
   }
 
   @Override
   public Optional<UUID> create(
       UUID ehrId, Composition objData, UUID systemId, UUID committerId, String description) {
 
-    UUID compositionId = createInternal(ehrId, objData, systemId, committerId, description, null);
+    UUID compositionId = createInternal(ehrId, objData, systemId, committerId, description, null, true);
     return Optional.of(compositionId);
   }
 
   @Override
   public Optional<UUID> create(UUID ehrId, Composition objData, UUID contribution) {
-    UUID compositionId = createInternal(ehrId, objData, null, null, null, contribution);
+    UUID compositionId = createInternal(ehrId, objData, null, null, null, contribution, true);
+    return Optional.of(compositionId);
+  }
+
+  @Override
+  public Optional<UUID> createValidated(UUID ehrId, Composition objData, UUID contribution) {
+    UUID compositionId = createInternal(ehrId, objData, null, null, null, contribution, false);
     return Optional.of(compositionId);
   }
 
@@ -132,6 +142,7 @@ public class CompositionServiceImp extends BaseServiceImp implements Composition
    * @param committerId    Audit committer; or NULL if contribution is given
    * @param description    (Optional) Audit description; or NULL if contribution is given
    * @param contributionId NULL if is not needed, or ID of given custom contribution
+   * @param validate       false if the composition was already validated
    * @return ID of created composition
    * @throws InternalServerException when creation failed
    */
@@ -141,14 +152,17 @@ public class CompositionServiceImp extends BaseServiceImp implements Composition
       UUID systemId,
       UUID committerId,
       String description,
-      UUID contributionId) {
+      UUID contributionId,
+      boolean validate) {
 
     // pre-step: check for existing and modifiable ehr
     ehrService.checkEhrExistsAndIsModifiable(ehrId);
 
     // pre-step: validate
     try {
-      validationService.check(composition);
+      if (validate) {
+        validationService.check(composition);
+      }
 
     } catch (org.ehrbase.validation.ValidationException e) {
       throw new UnprocessableEntityException(e.getMessage());
@@ -214,7 +228,8 @@ public class CompositionServiceImp extends BaseServiceImp implements Composition
             systemId,
             committerId,
             description,
-            null);
+            null,
+            true);
 
     return Optional.of(compoId);
   }
@@ -231,7 +246,25 @@ public class CompositionServiceImp extends BaseServiceImp implements Composition
             null,
             null,
             null,
-            contribution);
+            contribution,
+            true);
+    return Optional.of(compoId);
+  }
+
+  @Override
+  public Optional<UUID> updateValidated(
+      UUID ehrId, ObjectVersionId targetObjId, Composition objData, UUID contribution) {
+
+    var compoId =
+        internalUpdate(
+            ehrId,
+            UUID.fromString(targetObjId.getObjectId().getValue()),
+            objData,
+            null,
+            null,
+            null,
+            contribution,
+            false);
     return Optional.of(compoId);
   }
 
@@ -250,6 +283,7 @@ public class CompositionServiceImp extends BaseServiceImp implements Composition
    * @param committerId Audit committer; or NULL if contribution is given
    * @param description (Optional) Audit description; or NULL if contribution is given
    * @param contributionId NULL if new one should be created; or ID of given custom contribution
+   * @param validate false if the composition was already validated
    * @return UUID pointing to updated composition
    */
   private UUID internalUpdate(
@@ -259,7 +293,8 @@ public class CompositionServiceImp extends BaseServiceImp implements Composition
       UUID systemId,
       UUID committerId,
       String description,
-      UUID contributionId) {
+      UUID contributionId,
+      boolean validate) {
 
     //pre-step: check ehr exists and is modifiable
     ehrService.checkEhrExistsAndIsModifiable(ehrId);
@@ -275,7 +310,9 @@ public class CompositionServiceImp extends BaseServiceImp implements Composition
       checkCompositionIsInEhr(ehrId, compositionAccess);
 
       // validate RM composition
-      validationService.check(composition);
+      if (validate) {
+        validationService.check(composition);
+      }
 
       // Check if template ID is not the same in existing and given data -> error
       String existingTemplateId = compositionAccess.getContent().getTemplateId();
@@ -334,12 +371,16 @@ public class CompositionServiceImp extends BaseServiceImp implements Composition
   }
 
   private void checkCompositionIsInEhr(UUID ehrId, I_CompositionAccess compositionAccess) {
-    if (!ehrId.equals(compositionAccess.getEhrid())) {
+    checkCompositionIsInEhr(ehrId, compositionAccess.getEhrid());
+  }
+
+  private void checkCompositionIsInEhr(UUID ehrId, UUID compositionEhrId) {
+    if (!ehrId.equals(compositionEhrId)) {
       throw new ObjectNotFoundException(
           "COMPOSITION",
           String.format(
               "EHR with id %s does not contain composition with id %s",
-              ehrId, compositionAccess.getEhrid()));
+              ehrId, compositionEhrId));
     }
   }
 
@@ -437,21 +478,34 @@ public class CompositionServiceImp extends BaseServiceImp implements Composition
     // check that the ehr exists
     ehrService.checkEhrExists(ehrId);
 
-    final I_CompositionAccess compositionAccess;
-    if (version != null) {
-      compositionAccess =
-          I_CompositionAccess.retrieveCompositionVersion(getDataAccess(), compositionId, version);
-    } else { // default to latest version
-      compositionAccess =
-          I_CompositionAccess.retrieveCompositionVersion(
-              getDataAccess(), compositionId, getLastVersionNumber(compositionId));
+    // default to latest version
+    Integer lastVersion = version == null ? getLastVersionNumber(compositionId) : null;
+    final int resolvedVersion = version != null ? version : lastVersion;
+
+    // a version which was current when cached is only valid until the composition is deleted
+    Optional<CachedCompositionVersion> cached = compositionVersionCache.get(compositionId, resolvedVersion)
+        .filter(c -> !c.isCurrent() || I_CompositionAccess.hasCurrentVersion(getDataAccess(), compositionId));
+    if (cached.isPresent()) {
+      checkCompositionIsInEhr(ehrId, cached.get().getEhrId());
+      return Optional.of(compositionVersionCache.getComposition(cached.get()));
     }
 
+    if (lastVersion == null) {
+      lastVersion = getLastVersionNumber(compositionId);
+    }
+    final I_CompositionAccess compositionAccess =
+        I_CompositionAccess.retrieveCompositionVersion(getDataAccess(), compositionId, resolvedVersion, lastVersion);
+
     // check that the composition is actually in the ehr
     if (compositionAccess != null) {
       checkCompositionIsInEhr(ehrId, compositionAccess);
     }
-    return getComposition(compositionAccess);
+    Optional<Composition> composition = getComposition(compositionAccess);
+    if (composition.isPresent() && compositionVersionCache.isEnabled()) {
+      boolean current = resolvedVersion == lastVersion;
+      compositionVersionCache.put(compositionId, resolvedVersion, ehrId, current, composition.get());
+    }
+    return composition;
   }
 
   @Override
@@ -640,7 +694,10 @@ public class CompositionServiceImp extends BaseServiceImp implements Composition
     I_CompositionAccess compositionAccess = I_CompositionAccess.retrieveInstance(getDataAccess(),
         compositionId);
     if (compositionAccess != null) {
+      int lastVersion = getLastVersionNumber(compositionId);
       compositionAccess.adminDelete();
+      // evicted when the deletion is committed
+      compositionVersionCache.evict(compositionId, lastVersion);
     }
   }
 
@@ -655,14 +712,13 @@ public class CompositionServiceImp extends BaseServiceImp implements Composition
       compo.setOwnerId(
           new ObjectRef<>(new HierObjectId(dto.get().getEhrId().toString()), "local", "ehr"));
 
-      Map<Integer, I_CompositionAccess> compos =
-          I_CompositionAccess.getVersionMapOfComposition(getDataAccess(), composition);
-      if (compos.containsKey(1)) {
+      Timestamp timeCreated =
+          VersionNumbers.COMPOSITIONS.timeOf(getDataAccess().getContext(), composition, 1);
+      if (timeCreated != null) {
         compo.setTimeCreated(
             new DvDateTime(
                 OffsetDateTime.of(
-                    compos.get(1).getSysTransaction().toLocalDateTime(),
-                    OffsetDateTime.now().getOffset())));
+                    timeCreated.toLocalDateTime(), OffsetDateTime.now().getOffset())));
       } else {
         throw new InternalServerException("Inconsistent composition data, no version 1 available");
       }
@@ -673,18 +729,10 @@ public class CompositionServiceImp extends BaseServiceImp implements Composition
 
   @Override
   public RevisionHistory getRevisionHistoryOfVersionedComposition(UUID ehrUid, UUID composition) {
-    // get number of versions
-    int versions = getLastVersionNumber(composition);
-    // fetch each version and add to revision history
-    RevisionHistory revisionHistory = new RevisionHistory();
-    for (int i = 1; i <= versions; i++) {
-      Optional<OriginalVersion<Composition>> compoVersion =
-          getOriginalVersionComposition(ehrUid, composition, i);
-      compoVersion.ifPresent(
-          compositionOriginalVersion ->
-              revisionHistory.addItem(
-                  revisionHistoryItemFromComposition(compositionOriginalVersion)));
-    }
+    // only the audits of the versions are fetched, not their content
+    RevisionHistory revisionHistory =
+        RevisionHistoryQuery.ofComposition(
+            getDataAccess(), composition, getServerConfig().getNodename());
 
     if (revisionHistory.getItems().isEmpty()) {
       throw new InternalServerException(
@@ -693,34 +741,6 @@ public class CompositionServiceImp extends BaseServiceImp implements Composition
     return revisionHistory;
   }
 
-  private RevisionHistoryItem revisionHistoryItemFromComposition(
-      OriginalVersion<Composition> composition) {
-
-    ObjectVersionId objectVersionId = composition.getUid();
-
-    // Note: is List but only has more than one item when there are contributions regarding this
-    // object of change type attestation
-    List<AuditDetails> auditDetailsList = new ArrayList<>();
-    // retrieving the audits
-    auditDetailsList.add(composition.getCommitAudit());
-
-    // add retrieval of attestations, if there are any
-    if (composition.getAttestations() != null) {
-      for (Attestation a : composition.getAttestations()) {
-        AuditDetails newAudit =
-            new AuditDetails(
-                a.getSystemId(),
-                a.getCommitter(),
-                a.getTimeCommitted(),
-                a.getChangeType(),
-                a.getDescription());
-        auditDetailsList.add(newAudit);
-      }
-    }
-
-    return new RevisionHistoryItem(objectVersionId, auditDetailsList);
-  }
-
   @Override
   public Optional<OriginalVersion<Composition>> getOriginalVersionComposition(
       UUID ehrUid, UUID versionedObjectUid, int version) {
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.service;
+
+import com.nedap.archie.rm.composition.Composition;
+import java.util.Optional;
+import java.util.UUID;
+import org.ehrbase.cache.CacheInvalidation;
+import org.ehrbase.cache.CacheInvalidationBus;
+import org.ehrbase.cache.CacheOptions;
+import org.ehrbase.cache.CachedCompositionVersion;
+import org.ehrbase.cache.InProcessCacheInvalidationBus;
+import org.ehrbase.serialisation.jsonencoding.CanonicalJson;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Second level cache of the composition versions, keyed by <code>uid::version</code>.
+ * <p>
+ * A committed version never changes, so a cached version is served without rebuilding it from the entry, context,
+ * parties and history tables. The size, eviction and tiers (heap, off-heap) are configured by the
+ * {@link CacheOptions#COMPOSITION_CACHE} of <code>ehcache.xml</code>; without it the cache is disabled. The
+ * evictions are published on the {@link CacheInvalidationBus} to the caches of the other nodes.
+ * </p>
+ */
+@Component
+public class CompositionVersionCache {
+
+  private final Cache cache;
+  private final CacheInvalidationBus invalidationBus;
+
+  public CompositionVersionCache(CacheManager cacheManager) {
+    this(cacheManager, new InProcessCacheInvalidationBus());
+  }
+
+  @Autowired
+  public CompositionVersionCache(CacheManager cacheManager, CacheInvalidationBus invalidationBus) {
+    this.cache = cacheManager.getCache(CacheOptions.COMPOSITION_CACHE);
+    this.invalidationBus = invalidationBus;
+    invalidationBus.subscribe(this::onInvalidation);
+  }
+
+  public boolean isEnabled() {
+    return cache != null;
+  }
+
+  public Optional<CachedCompositionVersion> get(UUID compositionId, int version) {
+    if (cache == null) {
+      return Optional.empty();
+    }
+    return Optional.ofNullable(cache.get(key(compositionId, version), CachedCompositionVersion.class));
+  }
+
+  /**
+   * cache a version read from the database, once the reading transaction is committed: a version created in a
+   * transaction which is rolled back must not be cached
+   *
+   * @param current true if the version is the current version of the composition
+   */
+  public void put(UUID compositionId, int version, UUID ehrId, boolean current, Composition composition) {
+    if (cache == null) {
+      return;
+    }
+    var value = new CachedCompositionVersion(ehrId, current, new CanonicalJson().marshal(composition));
+    afterCommit(() -> cache.put(key(compositionId, version), value));
+  }
+
+  /**
+   * @param version the cached version
+   * @return a new instance of the composition
+   */
+  public Composition getComposition(CachedCompositionVersion version) {
+    return new CanonicalJson().unmarshal(version.getCanonicalJson(), Composition.class);
+  }
+
+  /**
+   * evict the versions of a physically deleted composition, once the deletion is committed: until then, a reading
+   * transaction may still cache them
+   *
+   * @param lastVersion the number of versions of the composition
+   */
+  public void evict(UUID compositionId, int lastVersion) {
+    if (cache == null) {
+      return;
+    }
+    afterCommit(() -> evictLocal(compositionId, lastVersion));
+    invalidationBus.publish(new CacheInvalidation(CacheInvalidation.Type.COMPOSITION, key(compositionId, lastVersion)));
+  }
+
+  /**
+   * clear the cache once the deletion of the compositions is committed
+   */
+  public void clear() {
+    if (cache != null) {
+      afterCommit(cache::clear);
+      invalidationBus.publish(new CacheInvalidation(CacheInvalidation.Type.COMPOSITIONS));
+    }
+  }
+
+  private static void afterCommit(Runnable action) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          action.run();
+        }
+      });
+    } else {
+      action.run();
+    }
+  }
+
+  private void evictLocal(UUID compositionId, int lastVersion) {
+    for (int version = 1; version <= lastVersion; version++) {
+      cache.evict(key(compositionId, version));
+    }
+  }
+
+  // a change published by another node
+  private void onInvalidation(CacheInvalidation invalidation) {
+    if (cache == null) {
+      return;
+    }
+    switch (invalidation.getType()) {
+      case COMPOSITION:
+        String[] key = invalidation.getKey().split("::");
+        evictLocal(UUID.fromString(key[0]), Integer.parseInt(key[1]));
+        break;
+      case COMPOSITIONS:
+      case ALL:
+        cache.clear();
+        break;
+      default:
+        // not cached here
+    }
+  }
+
+  static String key(UUID compositionId, int version) {
+    return compositionId + "::" + version;
+  }
+}
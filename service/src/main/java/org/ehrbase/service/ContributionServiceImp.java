@@ -34,6 +34,7 @@ import com.nedap.archie.rm.support.identification.ObjectVersionId;
 import com.nedap.archie.rm.support.identification.TerminologyId;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -42,6 +43,12 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import org.ehrbase.api.definitions.ServerConfig;
 import org.ehrbase.api.exception.InternalServerException;
 import org.ehrbase.api.exception.InvalidApiParameterException;
@@ -54,6 +61,7 @@ import org.ehrbase.api.service.CompositionService;
 import org.ehrbase.api.service.ContributionService;
 import org.ehrbase.api.service.EhrService;
 import org.ehrbase.api.service.FolderService;
+import org.ehrbase.api.service.ValidationService;
 import org.ehrbase.dao.access.interfaces.I_AuditDetailsAccess;
 import org.ehrbase.dao.access.interfaces.I_CompositionAccess;
 import org.ehrbase.dao.access.interfaces.I_ConceptAccess;
@@ -67,14 +75,25 @@ import org.ehrbase.response.ehrscape.ContributionDto;
 import org.jooq.DSLContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+/**
+ * Commit and retrieval of contributions.
+ * <p>
+ * The versions of a committed contribution are parsed, checked against the contribution rules and, for compositions,
+ * validated concurrently on a bounded thread pool. The objects are only written once all versions passed, in the order
+ * of the contribution and in the transaction of the commit.
+ * </p>
+ */
 @Service
 @Transactional
-public class ContributionServiceImp extends BaseServiceImp implements ContributionService {
+public class ContributionServiceImp extends BaseServiceImp implements ContributionService, DisposableBean {
   // the version list in a contribution adds an type tag to each item, so the specific object is distinguishable
   public static final String TYPE_COMPOSITION = "COMPOSITION";
   public static final String TYPE_EHRSTATUS   = "EHR_STATUS";
@@ -85,6 +104,8 @@ public class ContributionServiceImp extends BaseServiceImp implements Contributi
   private final CompositionService compositionService;
   private final EhrService         ehrService;
   private final FolderService      folderService;
+  private final ValidationService  validationService;
+  private final ThreadPoolExecutor executorService;
 
   enum SupportedClasses {
     COMPOSITION, EHRSTATUS, FOLDER
@@ -92,12 +113,21 @@ public class ContributionServiceImp extends BaseServiceImp implements Contributi
 
   @Autowired
   public ContributionServiceImp(KnowledgeCacheService knowledgeCacheService, CompositionService compositionService,
-                                EhrService ehrService, FolderService folderService, DSLContext context,
-                                ServerConfig serverConfig) {
+                                EhrService ehrService, FolderService folderService, ValidationService validationService,
+                                DSLContext context, ServerConfig serverConfig,
+                                @Value("${contribution.threads:4}") int threads) {
     super(knowledgeCacheService, context, serverConfig);
     this.compositionService = compositionService;
     this.ehrService = ehrService;
     this.folderService = folderService;
+    this.validationService = validationService;
+
+    int poolSize = Math.max(threads, 1);
+    executorService = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(poolSize * 16),
+        new CustomizableThreadFactory("contribution-validation-"),
+        new ThreadPoolExecutor.CallerRunsPolicy());
+    executorService.allowCoreThreadTimeOut(true);
   }
 
   @Override
@@ -146,43 +176,34 @@ public class ContributionServiceImp extends BaseServiceImp implements Contributi
       throw new ObjectNotFoundException("ehr", "No EHR found with given ID: " + ehrId.toString());
     }
 
+    List<Version> versions = ContributionServiceHelper.parseVersions(content, format);
+
+    if (versions.isEmpty()) {
+      throw new InvalidApiParameterException("Invalid Contribution, must have at least one Version object.");
+    }
+
+    // parse and validate all versions before anything is looked up or written
+    List<RMObject> versionRmObjects = parseAndValidate(versions, format);
+
     // create new empty/standard-value contribution - will be updated later with full details
     I_ContributionAccess contributionAccess = I_ContributionAccess.getInstance(this.getDataAccess(), ehrId);
     // parse and set audit information from input
     AuditDetails audit = ContributionServiceHelper.parseAuditDetails(content, format);
     contributionAccess.setAuditDetailsValues(audit);
+
     // commits with all default values (but without audit handling as it is done above)
     UUID contributionId = contributionAccess.commit(null, null, null);
-    List<Version> versions = ContributionServiceHelper.parseVersions(content, format);
-
-    if (versions.isEmpty()) {
-      throw new InvalidApiParameterException("Invalid Contribution, must have at least one Version object.");
-    }
 
     // go through those RM objects and execute the action of it (as listed in its audit) and connect it to new contribution
-    for (Version version : versions) {
-
-      Object versionData = version.getData();
+    for (int i = 0; i < versions.size(); i++) {
+      Version version = versions.get(i);
+      RMObject versionRmObject = versionRmObjects.get(i);
 
-      if (versionData !=
+      if (versionRmObject !=
           null) {  // the version contains the optional "data" attribute (i.e. payload), therefore has specific object type
         // (composition, folder,...)
-        RMObject versionRmObject;
-        if (versionData instanceof LinkedHashMap) {
-          versionRmObject = ContributionServiceHelper.unmarshalMapContentToRmObject((LinkedHashMap) versionData, format);
-        } else {
-          throw new IllegalArgumentException("Contribution input can't be processed");
-        }
-
         // switch to allow acting depending on exact type
-        SupportedClasses versionClass;
-        try {
-          versionClass = SupportedClasses.valueOf(versionRmObject.getClass().getSimpleName().toUpperCase());
-        } catch (Exception e) {
-          throw new InvalidApiParameterException(
-              "Invalid version object in contribution. " + versionRmObject.getClass().getSimpleName().toUpperCase() +
-              " not supported.");
-        }
+        SupportedClasses versionClass = supportedClass(versionRmObject);
         switch (versionClass) {
           case COMPOSITION:
             try {
@@ -210,6 +231,114 @@ public class ContributionServiceImp extends BaseServiceImp implements Contributi
     return contributionId;
   }
 
+  /**
+   * Parse the payloads of the versions, check the contribution rules and validate the compositions on the thread pool.
+   * All versions are checked, so that the errors of all invalid versions are reported at once.
+   * <p>
+   * The pool threads do not take part in the transaction of the contribution: the validation only uses the read paths
+   * of the {@link KnowledgeCacheService} and the terminology, which do not open a transaction of their own.
+   *
+   * @param versions The version wrapper objects
+   * @param format   Format of the payloads
+   * @return the payload of each version, null for a metadata version
+   * @throws ValidationException listing the errors when more than one version is invalid, otherwise the error of the
+   *                             invalid version
+   */
+  private List<RMObject> parseAndValidate(List<Version> versions, CompositionFormat format) {
+    List<Future<RMObject>> parsed = new ArrayList<>(versions.size());
+    for (Version version : versions) {
+      parsed.add(executorService.submit(() -> parseAndValidate(version, format)));
+    }
+
+    List<RMObject> versionRmObjects = new ArrayList<>(versions.size());
+    Map<Integer, RuntimeException> failures = new LinkedHashMap<>();
+    for (int i = 0; i < versions.size(); i++) {
+      try {
+        versionRmObjects.add(parsed.get(i).get());
+      } catch (ExecutionException e) {
+        versionRmObjects.add(null);
+        failures.put(i, e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+            : new InternalServerException(e.getCause()));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InternalServerException("Contribution validation interrupted", e);
+      }
+    }
+
+    if (failures.size() == 1) {
+      throw failures.values().iterator().next();
+    }
+    if (!failures.isEmpty()) {
+      // server side errors are not aggregated
+      failures.values().stream()
+          .filter(InternalServerException.class::isInstance)
+          .findFirst()
+          .ifPresent(e -> {
+            throw e;
+          });
+      throw new ValidationException(failures.entrySet().stream()
+          .map(failure -> "Version " + failure.getKey() + ": " + failure.getValue().getMessage())
+          .collect(Collectors.joining("; ", "Invalid versions in contribution. ", "")));
+    }
+    return versionRmObjects;
+  }
+
+  private RMObject parseAndValidate(Version version, CompositionFormat format) {
+    Object versionData = version.getData();
+    if (versionData == null) {
+      return null;
+    }
+
+    RMObject versionRmObject;
+    if (versionData instanceof LinkedHashMap) {
+      versionRmObject = ContributionServiceHelper.unmarshalMapContentToRmObject((LinkedHashMap) versionData, format);
+    } else {
+      throw new IllegalArgumentException("Contribution input can't be processed");
+    }
+
+    SupportedClasses versionClass = supportedClass(versionRmObject);
+
+    // access audit and extract method, e.g. CREATION
+    I_ConceptAccess.ContributionChangeType changeType =
+        I_ConceptAccess.ContributionChangeType.valueOf(version.getCommitAudit().getChangeType().getValue().toUpperCase());
+
+    checkContributionRules(version, changeType);    // evaluate and check contribution rules
+
+    if (versionClass == SupportedClasses.COMPOSITION && (changeType == I_ConceptAccess.ContributionChangeType.CREATION
+        || changeType == I_ConceptAccess.ContributionChangeType.MODIFICATION
+        || changeType == I_ConceptAccess.ContributionChangeType.AMENDMENT)) {
+      validate((Composition) versionRmObject);
+    }
+    return versionRmObject;
+  }
+
+  private SupportedClasses supportedClass(RMObject versionRmObject) {
+    try {
+      return SupportedClasses.valueOf(versionRmObject.getClass().getSimpleName().toUpperCase());
+    } catch (Exception e) {
+      throw new InvalidApiParameterException(
+          "Invalid version object in contribution. " + versionRmObject.getClass().getSimpleName().toUpperCase() +
+          " not supported.");
+    }
+  }
+
+  /**
+   * same error handling as the validation of {@link CompositionService#create(UUID, Composition, UUID)}
+   */
+  private void validate(Composition composition) {
+    try {
+      validationService.check(composition);
+    } catch (org.ehrbase.validation.ValidationException | UnprocessableEntityException e) {
+      throw new ValidationException(e.getMessage());
+    } catch (ValidationException e) {
+      throw e;
+    } catch (IllegalArgumentException e) {
+      throw new ValidationException(e);
+    } catch (Exception e) {
+      throw new InternalServerException(e);
+    }
+  }
+
   /**
    * Helper function to process a version of composition type
    *
@@ -224,19 +353,19 @@ public class ContributionServiceImp extends BaseServiceImp implements Contributi
     I_ConceptAccess.ContributionChangeType changeType =
         I_ConceptAccess.ContributionChangeType.valueOf(version.getCommitAudit().getChangeType().getValue().toUpperCase());
 
-    checkContributionRules(version, changeType);    // evaluate and check contribution rules
+    // contribution rules were checked with the payload, see parseAndValidate
 
     switch (changeType) {
       case CREATION:
-        // call creation of a new composition with given input
-        compositionService.create(ehrId, versionRmObject, contributionId);
+        // call creation of a new composition with given input, validated with the contribution
+        compositionService.createValidated(ehrId, versionRmObject, contributionId);
         break;
       case AMENDMENT: // triggers the same processing as modification // TODO-396: so far so good, but should use the type
         // "AMENDMENT" for audit in access layer
       case MODIFICATION:
         String actualPreceding = getAndCheckActualPreceding(version);
-        // call modification of the given composition
-        compositionService.update(ehrId, new ObjectVersionId(actualPreceding), versionRmObject, contributionId);
+        // call modification of the given composition, validated with the contribution
+        compositionService.updateValidated(ehrId, new ObjectVersionId(actualPreceding), versionRmObject, contributionId);
         break;
       case DELETED:   // case of deletion change type, but request also has payload (TODO: should that be even allowed?
         // specification-wise it's not forbidden)
@@ -279,7 +408,7 @@ public class ContributionServiceImp extends BaseServiceImp implements Contributi
     I_ConceptAccess.ContributionChangeType changeType =
         I_ConceptAccess.ContributionChangeType.valueOf(version.getCommitAudit().getChangeType().getValue().toUpperCase());
 
-    checkContributionRules(version, changeType);    // evaluate and check contribution rules
+    // contribution rules were checked with the payload, see parseAndValidate
 
     switch (changeType) {
       case CREATION:
@@ -312,7 +441,7 @@ public class ContributionServiceImp extends BaseServiceImp implements Contributi
     I_ConceptAccess.ContributionChangeType changeType =
         I_ConceptAccess.ContributionChangeType.valueOf(version.getCommitAudit().getChangeType().getValue().toUpperCase());
 
-    checkContributionRules(version, changeType);    // evaluate and check contribution rules
+    // contribution rules were checked with the payload, see parseAndValidate
 
     switch (changeType) {
       case CREATION:
@@ -580,4 +709,9 @@ public class ContributionServiceImp extends BaseServiceImp implements Contributi
     }
     return templates;
   }
+
+  @Override
+  public void destroy() {
+    executorService.shutdownNow();
+  }
 }
@@ -32,7 +32,6 @@ import com.nedap.archie.rm.generic.Attestation;
 import com.nedap.archie.rm.generic.AuditDetails;
 import com.nedap.archie.rm.generic.PartySelf;
 import com.nedap.archie.rm.generic.RevisionHistory;
-import com.nedap.archie.rm.generic.RevisionHistoryItem;
 import com.nedap.archie.rm.support.identification.HierObjectId;
 import com.nedap.archie.rm.support.identification.ObjectRef;
 import com.nedap.archie.rm.support.identification.ObjectVersionId;
@@ -62,6 +61,8 @@ import org.ehrbase.dao.access.interfaces.I_ConceptAccess;
 import org.ehrbase.dao.access.interfaces.I_EhrAccess;
 import org.ehrbase.dao.access.interfaces.I_StatusAccess;
 import org.ehrbase.dao.access.jooq.AttestationAccess;
+import org.ehrbase.dao.access.jooq.RevisionHistoryQuery;
+import org.ehrbase.dao.access.jooq.party.PartyIdentityCache;
 import org.ehrbase.dao.access.jooq.party.PersistedPartyProxy;
 import org.ehrbase.dao.access.jooq.party.PersistedPartyRef;
 import org.ehrbase.jooq.pg.Routines;
@@ -86,12 +87,17 @@ public class EhrServiceImp extends BaseServiceImp implements EhrService {
     public static final String DESCRIPTION = "description";
     private Logger logger = LoggerFactory.getLogger(getClass());
     private final ValidationService validationService;
+    private final CompositionVersionCache compositionVersionCache;
+    private final PartyIdentityCache partyIdentityCache;
     private UUID emptyParty;
 
     @Autowired
-    public EhrServiceImp(KnowledgeCacheService knowledgeCacheService, ValidationService validationService, DSLContext context, ServerConfig serverConfig) {
+    public EhrServiceImp(KnowledgeCacheService knowledgeCacheService, ValidationService validationService, DSLContext context, ServerConfig serverConfig,
+                         CompositionVersionCache compositionVersionCache, PartyIdentityCache partyIdentityCache) {
         super(knowledgeCacheService, context, serverConfig);
         this.validationService = validationService;
+        this.compositionVersionCache = compositionVersionCache;
+        this.partyIdentityCache = partyIdentityCache;
     }
 
     @PostConstruct
@@ -201,7 +207,10 @@ public class EhrServiceImp extends BaseServiceImp implements EhrService {
             throw new ObjectNotFoundException("versioned_ehr_status", "No VERSIONED_EHR_STATUS with given version: " + version);
         }
 
-        I_StatusAccess statusAccess = I_StatusAccess.getVersionMapOfStatus(getDataAccess(), versionedObjectUid).get(version);
+        I_StatusAccess statusAccess = I_StatusAccess.retrieveInstanceByVersion(getDataAccess(), versionedObjectUid, version);
+        if (statusAccess == null) {
+            throw new ObjectNotFoundException("versioned_ehr_status", "No VERSIONED_EHR_STATUS with given version: " + version);
+        }
 
         ObjectVersionId versionId = new ObjectVersionId(versionedObjectUid + "::" + getServerConfig().getNodename() + "::" + version);
         DvCodedText lifecycleState = new DvCodedText("complete", new CodePhrase("532"));   // TODO: once lifecycle state is supported, get it here dynamically
@@ -376,20 +385,9 @@ public class EhrServiceImp extends BaseServiceImp implements EhrService {
 
     @Override
     public RevisionHistory getRevisionHistoryOfVersionedEhrStatus(UUID ehrUid) {
-        I_EhrAccess ehrAccess = I_EhrAccess.retrieveInstance(getDataAccess(), ehrUid);
-
-        // get number of versions
-        int versions = I_StatusAccess.getLatestVersionNumber(getDataAccess(), ehrAccess.getStatusId());
-        // fetch each version
+        // only the audits of the versions are fetched, not their content
         UUID versionedObjectUid = getEhrStatusVersionedObjectUidByEhr(ehrUid);
-        RevisionHistory revisionHistory = new RevisionHistory();
-        for (int i = 1; i <= versions; i++) {
-            Optional<OriginalVersion<EhrStatus>> ehrStatus = getEhrStatusAtVersion(ehrUid, versionedObjectUid, i);
-
-            // create RevisionHistoryItem for each version and append it to RevisionHistory
-            if (ehrStatus.isPresent())
-                revisionHistory.addItem(revisionHistoryItemFromEhrStatus(ehrStatus.get(), i));
-        }
+        RevisionHistory revisionHistory = RevisionHistoryQuery.ofStatus(getDataAccess(), versionedObjectUid, getServerConfig().getNodename());
 
         if (revisionHistory.getItems().isEmpty()) {
             throw new InternalServerException("Problem creating RevisionHistory"); // never should be empty; not valid
@@ -397,27 +395,6 @@ public class EhrServiceImp extends BaseServiceImp implements EhrService {
         return revisionHistory;
     }
 
-    private RevisionHistoryItem revisionHistoryItemFromEhrStatus(OriginalVersion<EhrStatus> ehrStatus, int version) {
-
-        String statusId = ehrStatus.getUid().getValue().split("::")[0];
-        ObjectVersionId objectVersionId = new ObjectVersionId( statusId + "::" + getServerConfig().getNodename() + "::" + version);
-
-        // Note: is List but only has more than one item when there are contributions regarding this object of change type attestation
-        List<AuditDetails> auditDetailsList = new ArrayList<>();
-        // retrieving the audits
-        auditDetailsList.add(ehrStatus.getCommitAudit());
-
-        // add retrieval of attestations, if there are any
-        if (ehrStatus.getAttestations() != null) {
-            for (Attestation a : ehrStatus.getAttestations()) {
-                AuditDetails newAudit = new AuditDetails(a.getSystemId(), a.getCommitter(), a.getTimeCommitted(), a.getChangeType(), a.getDescription());
-                auditDetailsList.add(newAudit);
-            }
-        }
-
-        return new RevisionHistoryItem(objectVersionId, auditDetailsList);
-    }
-
     /**
      * {@inheritDoc}
      */
@@ -456,12 +433,16 @@ public class EhrServiceImp extends BaseServiceImp implements EhrService {
     public void adminDeleteEhr(UUID ehrId) {
         I_EhrAccess ehrAccess = I_EhrAccess.retrieveInstance(getDataAccess(), ehrId);
         ehrAccess.adminDeleteEhr();
+        // the versions of the deleted compositions are not known anymore
+        compositionVersionCache.clear();
     }
 
     @PreAuthorize("hasRole('ADMIN')")
     @Override
     public void adminPurgePartyIdentified() {
         getDataAccess().getContext().deleteFrom(PARTY_IDENTIFIED).where(partyUsage(PARTY_IDENTIFIED.ID).eq(0L)).execute();
+        // cleared when the purge is committed
+        partyIdentityCache.invalidate();
     }
 
     @PreAuthorize("hasRole('ADMIN')")
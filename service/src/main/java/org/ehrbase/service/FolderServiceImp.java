@@ -328,18 +328,17 @@ public class FolderServiceImp extends BaseServiceImp implements FolderService {
     I_FolderAccess folderAccess;
     Integer version = FolderUtils.extractVersionNumberFromObjectVersionId(folderId);
     if (version == null) {
-      // Get the latest object
-      folderAccess = I_FolderAccess.getInstanceForExistingFolder(getDataAccess(), folderId);
+      // Get the latest object, only loading the sub tree at the path
+      folderAccess = I_FolderAccess.getInstanceForExistingFolder(getDataAccess(), folderId, pathSegments(path));
       version = getLastVersionNumber(folderId);
     } else {
       // Get timestamp for version
       Timestamp versionTimestamp = FolderAccess.getTimestampForVersion(getDataAccess(), folderId, version);
-      folderAccess = I_FolderAccess.getInstanceForExistingFolder(getDataAccess(), folderId, versionTimestamp);
+      folderAccess = extractPath(
+          I_FolderAccess.getInstanceForExistingFolder(getDataAccess(), folderId, versionTimestamp), path);
     }
 
-    I_FolderAccess withExtractedPath = extractPath(folderAccess, path);
-
-    return createDto(withExtractedPath, version, path == null || path.equals("/"));
+    return createDto(folderAccess, version, path == null || path.equals("/"));
   }
 
   /**
@@ -381,7 +380,7 @@ public class FolderServiceImp extends BaseServiceImp implements FolderService {
   public Optional<FolderDto> getLatest(ObjectVersionId folderId, String path) {
 
     I_FolderAccess folderAccess =
-        I_FolderAccess.getInstanceForExistingFolder(getDataAccess(), folderId, Timestamp.from(Instant.now()));
+        I_FolderAccess.getInstanceForExistingFolder(getDataAccess(), folderId, pathSegments(path));
     Integer version = FolderUtils.extractVersionNumberFromObjectVersionId(folderId);
 
     if (version == null) {
@@ -492,16 +491,23 @@ public class FolderServiceImp extends BaseServiceImp implements FolderService {
    * @return folderAccess containing the sub folder and its sub tree if path can be found
    */
   private I_FolderAccess extractPath(I_FolderAccess folderAccess, String path) {
+    return FolderUtils.getPath(folderAccess, 0, pathSegments(path));
+  }
+
+  /**
+   * @param path - Path sent by the client, may be null
+   * @return the names of the folders along the path, empty for the root
+   */
+  private String[] pathSegments(String path) {
     // Handle path if sent by client
-    if (path != null && !"/".equals(path)) {
-      // Trim starting forward slash
-      if (path.startsWith("/")) {
-        path = path.substring(1);
-      }
-      folderAccess = FolderUtils.getPath(folderAccess, 0, path.split("/"));
+    if (path == null || "/".equals(path)) {
+      return new String[0];
     }
-
-    return folderAccess;
+    // Trim starting forward slash
+    if (path.startsWith("/")) {
+      path = path.substring(1);
+    }
+    return path.split("/");
   }
 
   @PreAuthorize("hasRole('ADMIN')")
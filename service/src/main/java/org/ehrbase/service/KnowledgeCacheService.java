@@ -36,8 +36,12 @@ import java.util.Set;
 import java.util.TreeSet;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import org.apache.xmlbeans.XmlException;
 import org.ehrbase.api.exception.InvalidApiParameterException;
@@ -46,7 +50,11 @@ import org.ehrbase.aql.containment.JsonPathQueryResult;
 import org.ehrbase.aql.containment.TemplateIdAqlTuple;
 import org.ehrbase.aql.containment.TemplateIdQueryTuple;
 import org.ehrbase.aql.sql.queryimpl.ItemInfo;
+import org.ehrbase.cache.CacheInvalidation;
+import org.ehrbase.cache.CacheInvalidationBus;
 import org.ehrbase.cache.CacheOptions;
+import org.ehrbase.cache.CacheWarmUpProgress;
+import org.ehrbase.cache.InProcessCacheInvalidationBus;
 import org.ehrbase.ehr.knowledge.I_KnowledgeCache;
 import org.ehrbase.ehr.knowledge.TemplateMetaData;
 import org.ehrbase.util.TemplateUtils;
@@ -54,15 +62,25 @@ import org.ehrbase.webtemplate.model.WebTemplate;
 import org.ehrbase.webtemplate.model.WebTemplateNode;
 import org.ehrbase.webtemplate.parser.NodeId;
 import org.ehrbase.webtemplate.parser.OPTParser;
+import org.openehr.schemas.v1.CARCHETYPEROOT;
+import org.openehr.schemas.v1.CATTRIBUTE;
+import org.openehr.schemas.v1.CCOMPLEXOBJECT;
+import org.openehr.schemas.v1.COBJECT;
 import org.openehr.schemas.v1.OPERATIONALTEMPLATE;
 import org.openehr.schemas.v1.TemplateDocument;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * Look up and caching for archetypes, openEHR showTemplates and Operational Templates. Search in
@@ -87,7 +105,7 @@ import org.springframework.transaction.annotation.Transactional;
  */
 @Service
 @Transactional
-public class KnowledgeCacheService implements I_KnowledgeCache, IntrospectService {
+public class KnowledgeCacheService implements I_KnowledgeCache, IntrospectService, DisposableBean {
 
   public static final String ELEMENT = "ELEMENT";
 
@@ -95,6 +113,7 @@ public class KnowledgeCacheService implements I_KnowledgeCache, IntrospectServic
 
   private final TemplateStorage templateStorage;
   private final CacheOptions cacheOptions;
+  private final CacheInvalidationBus invalidationBus;
 
   private final Cache jsonPathQueryResultCache;
   private final Cache webTemplateCache;
@@ -106,56 +125,174 @@ public class KnowledgeCacheService implements I_KnowledgeCache, IntrospectServic
   // index templateId to uuid
   private final Map<String, UUID> idxCacheTemplateIdToUuid = new ConcurrentHashMap<>();
 
+  // index archetype node id (and RM class name) to the ids of the templates containing it
+  private final Map<String, Set<String>> idxCacheContainmentToTemplateIds = new ConcurrentHashMap<>();
+  // templates covered by the containment index
+  private final Set<String> idxContainmentTemplateIds = ConcurrentHashMap.newKeySet();
+  // templates which could not be indexed, left out of the queries until they change
+  private final Set<String> idxContainmentFailedTemplateIds = ConcurrentHashMap.newKeySet();
+
+  // keys of the query and field cache entries by templateId, to evict the entries of a single template
+  private final Map<String, Set<TemplateIdQueryTuple>> idxCacheTemplateIdToQueryKeys = new ConcurrentHashMap<>();
+  private final Map<String, Set<TemplateIdAqlTuple>> idxCacheTemplateIdToFieldKeys = new ConcurrentHashMap<>();
+
+  // parsed templates by templateId
+  private final Map<String, OPERATIONALTEMPLATE> idxCacheTemplateIdToTemplate = new ConcurrentHashMap<>();
+  // ids of the stored templates, immutable snapshot replaced on each change, null until first loaded
+  private volatile Set<String> templateIdSnapshot;
+
+  // incremented on each change of the set of templates, used by dependent caches to detect staleness
+  private final AtomicLong templateSetGeneration = new AtomicLong();
+  // guards the changes of the parsed templates, the template id snapshot and the generation
+  private final Object templateSetLock = new Object();
+
+  // builds the WebTemplates and pre-built queries and stores the WebTemplates in the background
+  private final ThreadPoolExecutor warmUpExecutor;
+  private volatile CacheWarmUpProgress warmUpProgress = new CacheWarmUpProgress(0);
+
   @Value("${system.allow-template-overwrite:false}")
   private boolean allowTemplateOverwrite;
 
   public KnowledgeCacheService(TemplateStorage templateStorage,
       CacheManager cacheManager,
       CacheOptions cacheOptions) {
+    this(templateStorage, cacheManager, cacheOptions, new InProcessCacheInvalidationBus());
+  }
+
+  @Autowired
+  public KnowledgeCacheService(TemplateStorage templateStorage,
+      CacheManager cacheManager,
+      CacheOptions cacheOptions,
+      CacheInvalidationBus invalidationBus) {
 
     this.templateStorage = templateStorage;
     this.cacheOptions = cacheOptions;
+    this.invalidationBus = invalidationBus;
 
     webTemplateCache = cacheManager.getCache(CacheOptions.INTROSPECT_CACHE);
     jsonPathQueryResultCache = cacheManager.getCache(CacheOptions.QUERY_CACHE);
     fieldCache = cacheManager.getCache(CacheOptions.FIELDS_CACHE);
     multivaluedCache = cacheManager.getCache(CacheOptions.MULTI_VALUE_CACHE);
+
+    // one task per template, so the queue is not bounded
+    int poolSize = Math.max(cacheOptions.getWarmUpThreads(), 1);
+    warmUpExecutor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(), new CustomizableThreadFactory("knowledge-cache-"));
+    warmUpExecutor.allowCoreThreadTimeOut(true);
+
+    invalidationBus.subscribe(this::onInvalidation);
   }
 
+  /**
+   * Warm up the caches of all stored templates in the background: the templates are parsed and
+   * their WebTemplates built in parallel, then their queries are pre-built if enabled. The caches
+   * are filled on demand meanwhile, the progress is reported by {@link #getWarmUpProgress()}.
+   */
   public void initializeCaches() {
-    Set<String> templateIds = new HashSet<>();
+    Set<String> templateIds = getAllTemplateIds();
+    CacheWarmUpProgress progress = new CacheWarmUpProgress(templateIds.size());
+    warmUpProgress = progress;
 
-    for (var metadata : listAllOperationalTemplates()) {
-      var template = metadata.getOperationaltemplate();
-      var templateId = TemplateUtils.getTemplateId(template);
+    CompletableFuture<?>[] webTemplates = templateIds.stream()
+        .map(templateId -> CompletableFuture.runAsync(() -> warmUp(templateId, progress),
+            warmUpExecutor))
+        .toArray(CompletableFuture[]::new);
 
-      templateIds.add(templateId);
-
-      try {
-        putIntoCache(template);
-      } catch (RuntimeException e) {
-        log.error("An error occurred while caching template: {}", templateId, e);
-      }
+    if (cacheOptions.isPreBuildQueries()) {
+      // the WebTemplates of all templates are available first
+      CompletableFuture.allOf(webTemplates).thenRun(() -> templateIds.forEach(templateId ->
+          warmUpExecutor.execute(() -> {
+            try {
+              precalculateQueries(templateId);
+              progress.queriesPrebuilt();
+            } catch (RuntimeException e) {
+              log.error("An error occurred while calculating queries for template: {}",
+                  templateId, e);
+            }
+          })));
     }
+  }
 
-    if (cacheOptions.isPreBuildQueries()) {
-      var executor = Executors.newFixedThreadPool(1);
-      executor.submit(() -> {
-        for (String templateId : templateIds) {
-          try {
-            precalculateQueries(templateId);
-          } catch (RuntimeException e) {
-            log.error("An error occurred while calculating queries for template: {}",
-                templateId, e);
-          }
-        }
-      });
+  private void warmUp(String templateId, CacheWarmUpProgress progress) {
+    try {
+      indexContainments(templateId, containmentKeys(getQueryOptMetaData(templateId)));
+      progress.webTemplateBuilt();
+    } catch (RuntimeException e) {
+      log.error("An error occurred while caching template: {}", templateId, e);
+      idxContainmentFailedTemplateIds.add(templateId);
+      progress.webTemplateFailed();
     }
   }
 
+  /**
+   * @return the progress of the last warm-up started by {@link #initializeCaches()}, complete if
+   * none was started
+   */
+  @Transactional(propagation = Propagation.SUPPORTS)
+  public CacheWarmUpProgress getWarmUpProgress() {
+    return warmUpProgress;
+  }
+
+  @Override
+  public void destroy() {
+    warmUpExecutor.shutdownNow();
+  }
+
+  /**
+   * @return the ids of all stored templates, an immutable snapshot loaded from the storage once
+   */
   @Override
   public Set<String> getAllTemplateIds() {
-    return templateStorage.findAllTemplateIds();
+    Set<String> templateIds = templateIdSnapshot;
+    if (templateIds == null) {
+      synchronized (templateSetLock) {
+        templateIds = loadTemplateIds();
+      }
+    }
+    return templateIds;
+  }
+
+  // must be called holding templateSetLock
+  private Set<String> loadTemplateIds() {
+    if (templateIdSnapshot == null) {
+      templateIdSnapshot = Set.copyOf(templateStorage.findAllTemplateIds());
+    }
+    return templateIdSnapshot;
+  }
+
+  /**
+   * Publish a stored or deleted template: the parsed template, the template id snapshot and the
+   * generation are changed together.
+   *
+   * @param templateId the template
+   * @param template   the stored template, null if it was deleted
+   */
+  private void publishTemplate(String templateId, OPERATIONALTEMPLATE template) {
+    synchronized (templateSetLock) {
+      Set<String> templateIds = new HashSet<>(loadTemplateIds());
+      if (template == null) {
+        idxCacheTemplateIdToTemplate.remove(templateId);
+        templateIds.remove(templateId);
+      } else {
+        idxCacheTemplateIdToTemplate.put(templateId, template);
+        templateIds.add(templateId);
+      }
+      templateIdSnapshot = Set.copyOf(templateIds);
+      templateSetGeneration.incrementAndGet();
+    }
+  }
+
+  private static void afterCommit(Runnable action) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          action.run();
+        }
+      });
+    } else {
+      action.run();
+    }
   }
 
   @Override
@@ -204,19 +341,16 @@ public class KnowledgeCacheService implements I_KnowledgeCache, IntrospectServic
     }
 
     templateStorage.storeTemplate(template);
-
     putIntoCache(template);
 
-    if (cacheOptions.isPreBuildQueries()) {
-      ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(1);
-      executor.submit(() -> {
-        try {
-          precalculateQueries(templateId);
-        } catch (RuntimeException e) {
-          log.error("An error occurred while processing template: {}", templateId);
-        }
-      });
-    }
+    // a rejected or rolled back template is not published
+    afterCommit(() -> {
+      publishTemplate(templateId, template);
+      if (cacheOptions.isPreBuildQueries()) {
+        precalculateQueriesInBackground(templateId);
+      }
+    });
+    invalidationBus.publish(new CacheInvalidation(CacheInvalidation.Type.TEMPLATE, templateId));
 
     // retrieve the template Id for this new entry
     return templateId;
@@ -230,7 +364,7 @@ public class KnowledgeCacheService implements I_KnowledgeCache, IntrospectServic
       idxCacheUuidToTemplateId.put(uid, templateId);
       idxCacheTemplateIdToUuid.put(templateId, uid);
 
-      getQueryOptMetaData(templateId);
+      indexContainments(templateId, containmentKeys(getQueryOptMetaData(templateId)));
     } catch (RuntimeException e) {
       log.error("Invalid template {}", templateId);
       invalidateCache(template);
@@ -238,6 +372,19 @@ public class KnowledgeCacheService implements I_KnowledgeCache, IntrospectServic
     }
   }
 
+  private void precalculateQueriesInBackground(String templateId) {
+    warmUpExecutor.execute(() -> {
+      try {
+        // unless deleted meanwhile
+        if (getAllTemplateIds().contains(templateId)) {
+          precalculateQueries(templateId);
+        }
+      } catch (RuntimeException e) {
+        log.error("An error occurred while processing template: {}", templateId);
+      }
+    });
+  }
+
   private void precalculateQueries(String templateId) {
     getQueryOptMetaData(templateId).findAllContainmentCombinations().stream()
         .filter(nodeIds -> !nodeIds.isEmpty() &&
@@ -251,14 +398,85 @@ public class KnowledgeCacheService implements I_KnowledgeCache, IntrospectServic
     return addOperationalTemplateIntern(template, true);
   }
 
-  // invalidates some derived caches like the queryOptMetaDataCache which depend on the template
+  // invalidates the derived caches like the queryOptMetaDataCache which depend on the template,
+  // the entries of the other templates are kept
   private void invalidateCache(OPERATIONALTEMPLATE template) {
     // invalidate the cache for this template
     webTemplateCache.evict(TemplateUtils.getUid(template));
+    invalidateCache(TemplateUtils.getTemplateId(template));
+  }
+
+  private void invalidateCache(String templateId) {
+    // the uid of an overwritten template may differ
+    UUID uid = idxCacheTemplateIdToUuid.remove(templateId);
+    if (uid != null) {
+      webTemplateCache.evict(uid);
+      idxCacheUuidToTemplateId.remove(uid);
+    }
+    unindexContainments(templateId);
+    idxContainmentFailedTemplateIds.remove(templateId);
+
+    Optional.ofNullable(idxCacheTemplateIdToQueryKeys.remove(templateId))
+        .ifPresent(keys -> keys.forEach(jsonPathQueryResultCache::evict));
+    Optional.ofNullable(idxCacheTemplateIdToFieldKeys.remove(templateId))
+        .ifPresent(keys -> keys.forEach(fieldCache::evict));
+    multivaluedCache.evict(templateId);
+
+    synchronized (templateSetLock) {
+      idxCacheTemplateIdToTemplate.remove(templateId);
+      templateSetGeneration.incrementAndGet();
+    }
+  }
+
+  // a change published by another node
+  private void onInvalidation(CacheInvalidation invalidation) {
+    switch (invalidation.getType()) {
+      case TEMPLATE:
+        String templateId = invalidation.getKey();
+        invalidateCache(templateId);
+        synchronized (templateSetLock) {
+          // reloaded on next use
+          templateIdSnapshot = null;
+        }
+        if (cacheOptions.isPreBuildQueries()) {
+          precalculateQueriesInBackground(templateId);
+        }
+        break;
+      case ALL:
+        invalidateAll();
+        break;
+      default:
+        // not cached here
+    }
+  }
+
+  private void invalidateAll() {
+    webTemplateCache.clear();
+    jsonPathQueryResultCache.clear();
+    fieldCache.clear();
+    multivaluedCache.clear();
+
+    idxCacheUuidToTemplateId.clear();
+    idxCacheTemplateIdToUuid.clear();
+    idxContainmentTemplateIds.clear();
+    idxContainmentFailedTemplateIds.clear();
+    idxCacheContainmentToTemplateIds.clear();
+    idxCacheTemplateIdToQueryKeys.clear();
+    idxCacheTemplateIdToFieldKeys.clear();
+
+    synchronized (templateSetLock) {
+      idxCacheTemplateIdToTemplate.clear();
+      templateIdSnapshot = null;
+      templateSetGeneration.incrementAndGet();
+    }
+  }
 
-    jsonPathQueryResultCache.invalidate();
-    fieldCache.invalidate();
-    multivaluedCache.invalidate();
+  /**
+   * @return the current generation of the template set, changes whenever a template is added, overwritten or deleted
+   */
+  @Transactional(propagation = Propagation.SUPPORTS)
+  public long getTemplateSetGeneration() {
+    return templateSetGeneration.get();
   }
 
   @Override
@@ -293,6 +511,9 @@ public class KnowledgeCacheService implements I_KnowledgeCache, IntrospectServic
     if (deleted) {
       // Remove template from caches
       invalidateCache(template);
+      afterCommit(() -> publishTemplate(TemplateUtils.getTemplateId(template), null));
+      invalidationBus.publish(new CacheInvalidation(CacheInvalidation.Type.TEMPLATE,
+          TemplateUtils.getTemplateId(template)));
     }
 
     return deleted;
@@ -310,15 +531,54 @@ public class KnowledgeCacheService implements I_KnowledgeCache, IntrospectServic
   }
 
   private UUID findUuidByTemplateId(String templateId) {
-    return idxCacheTemplateIdToUuid.computeIfAbsent(templateId, id ->
-        UUID.fromString(retrieveOperationalTemplate(id)
+    UUID uuid = idxCacheTemplateIdToUuid.get(templateId);
+    if (uuid != null) {
+      return uuid;
+    }
+
+    // not computed in the map: a query must not wait for a template read by the warm-up
+    uuid = readWebTemplateSnapshot(templateId)
+        .orElseGet(() -> UUID.fromString(retrieveOperationalTemplate(templateId)
             .orElseThrow(() -> new IllegalArgumentException(
                 String.format("Unknown template %s", templateId)))
             .getUid()
             .getValue()));
+    UUID existing = idxCacheTemplateIdToUuid.putIfAbsent(templateId, uuid);
+    return existing != null ? existing : uuid;
+  }
+
+  // on a cold start the WebTemplate stored with the template is used instead of parsing the template
+  private Optional<UUID> readWebTemplateSnapshot(String templateId) {
+    return templateStorage.readWebTemplate(templateId).map(snapshot -> {
+      idxCacheUuidToTemplateId.put(snapshot.getUid(), templateId);
+      webTemplateCache.put(snapshot.getUid(), snapshot.getWebTemplate());
+      return snapshot.getUid();
+    });
+  }
+
+  // in the background, as the caller may run in a transaction which must not be affected, and once
+  // it is committed, as the template may have been stored by it
+  private void storeWebTemplateSnapshot(OPERATIONALTEMPLATE operationaltemplate,
+      WebTemplate webTemplate) {
+    String templateId = TemplateUtils.getTemplateId(operationaltemplate);
+    afterCommit(() -> {
+      try {
+        warmUpExecutor.execute(() -> {
+          try {
+            templateStorage.storeWebTemplate(operationaltemplate, webTemplate);
+          } catch (RuntimeException e) {
+            log.warn("Could not store the WebTemplate of template {}", templateId, e);
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        log.debug("WebTemplate of template {} not stored on shutdown", templateId);
+      }
+    });
   }
 
+  // read path, also used by the contribution validation threads which must not open a transaction each
   @Override
+  @Transactional(propagation = Propagation.SUPPORTS)
   public WebTemplate getQueryOptMetaData(UUID uuid) {
     WebTemplate retval = webTemplateCache.get(uuid, WebTemplate.class);
     if (retval == null) {
@@ -328,6 +588,7 @@ public class KnowledgeCacheService implements I_KnowledgeCache, IntrospectServic
   }
 
   @Override
+  @Transactional(propagation = Propagation.SUPPORTS)
   public WebTemplate getQueryOptMetaData(String templateId) {
     return getQueryOptMetaData(findUuidByTemplateId(templateId));
   }
@@ -362,22 +623,35 @@ public class KnowledgeCacheService implements I_KnowledgeCache, IntrospectServic
     }
 
     webTemplateCache.put(TemplateUtils.getUid(operationaltemplate), visitor);
+    storeWebTemplateSnapshot(operationaltemplate, visitor);
     return visitor;
   }
 
   /**
    * Helper function to retrieve the operational template from file storage and put it into the
    * cache. For instance, to handle first time access to an operational template before it was
-   * written to cache already.
+   * written to cache already. The parsed template is only cached if the template set did not change
+   * while it was read, so that a concurrent overwrite or deletion is not undone.
    *
    * @param filename of the OPT file in storage
    * @return The operational template or null.
    */
   private OPERATIONALTEMPLATE getOperationaltemplateFromFileStorage(String filename) {
+    OPERATIONALTEMPLATE cached = idxCacheTemplateIdToTemplate.get(filename);
+    if (cached != null) {
+      return cached;
+    }
+
+    long generation = templateSetGeneration.get();
     var template = templateStorage.readOperationaltemplate(filename);
-    template.ifPresent(
-        existingTemplate -> idxCacheUuidToTemplateId.put(TemplateUtils.getUid(existingTemplate),
-            filename));
+    template.ifPresent(existingTemplate -> {
+      idxCacheUuidToTemplateId.put(TemplateUtils.getUid(existingTemplate), filename);
+      synchronized (templateSetLock) {
+        if (templateSetGeneration.get() == generation) {
+          idxCacheTemplateIdToTemplate.putIfAbsent(filename, existingTemplate);
+        }
+      }
+    });
     return template.orElse(null);
   }
 
@@ -398,15 +672,185 @@ public class KnowledgeCacheService implements I_KnowledgeCache, IntrospectServic
     return deleted;
   }
 
+  /**
+   * Find the templates which may satisfy a containment expression, that is the templates containing
+   * all its archetypes (or RM classes if no archetype is specified). The lookup uses the containment
+   * index and does not depend on the number of templates, the actual paths are then resolved by
+   * {@link #resolveForTemplate(String, Collection)}.
+   * <p>
+   * The templates not indexed yet, f.e. while the caches are warmed up, are candidates as well: they
+   * are indexed by {@link #resolveForTemplate(String, Collection)} once they are resolved. The
+   * templates which could not be indexed are left out.
+   * </p>
+   *
+   * @param nodeIds the containment expression
+   * @return the candidate template ids
+   */
+  @Transactional(propagation = Propagation.SUPPORTS)
+  public Set<String> findTemplateIdsContaining(Collection<NodeId> nodeIds) {
+    Set<String> templateIds = getAllTemplateIds();
+
+    Set<String> candidates = null;
+    for (NodeId nodeId : nodeIds) {
+      if (nodeId.getClassName() == null) {
+        // not indexed, all templates are candidates
+        continue;
+      }
+      Set<String> containing = idxCacheContainmentToTemplateIds
+          .getOrDefault(containmentKey(nodeId), Collections.emptySet());
+      if (candidates == null) {
+        candidates = new HashSet<>(containing);
+      } else {
+        candidates.retainAll(containing);
+      }
+    }
+
+    if (candidates == null) {
+      candidates = new HashSet<>(templateIds);
+    } else {
+      // a template deleted on another node can still be indexed
+      candidates.retainAll(templateIds);
+      templateIds.stream()
+          .filter(templateId -> !idxContainmentTemplateIds.contains(templateId))
+          .forEach(candidates::add);
+    }
+    candidates.removeAll(idxContainmentFailedTemplateIds);
+    return candidates;
+  }
+
+  /**
+   * Index a template on its first resolution: from its WebTemplate if it is cached, from its
+   * operational template otherwise, so that the WebTemplate of a template not containing the nodes
+   * is not built. A template which can not be indexed is recorded and not tried again until it
+   * changes.
+   *
+   * @return false if the template does not contain the nodes
+   */
+  private boolean indexOnDemand(String templateId, Collection<NodeId> nodeIds) {
+    if (idxContainmentFailedTemplateIds.contains(templateId)) {
+      return false;
+    }
+
+    try {
+      WebTemplate webTemplate = Optional.ofNullable(idxCacheTemplateIdToUuid.get(templateId))
+          .map(uid -> webTemplateCache.get(uid, WebTemplate.class))
+          .orElse(null);
+      if (webTemplate != null) {
+        indexContainments(templateId, containmentKeys(webTemplate));
+      } else {
+        indexContainments(templateId, containmentKeys(retrieveOperationalTemplate(templateId)
+            .orElseThrow(() -> new IllegalArgumentException(
+                String.format("Unknown template %s", templateId)))));
+      }
+    } catch (RuntimeException e) {
+      log.warn("Could not index containments of template {}", templateId, e);
+      idxContainmentFailedTemplateIds.add(templateId);
+      return false;
+    }
+
+    return nodeIds.stream()
+        .filter(nodeId -> nodeId.getClassName() != null)
+        .allMatch(nodeId -> idxCacheContainmentToTemplateIds
+            .getOrDefault(containmentKey(nodeId), Collections.emptySet())
+            .contains(templateId));
+  }
+
+  private void indexContainments(String templateId, Set<String> keys) {
+    unindexContainments(templateId);
+
+    keys.forEach(key -> idxCacheContainmentToTemplateIds
+        .computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet())
+        .add(templateId));
+    idxContainmentTemplateIds.add(templateId);
+    idxContainmentFailedTemplateIds.remove(templateId);
+  }
+
+  private void unindexContainments(String templateId) {
+    idxContainmentTemplateIds.remove(templateId);
+    idxCacheContainmentToTemplateIds.values().forEach(templateIds -> templateIds.remove(templateId));
+  }
+
+  /**
+   * @return the containment keys of the archetypes of a WebTemplate
+   */
+  private static Set<String> containmentKeys(WebTemplate webTemplate) {
+    Set<String> keys = new HashSet<>();
+    List<WebTemplateNode> nodes = new ArrayList<>();
+    nodes.add(webTemplate.getTree());
+    while (!nodes.isEmpty()) {
+      WebTemplateNode node = nodes.remove(nodes.size() - 1);
+      if (node.getNodeId() != null) {
+        addContainmentKeys(keys, new NodeId(node.getNodeId()));
+      }
+      nodes.addAll(node.getChildren());
+    }
+    return keys;
+  }
+
+  /**
+   * @return the containment keys of the archetype roots of an operational template, the same as
+   * the ones of its WebTemplate
+   */
+  private static Set<String> containmentKeys(OPERATIONALTEMPLATE template) {
+    Set<String> keys = new HashSet<>();
+    List<CCOMPLEXOBJECT> nodes = new ArrayList<>();
+    nodes.add(template.getDefinition());
+    while (!nodes.isEmpty()) {
+      CCOMPLEXOBJECT node = nodes.remove(nodes.size() - 1);
+      if (node instanceof CARCHETYPEROOT) {
+        addContainmentKeys(keys, new NodeId(((CARCHETYPEROOT) node).getArchetypeId().getValue()));
+      }
+      for (CATTRIBUTE attribute : node.getAttributesArray()) {
+        for (COBJECT child : attribute.getChildrenArray()) {
+          if (child instanceof CCOMPLEXOBJECT) {
+            nodes.add((CCOMPLEXOBJECT) child);
+          }
+        }
+      }
+    }
+    return keys;
+  }
+
+  private static void addContainmentKeys(Set<String> keys, NodeId nodeId) {
+    if (nodeId.getClassName() != null) {
+      keys.add(nodeId.getClassName());
+      keys.add(containmentKey(nodeId));
+    }
+  }
+
+  /**
+   * key of a containment in the index: the RM class name alone if no archetype is specified, as in
+   * the node matching of {@link #resolveForTemplate(String, Collection)}
+   */
+  private static String containmentKey(NodeId nodeId) {
+    if (nodeId.getNodeId() == null) {
+      return nodeId.getClassName();
+    }
+    return nodeId.getClassName() + "[" + nodeId.getNodeId() + "]";
+  }
+
   @Override
   public JsonPathQueryResult resolveForTemplate(String templateId, Collection<NodeId> nodeIds) {
+    if (!idxContainmentTemplateIds.contains(templateId) && !indexOnDemand(templateId, nodeIds)) {
+      return null;
+    }
+
     TemplateIdQueryTuple key = new TemplateIdQueryTuple(templateId, nodeIds);
 
     JsonPathQueryResult jsonPathQueryResult =
         jsonPathQueryResultCache.get(key, JsonPathQueryResult.class);
 
     if (jsonPathQueryResult == null) {
-      WebTemplate webTemplate = getQueryOptMetaData(templateId);
+      WebTemplate webTemplate;
+      try {
+        webTemplate = getQueryOptMetaData(templateId);
+      } catch (RuntimeException e) {
+        // not built again on each query
+        log.warn("Could not build the WebTemplate of template {}", templateId, e);
+        unindexContainments(templateId);
+        idxContainmentFailedTemplateIds.add(templateId);
+        return null;
+      }
       List<WebTemplateNode> webTemplateNodeList = new ArrayList<>();
       webTemplateNodeList.add(webTemplate.getTree());
       for (NodeId nodeId : nodeIds) {
@@ -440,6 +884,9 @@ public class KnowledgeCacheService implements I_KnowledgeCache, IntrospectServic
         jsonPathQueryResult = new JsonPathQueryResult(null, Collections.emptyMap());
       }
       jsonPathQueryResultCache.put(key, jsonPathQueryResult);
+      idxCacheTemplateIdToQueryKeys
+          .computeIfAbsent(templateId, k -> ConcurrentHashMap.newKeySet())
+          .add(key);
     }
 
     if (jsonPathQueryResult.getTemplateId() != null) {
@@ -486,6 +933,9 @@ public class KnowledgeCacheService implements I_KnowledgeCache, IntrospectServic
 
       itemInfo = new ItemInfo(type, category);
       fieldCache.put(key, itemInfo);
+      idxCacheTemplateIdToFieldKeys
+          .computeIfAbsent(templateId, k -> ConcurrentHashMap.newKeySet())
+          .add(key);
     }
     return itemInfo;
   }
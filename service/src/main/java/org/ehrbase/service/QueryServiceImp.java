@@ -21,40 +21,58 @@ package org.ehrbase.service;
 import static java.lang.String.format;
 
 import com.google.gson.JsonElement;
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.function.BiConsumer;
-import java.util.function.Supplier;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import org.ehrbase.api.definitions.ExplainMode;
 import org.ehrbase.api.definitions.QueryMode;
+import org.ehrbase.api.definitions.QueryPage;
+import org.ehrbase.api.definitions.QueryResultConsumer;
+import org.ehrbase.api.definitions.QueryResultStream;
 import org.ehrbase.api.definitions.ServerConfig;
 import org.ehrbase.api.exception.BadGatewayException;
 import org.ehrbase.api.exception.GeneralRequestProcessingException;
 import org.ehrbase.api.exception.InternalServerException;
 import org.ehrbase.api.service.QueryService;
 import org.ehrbase.aql.compiler.AqlExpression;
+import org.ehrbase.aql.sql.AqlPlanCache;
+import org.ehrbase.aql.sql.AqlQueryMetrics;
+import org.ehrbase.aql.sql.AqlQueryTimings;
 import org.ehrbase.aql.sql.AqlResult;
+import org.ehrbase.aql.sql.ParallelBranchExecutor;
 import org.ehrbase.dao.access.interfaces.I_EntryAccess;
 import org.ehrbase.dao.access.interfaces.I_StoredQueryAccess;
 import org.ehrbase.dao.access.jooq.AqlQueryHandler;
 import org.ehrbase.dao.access.jooq.StoredQueryAccess;
+import org.ehrbase.dao.access.query.QueryExecutor;
 import org.ehrbase.response.ehrscape.QueryDefinitionResultDto;
 import org.ehrbase.response.ehrscape.QueryResultDto;
 import org.ehrbase.response.ehrscape.StructuredString;
 import org.ehrbase.response.ehrscape.StructuredStringFormat;
 import org.ehrbase.response.ehrscape.query.ResultHolder;
 import org.ehrbase.validation.terminology.ExternalTerminologyValidation;
+import org.jooq.ConnectionProvider;
 import org.jooq.DSLContext;
 import org.jooq.Field;
 import org.jooq.Record;
 import org.jooq.exception.DataAccessException;
+import org.jooq.impl.DSL;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestClientException;
 
@@ -65,11 +83,26 @@ public class QueryServiceImp extends BaseServiceImp implements QueryService {
 
     private final ExternalTerminologyValidation tsAdapter;
 
+    private final AqlPlanCache aqlPlanCache;
+
+    private final ParallelBranchExecutor branchExecutor;
+
+    private final AqlQueryMetrics aqlQueryMetrics;
+
+    private final QueryExecutor queryExecutor;
+
+    @Value("${query.stream-fetch-size:1000}")
+    private int streamFetchSize;
+
     @Autowired
-    public QueryServiceImp(KnowledgeCacheService knowledgeCacheService, DSLContext context, ServerConfig serverConfig, ExternalTerminologyValidation tsAdapter) {
+    public QueryServiceImp(KnowledgeCacheService knowledgeCacheService, DSLContext context, ServerConfig serverConfig, ExternalTerminologyValidation tsAdapter, AqlPlanCache aqlPlanCache, ParallelBranchExecutor branchExecutor, AqlQueryMetrics aqlQueryMetrics, QueryExecutor queryExecutor) {
 
         super(knowledgeCacheService, context, serverConfig);
         this.tsAdapter = tsAdapter;
+        this.aqlPlanCache = aqlPlanCache;
+        this.branchExecutor = branchExecutor;
+        this.aqlQueryMetrics = aqlQueryMetrics;
+        this.queryExecutor = queryExecutor;
     }
 
     private static BiConsumer<Map<?,?>,String> checkNonNull = (map, errMsg) -> { if(map == null) throw new IllegalArgumentException(errMsg); };
@@ -84,17 +117,37 @@ public class QueryServiceImp extends BaseServiceImp implements QueryService {
                 return querySql(queryString);
 
             case AQL:
-                return queryAql(
-                    queryString,
-                    explain,
-                    () -> new AqlQueryHandler(getDataAccess(), tsAdapter).process(queryString, parameters),
-                    auditResultMap);
+                return queryAql(queryString, null, parameters, ExplainMode.of(explain), auditResultMap);
 
             default:
                 throw new IllegalArgumentException("Invalid query mode:"+queryMode);
         }
     }
 
+    @Override
+    public QueryResultDto queryAql(String queryString, String storedQueryName, Map<String, Object> parameters, ExplainMode explainMode, Map<String, Set<Object>> auditResultMap) {
+        return executeAql(
+            queryString,
+            storedQueryName,
+            explainMode,
+            aqlQueryHandler -> aqlQueryHandler.process(queryString, parameters),
+            auditResultMap);
+    }
+
+    @Override
+    public QueryResultDto queryPage(String queryString, Map<String, Object> parameters, QueryPage page, boolean explain, Map<String, Set<Object>> auditResultMap) {
+        return executeAql(
+            queryString,
+            null,
+            ExplainMode.of(explain),
+            aqlQueryHandler -> {
+                AqlResult aqlResult = aqlQueryHandler.processPage(queryString, parameters, page.getSize(), page.getContinuation());
+                page.setNextContinuation(aqlResult.getContinuation());
+                return aqlResult;
+            },
+            auditResultMap);
+    }
+
     private QueryResultDto formatResult(AqlResult aqlResult, String queryString, boolean explain){
         QueryResultDto dto = new QueryResultDto();
         dto.setExecutedAQL(queryString);
@@ -128,32 +181,165 @@ public class QueryServiceImp extends BaseServiceImp implements QueryService {
     private static final String ERR_MAP_NON_NULL = "Arg[%s] must not be null";
     
     
-    private QueryResultDto queryAql(String queryString, boolean explain, Supplier<AqlResult> resultSupplier, Map<String, Set<Object>> auditResultMap) {
+    private QueryResultDto executeAql(String queryString, String storedQueryName, ExplainMode explainMode, Function<AqlQueryHandler, AqlResult> execution, Map<String, Set<Object>> auditResultMap) {
       checkNonNull.accept(auditResultMap, format(ERR_MAP_NON_NULL, "auditResultMap"));
+      AqlQueryHandler aqlQueryHandler = new AqlQueryHandler(getDataAccess(), tsAdapter, aqlPlanCache, branchExecutor);
+      AqlQueryTimings timings = aqlQueryHandler.getTimings();
       try {
-          AqlResult aqlResult = resultSupplier.get();
+          AqlResult aqlResult = execution.apply(aqlQueryHandler);
           auditResultMap.putAll(aqlResult.getAuditResultMap());
-          return formatResult(aqlResult, queryString, explain);
-      } catch(RestClientException rce) {
-          throw new BadGatewayException("Bad gateway exception: "+rce.getCause().getMessage());
-      } catch (DataAccessException dae){
-          throw new GeneralRequestProcessingException("Data Access Error: "+dae.getCause().getMessage());
-      } catch (IllegalArgumentException iae){
-          throw new IllegalArgumentException(iae.getMessage());
-      } catch (Exception e){
-          throw new IllegalArgumentException("Could not process query/stored-query, reason: " + e);
+          QueryResultDto dto = timings.time(AqlQueryTimings.Phase.FORMATTING,
+              () -> formatResult(aqlResult, queryString, explainMode != ExplainMode.NONE));
+          aqlQueryMetrics.record(queryString, storedQueryName, timings);
+
+          if (explainMode == ExplainMode.ANALYZE) {
+              dto.getExplain().add(timings.explain());
+              dto.getExplain().add(aqlQueryHandler.explainAnalyze());
+          }
+          return dto;
+      } catch (Exception e) {
+          throw translateQueryException(e);
       }
     }
 
-    private QueryResultDto querySql(String queryString) {
-        Map<String, Object> result;
+    @Override
+    public QueryResultStream openAqlStream(String queryString, Map<String, Object> parameters, Map<String, Set<Object>> auditResultMap) {
+        checkNonNull.accept(auditResultMap, format(ERR_MAP_NON_NULL, "auditResultMap"));
+
+        //the stream outlives this call, its cursor runs in a read-only transaction on a connection of its own
+        ConnectionProvider connectionProvider = getDataAccess().getContext().configuration().connectionProvider();
+        Connection connection;
+        try {
+            connection = connectionProvider.acquire();
+        } catch (DataAccessException e) {
+            throw new InternalServerException("Could not open a connection for the streamed query", e);
+        }
+
         try {
-            result = I_EntryAccess.queryJSON(getDataAccess(), queryString);
+            connection.setReadOnly(true);
+            connection.setAutoCommit(false);
+
+            AqlQueryHandler aqlQueryHandler = new AqlQueryHandler(getDataAccess(), tsAdapter, aqlPlanCache, branchExecutor);
+            Stream<Record> records = aqlQueryHandler.stream(
+                DSL.using(connection, getDataAccess().getContext().dialect()), queryString, parameters, streamFetchSize);
+            //the audit values are added to the sets while the records are read
+            auditResultMap.putAll(aqlQueryHandler.getAuditResultMap());
+            return new AqlResultStream(aqlQueryHandler.getVariables(), records, () -> release(connectionProvider, connection));
+        } catch (SQLException e) {
+            release(connectionProvider, connection);
+            throw new InternalServerException("Could not open a connection for the streamed query", e);
         } catch (Exception e) {
-            logger.error(e.getMessage());
-            throw new InternalServerException(e);
+            release(connectionProvider, connection);
+            throw translateQueryException(e);
+        }
+    }
+
+    private void release(ConnectionProvider connectionProvider, Connection connection) {
+        try {
+            connection.rollback();
+            connection.setAutoCommit(true);
+            connection.setReadOnly(false);
+        } catch (SQLException e) {
+            logger.warn("Could not reset the connection of a streamed query: {}", e.getMessage());
+        } finally {
+            connectionProvider.release(connection);
+        }
+    }
+
+    /**
+     * Rows of a query read from an open cursor, formatted as the rows of a {@link QueryResultDto}.
+     */
+    private static class AqlResultStream implements QueryResultStream {
+
+        private final Map<String, String> columns;
+        private final Stream<Record> records;
+        private final Runnable release;
+
+        AqlResultStream(Map<String, String> columns, Stream<Record> records, Runnable release) {
+            this.columns = columns;
+            this.records = records;
+            this.release = release;
+        }
+
+        @Override
+        public void forEach(QueryResultConsumer consumer) {
+            //column names and paths, as matched by AqlResult.variablesContains()
+            Set<String> columnNames = new HashSet<>(columns.keySet());
+            columnNames.addAll(columns.values());
+
+            consumer.columns(columns);
+            records.forEach(record -> consumer.row(formatRow(record, columnNames)));
+        }
+
+        @Override
+        public void close() {
+            try {
+                records.close();
+            } finally {
+                release.run();
+            }
         }
+    }
+
+    private static List<Object> formatRow(Record record, Set<String> columns) {
+        List<Object> row = new ArrayList<>();
+        for (Field field : record.fields()) {
+            //process non-hidden variables
+            if (columns.contains(field.getName())) {
+                if (record.getValue(field) instanceof JsonElement) {
+                    row.add(new StructuredString((record.getValue(field)).toString(), StructuredStringFormat.JSON));
+                } else
+                    row.add(record.getValue(field));
+            }
+        }
+        return row;
+    }
+
+    private RuntimeException translateQueryException(Exception e) {
+        if (e instanceof RestClientException) {
+            return new BadGatewayException("Bad gateway exception: " + e.getCause().getMessage());
+        } else if (e instanceof DataAccessException) {
+            return new GeneralRequestProcessingException("Data Access Error: " + e.getCause().getMessage());
+        } else if (e instanceof IllegalArgumentException) {
+            return new IllegalArgumentException(e.getMessage());
+        } else {
+            return new IllegalArgumentException("Could not process query/stored-query, reason: " + e);
+        }
+    }
+
+    private QueryResultDto querySql(String queryString) {
+        CompletableFuture<QueryResultDto> result = querySqlAsync(queryString);
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new InternalServerException(e.getCause());
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt(); // Restore interrupted state, according to https://rules.sonarsource.com/java/RSPEC-2142
+            throw new InternalServerException("ThreadDeath", e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<QueryResultDto> querySqlAsync(String queryString) {
+        CompletableFuture<Map<String, Object>> execution = I_EntryAccess.queryJSON(getDataAccess(), queryString, queryExecutor);
+        CompletableFuture<QueryResultDto> result = execution.handle((map, e) -> {
+            if (e != null) {
+                logger.error(e.getMessage());
+                throw new InternalServerException(e);
+            }
+            return toQueryResultDto(map);
+        });
+        //cancellation is not propagated to the source of a dependent future
+        result.whenComplete((dto, e) -> {
+            if (result.isCancelled()) {
+                execution.cancel(true);
+            }
+        });
+        return result;
+    }
 
+    private QueryResultDto toQueryResultDto(Map<String, Object> result) {
         QueryResultDto dto = new QueryResultDto();
         dto.setExecutedAQL((String) result.get("executedAQL"));
         dto.setResultSet((List<ResultHolder>) result.get("resultSet"));
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.service;
+
+import javax.annotation.PostConstruct;
+import org.ehrbase.api.service.ReferenceDataService;
+import org.ehrbase.cache.CacheInvalidation;
+import org.ehrbase.cache.CacheInvalidationBus;
+import org.ehrbase.dao.access.util.ReferenceDataRegistry;
+import org.jooq.DSLContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Loads the {@link ReferenceDataRegistry} at startup. A reload is published on the {@link CacheInvalidationBus} so that
+ * the other nodes reload it as well.
+ */
+@Service
+public class ReferenceDataServiceImp implements ReferenceDataService {
+
+  private final Logger logger = LoggerFactory.getLogger(getClass());
+
+  private final DSLContext context;
+  private final CacheInvalidationBus invalidationBus;
+  private final ReferenceDataRegistry registry;
+
+  public ReferenceDataServiceImp(DSLContext context, CacheInvalidationBus invalidationBus, ReferenceDataRegistry registry) {
+    this.context = context;
+    this.registry = registry;
+    this.invalidationBus = invalidationBus;
+    invalidationBus.subscribe(invalidation -> {
+      // a reload on another node
+      if (invalidation.getType() == CacheInvalidation.Type.REFERENCE_DATA
+          || invalidation.getType() == CacheInvalidation.Type.ALL) {
+        logger.info("Reference data reloaded: {}", load());
+      }
+    });
+  }
+
+  @PostConstruct
+  public void init() {
+    logger.info("Reference data loaded: {}", load());
+  }
+
+  @Override
+  public String reload() {
+    String loaded = load();
+    invalidationBus.publish(new CacheInvalidation(CacheInvalidation.Type.REFERENCE_DATA));
+    return loaded;
+  }
+
+  private String load() {
+    registry.reload(context);
+    return String.format("%d concepts, %d territories, %d languages",
+        registry.getConceptCount(), registry.getTerritoryCount(), registry.getLanguageCount());
+  }
+}
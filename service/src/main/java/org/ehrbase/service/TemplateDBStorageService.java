@@ -20,16 +20,31 @@
 
 package org.ehrbase.service;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 import org.ehrbase.api.definitions.ServerConfig;
+import org.ehrbase.api.exception.InternalServerException;
 import org.ehrbase.dao.access.interfaces.I_DomainAccess;
 import org.ehrbase.dao.access.interfaces.I_TemplateStoreAccess;
 import org.ehrbase.dao.access.support.ServiceDataAccess;
 import org.ehrbase.ehr.knowledge.TemplateMetaData;
+import org.ehrbase.ehr.knowledge.WebTemplateSnapshot;
+import org.ehrbase.webtemplate.model.WebTemplate;
 import org.jooq.DSLContext;
 import org.openehr.schemas.v1.OPERATIONALTEMPLATE;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.info.BuildProperties;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -37,12 +52,39 @@ import org.springframework.transaction.annotation.Transactional;
 @Transactional
 public class TemplateDBStorageService implements TemplateStorage {
 
+  // the version of the SDK the application was built with, see the build-info of the spring-boot-maven-plugin
+  static final String SDK_VERSION_PROPERTY = "openEHR_SDK.version";
+
+  // the stored WebTemplates are only made of the classes of the SDK and of the JDK collections
+  private static final ObjectInputFilter WEB_TEMPLATE_FILTER = ObjectInputFilter.Config.createFilter(
+      "org.ehrbase.webtemplate.**;java.util.*;java.lang.String;java.lang.Enum;java.lang.Number;"
+          + "java.lang.Boolean;java.lang.Character;java.lang.Byte;java.lang.Short;java.lang.Integer;"
+          + "java.lang.Long;java.lang.Float;java.lang.Double;java.math.BigInteger;java.math.BigDecimal;!*");
+
+  private final Logger log = LoggerFactory.getLogger(this.getClass());
+
   private final DSLContext context;
   private final ServerConfig serverConfig;
+  // stored WebTemplates are Java serialized, they are not used by another version of the SDK. Without a known version
+  // they are neither stored nor read.
+  private final String webTemplateFormat;
 
-  public TemplateDBStorageService(DSLContext context, ServerConfig serverConfig) {
+  public TemplateDBStorageService(DSLContext context, ServerConfig serverConfig,
+      ObjectProvider<BuildProperties> buildProperties) {
     this.context = context;
     this.serverConfig = serverConfig;
+    this.webTemplateFormat = webTemplateFormat(buildProperties.getIfAvailable());
+    if (webTemplateFormat == null) {
+      log.warn("The SDK version is unknown, the WebTemplates of the templates are not stored");
+    }
+  }
+
+  static String webTemplateFormat(BuildProperties buildProperties) {
+    return Optional.ofNullable(buildProperties)
+        .map(properties -> properties.get(SDK_VERSION_PROPERTY))
+        .or(() -> Optional.ofNullable(WebTemplate.class.getPackage().getImplementationVersion()))
+        .map(version -> "java-gzip/" + version)
+        .orElse(null);
   }
 
   @Override
@@ -96,6 +138,51 @@ public class TemplateDBStorageService implements TemplateStorage {
     return I_TemplateStoreAccess.adminDeleteAllTemplates(getDataAccess());
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Optional<WebTemplateSnapshot> readWebTemplate(String templateId) {
+    if (webTemplateFormat == null) {
+      return Optional.empty();
+    }
+    return I_TemplateStoreAccess.fetchWebTemplate(getDataAccess(), templateId, webTemplateFormat)
+        .flatMap(r -> deserialize(templateId, r.getWebTemplate())
+            .map(webTemplate -> new WebTemplateSnapshot(r.getId(), webTemplate)));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void storeWebTemplate(OPERATIONALTEMPLATE template, WebTemplate webTemplate) {
+    if (webTemplateFormat == null) {
+      return;
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(bytes))) {
+      out.writeObject(webTemplate);
+    } catch (IOException e) {
+      throw new InternalServerException(e.getMessage(), e);
+    }
+    I_TemplateStoreAccess.storeWebTemplate(getDataAccess(), template, webTemplateFormat,
+        bytes.toByteArray());
+  }
+
+  private Optional<WebTemplate> deserialize(String templateId, byte[] bytes) {
+    try (ObjectInputStream in = new ObjectInputStream(
+        new GZIPInputStream(new ByteArrayInputStream(bytes)))) {
+      in.setObjectInputFilter(WEB_TEMPLATE_FILTER);
+      return Optional.of((WebTemplate) in.readObject());
+    } catch (IOException | ClassNotFoundException | ClassCastException e) {
+      // f.e. the classes changed without a new SDK version or one is rejected by the filter, the
+      // WebTemplate is built again
+      log.warn("Could not read the stored WebTemplate of template {}: {}", templateId,
+          e.getMessage());
+      return Optional.empty();
+    }
+  }
+
   protected I_DomainAccess getDataAccess() {
     return new ServiceDataAccess(context, null, null, this.serverConfig);
   }
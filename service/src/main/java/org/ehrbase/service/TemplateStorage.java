@@ -24,6 +24,8 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import org.ehrbase.ehr.knowledge.TemplateMetaData;
+import org.ehrbase.ehr.knowledge.WebTemplateSnapshot;
+import org.ehrbase.webtemplate.model.WebTemplate;
 import org.openehr.schemas.v1.OPERATIONALTEMPLATE;
 
 public interface TemplateStorage {
@@ -81,4 +83,24 @@ public interface TemplateStorage {
      * @return - Count of deleted templates
      */
     int adminDeleteAllTemplates(List<TemplateMetaData> templateMetaDataList);
+
+    /**
+     * Find the WebTemplate stored with a template, as long as it was built from the current content of the template.
+     *
+     * @param templateId - Template id, e.g. "IDCR Allergies List.v0"
+     * @return the WebTemplate @see {@link WebTemplateSnapshot} or {@link Optional#empty()} if there is none
+     */
+    default Optional<WebTemplateSnapshot> readWebTemplate(String templateId) {
+        return Optional.empty();
+    }
+
+    /**
+     * Store the WebTemplate built from a template with the template, so that it is not built again on a cold start.
+     *
+     * @param template    - Template the WebTemplate was built from
+     * @param webTemplate - The WebTemplate
+     */
+    default void storeWebTemplate(OPERATIONALTEMPLATE template, WebTemplate webTemplate) {
+        // not supported by default
+    }
 }
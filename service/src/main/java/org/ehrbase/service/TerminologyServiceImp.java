@@ -26,13 +26,15 @@ import org.ehrbase.terminology.openehr.implementation.AttributeCodesetMapping;
 import org.ehrbase.terminology.openehr.implementation.LocalizedTerminologies;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.PostConstruct;
 import java.util.Map;
 
+// the terminologies are held in memory, no transaction is needed
 @Service
-@Transactional
+@Transactional(propagation = Propagation.SUPPORTS)
 public class TerminologyServiceImp implements TerminologyService {
 
     private static TerminologyServiceImp instance;
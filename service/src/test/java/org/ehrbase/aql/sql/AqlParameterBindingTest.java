@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.aql.sql;
+
+import org.ehrbase.aql.sql.queryimpl.value_field.ISODateTime;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class AqlParameterBindingTest {
+
+    private static final Map<String, Object> PARAMETERS = Map.of(
+            "ehr_id", "f002a367-52ad-4bee-aa14-67627db677ad",
+            "max", 140,
+            "name", "Blood pressure",
+            "date", "2021-03-01T10:00:00Z",
+            "day", "2021-03-01");
+
+    @Test
+    public void testSubstitutions() {
+        AqlParameterBinding cut = AqlParameterBinding.of(PARAMETERS);
+
+        assertThat(cut.getInlined()).isEmpty();
+        assertThat(cut.getSubstitutions().get("ehr_id")).isNotEqualTo(PARAMETERS.get("ehr_id"));
+        assertThat(cut.getSubstitutions().get("max").toString()).matches("\\d+");
+        // a date/time marker is converted as a date/time by the WHERE binding
+        assertThat(cut.getSubstitutions().get("date")).isNotEqualTo(PARAMETERS.get("date"));
+        assertThat(new ISODateTime(cut.getSubstitutions().get("date").toString()).isValidDateTimeExpression()).isTrue();
+        // a date is compared as a string
+        assertThat(AqlParameterBinding.isStringMarker("'" + cut.getSubstitutions().get("day") + "'")).isTrue();
+    }
+
+    @Test
+    public void testBind() {
+        AqlParameterBinding cut = AqlParameterBinding.of(PARAMETERS);
+        Map<String, Object> substitutions = cut.getSubstitutions();
+
+        String sql = "select ? from ehr where id = '" + substitutions.get("ehr_id") + "'::uuid"
+                + " and value > " + substitutions.get("max")
+                + " and path = '{/name[" + substitutions.get("name") + "]}' and node = ?";
+
+        AqlParameterBinding.BoundStatement statement = cut.bind(sql, List.of("x", "y"));
+
+        assertThat(statement.getSql()).isEqualTo("select ? from ehr where id = ?::uuid and value > ? and path = '{/name["
+                + substitutions.get("name") + "]}' and node = ?");
+        assertThat(statement.getBound()).containsExactlyInAnyOrder("ehr_id", "max");
+        assertThat(statement.getEmbedded()).containsExactly("name");
+
+        List<Object> resolved = AqlParameterBinding.resolve(statement.getBindValues(), PARAMETERS);
+        assertThat(resolved).containsExactly("x", "f002a367-52ad-4bee-aa14-67627db677ad", 140, "y");
+    }
+
+    @Test
+    public void testStringWithoutCast() {
+        AqlParameterBinding cut = AqlParameterBinding.of(PARAMETERS);
+
+        // the type of the parameter would be inferred by the database: it is substituted as a literal
+        AqlParameterBinding.BoundStatement statement = cut.bind("select 1 where day = '" + cut.getSubstitutions().get("day") + "'", List.of());
+
+        assertThat(statement.getBound()).isEmpty();
+        assertThat(statement.getEmbedded()).containsExactly("day");
+    }
+
+    @Test
+    public void testBindDateTime() {
+        AqlParameterBinding cut = AqlParameterBinding.of(PARAMETERS);
+        long epoch = new ISODateTime(cut.getSubstitutions().get("date").toString()).toTimeStamp() / 1000;
+
+        AqlParameterBinding.BoundStatement statement = cut.bind("select 1 where (entry #>> '{/time,/value,epoch_offset}')::numeric > " + epoch, List.of());
+
+        assertThat(statement.getSql()).isEqualTo("select 1 where (entry #>> '{/time,/value,epoch_offset}')::numeric > ?");
+        assertThat(statement.getBound()).containsExactly("date");
+        // 2021-03-01T10:00:00Z
+        assertThat(AqlParameterBinding.resolve(statement.getBindValues(), PARAMETERS)).containsExactly(1614592800L);
+    }
+
+    @Test
+    public void testDateTimeNotConverted() {
+        AqlParameterBinding cut = AqlParameterBinding.of(PARAMETERS);
+
+        AqlParameterBinding.BoundStatement statement = cut.bind("select 1 where time = '" + cut.getSubstitutions().get("date") + "'", List.of());
+
+        assertThat(statement.getBound()).isEmpty();
+        assertThat(statement.getEmbedded()).containsExactly("date");
+    }
+
+    @Test
+    public void testBindValueMarker() {
+        AqlParameterBinding cut = AqlParameterBinding.of(PARAMETERS);
+
+        AqlParameterBinding.BoundStatement statement = cut.bind("select ?", List.of(cut.getSubstitutions().get("name")));
+
+        assertThat(statement.getBound()).containsExactly("name");
+        assertThat(AqlParameterBinding.resolve(statement.getBindValues(), PARAMETERS)).containsExactly("Blood pressure");
+    }
+
+    @Test
+    public void testInline() {
+        AqlParameterBinding cut = AqlParameterBinding.of(PARAMETERS).inline(List.of("name"));
+
+        assertThat(cut.getInlined()).containsExactly("name");
+        assertThat(cut.getSubstitutions().get("name")).isEqualTo("Blood pressure");
+    }
+
+    @Test
+    public void testMissingParameterValue() {
+        AqlParameterBinding cut = AqlParameterBinding.of(PARAMETERS);
+        AqlParameterBinding.BoundStatement statement = cut.bind("select " + cut.getSubstitutions().get("max"), List.of());
+
+        assertThatThrownBy(() -> AqlParameterBinding.resolve(statement.getBindValues(), Map.of()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("$max");
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.aql.sql;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AqlPlanCacheTest {
+
+    private static final String QUERY = "select c/uid/value from EHR e contains COMPOSITION c where c/name/value = 'a  b'";
+
+    private final AtomicInteger compilations = new AtomicInteger();
+
+    private CompiledAqlQuery compile() {
+        compilations.incrementAndGet();
+        return new CompiledAqlQuery("select 1", Collections.emptyList(), Collections.emptyList(), "select 1", Collections.emptyList(), QUERY);
+    }
+
+    @Test
+    public void testNormalize() {
+        assertThat(AqlPlanCache.normalize("  select e/ehr_id/value\n\tfrom EHR e  where e/ehr_id/value = 'x  y' "))
+                .isEqualTo("select e/ehr_id/value from EHR e where e/ehr_id/value = 'x  y'");
+    }
+
+    @Test
+    public void testKeyIncludesParameters() {
+        assertThat(AqlPlanCache.key(QUERY, Map.of("ehr_id", "1"), Collections.emptySet()))
+                .isEqualTo(AqlPlanCache.key(QUERY, Map.of("ehr_id", "2"), Collections.emptySet()))
+                .isNotEqualTo(AqlPlanCache.key(QUERY, Map.of("ehr_id", 2), Collections.emptySet()))
+                .isNotEqualTo(AqlPlanCache.key(QUERY, null, Collections.emptySet()));
+
+        assertThat(AqlPlanCache.key(QUERY, Map.of("ehr_id", "1"), Set.of("ehr_id")))
+                .isNotEqualTo(AqlPlanCache.key(QUERY, Map.of("ehr_id", "2"), Set.of("ehr_id")));
+    }
+
+    @Test
+    public void testBoundParametersShareThePlan() {
+        AqlPlanCache cut = new AqlPlanCache(10, () -> 0L);
+
+        cut.get(QUERY, Map.of("ehr_id", "1"), this::compile);
+        cut.get(QUERY, Map.of("ehr_id", "2"), this::compile);
+
+        assertThat(compilations.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testInlinedParametersArePartOfTheKey() {
+        AqlPlanCache cut = new AqlPlanCache(10, () -> 0L);
+        Supplier<CompiledAqlQuery> compiler = () -> {
+            CompiledAqlQuery compiledQuery = compile();
+            compiledQuery.setInlinedParameters(Set.of("name"));
+            return compiledQuery;
+        };
+
+        cut.get(QUERY, Map.of("name", "a"), compiler);
+        cut.get(QUERY, Map.of("name", "a"), compiler);
+        cut.get(QUERY, Map.of("name", "b"), compiler);
+
+        assertThat(compilations.get()).isEqualTo(2);
+        assertThat(cut.getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testHitAndMiss() {
+        AqlPlanCache cut = new AqlPlanCache(10, () -> 0L);
+
+        CompiledAqlQuery first = cut.get(QUERY, null, this::compile);
+        CompiledAqlQuery second = cut.get(QUERY.replace("select ", "select\n    "), null, this::compile);
+
+        assertThat(second).isSameAs(first);
+        assertThat(compilations.get()).isEqualTo(1);
+        assertThat(cut.getHitCount()).isEqualTo(1);
+        assertThat(cut.getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testTemplateSetChangeInvalidatesPlan() {
+        AtomicLong generation = new AtomicLong();
+        AqlPlanCache cut = new AqlPlanCache(10, generation::get);
+
+        cut.get(QUERY, null, this::compile);
+        generation.incrementAndGet();
+        cut.get(QUERY, null, this::compile);
+        cut.get(QUERY, null, this::compile);
+
+        assertThat(compilations.get()).isEqualTo(2);
+        assertThat(cut.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void testBounded() {
+        AqlPlanCache cut = new AqlPlanCache(2, () -> 0L);
+
+        cut.get(QUERY + " LIMIT 1", null, this::compile);
+        cut.get(QUERY + " LIMIT 2", null, this::compile);
+        cut.get(QUERY + " LIMIT 3", null, this::compile);
+
+        assertThat(cut.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void testDisabled() {
+        AqlPlanCache cut = AqlPlanCache.disabled();
+
+        cut.get(QUERY, null, this::compile);
+        cut.get(QUERY, null, this::compile);
+
+        assertThat(compilations.get()).isEqualTo(2);
+        assertThat(cut.size()).isZero();
+    }
+
+    @Test
+    public void testTerminologyNotCached() {
+        AqlPlanCache cut = new AqlPlanCache(10, () -> 0L);
+        String query = "select o from EHR e contains OBSERVATION o where o/data/value/defining_code/code_string matches " +
+                "TERMINOLOGY('expand', 'hl7.org/fhir/4.0', 'url=http://hl7.org/fhir/ValueSet/surface')";
+
+        cut.get(query, null, this::compile);
+        cut.get(query, null, this::compile);
+
+        assertThat(compilations.get()).isEqualTo(2);
+    }
+}
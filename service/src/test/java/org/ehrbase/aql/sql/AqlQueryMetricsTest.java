@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.aql.sql;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AqlQueryMetricsTest {
+
+    private static final String QUERY = "select e/ehr_id/value from EHR e";
+
+    @Test
+    public void testRecordPhases() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        AqlQueryMetrics cut = new AqlQueryMetrics(registry);
+
+        AqlQueryTimings timings = new AqlQueryTimings();
+        timings.record(AqlQueryTimings.Phase.PARSE, TimeUnit.MILLISECONDS.toNanos(2));
+        timings.record(AqlQueryTimings.Phase.EXECUTION, TimeUnit.MILLISECONDS.toNanos(5));
+        timings.record(AqlQueryTimings.Phase.EXECUTION, TimeUnit.MILLISECONDS.toNanos(5));
+
+        cut.record(QUERY, "org.ehrbase::ehr_ids", timings);
+
+        Timer execution = registry.get(AqlQueryMetrics.METRIC_NAME)
+                .tag("phase", "execution")
+                .tag("stored_query", "org.ehrbase::ehr_ids")
+                .timer();
+        assertThat(execution.totalTime(TimeUnit.MILLISECONDS)).isEqualTo(10.0);
+        assertThat(registry.find(AqlQueryMetrics.METRIC_NAME).tag("phase", "contains").timer()).isNull();
+        // no tag per ad-hoc query
+        assertThat(execution.getId().getTag("query")).isNull();
+    }
+
+    @Test
+    public void testQueryHashIgnoresFormatting() {
+        assertThat(AqlQueryMetrics.queryHash(QUERY)).isEqualTo(AqlQueryMetrics.queryHash("select e/ehr_id/value\n  from EHR e"));
+    }
+
+    @Test
+    public void testExplainTimings() {
+        AqlQueryTimings timings = new AqlQueryTimings();
+        timings.record(AqlQueryTimings.Phase.FORMATTING, 1_500_000L);
+
+        assertThat(timings.explain()).containsExactly("timings", "formatting: 1.500 ms");
+    }
+}
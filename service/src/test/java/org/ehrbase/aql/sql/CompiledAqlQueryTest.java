@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.aql.sql;
+
+import org.apache.commons.lang3.StringUtils;
+import org.ehrbase.aql.compiler.OrderAttribute;
+import org.ehrbase.aql.definition.I_VariableDefinitionHelper;
+import org.ehrbase.aql.sql.binding.KeysetBinding;
+import org.ehrbase.dao.access.interfaces.I_DomainAccess;
+import org.ehrbase.dao.access.support.DummyDataAccess;
+import org.ehrbase.dao.jooq.impl.DSLContextHelper;
+import org.ehrbase.service.KnowledgeCacheHelper;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record3;
+import org.jooq.Result;
+import org.jooq.impl.DSL;
+import org.jooq.tools.jdbc.MockResult;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CompiledAqlQueryTest {
+
+    private static final Field<String> UID = DSL.field(DSL.name("uid"), String.class);
+    private static final Field<UUID> ID = DSL.field(DSL.name(KeysetBinding.ID), UUID.class);
+    private static final Field<Long> ORDINAL = DSL.field(DSL.name(KeysetBinding.ORDINAL), Long.class);
+
+    private final DSLContext create = DSLContextHelper.buildContext();
+
+    // the statements run and their bind values
+    private final List<String> statements = new ArrayList<>();
+    private final List<List<Object>> bindings = new ArrayList<>();
+    private final UUID entryId = UUID.randomUUID();
+
+    private I_DomainAccess domainAccess;
+
+    @Before
+    public void setUp() {
+        domainAccess = new DummyDataAccess(DSLContextHelper.buildContext(ctx -> {
+            statements.add(ctx.sql());
+            bindings.add(Arrays.asList(ctx.bindings()));
+            Result<Record3<String, UUID, Long>> result = create.newResult(UID, ID, ORDINAL);
+            // a page of two rows and the first row of the next page
+            result.add(create.newRecord(UID, ID, ORDINAL).values("a", UUID.randomUUID(), 1L));
+            result.add(create.newRecord(UID, ID, ORDINAL).values("b", entryId, 2L));
+            result.add(create.newRecord(UID, ID, ORDINAL).values("b", entryId, 3L));
+            return new MockResult[]{new MockResult(result.size(), result)};
+        }), null, null, KnowledgeCacheHelper.buildServerConfig());
+    }
+
+    private CompiledAqlQuery query(Object parameter) {
+        CompiledAqlQuery query = new CompiledAqlQuery("select \"uid\" from t1 where x = ? union select \"uid\" from t2 where x = ?",
+                Arrays.asList(parameter, parameter), Collections.singletonList(UID), "", Collections.emptyList(), "select ...");
+
+        OrderAttribute orderAttribute = new OrderAttribute(I_VariableDefinitionHelper.build(null, "uid", null, false, false, false));
+        orderAttribute.setDirection(OrderAttribute.OrderDirection.ASC);
+        query.setKeysetBinding(new KeysetBinding(null, Collections.singletonList(orderAttribute)), Arrays.asList(
+                new ParallelBranchQuery.Branch("select \"uid\", t1.id as \"keyset_id\" from t1 where x = ?", Collections.singletonList(parameter)),
+                new ParallelBranchQuery.Branch("select \"uid\", t2.id as \"keyset_id\" from t2 where x = ?", Collections.singletonList(parameter))));
+        return query;
+    }
+
+    @Test
+    public void testPages() {
+        CompiledAqlQuery cut = query("p");
+
+        AqlResult first = cut.executePage(domainAccess, 2, null, new AqlQueryTimings());
+
+        assertThat(first.getRecords()).extracting(r -> r.get(0)).containsExactly("a", "b");
+        assertThat(first.getRecords().fields()).containsExactly(UID);
+        assertThat(first.getContinuation()).isNotNull();
+        ContinuationToken token = ContinuationToken.decode(first.getContinuation());
+        assertThat(token.getLastKey()).containsExactly("b");
+        assertThat(token.getLastId()).isEqualTo(entryId);
+        assertThat(token.getLastOrdinal()).isEqualTo(2L);
+
+        cut.executePage(domainAccess, 2, first.getContinuation(), new AqlQueryTimings());
+
+        // the first page is not restricted, the next one seeks in each branch of the union
+        assertThat(statements.get(0)).doesNotContain("is not distinct from");
+        String next = statements.get(1);
+        assertThat(StringUtils.countMatches(next, "as \"keyset_branch\" where")).isEqualTo(2);
+        assertThat(next)
+                .contains("partition by \"keyset_id\", \"uid\"")
+                .contains("\"keyset_ordinal\" > ?")
+                .doesNotContain("offset");
+        assertThat(bindings.get(1)).contains("b", entryId, 2L);
+    }
+
+    @Test
+    public void testLastPage() {
+        AqlResult page = query("p").executePage(domainAccess, 3, null, new AqlQueryTimings());
+
+        assertThat(page.getRecords()).hasSize(3);
+        assertThat(page.getContinuation()).isNull();
+    }
+
+    @Test
+    public void testTokenOfOtherParameters() {
+        String continuation = query("p").executePage(domainAccess, 2, null, new AqlQueryTimings()).getContinuation();
+
+        // same SQL, other parameter value
+        assertThatThrownBy(() -> query("q").executePage(domainAccess, 2, continuation, new AqlQueryTimings()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("not issued for this query");
+    }
+
+    @Test
+    public void testNotPageable() {
+        CompiledAqlQuery cut = new CompiledAqlQuery("select 1", Collections.emptyList(), Collections.singletonList(UID), "", Collections.emptyList(), "select ...");
+
+        assertThatThrownBy(() -> cut.executePage(domainAccess, 2, null, new AqlQueryTimings()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("ORDER BY");
+    }
+}
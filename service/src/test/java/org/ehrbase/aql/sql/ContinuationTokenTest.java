@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.aql.sql;
+
+import org.jooq.JSONB;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ContinuationTokenTest {
+
+    @Test
+    public void testRoundTrip() {
+        UUID uuid = UUID.randomUUID();
+        Timestamp timestamp = Timestamp.valueOf("2022-03-01 10:15:30.123456");
+        UUID entryId = UUID.randomUUID();
+        ContinuationToken token = new ContinuationToken("abc", Arrays.asList("x", 1L, new BigDecimal("1.50"), uuid, timestamp, JSONB.valueOf("{\"a\": 1}"), null), entryId, 3L);
+
+        ContinuationToken actual = ContinuationToken.decode(token.encode());
+
+        assertThat(actual.getFingerprint()).isEqualTo("abc");
+        assertThat(actual.getLastId()).isEqualTo(entryId);
+        assertThat(actual.getLastOrdinal()).isEqualTo(3L);
+        assertThat(actual.getLastKey()).containsExactly("x", 1L, new BigDecimal("1.50"), uuid, timestamp, JSONB.valueOf("{\"a\": 1}"), null);
+    }
+
+    @Test
+    public void testRoundTripWithoutId() {
+        ContinuationToken token = new ContinuationToken("abc", Arrays.asList("x"), null, 1L);
+
+        ContinuationToken actual = ContinuationToken.decode(token.encode());
+
+        assertThat(actual.getLastId()).isNull();
+        assertThat(actual.getLastOrdinal()).isEqualTo(1L);
+        // only the typed position is carried, not the row
+        assertThat(token.encode().length()).isLessThan(100);
+    }
+
+    @Test
+    public void testInvalidToken() {
+        assertThatThrownBy(() -> ContinuationToken.decode("not a token")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testUnsupportedType() {
+        ContinuationToken token = new ContinuationToken("abc", Arrays.asList(new Object()), null, 1L);
+
+        assertThatThrownBy(token::encode).isInstanceOf(IllegalArgumentException.class);
+    }
+}
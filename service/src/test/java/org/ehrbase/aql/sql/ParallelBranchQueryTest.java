@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.aql.sql;
+
+import org.ehrbase.aql.compiler.OrderAttribute;
+import org.ehrbase.aql.definition.I_VariableDefinitionHelper;
+import org.ehrbase.aql.sql.binding.KeysetBinding;
+import org.ehrbase.dao.jooq.impl.DSLContextHelper;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record;
+import org.jooq.impl.DSL;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ParallelBranchQueryTest {
+
+    private static final Field<Object> COLUMN = DSL.field(DSL.name("value"));
+
+    private final DSLContext context = DSLContextHelper.buildContext();
+
+    private Record record(Object value) {
+        Record record = context.newRecord(COLUMN);
+        record.set(COLUMN, value);
+        return record;
+    }
+
+    private ParallelBranchQuery query(OrderAttribute.OrderDirection direction, Integer limit) {
+        OrderAttribute orderAttribute = new OrderAttribute(I_VariableDefinitionHelper.build(null, "value", null, false, false, false));
+        orderAttribute.setDirection(direction);
+        return new ParallelBranchQuery(Collections.emptyList(), List.of(COLUMN),
+                new KeysetBinding(null, Collections.singletonList(orderAttribute)), limit, null);
+    }
+
+    private List<Object> sorted(OrderAttribute.OrderDirection direction, Object... values) {
+        ParallelBranchQuery cut = query(direction, null);
+
+        List<Record> records = new ArrayList<>();
+        Arrays.stream(values).map(this::record).forEach(records::add);
+        records.sort(cut.comparator());
+
+        List<Object> actual = new ArrayList<>();
+        records.forEach(r -> actual.add(r.get(COLUMN)));
+        return actual;
+    }
+
+    @Test
+    public void testAscendingNullsLast() {
+        assertThat(sorted(OrderAttribute.OrderDirection.ASC, 3, null, 1, 2)).containsExactly(1, 2, 3, null);
+    }
+
+    @Test
+    public void testDescendingNullsFirst() {
+        assertThat(sorted(OrderAttribute.OrderDirection.DESC, 3, null, 1, 2)).containsExactly(null, 3, 2, 1);
+    }
+
+    @Test
+    public void testTimestamps() {
+        Timestamp earlier = Timestamp.valueOf("2021-03-01 10:00:00");
+        Timestamp later = Timestamp.valueOf("2021-03-02 10:00:00");
+        assertThat(sorted(OrderAttribute.OrderDirection.ASC, later, null, earlier)).containsExactly(earlier, later, null);
+    }
+
+    @Test
+    public void testNumbersByValue() {
+        assertThat(sorted(OrderAttribute.OrderDirection.ASC, 10, new BigDecimal("9.5"), 2L)).containsExactly(2L, new BigDecimal("9.5"), 10);
+    }
+
+    @Test
+    public void testTypesNotMerged() {
+        // the query is not ordered in parallel, the database collation applies
+        assertThatThrownBy(() -> sorted(OrderAttribute.OrderDirection.ASC, 1, "a"))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void testMergeBranch() {
+        ParallelBranchQuery cut = query(OrderAttribute.OrderDirection.ASC, 4);
+
+        List<Record> merged = cut.merge(List.of(record(1), record(3), record(5)), List.of(record(2), record(3), record(4), record(6)));
+
+        // the duplicate is removed, at most LIMIT rows are kept
+        assertThat(merged).extracting(r -> r.get(COLUMN)).containsExactly(1, 2, 3, 4);
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.aql.sql.binding;
+
+import org.ehrbase.aql.compiler.OrderAttribute;
+import org.ehrbase.aql.definition.I_VariableDefinitionHelper;
+import org.ehrbase.dao.jooq.impl.DSLContextHelper;
+import org.jooq.impl.DSL;
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class KeysetBindingTest {
+
+    private static OrderAttribute orderAttribute(String alias, OrderAttribute.OrderDirection direction) {
+        OrderAttribute orderAttribute = new OrderAttribute(I_VariableDefinitionHelper.build(null, alias, null, false, false, false));
+        orderAttribute.setDirection(direction);
+        return orderAttribute;
+    }
+
+    @Test
+    public void testSortFields() {
+        KeysetBinding cut = new KeysetBinding(null, Arrays.asList(
+                orderAttribute("date_created", OrderAttribute.OrderDirection.DESC),
+                orderAttribute("uid", null)));
+
+        assertThat(cut.getColumns()).containsExactly("\"date_created\"", "\"uid\"");
+        assertThat(cut.sortFields()).extracting(Object::toString).containsExactly("\"date_created\" desc", "\"uid\" asc");
+    }
+
+    @Test
+    public void testMergeable() {
+        KeysetBinding cut = new KeysetBinding(null, Arrays.asList(
+                orderAttribute("date_created", OrderAttribute.OrderDirection.DESC),
+                orderAttribute("uid", null)));
+
+        assertThat(cut.isMergeable(Arrays.asList(
+                DSL.field(DSL.name("date_created"), Timestamp.class),
+                DSL.field(DSL.name("uid"), UUID.class)))).isTrue();
+        // text, or possibly text
+        assertThat(cut.isMergeable(Arrays.asList(
+                DSL.field(DSL.name("date_created"), Timestamp.class),
+                DSL.field(DSL.name("uid"), String.class)))).isFalse();
+        assertThat(cut.isMergeable(Arrays.asList(
+                DSL.field(DSL.name("date_created"), Timestamp.class),
+                DSL.field(DSL.name("uid"))))).isFalse();
+        assertThat(cut.isMergeable(Collections.singletonList(DSL.field(DSL.name("date_created"), Timestamp.class)))).isFalse();
+    }
+
+    @Test
+    public void testSeekAscending() {
+        KeysetBinding cut = new KeysetBinding(null, Collections.singletonList(orderAttribute("uid", OrderAttribute.OrderDirection.ASC)));
+
+        String seek = DSLContextHelper.buildContext().renderInlined(cut.seek(Collections.singletonList("abc")));
+
+        assertThat(seek)
+                .contains("\"uid\" is not distinct from 'abc'")
+                .contains("\"uid\" > 'abc'")
+                .contains("\"uid\" is null");
+    }
+
+    @Test
+    public void testSeekDescendingAfterNull() {
+        KeysetBinding cut = new KeysetBinding(null, Collections.singletonList(orderAttribute("uid", OrderAttribute.OrderDirection.DESC)));
+
+        String seek = DSLContextHelper.buildContext().renderInlined(cut.seek(Collections.singletonList(null)));
+
+        assertThat(seek)
+                .contains("\"uid\" is not null")
+                .doesNotContain("<");
+    }
+
+    @Test
+    public void testSeekAfterTiebreaker() {
+        KeysetBinding cut = new KeysetBinding(null, Collections.singletonList(orderAttribute("uid", OrderAttribute.OrderDirection.ASC)));
+
+        assertThat(cut.pageSortFields()).extracting(Object::toString)
+                .containsExactly("\"uid\" asc", "\"keyset_id\" asc", "\"keyset_ordinal\" asc");
+
+        UUID id = UUID.fromString("8e2b3b55-1b65-4ea4-a2e7-bf7a9e6c4a10");
+        String seek = DSLContextHelper.buildContext().renderInlined(cut.seekAfter(Collections.singletonList("abc"), id, 2L));
+
+        // rows sharing the last key are only selected after the last row, never by an offset
+        assertThat(seek)
+                .contains("\"uid\" is not distinct from 'abc'")
+                .contains("\"keyset_id\" > ")
+                .contains("\"keyset_id\" is not distinct from ")
+                .contains(id.toString())
+                .contains("\"keyset_ordinal\" > 2")
+                .contains("\"uid\" > 'abc'");
+    }
+
+    @Test
+    public void testSeekAfterRowWithoutId() {
+        KeysetBinding cut = new KeysetBinding(null, Collections.singletonList(orderAttribute("uid", OrderAttribute.OrderDirection.ASC)));
+
+        String seek = DSLContextHelper.buildContext().renderInlined(cut.seekAfter(Collections.singletonList("abc"), null, 1L));
+
+        // NULL is the last id: only the ordinal can follow
+        assertThat(seek)
+                .contains("\"keyset_ordinal\" > 1")
+                .doesNotContain("\"keyset_id\" >");
+    }
+
+    @Test
+    public void testOrdinal() {
+        KeysetBinding cut = new KeysetBinding(null, Arrays.asList(
+                orderAttribute("date_created", OrderAttribute.OrderDirection.DESC),
+                orderAttribute("uid", null)));
+
+        String ordinal = DSLContextHelper.buildContext().renderInlined(DSL.select(cut.ordinal("keyset_union")));
+
+        // numbered among the rows of an entry with the same sort key, the text of the row only orders these
+        assertThat(ordinal)
+                .contains("partition by \"keyset_id\", \"date_created\", \"uid\"")
+                .contains("order by \"keyset_union\"::text")
+                .contains("\"keyset_ordinal\"");
+    }
+
+    @Test
+    public void testSeekRejectsForeignKey() {
+        KeysetBinding cut = new KeysetBinding(null, Collections.singletonList(orderAttribute("uid", OrderAttribute.OrderDirection.ASC)));
+
+        assertThatThrownBy(() -> cut.seek(Arrays.asList("a", "b"))).isInstanceOf(IllegalArgumentException.class);
+    }
+}
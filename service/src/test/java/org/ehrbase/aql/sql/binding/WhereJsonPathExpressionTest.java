@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.aql.sql.binding;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.ehrbase.aql.definition.VariableDefinition;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.ehrbase.aql.sql.queryimpl.QueryImplConstants.AQL_NODE_ITERATIVE_MARKER;
+
+public class WhereJsonPathExpressionTest {
+
+    private static final List<String> PATH = Arrays.asList("/composition[openEHR-EHR-COMPOSITION.health_summary.v1]",
+            "/context", "/other_context[at0001]", "/items[at0002]", "0", "/value", "value");
+
+    private static final List<String> ITERATED_PATH = Arrays.asList("/composition[openEHR-EHR-COMPOSITION.health_summary.v1]",
+            "/content[openEHR-EHR-ACTION.immunisation_procedure.v1]", AQL_NODE_ITERATIVE_MARKER,
+            "/description[at0001]", "/items[at0002]", "0", "/value", "value");
+
+    @Test
+    public void testJsonPath() {
+        assertThat(WhereJsonPathExpression.jsonPath(PATH))
+                .isEqualTo("$.\"/composition[openEHR-EHR-COMPOSITION.health_summary.v1]\".\"/context\".\"/other_context[at0001]\".\"/items[at0002]\"[0].\"/value\".\"value\"");
+    }
+
+    @Test
+    public void testIteratedJsonPath() {
+        assertThat(WhereJsonPathExpression.jsonPath(ITERATED_PATH))
+                .isEqualTo("$.\"/composition[openEHR-EHR-COMPOSITION.health_summary.v1]\".\"/content[openEHR-EHR-ACTION.immunisation_procedure.v1]\"[*]"
+                        + ".\"/description[at0001]\".\"/items[at0002]\"[0].\"/value\".\"value\"");
+    }
+
+    @Test
+    public void testUnsupportedPath() {
+        //not a plain path of the entry
+        assertThat(WhereJsonPathExpression.jsonPath(null)).isNull();
+        assertThat(WhereJsonPathExpression.equality(null, "'x'")).isNull();
+        assertThat(WhereJsonPathExpression.jsonPath(Arrays.asList("/items[at0002]", "/name[name/value='a']"))).isNull();
+    }
+
+    @Test
+    public void testStringEquality() {
+        assertThat(WhereJsonPathExpression.equality(PATH, "'Hepatitis A'"))
+                .startsWith("(\"ehr\".\"entry\".\"entry\" @@ '$.")
+                .endsWith(".\"value\" == \"Hepatitis A\"'::jsonpath)");
+    }
+
+    @Test
+    public void testNumberEquality() {
+        assertThat(WhereJsonPathExpression.equality(Arrays.asList("a", "b"), 140L))
+                .isEqualTo("(\"ehr\".\"entry\".\"entry\" @@ '$.\"a\".\"b\" == \"140\" || $.\"a\".\"b\" == 140'::jsonpath)");
+        assertThat(WhereJsonPathExpression.equality(Arrays.asList("a", "b"), "'true'"))
+                .isEqualTo("(\"ehr\".\"entry\".\"entry\" @@ '$.\"a\".\"b\" == \"true\" || $.\"a\".\"b\" == true'::jsonpath)");
+    }
+
+    @Test
+    public void testUnsupportedLiteral() {
+        assertThat(WhereJsonPathExpression.equality(PATH, "'O''Brien'")).isNull();
+        assertThat(WhereJsonPathExpression.equality(PATH, "'a\"b'")).isNull();
+        assertThat(WhereJsonPathExpression.equality(PATH, "1e3")).isNull();
+        assertThat(WhereJsonPathExpression.equality(PATH, 1.5d)).isNull();
+    }
+
+    @Test
+    public void testExists() {
+        assertThat(WhereJsonPathExpression.exists(Arrays.asList("a", "0")))
+                .isEqualTo("(\"ehr\".\"entry\".\"entry\" @@ 'exists($.\"a\"[0])'::jsonpath)");
+    }
+
+    @Test
+    public void testNegatedCondition() {
+        VariableDefinition variable = new VariableDefinition("data[at0001]/events[at0002]/data[at0003]/items[at0004]/value/value", null, "o", false);
+
+        //a row lacking the path: NOT (NULL) excludes it whereas NOT (false AND NULL) would select it
+        List<Object> negated = Arrays.asList("NOT", variable, "=", "'Hepatitis A'");
+        assertThat(WhereBinder.isNegationFree(negated)).isFalse();
+        assertThat(WhereBinder.isNegationFree(Arrays.asList("NOT", Collections.singletonList(Arrays.asList(variable, "=", "'Hepatitis A'")))))
+                .isFalse();
+        assertThat(WhereBinder.isNegationFree(Arrays.asList(variable, "=", "'a'", "XOR", variable, "=", "'b'"))).isFalse();
+        assertThat(WhereBinder.isNegationFree(Arrays.asList("(", variable, "=", "'a'", ")", "IS", "NOT", "TRUE"))).isFalse();
+    }
+
+    @Test
+    public void testPositiveCondition() {
+        VariableDefinition variable = new VariableDefinition("data[at0001]/events[at0002]/data[at0003]/items[at0004]/value/value", null, "o", false);
+
+        assertThat(WhereBinder.isNegationFree(Arrays.asList(variable, "=", "'a'", "AND", variable, "IS", "NOT", "NULL"))).isTrue();
+        assertThat(WhereBinder.isNegationFree(Arrays.asList("NOT", "EXISTS", variable, "OR", variable, "=", "'a'"))).isTrue();
+    }
+}
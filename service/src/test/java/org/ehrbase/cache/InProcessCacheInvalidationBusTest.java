@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class InProcessCacheInvalidationBusTest {
+
+  private static final CacheInvalidation TEMPLATE =
+      new CacheInvalidation(CacheInvalidation.Type.TEMPLATE, "IDCR - Problem List.v1");
+
+  @Test
+  public void testPublishToOtherNodes() {
+    InProcessCacheInvalidationBus node1 = new InProcessCacheInvalidationBus();
+    InProcessCacheInvalidationBus node2 = node1.newNode();
+    List<CacheInvalidation> received1 = new ArrayList<>();
+    List<CacheInvalidation> received2 = new ArrayList<>();
+    node1.subscribe(received1::add);
+    node2.subscribe(received2::add);
+
+    node1.publish(TEMPLATE);
+
+    assertThat(received1).isEmpty();
+    assertThat(received2).containsExactly(TEMPLATE);
+  }
+
+  @Test
+  public void testPublishOnCommit() {
+    InProcessCacheInvalidationBus node1 = new InProcessCacheInvalidationBus();
+    List<CacheInvalidation> received = new ArrayList<>();
+    node1.newNode().subscribe(received::add);
+
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      node1.publish(TEMPLATE);
+      assertThat(received).isEmpty();
+
+      TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+      assertThat(received).containsExactly(TEMPLATE);
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+
+  @Test
+  public void testFormat() {
+    assertThat(CacheInvalidation.parse(TEMPLATE.format())).isEqualTo(TEMPLATE);
+    assertThat(CacheInvalidation.parse("PARTIES"))
+        .isEqualTo(new CacheInvalidation(CacheInvalidation.Type.PARTIES));
+    // the key may contain the separator
+    assertThat(CacheInvalidation.parse("COMPOSITION:8a3f::2").getKey()).isEqualTo("8a3f::2");
+  }
+}
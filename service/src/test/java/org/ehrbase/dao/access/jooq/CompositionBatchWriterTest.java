@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.dao.access.jooq;
+
+import org.ehrbase.dao.access.interfaces.I_DomainAccess;
+import org.ehrbase.dao.access.support.DummyDataAccess;
+import org.ehrbase.dao.access.util.ReferenceDataRegistry;
+import org.ehrbase.dao.jooq.impl.DSLContextHelper;
+import org.ehrbase.jooq.pg.tables.records.CompositionRecord;
+import org.ehrbase.jooq.pg.tables.records.ConceptRecord;
+import org.ehrbase.service.KnowledgeCacheHelper;
+import org.jooq.DSLContext;
+import org.jooq.Result;
+import org.jooq.tools.jdbc.MockResult;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.ehrbase.jooq.pg.Tables.COMPOSITION;
+import static org.ehrbase.jooq.pg.Tables.CONCEPT;
+import static org.ehrbase.jooq.pg.Tables.LANGUAGE;
+import static org.ehrbase.jooq.pg.Tables.TERRITORY;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CompositionBatchWriterTest {
+
+    private static final Pattern INSERT_INTO = Pattern.compile("insert into \"ehr\"\\.\"(\\w+)\"");
+
+    //tables of the inserts executed, one per row
+    private final List<String> inserted = new ArrayList<>();
+
+    private I_DomainAccess domainAccess;
+
+    @Before
+    public void setUp() throws Exception {
+        DSLContext context = DSLContextHelper.buildContext(ctx -> {
+            String sql = ctx.sql();
+            Matcher insert = INSERT_INTO.matcher(sql);
+            if (insert.find()) {
+                int rows = Math.max(ctx.batchBindings().length, 1);
+                for (int i = 0; i < rows; i++) {
+                    inserted.add(insert.group(1));
+                }
+                MockResult[] results = new MockResult[rows];
+                Arrays.fill(results, new MockResult(1, null));
+                return results;
+            } else if (sql.contains("\"ehr\".\"concept\"")) {
+                Result<ConceptRecord> concepts = DSLContextHelper.buildContext().newResult(CONCEPT);
+                ConceptRecord creation = DSLContextHelper.buildContext().newRecord(CONCEPT);
+                creation.setId(UUID.randomUUID());
+                creation.setConceptid(249);
+                creation.setLanguage("en");
+                creation.setDescription("creation");
+                concepts.add(creation);
+                return new MockResult[]{new MockResult(1, concepts)};
+            } else if (sql.contains("\"ehr\".\"territory\"")) {
+                return new MockResult[]{new MockResult(0, DSLContextHelper.buildContext().newResult(TERRITORY))};
+            } else if (sql.contains("\"ehr\".\"language\"")) {
+                return new MockResult[]{new MockResult(0, DSLContextHelper.buildContext().newResult(LANGUAGE.CODE))};
+            }
+            throw new SQLException("Unexpected statement: " + sql);
+        });
+        ReferenceDataRegistry referenceData = new ReferenceDataRegistry();
+        referenceData.reload(context);
+        domainAccess = new DummyDataAccess(context, null, null, KnowledgeCacheHelper.buildServerConfig(), referenceData);
+    }
+
+    @Test
+    public void testOneContributionPerEhr() {
+        CompositionBatchWriter cut = new CompositionBatchWriter(domainAccess, UUID.randomUUID(), UUID.randomUUID(), null);
+        UUID ehrA = UUID.randomUUID();
+        UUID ehrB = UUID.randomUUID();
+
+        cut.add(ehrA, compositionAccess(cut));
+        cut.add(ehrA, compositionAccess(cut));
+        //contribution audit and contribution, then a row per composition
+        assertThat(cut.size()).isEqualTo(4);
+
+        cut.add(ehrB, compositionAccess(cut));
+        assertThat(cut.size()).isEqualTo(7);
+
+        cut.flush();
+        assertThat(cut.size()).isZero();
+        //in the order of the foreign keys
+        assertThat(inserted).containsExactly(
+                "audit_details", "audit_details", "contribution", "contribution", "composition", "composition", "composition");
+    }
+
+    @Test
+    public void testFailedCompositionWithoutContribution() {
+        CompositionBatchWriter cut = new CompositionBatchWriter(domainAccess, UUID.randomUUID(), UUID.randomUUID(), null);
+        UUID ehrId = UUID.randomUUID();
+
+        CompositionAccess failing = mock(CompositionAccess.class);
+        doThrow(new IllegalArgumentException("Could not map the composition")).when(failing).prepareCommit(any(), any());
+        assertThatThrownBy(() -> cut.add(ehrId, failing)).isInstanceOf(IllegalArgumentException.class);
+        //neither the rows of the composition nor a contribution
+        assertThat(cut.size()).isZero();
+
+        cut.add(ehrId, compositionAccess(cut));
+        assertThat(cut.size()).isEqualTo(3);
+
+        cut.flush();
+        assertThat(inserted).containsExactly("audit_details", "contribution", "composition");
+    }
+
+    @Test
+    public void testContributionKeptAcrossFlushes() {
+        CompositionBatchWriter cut = new CompositionBatchWriter(domainAccess, UUID.randomUUID(), UUID.randomUUID(), null);
+        UUID ehrA = UUID.randomUUID();
+        UUID ehrB = UUID.randomUUID();
+
+        cut.add(ehrA, compositionAccess(cut));
+        cut.flush();
+        inserted.clear();
+
+        //the contribution of the new EHR is still inserted before the compositions
+        cut.add(ehrA, compositionAccess(cut));
+        cut.add(ehrB, compositionAccess(cut));
+        cut.flush();
+        assertThat(inserted).containsExactly("audit_details", "contribution", "composition", "composition");
+    }
+
+    /**
+     * @return a composition adding a single composition row to the writer
+     */
+    private CompositionAccess compositionAccess(CompositionBatchWriter writer) {
+        UUID compositionId = UUID.randomUUID();
+        CompositionAccess compositionAccess = mock(CompositionAccess.class);
+        when(compositionAccess.getId()).thenReturn(compositionId);
+        doAnswer(invocation -> {
+            CompositionRecord compositionRecord = domainAccess.getContext().newRecord(COMPOSITION);
+            compositionRecord.setId(compositionId);
+            compositionRecord.setInContribution(invocation.getArgument(1));
+            writer.add(compositionRecord);
+            return null;
+        }).when(compositionAccess).prepareCommit(same(writer), any());
+        return compositionAccess;
+    }
+}
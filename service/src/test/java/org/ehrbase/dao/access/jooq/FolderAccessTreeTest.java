@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.dao.access.jooq;
+
+import com.nedap.archie.rm.support.identification.ObjectRef;
+import org.ehrbase.api.exception.ObjectNotFoundException;
+import org.ehrbase.dao.access.interfaces.I_DomainAccess;
+import org.ehrbase.dao.access.interfaces.I_FolderAccess;
+import org.ehrbase.dao.access.support.DummyDataAccess;
+import org.ehrbase.dao.jooq.impl.DSLContextHelper;
+import org.ehrbase.service.KnowledgeCacheHelper;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class FolderAccessTreeTest {
+
+    private final FolderTreeMockDataProvider provider = new FolderTreeMockDataProvider();
+
+    private I_DomainAccess domainAccess;
+
+    private UUID root;
+    private UUID episodes;
+    private UUID episode1;
+    private UUID summaries;
+    private UUID otherRoot;
+
+    private final UUID vitalSigns = UUID.randomUUID();
+    private final UUID discharge = UUID.randomUUID();
+
+    @Before
+    public void setUp() {
+        root = provider.addFolder(null, "root", discharge);
+        episodes = provider.addFolder(root, "episodes");
+        episode1 = provider.addFolder(episodes, "episode 1", vitalSigns, discharge);
+        summaries = provider.addFolder(root, "summaries");
+        // the directory of another EHR, with folders of the same names
+        otherRoot = provider.addFolder(null, "root");
+        provider.addFolder(provider.addFolder(otherRoot, "episodes"), "episode 1", UUID.randomUUID());
+
+        domainAccess = new DummyDataAccess(DSLContextHelper.buildContext(provider), null, null,
+                KnowledgeCacheHelper.buildServerConfig());
+    }
+
+    @Test
+    public void testRetrieveTree() {
+        I_FolderAccess folder = FolderAccess.retrieveInstanceForExistingFolder(domainAccess, root);
+
+        assertThat(folder.getFolderId()).isEqualTo(root);
+        assertThat(itemIds(folder)).containsExactly(discharge.toString());
+        assertThat(folder.getSubfoldersList()).containsOnlyKeys(episodes, summaries);
+        I_FolderAccess episodesFolder = folder.getSubfoldersList().get(episodes);
+        assertThat(episodesFolder.getFolderName()).isEqualTo("episodes");
+        assertThat(episodesFolder.getSubfoldersList()).containsOnlyKeys(episode1);
+        assertThat(itemIds(episodesFolder.getSubfoldersList().get(episode1)))
+                .containsExactlyInAnyOrder(vitalSigns.toString(), discharge.toString());
+        assertThat(folder.getSubfoldersList().get(summaries).getSubfoldersList()).isEmpty();
+
+        // the relations of the tree are read by its root, the folders of the other tree are not read
+        assertThat(provider.getStatements()).hasSize(3);
+        assertThat(provider.getStatements().get(0)).contains("\"root_folder\"");
+        assertThat(provider.getFetchedFolders()).containsExactlyInAnyOrder(root, episodes, episode1, summaries);
+    }
+
+    @Test
+    public void testRetrievePath() {
+        I_FolderAccess folder = FolderAccess.retrieveInstanceForExistingFolder(domainAccess, root, "episodes", "episode 1");
+
+        assertThat(folder.getFolderId()).isEqualTo(episode1);
+        assertThat(folder.getSubfoldersList()).isEmpty();
+        assertThat(itemIds(folder)).containsExactlyInAnyOrder(vitalSigns.toString(), discharge.toString());
+
+        // only the sub tree at the path is loaded
+        assertThat(provider.getStatements()).hasSize(3);
+        assertThat(provider.getFetchedFolders()).containsExactly(episode1);
+    }
+
+    @Test
+    public void testRetrieveUnknownPath() {
+        assertThatThrownBy(() -> FolderAccess.retrieveInstanceForExistingFolder(domainAccess, root, "episodes", "episode 2"))
+                .isInstanceOf(ObjectNotFoundException.class)
+                .hasMessageContaining("episode 2");
+        assertThatThrownBy(() -> FolderAccess.retrieveInstanceForExistingFolder(domainAccess, root, "episode 1"))
+                .isInstanceOf(ObjectNotFoundException.class);
+    }
+
+    @Test
+    public void testRetrieveSubFolder() {
+        I_FolderAccess folder = FolderAccess.retrieveInstanceForExistingFolder(domainAccess, episodes);
+
+        assertThat(folder.getFolderId()).isEqualTo(episodes);
+        assertThat(folder.getSubfoldersList()).containsOnlyKeys(episode1);
+        assertThat(provider.getFetchedFolders()).containsExactlyInAnyOrder(episodes, episode1);
+
+        I_FolderAccess byPath = FolderAccess.retrieveInstanceForExistingFolder(domainAccess, episodes, "episode 1");
+        assertThat(byPath.getFolderId()).isEqualTo(episode1);
+    }
+
+    private static String[] itemIds(I_FolderAccess folder) {
+        return folder.getItems().stream().map(ObjectRef::getId).map(id -> id.getValue()).toArray(String[]::new);
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.dao.access.jooq;
+
+import com.nedap.archie.rm.datavalues.DvText;
+import com.nedap.archie.rm.directory.Folder;
+import com.nedap.archie.rm.support.identification.HierObjectId;
+import com.nedap.archie.rm.support.identification.ObjectId;
+import com.nedap.archie.rm.support.identification.ObjectRef;
+import org.ehrbase.dao.access.interfaces.I_DomainAccess;
+import org.ehrbase.dao.access.interfaces.I_FolderAccess;
+import org.ehrbase.dao.access.support.DummyDataAccess;
+import org.ehrbase.dao.access.util.ReferenceDataRegistry;
+import org.ehrbase.dao.jooq.impl.DSLContextHelper;
+import org.ehrbase.jooq.pg.enums.ContributionChangeType;
+import org.ehrbase.jooq.pg.tables.records.AuditDetailsRecord;
+import org.ehrbase.jooq.pg.tables.records.ConceptRecord;
+import org.ehrbase.jooq.pg.tables.records.ContributionRecord;
+import org.ehrbase.service.KnowledgeCacheHelper;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record1;
+import org.jooq.Result;
+import org.jooq.impl.DSL;
+import org.jooq.tools.jdbc.MockResult;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.ehrbase.jooq.pg.Tables.AUDIT_DETAILS;
+import static org.ehrbase.jooq.pg.Tables.CONCEPT;
+import static org.ehrbase.jooq.pg.Tables.CONTRIBUTION;
+import static org.ehrbase.jooq.pg.Tables.LANGUAGE;
+import static org.ehrbase.jooq.pg.Tables.TERRITORY;
+
+public class FolderAccessWriteTest {
+
+    private static final Pattern INSERT_INTO = Pattern.compile("^insert into \"ehr\"\\.\"(\\w+)\" \\(([^)]*)\\)");
+
+    private static final List<String> TABLE_ORDER =
+            List.of("audit_details", "folder", "object_ref", "folder_items", "folder_hierarchy");
+
+    private final DSLContext create = DSLContextHelper.buildContext();
+
+    private final UUID contributionId = UUID.randomUUID();
+    private final UUID vitalSigns = UUID.randomUUID();
+    private final UUID discharge = UUID.randomUUID();
+
+    // the statements run, and the rows inserted by table
+    private final List<String> statements = new ArrayList<>();
+    private final Map<String, List<Map<String, Object>>> inserted = new LinkedHashMap<>();
+
+    private ContributionChangeType changeType = ContributionChangeType.creation;
+    private UUID storedRoot;
+
+    private I_DomainAccess domainAccess;
+
+    @Before
+    public void setUp() {
+        DSLContext context = DSLContextHelper.buildContext(ctx -> {
+            String sql = ctx.sql();
+            statements.add(sql);
+            Matcher insert = INSERT_INTO.matcher(sql);
+            if (insert.find()) {
+                List<String> columns = Arrays.stream(insert.group(2).split(","))
+                        .map(column -> column.trim().replace("\"", ""))
+                        .collect(Collectors.toList());
+                Object[][] rows = ctx.batchBindings().length > 0 ? ctx.batchBindings() : new Object[][]{ctx.bindings()};
+                for (Object[] bindings : rows) {
+                    Map<String, Object> row = new HashMap<>();
+                    for (int i = 0; i < columns.size(); i++) {
+                        row.put(columns.get(i), bindings[i]);
+                    }
+                    inserted.computeIfAbsent(insert.group(1), table -> new ArrayList<>()).add(row);
+                }
+                MockResult[] results = new MockResult[rows.length];
+                Arrays.fill(results, new MockResult(1, null));
+                return results;
+            } else if (sql.startsWith("update \"ehr\".\"folder\"")) {
+                return new MockResult[]{new MockResult(1, null)};
+            } else if (sql.startsWith("select coalesce(")) {
+                Field<UUID> root = DSL.field("root_folder", UUID.class);
+                Result<Record1<UUID>> result = create.newResult(root);
+                result.add(create.newRecord(root).values(storedRoot));
+                return new MockResult[]{new MockResult(1, result)};
+            } else if (sql.contains("\"ehr\".\"contribution\"")) {
+                Result<ContributionRecord> result = create.newResult(CONTRIBUTION);
+                ContributionRecord contribution = create.newRecord(CONTRIBUTION);
+                contribution.setId(contributionId);
+                contribution.setEhrId(UUID.randomUUID());
+                contribution.setHasAudit(UUID.randomUUID());
+                result.add(contribution);
+                return new MockResult[]{new MockResult(1, result)};
+            } else if (sql.contains("\"ehr\".\"audit_details\"")) {
+                Result<AuditDetailsRecord> result = create.newResult(AUDIT_DETAILS);
+                AuditDetailsRecord audit = create.newRecord(AUDIT_DETAILS);
+                audit.setId(UUID.randomUUID());
+                audit.setSystemId(UUID.randomUUID());
+                audit.setCommitter(UUID.randomUUID());
+                audit.setChangeType(changeType);
+                result.add(audit);
+                return new MockResult[]{new MockResult(1, result)};
+            } else if (sql.contains("\"ehr\".\"concept\"")) {
+                Result<ConceptRecord> concepts = create.newResult(CONCEPT);
+                concepts.add(concept(249, "creation"));
+                concepts.add(concept(251, "modification"));
+                return new MockResult[]{new MockResult(2, concepts)};
+            } else if (sql.contains("\"ehr\".\"territory\"")) {
+                return new MockResult[]{new MockResult(0, create.newResult(TERRITORY))};
+            } else if (sql.contains("\"ehr\".\"language\"")) {
+                return new MockResult[]{new MockResult(0, create.newResult(LANGUAGE.CODE))};
+            }
+            throw new SQLException("Unexpected statement: " + sql);
+        });
+        ReferenceDataRegistry referenceData = new ReferenceDataRegistry();
+        referenceData.reload(context);
+        domainAccess = new DummyDataAccess(context, null, null, KnowledgeCacheHelper.buildServerConfig(), referenceData);
+        statements.clear();
+    }
+
+    @Test
+    public void testCommitTree() {
+        I_FolderAccess folderAccess = FolderAccess.buildNewFolderAccessHierarchy(domainAccess, directory(),
+                Timestamp.from(Instant.now()), UUID.randomUUID(), null);
+
+        UUID rootId = folderAccess.commit(LocalDateTime.now(), contributionId);
+
+        // one batch per table, parents before the rows referencing them
+        assertThat(insertStatementTables()).containsExactlyElementsOf(TABLE_ORDER);
+
+        assertThat(inserted.get("audit_details")).hasSize(3);
+        // the ids are set client side
+        List<Map<String, Object>> folders = inserted.get("folder");
+        assertThat(folders).hasSize(3).allSatisfy(folder -> {
+            assertThat(folder.get("id")).isInstanceOf(UUID.class);
+            assertThat(folder.get("in_contribution")).isEqualTo(contributionId);
+        });
+        Map<String, UUID> folderIds = folderIdsByName(folders);
+        assertThat(folderIds.get("root")).isEqualTo(rootId);
+
+        // the item in two folders is referenced once
+        assertThat(inserted.get("object_ref")).extracting(ref -> ref.get("id"))
+                .containsExactlyInAnyOrder(vitalSigns, discharge);
+        assertThat(inserted.get("folder_items")).extracting(item -> item.get("folder_id"), item -> item.get("object_ref_id"))
+                .containsExactlyInAnyOrder(
+                        tuple(rootId, discharge),
+                        tuple(folderIds.get("episode 1"), vitalSigns),
+                        tuple(folderIds.get("episode 1"), discharge));
+
+        assertThat(inserted.get("folder_hierarchy"))
+                .extracting(fh -> fh.get("parent_folder"), fh -> fh.get("child_folder"), fh -> fh.get("root_folder"))
+                .containsExactlyInAnyOrder(
+                        tuple(rootId, folderIds.get("episodes"), rootId),
+                        tuple(folderIds.get("episodes"), folderIds.get("episode 1"), rootId));
+    }
+
+    @Test
+    public void testUpdateTree() {
+        FolderAccess folderAccess = (FolderAccess) FolderAccess.buildNewFolderAccessHierarchy(domainAccess, directory(),
+                Timestamp.from(Instant.now()), UUID.randomUUID(), null);
+        storedRoot = folderAccess.commit(LocalDateTime.now(), contributionId);
+        Map<String, UUID> oldIds = folderIdsByName(inserted.get("folder"));
+        statements.clear();
+        inserted.clear();
+
+        // replace the sub folders, as the folder service does
+        changeType = ContributionChangeType.modification;
+        folderAccess.getSubfoldersList().clear();
+        directory().getFolders().forEach(child -> folderAccess.getSubfoldersList().put(UUID.randomUUID(),
+                FolderAccess.buildNewFolderAccessHierarchy(domainAccess, child, Timestamp.from(Instant.now()),
+                        UUID.randomUUID(), folderAccess.getContributionAccess())));
+
+        assertThat(folderAccess.update(LocalDateTime.now(), contributionId)).isTrue();
+
+        // the root is updated in place before the rows of the tree are inserted
+        List<String> writes = statements.stream()
+                .filter(sql -> sql.startsWith("insert") || sql.startsWith("update"))
+                .collect(Collectors.toList());
+        assertThat(writes.get(0)).startsWith("update \"ehr\".\"folder\"");
+        assertThat(insertStatementTables()).containsExactlyElementsOf(TABLE_ORDER);
+
+        assertThat(inserted.get("audit_details")).hasSize(3);
+        List<Map<String, Object>> folders = inserted.get("folder");
+        assertThat(folders).hasSize(2);
+        Map<String, UUID> newIds = folderIdsByName(folders);
+        assertThat(newIds.keySet()).containsExactlyInAnyOrder("episodes", "episode 1");
+        assertThat(newIds.values()).doesNotContainAnyElementsOf(oldIds.values());
+
+        assertThat(inserted.get("object_ref")).extracting(ref -> ref.get("id"))
+                .containsExactlyInAnyOrder(vitalSigns, discharge);
+        assertThat(inserted.get("folder_items")).hasSize(3);
+
+        // the new sub folders are keyed by the root of the tree
+        assertThat(inserted.get("folder_hierarchy"))
+                .extracting(fh -> fh.get("parent_folder"), fh -> fh.get("child_folder"), fh -> fh.get("root_folder"))
+                .containsExactlyInAnyOrder(
+                        tuple(storedRoot, newIds.get("episodes"), storedRoot),
+                        tuple(newIds.get("episodes"), newIds.get("episode 1"), storedRoot));
+    }
+
+    /**
+     * root (discharge) / episodes / episode 1 (vital signs, discharge)
+     */
+    private Folder directory() {
+        Folder episode1 = folder("episode 1", vitalSigns, discharge);
+        Folder episodes = folder("episodes");
+        episodes.setFolders(new ArrayList<>(List.of(episode1)));
+        Folder root = folder("root", discharge);
+        root.setFolders(new ArrayList<>(List.of(episodes)));
+        return root;
+    }
+
+    private static Folder folder(String name, UUID... itemIds) {
+        Folder folder = new Folder();
+        folder.setName(new DvText(name));
+        folder.setArchetypeNodeId("openEHR-EHR-FOLDER.generic.v1");
+        folder.setItems(Arrays.stream(itemIds)
+                .<ObjectRef<? extends ObjectId>>map(id -> new ObjectRef<>(new HierObjectId(id.toString()), "local", "COMPOSITION"))
+                .collect(Collectors.toList()));
+        folder.setFolders(new ArrayList<>());
+        return folder;
+    }
+
+    private ConceptRecord concept(int conceptId, String description) {
+        ConceptRecord concept = create.newRecord(CONCEPT);
+        concept.setId(UUID.randomUUID());
+        concept.setConceptid(conceptId);
+        concept.setLanguage("en");
+        concept.setDescription(description);
+        return concept;
+    }
+
+    private List<String> insertStatementTables() {
+        return statements.stream()
+                .map(INSERT_INTO::matcher)
+                .filter(Matcher::find)
+                .map(insert -> insert.group(1))
+                .collect(Collectors.toList());
+    }
+
+    private static Map<String, UUID> folderIdsByName(List<Map<String, Object>> folders) {
+        return folders.stream()
+                .collect(Collectors.toMap(folder -> (String) folder.get("name"), folder -> (UUID) folder.get("id")));
+    }
+}
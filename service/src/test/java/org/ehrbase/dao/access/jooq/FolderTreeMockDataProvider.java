@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.dao.access.jooq;
+
+import org.ehrbase.dao.jooq.impl.DSLContextHelper;
+import org.ehrbase.jooq.pg.tables.records.FolderRecord;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record;
+import org.jooq.Record3;
+import org.jooq.Result;
+import org.jooq.tools.jdbc.MockDataProvider;
+import org.jooq.tools.jdbc.MockExecuteContext;
+import org.jooq.tools.jdbc.MockResult;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.ehrbase.jooq.pg.Tables.FOLDER;
+import static org.ehrbase.jooq.pg.Tables.FOLDER_HIERARCHY;
+import static org.ehrbase.jooq.pg.Tables.FOLDER_ITEMS;
+import static org.ehrbase.jooq.pg.Tables.OBJECT_REF;
+
+/**
+ * Serves the reads of {@link FolderAccess#retrieveInstanceForExistingFolder} from folder trees held in memory, and
+ * records the statements run.
+ */
+public class FolderTreeMockDataProvider implements MockDataProvider {
+
+    private final DSLContext create = DSLContextHelper.buildContext();
+
+    private final Map<UUID, FolderRecord> folders = new LinkedHashMap<>();
+    //the relations by child folder
+    private final Map<UUID, UUID[]> parentAndRoot = new LinkedHashMap<>();
+    private final Map<UUID, List<UUID>> items = new HashMap<>();
+
+    private final List<String> statements = new ArrayList<>();
+    private final List<UUID> fetchedFolders = new ArrayList<>();
+
+    /**
+     * add a folder, the root of a tree if the parent is null
+     *
+     * @return the id of the folder
+     */
+    public UUID addFolder(UUID parent, String name, UUID... itemIds) {
+        FolderRecord folder = create.newRecord(FOLDER);
+        folder.setId(UUID.randomUUID());
+        folder.setInContribution(UUID.randomUUID());
+        folder.setName(name);
+        folder.setArchetypeNodeId("openEHR-EHR-FOLDER.generic.v1");
+        folder.setActive(true);
+        folders.put(folder.getId(), folder);
+        if (parent != null) {
+            UUID root = parentAndRoot.containsKey(parent) ? parentAndRoot.get(parent)[1] : parent;
+            parentAndRoot.put(folder.getId(), new UUID[]{parent, root});
+        }
+        items.put(folder.getId(), List.of(itemIds));
+        return folder.getId();
+    }
+
+    /**
+     * @return the statements run, in order
+     */
+    public List<String> getStatements() {
+        return statements;
+    }
+
+    /**
+     * @return the ids of the folders fetched from <code>ehr.folder</code>
+     */
+    public List<UUID> getFetchedFolders() {
+        return fetchedFolders;
+    }
+
+    @Override
+    public MockResult[] execute(MockExecuteContext ctx) throws SQLException {
+        String sql = ctx.sql();
+        statements.add(sql);
+        List<UUID> ids = Arrays.stream(ctx.bindings())
+                .filter(UUID.class::isInstance)
+                .map(UUID.class::cast)
+                .collect(Collectors.toList());
+
+        if (sql.contains("from \"ehr\".\"folder_hierarchy\"")) {
+            return new MockResult[]{new MockResult(0, relations(ids.get(0)))};
+        } else if (sql.contains("from \"ehr\".\"folder_items\"")) {
+            return new MockResult[]{new MockResult(0, items(ids))};
+        } else if (sql.contains("from \"ehr\".\"folder\"")) {
+            fetchedFolders.addAll(ids);
+            Result<FolderRecord> result = create.newResult(FOLDER);
+            ids.stream().map(folders::get).forEach(result::add);
+            return new MockResult[]{new MockResult(result.size(), result)};
+        }
+        throw new SQLException("Unexpected statement: " + sql);
+    }
+
+    private Result<Record3<UUID, UUID, String>> relations(UUID folderId) {
+        // the root of a sub folder, the folder itself otherwise
+        UUID root = parentAndRoot.containsKey(folderId) ? parentAndRoot.get(folderId)[1] : folderId;
+
+        Result<Record3<UUID, UUID, String>> result =
+                create.newResult(FOLDER_HIERARCHY.PARENT_FOLDER, FOLDER_HIERARCHY.CHILD_FOLDER, FOLDER.NAME);
+        parentAndRoot.forEach((child, relation) -> {
+            if (relation[1].equals(root)) {
+                result.add(create.newRecord(FOLDER_HIERARCHY.PARENT_FOLDER, FOLDER_HIERARCHY.CHILD_FOLDER, FOLDER.NAME)
+                        .values(relation[0], child, folders.get(child).getName()));
+            }
+        });
+        return result;
+    }
+
+    private Result<Record> items(List<UUID> folderIds) {
+        List<Field<?>> fieldList = new ArrayList<>();
+        fieldList.add(FOLDER_ITEMS.FOLDER_ID);
+        fieldList.addAll(Arrays.asList(OBJECT_REF.fields()));
+        Field<?>[] fields = fieldList.toArray(new Field<?>[0]);
+
+        Result<Record> result = create.newResult(fields);
+        for (UUID folderId : folderIds) {
+            for (UUID itemId : items.getOrDefault(folderId, List.of())) {
+                Record item = create.newRecord(fields);
+                item.set(FOLDER_ITEMS.FOLDER_ID, folderId);
+                item.set(OBJECT_REF.ID, itemId);
+                item.set(OBJECT_REF.ID_NAMESPACE, "local");
+                item.set(OBJECT_REF.TYPE, "COMPOSITION");
+                item.set(OBJECT_REF.IN_CONTRIBUTION, folders.get(folderId).getInContribution());
+                result.add(item);
+            }
+        }
+        return result;
+    }
+}
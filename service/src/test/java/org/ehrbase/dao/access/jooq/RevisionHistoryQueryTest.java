@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.dao.access.jooq;
+
+import com.nedap.archie.rm.datavalues.DvIdentifier;
+import com.nedap.archie.rm.generic.AuditDetails;
+import com.nedap.archie.rm.generic.PartyIdentified;
+import com.nedap.archie.rm.generic.PartyProxy;
+import com.nedap.archie.rm.generic.PartySelf;
+import com.nedap.archie.rm.generic.RevisionHistory;
+import com.nedap.archie.rm.generic.RevisionHistoryItem;
+import org.ehrbase.dao.access.interfaces.I_DomainAccess;
+import org.ehrbase.dao.access.support.DummyDataAccess;
+import org.ehrbase.dao.jooq.impl.DSLContextHelper;
+import org.ehrbase.jooq.pg.enums.ContributionChangeType;
+import org.ehrbase.jooq.pg.enums.PartyType;
+import org.ehrbase.jooq.pg.tables.records.AuditDetailsRecord;
+import org.ehrbase.jooq.pg.tables.records.IdentifierRecord;
+import org.ehrbase.jooq.pg.tables.records.PartyIdentifiedRecord;
+import org.ehrbase.service.KnowledgeCacheHelper;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record;
+import org.jooq.Result;
+import org.jooq.impl.DSL;
+import org.jooq.tools.jdbc.MockResult;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.ehrbase.jooq.pg.Tables.ATTESTATION;
+import static org.ehrbase.jooq.pg.Tables.AUDIT_DETAILS;
+import static org.ehrbase.jooq.pg.Tables.IDENTIFIER;
+import static org.ehrbase.jooq.pg.Tables.PARTY_IDENTIFIED;
+
+public class RevisionHistoryQueryTest {
+
+    private static final Field<Integer> VERSION = DSL.field(DSL.name("version"), Integer.class);
+    private static final Field<UUID> ATTESTATION_REF = DSL.field(DSL.name("attestation_ref"), UUID.class);
+
+    private final DSLContext create = DSLContextHelper.buildContext();
+
+    private final UUID compositionId = UUID.randomUUID();
+    private final UUID attestationRef = UUID.randomUUID();
+    private final UUID author = UUID.randomUUID();
+    private final UUID attester = UUID.randomUUID();
+
+    // the statements run and their bind values
+    private final List<String> statements = new ArrayList<>();
+    private final List<List<Object>> bindings = new ArrayList<>();
+
+    private I_DomainAccess domainAccess;
+
+    @Before
+    public void setUp() {
+        domainAccess = new DummyDataAccess(DSLContextHelper.buildContext(ctx -> {
+            String sql = ctx.sql();
+            statements.add(sql);
+            bindings.add(Arrays.asList(ctx.bindings()));
+            Result<Record> result;
+            if (sql.contains("\"versions\"")) {
+                // the history rows first, version 1 twice as left by legacy updates
+                result = create.newResult(withAudit(VERSION, ATTESTATION_REF));
+                result.add(versionRow(2, null, audit(author, "amended")));
+                result.add(versionRow(1, attestationRef, audit(author, "created")));
+                result.add(versionRow(1, attestationRef, audit(author, "duplicate")));
+            } else if (sql.contains("\"ehr\".\"attestation\"")) {
+                result = create.newResult(withAudit(ATTESTATION.REFERENCE));
+                Record attestation = create.newRecord(withAudit(ATTESTATION.REFERENCE));
+                copy(audit(attester, "attested"), attestation);
+                attestation.set(ATTESTATION.REFERENCE, attestationRef);
+                result.add(attestation);
+            } else if (sql.contains("\"ehr\".\"party_identified\"")) {
+                // the author has two identifiers, the attester none
+                Field<?>[] fields = Stream.of(PARTY_IDENTIFIED.fields(), IDENTIFIER.fields())
+                        .flatMap(Arrays::stream)
+                        .toArray(Field<?>[]::new);
+                result = create.newResult(fields);
+                result.add(partyRow(fields, party(author, "Dr. Who"), identifier(author, "1234")));
+                result.add(partyRow(fields, party(author, "Dr. Who"), identifier(author, "5678")));
+                result.add(partyRow(fields, party(attester, "Dr. No"), null));
+            } else {
+                throw new AssertionError("unexpected statement: " + sql);
+            }
+            return new MockResult[]{new MockResult(result.size(), result)};
+        }), null, null, KnowledgeCacheHelper.buildServerConfig());
+    }
+
+    @Test
+    public void ofComposition() {
+        RevisionHistory history = RevisionHistoryQuery.ofComposition(domainAccess, compositionId, "test.ehrbase.org");
+
+        // one statement for the versions, the attestations and the committers
+        assertThat(statements).hasSize(3);
+        assertThat(statements.get(0)).contains("\"ehr\".\"composition\"", "\"ehr\".\"composition_history\"", "union all");
+        assertThat(bindings.get(1)).containsExactly(attestationRef);
+        assertThat(bindings.get(2)).containsExactlyInAnyOrder(author, attester);
+
+        // ordered by version, the duplicate of version 1 is dropped
+        assertThat(history.getItems()).extracting(item -> item.getVersionId().getValue())
+                .containsExactly(compositionId + "::test.ehrbase.org::1", compositionId + "::test.ehrbase.org::2");
+
+        // the attestation is attached to the attested version only
+        RevisionHistoryItem first = history.getItems().get(0);
+        assertThat(first.getAudits()).extracting(audit -> audit.getDescription().getValue())
+                .containsExactly("created", "attested");
+        assertThat(history.getItems().get(1).getAudits()).extracting(audit -> audit.getDescription().getValue())
+                .containsExactly("amended");
+
+        // the committers with their identifiers
+        PartyIdentified committer = (PartyIdentified) first.getAudits().get(0).getCommitter();
+        assertThat(committer.getName()).isEqualTo("Dr. Who");
+        assertThat(committer.getIdentifiers()).extracting(DvIdentifier::getId).containsExactly("1234", "5678");
+        PartyIdentified attestedBy = (PartyIdentified) first.getAudits().get(1).getCommitter();
+        assertThat(attestedBy.getName()).isEqualTo("Dr. No");
+        assertThat(attestedBy.getIdentifiers()).isNull();
+    }
+
+    @Test
+    public void ofStatus() {
+        UUID statusId = UUID.randomUUID();
+
+        RevisionHistory history = RevisionHistoryQuery.ofStatus(domainAccess, statusId, "test.ehrbase.org");
+
+        assertThat(statements.get(0)).contains("\"ehr\".\"status\"", "\"ehr\".\"status_history\"");
+        assertThat(history.getItems()).hasSize(2);
+    }
+
+    @Test
+    public void toAuditDetails() {
+        UUID systemId = UUID.randomUUID();
+        UUID committerId = UUID.randomUUID();
+        PartyProxy committer = new PartySelf();
+        LocalDateTime timeCommitted = LocalDateTime.of(2022, 3, 1, 12, 30);
+
+        AuditDetailsRecord record = new AuditDetailsRecord();
+        record.setSystemId(systemId);
+        record.setCommitter(committerId);
+        record.setTimeCommitted(Timestamp.valueOf(timeCommitted));
+        record.setChangeType(ContributionChangeType.modification);
+        record.setDescription("amended");
+
+        AuditDetails audit = RevisionHistoryQuery.toAuditDetails(record, Map.of(committerId, committer));
+
+        assertThat(audit.getSystemId()).isEqualTo(systemId.toString());
+        assertThat(audit.getCommitter()).isSameAs(committer);
+        assertThat(audit.getTimeCommitted().getValue()).isEqualTo(timeCommitted);
+        assertThat(audit.getChangeType().getValue()).isEqualTo("modification");
+        assertThat(audit.getChangeType().getDefiningCode().getCodeString()).isEqualTo("251");
+        assertThat(audit.getDescription().getValue()).isEqualTo("amended");
+    }
+
+    private Record versionRow(int version, UUID attestationRef, AuditDetailsRecord audit) {
+        Record row = create.newRecord(withAudit(VERSION, ATTESTATION_REF));
+        copy(audit, row);
+        row.set(VERSION, version);
+        row.set(ATTESTATION_REF, attestationRef);
+        return row;
+    }
+
+    private Record partyRow(Field<?>[] fields, PartyIdentifiedRecord party, IdentifierRecord identifier) {
+        Record row = create.newRecord(fields);
+        copy(party, row);
+        if (identifier != null) {
+            copy(identifier, row);
+        }
+        return row;
+    }
+
+    private AuditDetailsRecord audit(UUID committer, String description) {
+        AuditDetailsRecord audit = create.newRecord(AUDIT_DETAILS);
+        audit.setId(UUID.randomUUID());
+        audit.setSystemId(UUID.randomUUID());
+        audit.setCommitter(committer);
+        audit.setTimeCommitted(Timestamp.valueOf(LocalDateTime.of(2022, 3, 1, 12, 30)));
+        audit.setChangeType(ContributionChangeType.creation);
+        audit.setDescription(description);
+        return audit;
+    }
+
+    private PartyIdentifiedRecord party(UUID id, String name) {
+        PartyIdentifiedRecord party = create.newRecord(PARTY_IDENTIFIED);
+        party.setId(id);
+        party.setName(name);
+        party.setPartyType(PartyType.party_identified);
+        return party;
+    }
+
+    private IdentifierRecord identifier(UUID party, String value) {
+        IdentifierRecord identifier = create.newRecord(IDENTIFIER);
+        identifier.setParty(party);
+        identifier.setIdValue(value);
+        identifier.setIssuer("issuer");
+        identifier.setAssigner("assigner");
+        identifier.setTypeName("type");
+        return identifier;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void copy(Record source, Record target) {
+        for (Field<?> field : source.fields()) {
+            target.set((Field<Object>) field, source.get(field));
+        }
+    }
+
+    private static Field<?>[] withAudit(Field<?>... fields) {
+        return Stream.of(fields, AUDIT_DETAILS.fields())
+                .flatMap(Arrays::stream)
+                .toArray(Field<?>[]::new);
+    }
+}
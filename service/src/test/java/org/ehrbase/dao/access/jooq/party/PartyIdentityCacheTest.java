@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.dao.access.jooq.party;
+
+import com.nedap.archie.rm.datavalues.DvIdentifier;
+import com.nedap.archie.rm.generic.PartyIdentified;
+import com.nedap.archie.rm.generic.PartySelf;
+import com.nedap.archie.rm.support.identification.GenericId;
+import com.nedap.archie.rm.support.identification.PartyRef;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PartyIdentityCacheTest {
+
+    @Test
+    public void testKey() {
+        assertThat(PartyIdentityCache.key(party("Dr. Who", "1", "a", "b")))
+                .isEqualTo(PartyIdentityCache.key(party("Dr. Who", "1", "b", "a")));
+        assertThat(PartyIdentityCache.key(party("Dr. Who", "1", "a")))
+                .isNotEqualTo(PartyIdentityCache.key(party("Dr. Who", "2", "a")))
+                .isNotEqualTo(PartyIdentityCache.key(party("Dr. No", "1", "a")))
+                .isNotEqualTo(PartyIdentityCache.key(party("Dr. Who", "1", "a", "b")));
+        assertThat(PartyIdentityCache.key(new PartySelf()))
+                .isNotEqualTo(PartyIdentityCache.key(new PartyIdentified()));
+    }
+
+    @Test
+    public void testGetOrCreate() {
+        PartyIdentityCache cut = new PartyIdentityCache(10);
+        UUID id = UUID.randomUUID();
+        AtomicInteger resolved = new AtomicInteger();
+
+        assertThat(cut.getOrCreate(party("Dr. Who", "1", "a"), p -> resolve(resolved, id))).isEqualTo(id);
+        assertThat(cut.getOrCreate(party("Dr. Who", "1", "a"), p -> resolve(resolved, id))).isEqualTo(id);
+        assertThat(resolved).hasValue(1);
+        assertThat(cut.getHitCount()).isEqualTo(1);
+        assertThat(cut.getMissCount()).isEqualTo(1);
+
+        cut.invalidate();
+        assertThat(cut.getOrCreate(party("Dr. Who", "1", "a"), p -> resolve(resolved, id))).isEqualTo(id);
+        assertThat(resolved).hasValue(2);
+    }
+
+    @Test
+    public void testCachedOnCommit() {
+        PartyIdentityCache cut = new PartyIdentityCache(10);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cut.getOrCreate(party("Dr. Who", "1", "a"), p -> UUID.randomUUID());
+            assertThat(cut.size()).isZero();
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertThat(cut.size()).isEqualTo(1);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void testInvalidatedOnCommit() {
+        PartyIdentityCache cut = new PartyIdentityCache(10);
+        cut.getOrCreate(party("Dr. Who", "1", "a"), p -> UUID.randomUUID());
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cut.invalidate();
+            assertThat(cut.size()).isEqualTo(1);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertThat(cut.size()).isZero();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void testDisabled() {
+        PartyIdentityCache cut = new PartyIdentityCache(0);
+        AtomicInteger resolved = new AtomicInteger();
+
+        cut.getOrCreate(party("Dr. Who", "1", "a"), p -> resolve(resolved, UUID.randomUUID()));
+        cut.getOrCreate(party("Dr. Who", "1", "a"), p -> resolve(resolved, UUID.randomUUID()));
+        assertThat(resolved).hasValue(2);
+        assertThat(cut.size()).isZero();
+    }
+
+    private static UUID resolve(AtomicInteger counter, UUID id) {
+        counter.incrementAndGet();
+        return id;
+    }
+
+    private static PartyIdentified party(String name, String externalId, String... identifiers) {
+        List<DvIdentifier> dvIdentifiers = new ArrayList<>();
+        for (String identifier : identifiers) {
+            DvIdentifier dvIdentifier = new DvIdentifier();
+            dvIdentifier.setIssuer("issuer");
+            dvIdentifier.setAssigner("assigner");
+            dvIdentifier.setId(identifier);
+            dvIdentifier.setType("type");
+            dvIdentifiers.add(dvIdentifier);
+        }
+        return new PartyIdentified(new PartyRef(new GenericId(externalId, "scheme"), "namespace", "PERSON"), name, dvIdentifiers);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.dao.access.jooq.party;
+
+import com.nedap.archie.rm.generic.PartyIdentified;
+import com.nedap.archie.rm.generic.PartyProxy;
+import com.nedap.archie.rm.generic.PartyRelated;
+import com.nedap.archie.rm.generic.PartySelf;
+import org.ehrbase.dao.access.interfaces.I_DomainAccess;
+import org.ehrbase.jooq.pg.enums.PartyType;
+import org.ehrbase.jooq.pg.tables.records.IdentifierRecord;
+import org.ehrbase.jooq.pg.tables.records.PartyIdentifiedRecord;
+import org.ehrbase.jooq.pg.udt.records.CodePhraseRecord;
+import org.ehrbase.jooq.pg.udt.records.DvCodedTextRecord;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PersistedPartyProxyTest {
+
+    @Test
+    public void renderIdentified() {
+        UUID id = UUID.randomUUID();
+        PartyIdentifiedRecord record = DataGenerator.anyPartyIdentifiedRecordWith(List.of(id),
+                rec -> rec.setName("Dr. Who"),
+                rec -> rec.setPartyType(PartyType.party_identified)).get(0);
+        List<IdentifierRecord> identifiers = DataGenerator.anyIdentifierRecordWithParty(List.of(id, id));
+
+        PartyProxy party = cut().render(record, identifiers);
+
+        assertThat(party).isInstanceOf(PartyIdentified.class);
+        assertThat(((PartyIdentified) party).getName()).isEqualTo("Dr. Who");
+        assertThat(((PartyIdentified) party).getIdentifiers()).hasSize(2);
+        assertThat(party.getExternalRef()).isNull();
+    }
+
+    @Test
+    public void renderRelated() {
+        DvCodedTextRecord relationship = new DvCodedTextRecord();
+        relationship.setValue("mother");
+        relationship.setDefiningCode(new CodePhraseRecord());
+        PartyIdentifiedRecord record = DataGenerator.anyPartyIdentifiedRecord(
+                rec -> rec.setName("Jane Doe"),
+                rec -> rec.setPartyType(PartyType.party_related),
+                rec -> rec.setRelationship(relationship));
+
+        PartyProxy party = cut().render(record, List.of());
+
+        assertThat(party).isInstanceOf(PartyRelated.class);
+        assertThat(((PartyRelated) party).getName()).isEqualTo("Jane Doe");
+        assertThat(((PartyRelated) party).getIdentifiers()).isNull();
+        assertThat(((PartyRelated) party).getRelationship().getValue()).isEqualTo("mother");
+    }
+
+    @Test
+    public void renderSelf() {
+        PartyIdentifiedRecord record = DataGenerator.anyPartyIdentifiedRecord(
+                rec -> rec.setPartyType(PartyType.party_self));
+
+        assertThat(cut().render(record, List.of())).isInstanceOf(PartySelf.class);
+    }
+
+    private static PersistedPartyProxy cut() {
+        //rendering fetched rows must not query the database
+        return new PersistedPartyProxy(Mockito.mock(I_DomainAccess.class, invocation -> {
+            throw new AssertionError("unexpected database access");
+        }));
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.dao.access.query;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.ehrbase.api.exception.ServiceUnavailableException;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class QueryExecutorTest {
+
+    @Test
+    public void testSubmit() throws Exception {
+        QueryExecutor cut = new QueryExecutor(1, 1, 30, new SimpleMeterRegistry());
+        try {
+            assertThat(cut.submit(() -> "result", () -> { }).get(5, TimeUnit.SECONDS)).isEqualTo("result");
+            assertThat(cut.getTimeout()).isEqualTo(30);
+        } finally {
+            cut.destroy();
+        }
+    }
+
+    @Test
+    public void testRejection() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        QueryExecutor cut = new QueryExecutor(1, 1, 0, registry);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            cut.submit(() -> await(release), () -> { });
+            cut.submit(() -> "queued", () -> { });
+
+            assertThatThrownBy(() -> cut.submit(() -> "rejected", () -> { }))
+                    .isInstanceOf(ServiceUnavailableException.class);
+            assertThat(registry.get(QueryExecutor.METRIC_PREFIX + ".rejected").counter().count()).isEqualTo(1.0);
+            assertThat(registry.get(QueryExecutor.METRIC_PREFIX + ".queue").gauge().value()).isEqualTo(1.0);
+        } finally {
+            release.countDown();
+            cut.destroy();
+        }
+    }
+
+    @Test
+    public void testError() {
+        QueryExecutor cut = new QueryExecutor(1, 1, 0, new SimpleMeterRegistry());
+        try {
+            CompletableFuture<String> failed = cut.submit(() -> {
+                throw new OutOfMemoryError("query result too large");
+            }, () -> { });
+
+            assertThatThrownBy(() -> failed.get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .hasCauseInstanceOf(OutOfMemoryError.class);
+        } finally {
+            cut.destroy();
+        }
+    }
+
+    @Test
+    public void testCancel() {
+        QueryExecutor cut = new QueryExecutor(1, 1, 0, new SimpleMeterRegistry());
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        try {
+            CompletableFuture<String> running = cut.submit(() -> await(release), () -> cancelled.set(true));
+            running.cancel(true);
+
+            assertThat(cancelled).isTrue();
+        } finally {
+            release.countDown();
+            cut.destroy();
+        }
+    }
+
+    private static String await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "released";
+    }
+}
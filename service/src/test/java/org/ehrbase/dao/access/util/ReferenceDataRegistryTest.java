@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.dao.access.util;
+
+import org.ehrbase.dao.access.interfaces.I_ConceptAccess;
+import org.ehrbase.dao.access.support.DummyDataAccess;
+import org.ehrbase.jooq.pg.tables.records.ConceptRecord;
+import org.ehrbase.jooq.pg.tables.records.TerritoryRecord;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ReferenceDataRegistryTest {
+
+    private static final UUID CREATION_EN = UUID.randomUUID();
+    private static final UUID CREATION_DE = UUID.randomUUID();
+    private static final UUID ACTIVE_EN = UUID.randomUUID();
+
+    private final ReferenceDataRegistry cut = new ReferenceDataRegistry(
+            List.of(concept(CREATION_EN, 249, "en", "creation"),
+                    concept(ACTIVE_EN, 245, "en", "active"),
+                    concept(CREATION_DE, 249, "de", "Erstellung")),
+            List.of(territory(276, "DE"), territory(40, "AT")),
+            List.of("en", "de"));
+
+    @Test
+    public void testConcepts() {
+        assertThat(cut.getConceptId(249, "en")).isEqualTo(CREATION_EN);
+        assertThat(cut.getConceptId(249, "de")).isEqualTo(CREATION_DE);
+        assertThat(cut.getConceptId(245, "en")).isEqualTo(ACTIVE_EN);
+        assertThat(cut.getConceptId(245, "de")).isNull();
+        assertThat(cut.getConceptId(249, "fr")).isNull();
+        assertThat(cut.getConcept(CREATION_DE).getDescription()).isEqualTo("Erstellung");
+        assertThat(cut.getConcept(UUID.randomUUID())).isNull();
+        assertThat(cut.getConceptCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void testTerritories() {
+        assertThat(cut.getTerritoryTwoLetter(276)).isEqualTo("DE");
+        assertThat(cut.getTerritoryTwoLetter(40)).isEqualTo("AT");
+        assertThat(cut.getTerritoryTwoLetter(1)).isNull();
+        assertThat(cut.getTerritoryCode("AT")).isEqualTo(40);
+        assertThat(cut.getTerritoryCode("XX")).isEqualTo(-1);
+    }
+
+    @Test
+    public void testLanguages() {
+        assertThat(cut.isLanguage("de")).isTrue();
+        assertThat(cut.isLanguage("fr")).isFalse();
+        assertThat(cut.isLanguage(null)).isFalse();
+    }
+
+    @Test
+    public void testNotLoaded() {
+        ReferenceDataRegistry registry = new ReferenceDataRegistry();
+        assertThatThrownBy(() -> registry.getConceptId(249, "en")).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> registry.isLanguage("en")).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void testFetchConcept() {
+        DummyDataAccess domainAccess = new DummyDataAccess(null, null, null, null, cut);
+        assertThat(I_ConceptAccess.fetchConcept(domainAccess, 249, "de")).isEqualTo(CREATION_DE);
+        assertThatThrownBy(() -> I_ConceptAccess.fetchConcept(domainAccess, 245, "de"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new DummyDataAccess(null, null, null, null).getReferenceData())
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    private static ConceptRecord concept(UUID id, int conceptId, String language, String description) {
+        ConceptRecord concept = new ConceptRecord();
+        concept.setId(id);
+        concept.setConceptid(conceptId);
+        concept.setLanguage(language);
+        concept.setDescription(description);
+        return concept;
+    }
+
+    private static TerritoryRecord territory(int code, String twoLetter) {
+        TerritoryRecord territory = new TerritoryRecord();
+        territory.setCode(code);
+        territory.setTwoletter(twoLetter);
+        return territory;
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.service;
+
+import com.nedap.archie.rm.composition.Composition;
+import org.ehrbase.api.definitions.CompositionImportItem;
+import org.ehrbase.api.definitions.CompositionImportResult;
+import org.ehrbase.api.definitions.ServerConfig;
+import org.ehrbase.api.exception.ObjectNotFoundException;
+import org.ehrbase.api.exception.UnprocessableEntityException;
+import org.ehrbase.api.service.CompositionService;
+import org.ehrbase.api.service.EhrService;
+import org.ehrbase.api.service.ValidationService;
+import org.ehrbase.dao.access.jooq.CompositionBatchWriter;
+import org.ehrbase.response.ehrscape.CompositionFormat;
+import org.jooq.exception.DataAccessException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CompositionImportServiceImpTest {
+
+    private final CompositionService compositionService = mock(CompositionService.class);
+    private final ValidationService validationService = mock(ValidationService.class);
+    private final EhrService ehrService = mock(EhrService.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+    //compositions by content, distinct instances since RM objects are compared by value
+    private final Map<String, Composition> compositions = new ConcurrentHashMap<>();
+    //failure of the writer by content
+    private final Map<String, RuntimeException> writeFailures = new HashMap<>();
+    private final List<CompositionBatchWriter> writers = new ArrayList<>();
+
+    private CompositionImportServiceImp cut;
+
+    @Before
+    public void setUp() {
+        when(compositionService.buildComposition(any(), eq(CompositionFormat.JSON), any()))
+                .thenAnswer(invocation -> compositions.computeIfAbsent(invocation.getArgument(0), content -> new Composition()));
+        cut = new TestCompositionImportService(2);
+    }
+
+    @After
+    public void tearDown() {
+        cut.destroy();
+    }
+
+    @Test
+    public void testImport() {
+        UUID ehrId = UUID.randomUUID();
+
+        List<CompositionImportResult> results = cut.importCompositions(List.of(item(ehrId, "a"), item(ehrId, "b"), item(ehrId, "c")));
+
+        assertThat(results).allMatch(CompositionImportResult::isCreated);
+        //batches of 2 compositions, a transaction each
+        assertThat(writers).hasSize(2);
+        verify(transactionManager, times(2)).commit(any());
+        //the EHR is checked once
+        verify(ehrService).checkEhrExistsAndIsModifiable(ehrId);
+    }
+
+    @Test
+    public void testInvalidItems() throws Exception {
+        UUID ehrId = UUID.randomUUID();
+        UUID unknownEhrId = UUID.randomUUID();
+        doThrow(new ObjectNotFoundException("ehr", "No EHR found with given ID: " + unknownEhrId))
+                .when(ehrService).checkEhrExistsAndIsModifiable(unknownEhrId);
+        Composition invalid = new Composition();
+        compositions.put("invalid", invalid);
+        doThrow(new UnprocessableEntityException("Invalid composition")).when(validationService).check(same(invalid));
+
+        List<CompositionImportResult> results = cut.importCompositions(List.of(
+                item(ehrId, "invalid"),
+                item(unknownEhrId, "a"),
+                new CompositionImportItem(ehrId, null, CompositionFormat.JSON, null),
+                item(unknownEhrId, "b"),
+                item(ehrId, "c")));
+
+        assertThat(results).extracting(CompositionImportResult::getError).containsExactly(
+                "Invalid composition",
+                "No EHR found with given ID: " + unknownEhrId,
+                "EHR id, composition and format are required",
+                "No EHR found with given ID: " + unknownEhrId,
+                null);
+        verify(ehrService).checkEhrExistsAndIsModifiable(unknownEhrId);
+        //only the valid item is written
+        assertThat(writers).hasSize(1);
+    }
+
+    @Test
+    public void testItemFailure() {
+        UUID ehrId = UUID.randomUUID();
+        writeFailures.put("a", new IllegalArgumentException("Could not map the composition"));
+
+        List<CompositionImportResult> results = cut.importCompositions(List.of(item(ehrId, "a"), item(ehrId, "b")));
+
+        //the other items of the batch are written in the same transaction
+        assertThat(results).extracting(CompositionImportResult::getError).containsExactly("Could not map the composition", null);
+        assertThat(writers).hasSize(1);
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    public void testDatabaseFailure() {
+        UUID ehrId = UUID.randomUUID();
+        writeFailures.put("a", new DataAccessException("current transaction is aborted"));
+
+        List<CompositionImportResult> results = cut.importCompositions(List.of(item(ehrId, "a"), item(ehrId, "b")));
+
+        //the batch is rolled back and its items written one by one
+        assertThat(results).extracting(CompositionImportResult::getError).containsExactly("current transaction is aborted", null);
+        assertThat(results.get(1).isCreated()).isTrue();
+        assertThat(writers).hasSize(3);
+        verify(transactionManager, times(2)).rollback(any());
+        verify(transactionManager).commit(any());
+    }
+
+    private static CompositionImportItem item(UUID ehrId, String content) {
+        return new CompositionImportItem(ehrId, content, CompositionFormat.JSON, null);
+    }
+
+    private class TestCompositionImportService extends CompositionImportServiceImp {
+
+        TestCompositionImportService(int batchSize) {
+            super(mock(KnowledgeCacheService.class), compositionService, validationService, ehrService, null,
+                    mock(ServerConfig.class), transactionManager, 2, batchSize);
+        }
+
+        @Override
+        public UUID getSystemUuid() {
+            return UUID.randomUUID();
+        }
+
+        @Override
+        protected UUID getCurrentUserId() {
+            return UUID.randomUUID();
+        }
+
+        @Override
+        CompositionBatchWriter newWriter(UUID systemId, UUID committerId) {
+            CompositionBatchWriter writer = mock(CompositionBatchWriter.class);
+            compositions.forEach((content, composition) -> {
+                if (writeFailures.containsKey(content)) {
+                    when(writer.add(any(), same(composition))).thenThrow(writeFailures.get(content));
+                } else {
+                    when(writer.add(any(), same(composition))).thenReturn(UUID.randomUUID());
+                }
+            });
+            writers.add(writer);
+            return writer;
+        }
+    }
+}
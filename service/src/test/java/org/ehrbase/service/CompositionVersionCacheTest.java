@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.service;
+
+import com.nedap.archie.rm.composition.Composition;
+import com.nedap.archie.rm.datavalues.DvText;
+import org.ehrbase.cache.CacheOptions;
+import org.ehrbase.cache.CachedCompositionVersion;
+import org.ehrbase.cache.InProcessCacheInvalidationBus;
+import org.junit.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CompositionVersionCacheTest {
+
+    private static final UUID COMPOSITION_ID = UUID.randomUUID();
+    private static final UUID EHR_ID = UUID.randomUUID();
+
+    @Test
+    public void testPutAndGet() {
+        CompositionVersionCache cut = new CompositionVersionCache(new ConcurrentMapCacheManager(CacheOptions.COMPOSITION_CACHE));
+
+        cut.put(COMPOSITION_ID, 2, EHR_ID, true, composition("vital signs"));
+
+        assertThat(cut.get(COMPOSITION_ID, 1)).isEmpty();
+        CachedCompositionVersion cached = cut.get(COMPOSITION_ID, 2).orElseThrow();
+        assertThat(cached.getEhrId()).isEqualTo(EHR_ID);
+        assertThat(cached.isCurrent()).isTrue();
+
+        Composition first = cut.getComposition(cached);
+        assertThat(first.getName().getValue()).isEqualTo("vital signs");
+        assertThat(cut.getComposition(cached)).isNotSameAs(first);
+
+        cut.evict(COMPOSITION_ID, 2);
+        assertThat(cut.get(COMPOSITION_ID, 2)).isEmpty();
+    }
+
+    @Test
+    public void testCachedOnCommit() {
+        CompositionVersionCache cut = new CompositionVersionCache(new ConcurrentMapCacheManager(CacheOptions.COMPOSITION_CACHE));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cut.put(COMPOSITION_ID, 1, EHR_ID, false, composition("vital signs"));
+            assertThat(cut.get(COMPOSITION_ID, 1)).isEmpty();
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertThat(cut.get(COMPOSITION_ID, 1)).isPresent();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void testEvictedOnCommit() {
+        CompositionVersionCache cut = new CompositionVersionCache(new ConcurrentMapCacheManager(CacheOptions.COMPOSITION_CACHE));
+        cut.put(COMPOSITION_ID, 1, EHR_ID, true, composition("vital signs"));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cut.evict(COMPOSITION_ID, 1);
+            assertThat(cut.get(COMPOSITION_ID, 1)).isPresent();
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertThat(cut.get(COMPOSITION_ID, 1)).isEmpty();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void testEvictOnOtherNode() {
+        InProcessCacheInvalidationBus bus = new InProcessCacheInvalidationBus();
+        CompositionVersionCache node1 = new CompositionVersionCache(new ConcurrentMapCacheManager(CacheOptions.COMPOSITION_CACHE), bus);
+        CompositionVersionCache node2 = new CompositionVersionCache(new ConcurrentMapCacheManager(CacheOptions.COMPOSITION_CACHE), bus.newNode());
+        node2.put(COMPOSITION_ID, 1, EHR_ID, false, composition("vital signs"));
+        node2.put(COMPOSITION_ID, 2, EHR_ID, true, composition("vital signs"));
+
+        node1.evict(COMPOSITION_ID, 2);
+
+        assertThat(node2.get(COMPOSITION_ID, 1)).isEmpty();
+        assertThat(node2.get(COMPOSITION_ID, 2)).isEmpty();
+    }
+
+    @Test
+    public void testDisabled() {
+        CompositionVersionCache cut = new CompositionVersionCache(new ConcurrentMapCacheManager("otherCache"));
+
+        cut.put(COMPOSITION_ID, 1, EHR_ID, false, composition("vital signs"));
+
+        assertThat(cut.isEnabled()).isFalse();
+        assertThat(cut.get(COMPOSITION_ID, 1)).isEmpty();
+    }
+
+    private static Composition composition(String name) {
+        Composition composition = new Composition();
+        composition.setArchetypeNodeId("openEHR-EHR-COMPOSITION.encounter.v1");
+        composition.setName(new DvText(name));
+        return composition;
+    }
+}
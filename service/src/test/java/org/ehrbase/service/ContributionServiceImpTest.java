@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nedap.archie.rm.composition.Composition;
+import com.nedap.archie.rm.support.identification.ObjectVersionId;
+import org.apache.commons.io.IOUtils;
+import org.ehrbase.api.exception.InternalServerException;
+import org.ehrbase.api.exception.UnprocessableEntityException;
+import org.ehrbase.api.exception.ValidationException;
+import org.ehrbase.api.service.CompositionService;
+import org.ehrbase.api.service.EhrService;
+import org.ehrbase.api.service.FolderService;
+import org.ehrbase.api.service.ValidationService;
+import org.ehrbase.dao.access.interfaces.I_DomainAccess;
+import org.ehrbase.dao.access.jooq.party.PartyIdentityCache;
+import org.ehrbase.dao.access.support.ServiceDataAccess;
+import org.ehrbase.dao.access.util.ReferenceDataRegistry;
+import org.ehrbase.dao.jooq.impl.DSLContextHelper;
+import org.ehrbase.jooq.pg.tables.records.ConceptRecord;
+import org.ehrbase.jooq.pg.tables.records.SystemRecord;
+import org.ehrbase.response.ehrscape.CompositionFormat;
+import org.ehrbase.test_data.contribution.ContributionTestDataCanonicalJson;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record1;
+import org.jooq.Result;
+import org.jooq.impl.DSL;
+import org.jooq.tools.jdbc.MockResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.ehrbase.jooq.pg.Tables.CONCEPT;
+import static org.ehrbase.jooq.pg.Tables.LANGUAGE;
+import static org.ehrbase.jooq.pg.Tables.SYSTEM;
+import static org.ehrbase.jooq.pg.Tables.TERRITORY;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+public class ContributionServiceImpTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final DSLContext create = DSLContextHelper.buildContext();
+
+    private final UUID ehrId = UUID.randomUUID();
+
+    private final CompositionService compositionService = mock(CompositionService.class);
+    private final EhrService ehrService = mock(EhrService.class);
+    private final ValidationService validationService = mock(ValidationService.class);
+
+    // the statements run
+    private final List<String> statements = new ArrayList<>();
+
+    private I_DomainAccess dataAccess;
+    private ContributionServiceImp cut;
+
+    @Before
+    public void setUp() {
+        DSLContext context = DSLContextHelper.buildContext(ctx -> {
+            String sql = ctx.sql();
+            statements.add(sql);
+            if (sql.startsWith("insert into")) {
+                Field<UUID> id = DSL.field(DSL.name("id"), UUID.class);
+                Result<Record1<UUID>> result = create.newResult(id);
+                result.add(create.newRecord(id).values(UUID.randomUUID()));
+                return new MockResult[]{new MockResult(1, result)};
+            } else if (sql.contains("\"ehr\".\"system\"")) {
+                Result<SystemRecord> result = create.newResult(SYSTEM);
+                SystemRecord system = create.newRecord(SYSTEM);
+                system.setId(UUID.randomUUID());
+                result.add(system);
+                return new MockResult[]{new MockResult(1, result)};
+            } else if (sql.contains("\"ehr\".\"concept\"")) {
+                Result<ConceptRecord> concepts = create.newResult(CONCEPT);
+                concepts.add(concept(249, "creation"));
+                concepts.add(concept(251, "modification"));
+                return new MockResult[]{new MockResult(2, concepts)};
+            } else if (sql.contains("\"ehr\".\"territory\"")) {
+                return new MockResult[]{new MockResult(0, create.newResult(TERRITORY))};
+            } else if (sql.contains("\"ehr\".\"language\"")) {
+                return new MockResult[]{new MockResult(0, create.newResult(LANGUAGE.CODE))};
+            }
+            throw new SQLException("Unexpected statement: " + sql);
+        });
+        ReferenceDataRegistry referenceData = new ReferenceDataRegistry();
+        referenceData.reload(context);
+        dataAccess = new ServiceDataAccess(context, null, null, KnowledgeCacheHelper.buildServerConfig(), referenceData,
+                new PartyIdentityCache(10));
+        statements.clear();
+
+        when(ehrService.hasEhr(ehrId)).thenReturn(true);
+        cut = new ContributionServiceImp(null, compositionService, ehrService, mock(FolderService.class),
+                validationService, context, KnowledgeCacheHelper.buildServerConfig(), 2) {
+            @Override
+            protected I_DomainAccess getDataAccess() {
+                return dataAccess;
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+        cut.destroy();
+    }
+
+    @Test
+    public void commitsValidatedVersions() throws Exception {
+        ObjectVersionId preceding = new ObjectVersionId(UUID.randomUUID() + "::local.ehrbase.org::1");
+        String content = contribution(1, preceding);
+        // the committer of the contribution is known
+        dataAccess.getPartyIdentityCache().getOrCreate(
+                ContributionServiceHelper.parseAuditDetails(content, CompositionFormat.JSON).getCommitter(),
+                party -> UUID.randomUUID());
+        doNothing().when(validationService).check(any(Composition.class));
+        when(compositionService.getLastVersionNumber(any(UUID.class))).thenReturn(1);
+
+        assertThat(cut.commitContribution(ehrId, content, CompositionFormat.JSON)).isNotNull();
+
+        // each composition is validated once, with the contribution
+        verify(validationService, times(2)).check(any(Composition.class));
+        verify(compositionService).createValidated(eq(ehrId), any(Composition.class), any());
+        verify(compositionService).updateValidated(eq(ehrId), eq(preceding), any(Composition.class), any());
+        verify(compositionService, never()).create(any(), any(Composition.class), any());
+        verify(compositionService, never()).update(any(), any(), any(Composition.class), any());
+    }
+
+    @Test
+    public void reportsAllInvalidVersions() throws Exception {
+        doThrow(new UnprocessableEntityException("unknown template"))
+                .when(validationService).check(any(Composition.class));
+
+        String content = contribution(3, null);
+        assertThatThrownBy(() -> cut.commitContribution(ehrId, content, CompositionFormat.JSON))
+                .isInstanceOf(ValidationException.class)
+                .hasMessageContaining("Version 0: unknown template")
+                .hasMessageContaining("Version 1: unknown template")
+                .hasMessageContaining("Version 2: unknown template");
+
+        // nothing is looked up or written for an invalid contribution
+        assertThat(statements).isEmpty();
+        verifyNoInteractions(compositionService);
+    }
+
+    @Test
+    public void reportsSingleInvalidVersion() throws Exception {
+        doThrow(new IllegalArgumentException("Composition missing mandatory attribute: name"))
+                .when(validationService).check(any(Composition.class));
+
+        String content = contribution(1, null);
+        assertThatThrownBy(() -> cut.commitContribution(ehrId, content, CompositionFormat.JSON))
+                .isInstanceOf(ValidationException.class)
+                .hasMessageContaining("Composition missing mandatory attribute: name")
+                .hasMessageNotContaining("Version 0");
+        assertThat(statements).isEmpty();
+    }
+
+    @Test
+    public void doesNotAggregateServerErrors() throws Exception {
+        doThrow(new UnprocessableEntityException("unknown template"))
+                .doThrow(new IllegalStateException("no connection"))
+                .when(validationService).check(any(Composition.class));
+
+        String content = contribution(2, null);
+        assertThatThrownBy(() -> cut.commitContribution(ehrId, content, CompositionFormat.JSON))
+                .isInstanceOf(InternalServerException.class);
+        assertThat(statements).isEmpty();
+    }
+
+    /**
+     * @param creations the number of versions creating a composition
+     * @param preceding if set, a version modifying it is added
+     * @return the content of a contribution with the composition of the test data in each version
+     */
+    @SuppressWarnings("unchecked")
+    private String contribution(int creations, ObjectVersionId preceding) throws IOException {
+        Map<String, Object> contribution = objectMapper.readValue(
+                IOUtils.toString(ContributionTestDataCanonicalJson.ONE_ENTRY_COMPOSITION.getStream(), UTF_8), Map.class);
+        Map<String, Object> version = ((List<Map<String, Object>>) contribution.get("versions")).get(0);
+
+        List<Map<String, Object>> versions = new ArrayList<>();
+        for (int i = 0; i < creations; i++) {
+            versions.add(objectMapper.convertValue(version, Map.class));
+        }
+        if (preceding != null) {
+            Map<String, Object> modification = objectMapper.convertValue(version, Map.class);
+            ((Map<String, Object>) ((Map<String, Object>) modification.get("commit_audit")).get("change_type"))
+                    .put("value", "modification");
+            modification.put("preceding_version_uid", Map.of("_type", "OBJECT_VERSION_ID", "value", preceding.getValue()));
+            versions.add(modification);
+        }
+        contribution.put("versions", versions);
+        return objectMapper.writeValueAsString(contribution);
+    }
+
+    private ConceptRecord concept(int conceptId, String description) {
+        ConceptRecord concept = create.newRecord(CONCEPT);
+        concept.setId(UUID.randomUUID());
+        concept.setConceptid(conceptId);
+        concept.setLanguage("en");
+        concept.setDescription(description);
+        return concept;
+    }
+}
@@ -2,10 +2,17 @@ package org.ehrbase.service;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import com.nedap.archie.rm.directory.Folder;
+import com.nedap.archie.rm.support.identification.ObjectVersionId;
 import java.io.IOException;
+import java.util.UUID;
 import org.apache.commons.io.IOUtils;
+import org.ehrbase.api.exception.ObjectNotFoundException;
+import org.ehrbase.dao.access.jooq.FolderTreeMockDataProvider;
+import org.ehrbase.dao.jooq.impl.DSLContextHelper;
+import org.ehrbase.response.ehrscape.FolderDto;
 import org.ehrbase.response.ehrscape.StructuredString;
 import org.ehrbase.response.ehrscape.StructuredStringFormat;
 import org.ehrbase.serialisation.jsonencoding.CanonicalJson;
@@ -24,12 +31,13 @@ public class FolderServiceImpTest {
     @Rule
     public CacheRule cacheRule = new CacheRule();
 
+    private KnowledgeCacheService knowledgeCache;
     private FolderServiceImp folderService;
     private CanonicalJson cut = new CanonicalJson();
 
     @Before
     public void setUp() throws Exception {
-        KnowledgeCacheService knowledgeCache = KnowledgeCacheHelper
+        knowledgeCache = KnowledgeCacheHelper
                 .buildKnowledgeCache(testFolder, cacheRule);
         this.folderService = new FolderServiceImp(knowledgeCache, null, KnowledgeCacheHelper.buildServerConfig(), null);
     }
@@ -70,4 +78,31 @@ public class FolderServiceImpTest {
        assertThat(result.getFormat()).isEqualTo(StructuredStringFormat.XML);
        assertThat(result.getValue()).isEqualToIgnoringWhitespace ("<folder xsi:type=\"FOLDER\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"><name><value>Simple empty folder</value></name></folder>");
     }
+
+    @Test
+    public void getLatestAppliesPath() {
+        FolderTreeMockDataProvider provider = new FolderTreeMockDataProvider();
+        UUID item = UUID.randomUUID();
+        UUID root = provider.addFolder(null, "root");
+        UUID episodes = provider.addFolder(root, "episodes");
+        provider.addFolder(episodes, "episode 1", item);
+        provider.addFolder(root, "summaries");
+        FolderServiceImp service = new FolderServiceImp(knowledgeCache, DSLContextHelper.buildContext(provider),
+                KnowledgeCacheHelper.buildServerConfig(), null);
+        ObjectVersionId rootVersion = new ObjectVersionId(root + "::local.ehrbase.org::1");
+
+        FolderDto tree = service.getLatest(rootVersion, "/").orElseThrow();
+        assertThat(tree.getName().getValue()).isEqualTo("root");
+        assertThat(tree.getUid().getValue()).isEqualTo(rootVersion.getValue());
+        assertThat(tree.getFolders()).extracting(folder -> folder.getName().getValue())
+                .containsExactlyInAnyOrder("episodes", "summaries");
+
+        FolderDto episode = service.getLatest(rootVersion, "/episodes/episode 1").orElseThrow();
+        assertThat(episode.getName().getValue()).isEqualTo("episode 1");
+        assertThat(episode.getFolders()).isNullOrEmpty();
+        assertThat(episode.getItems()).extracting(ref -> ref.getId().getValue()).containsExactly(item.toString());
+
+        assertThatThrownBy(() -> service.getLatest(rootVersion, "/episodes/episode 2"))
+                .isInstanceOf(ObjectNotFoundException.class);
+    }
 }
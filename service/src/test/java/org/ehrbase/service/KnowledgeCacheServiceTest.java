@@ -23,17 +23,36 @@ import static org.assertj.core.api.Assertions.assertThat;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.ehrbase.aql.containment.JsonPathQueryResult;
+import org.ehrbase.aql.containment.TemplateIdQueryTuple;
+import org.ehrbase.aql.containment.Templates;
 import org.ehrbase.cache.CacheOptions;
+import org.ehrbase.cache.CacheWarmUpProgress;
+import org.ehrbase.cache.InProcessCacheInvalidationBus;
 import org.ehrbase.ehr.knowledge.TemplateMetaData;
 import org.ehrbase.ehr.knowledge.TemplateTestData;
+import org.ehrbase.ehr.knowledge.WebTemplateSnapshot;
 import org.ehrbase.test_data.operationaltemplate.OperationalTemplateTestData;
+import org.ehrbase.util.TemplateUtils;
+import org.ehrbase.webtemplate.model.WebTemplate;
 import org.ehrbase.webtemplate.parser.NodeId;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.jupiter.api.Assertions;
 import org.junit.rules.TemporaryFolder;
+import org.openehr.schemas.v1.OPERATIONALTEMPLATE;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * Created by christian on 5/10/2018.
@@ -102,6 +121,308 @@ public class KnowledgeCacheServiceTest {
         .isEqualTo("DV_QUANTITY");
   }
 
+  @Test
+  public void testFindTemplateIdsContaining() throws Exception {
+    KnowledgeCacheService knowledge = buildKnowledgeCache(testFolder, cacheRule);
+    knowledge.addOperationalTemplate(OperationalTemplateTestData.IDCR_PROBLEM_LIST.getStream());
+    knowledge.addOperationalTemplate(OperationalTemplateTestData.BLOOD_PRESSURE_SIMPLE.getStream());
+
+    assertThat(knowledge.findTemplateIdsContaining(
+        List.of(new NodeId("OBSERVATION", "openEHR-EHR-OBSERVATION.sample_blood_pressure.v1"))))
+        .containsExactly(OperationalTemplateTestData.BLOOD_PRESSURE_SIMPLE.getTemplateId());
+
+    assertThat(knowledge.findTemplateIdsContaining(
+        List.of(new NodeId("SECTION", "openEHR-EHR-SECTION.problems_issues_rcp.v1"),
+            new NodeId("EVALUATION", "openEHR-EHR-EVALUATION.problem_diagnosis.v1"))))
+        .containsExactly(OperationalTemplateTestData.IDCR_PROBLEM_LIST.getTemplateId());
+
+    assertThat(knowledge.findTemplateIdsContaining(
+        List.of(new NodeId("OBSERVATION", "openEHR-EHR-OBSERVATION.sample_blood_pressure.v1"),
+            new NodeId("EVALUATION", "openEHR-EHR-EVALUATION.problem_diagnosis.v1"))))
+        .isEmpty();
+
+    // removed from the index with the template
+    knowledge.deleteOperationalTemplate(knowledge.retrieveOperationalTemplate(
+        OperationalTemplateTestData.BLOOD_PRESSURE_SIMPLE.getTemplateId()).orElseThrow());
+
+    assertThat(knowledge.findTemplateIdsContaining(
+        List.of(new NodeId("OBSERVATION", "openEHR-EHR-OBSERVATION.sample_blood_pressure.v1"))))
+        .isEmpty();
+  }
+
+  @Test
+  public void testTemplateSetCaches() throws Exception {
+    KnowledgeCacheService knowledge = buildKnowledgeCache(testFolder, cacheRule);
+    String templateId = OperationalTemplateTestData.BLOOD_PRESSURE_SIMPLE.getTemplateId();
+    assertThat(knowledge.getAllTemplateIds()).isEmpty();
+
+    long generation = knowledge.getTemplateSetGeneration();
+    knowledge.addOperationalTemplate(OperationalTemplateTestData.BLOOD_PRESSURE_SIMPLE.getStream());
+    assertThat(knowledge.getTemplateSetGeneration()).isGreaterThan(generation);
+    assertThat(knowledge.getAllTemplateIds()).containsExactly(templateId);
+
+    // the parsed template is served from the cache
+    OPERATIONALTEMPLATE template = knowledge.retrieveOperationalTemplate(templateId).orElseThrow();
+    assertThat(knowledge.retrieveOperationalTemplate(templateId)).containsSame(template);
+
+    // and replaced on overwrite
+    generation = knowledge.getTemplateSetGeneration();
+    knowledge.adminUpdateOperationalTemplate(OperationalTemplateTestData.BLOOD_PRESSURE_SIMPLE.getStream());
+    assertThat(knowledge.getTemplateSetGeneration()).isGreaterThan(generation);
+    assertThat(knowledge.retrieveOperationalTemplate(templateId).orElseThrow()).isNotSameAs(template);
+
+    generation = knowledge.getTemplateSetGeneration();
+    knowledge.deleteOperationalTemplate(template);
+    assertThat(knowledge.getTemplateSetGeneration()).isGreaterThan(generation);
+    assertThat(knowledge.getAllTemplateIds()).isEmpty();
+    assertThat(knowledge.retrieveOperationalTemplate(templateId)).isEmpty();
+  }
+
+  @Test
+  public void testInvalidateCacheOfOneTemplate() throws Exception {
+    CacheManager cacheManager = new ConcurrentMapCacheManager();
+    KnowledgeCacheService knowledge = buildKnowledgeCache(testFolder, cacheManager);
+    knowledge.addOperationalTemplate(OperationalTemplateTestData.IDCR_PROBLEM_LIST.getStream());
+    knowledge.addOperationalTemplate(OperationalTemplateTestData.BLOOD_PRESSURE_SIMPLE.getStream());
+
+    String problemListId = OperationalTemplateTestData.IDCR_PROBLEM_LIST.getTemplateId();
+    String bloodPressureId = OperationalTemplateTestData.BLOOD_PRESSURE_SIMPLE.getTemplateId();
+    List<NodeId> problemList = List.of(
+        new NodeId("SECTION", "openEHR-EHR-SECTION.problems_issues_rcp.v1"));
+    List<NodeId> bloodPressure = List.of(
+        new NodeId("OBSERVATION", "openEHR-EHR-OBSERVATION.sample_blood_pressure.v1"));
+    knowledge.resolveForTemplate(problemListId, problemList);
+    knowledge.resolveForTemplate(bloodPressureId, bloodPressure);
+    knowledge.multiValued(problemListId);
+    knowledge.multiValued(bloodPressureId);
+
+    knowledge.adminUpdateOperationalTemplate(
+        OperationalTemplateTestData.BLOOD_PRESSURE_SIMPLE.getStream());
+
+    Cache queryCache = cacheManager.getCache(CacheOptions.QUERY_CACHE);
+    assertThat(queryCache.get(new TemplateIdQueryTuple(problemListId, problemList))).isNotNull();
+    assertThat(queryCache.get(new TemplateIdQueryTuple(bloodPressureId, bloodPressure))).isNull();
+
+    Cache multivaluedCache = cacheManager.getCache(CacheOptions.MULTI_VALUE_CACHE);
+    assertThat(multivaluedCache.get(problemListId)).isNotNull();
+    assertThat(multivaluedCache.get(bloodPressureId)).isNull();
+  }
+
+  @Test
+  public void testInitializeCaches() throws Exception {
+    KnowledgeCacheService knowledge = buildKnowledgeCache(testFolder, cacheRule);
+    knowledge.addOperationalTemplate(OperationalTemplateTestData.IDCR_PROBLEM_LIST.getStream());
+    knowledge.addOperationalTemplate(OperationalTemplateTestData.BLOOD_PRESSURE_SIMPLE.getStream());
+
+    knowledge.initializeCaches();
+    CacheWarmUpProgress progress = knowledge.getWarmUpProgress();
+    assertThat(progress.getTemplates()).isEqualTo(2);
+
+    for (int i = 0; i < 100 && progress.getPercentDone() < 100; i++) {
+      Thread.sleep(100);
+    }
+    assertThat(progress.getBuilt()).isEqualTo(2);
+    assertThat(progress.getFailed()).isZero();
+
+    knowledge.destroy();
+  }
+
+  @Test
+  public void testQueryDuringWarmUp() throws Exception {
+    File folder = testFolder.newFolder("operational_templates");
+    TemplateFileStorageService storage = new TemplateFileStorageService();
+    storage.setOptPath(folder.getPath());
+    KnowledgeCacheService node = new KnowledgeCacheService(storage,
+        new ConcurrentMapCacheManager(), new CacheOptions());
+    node.addOperationalTemplate(OperationalTemplateTestData.IDCR_PROBLEM_LIST.getStream());
+    node.addOperationalTemplate(OperationalTemplateTestData.BLOOD_PRESSURE_SIMPLE.getStream());
+    String bloodPressureId = OperationalTemplateTestData.BLOOD_PRESSURE_SIMPLE.getTemplateId();
+    UUID problemListUid = TemplateUtils.getUid(node.retrieveOperationalTemplate(
+        OperationalTemplateTestData.IDCR_PROBLEM_LIST.getTemplateId()).orElseThrow());
+    UUID bloodPressureUid = TemplateUtils.getUid(
+        node.retrieveOperationalTemplate(bloodPressureId).orElseThrow());
+
+    // the warm-up of a cold started node does not get to read any template
+    CountDownLatch warmUpBlocked = new CountDownLatch(1);
+    TemplateFileStorageService coldStorage = new TemplateFileStorageService() {
+      @Override
+      public Optional<OPERATIONALTEMPLATE> readOperationaltemplate(String templateId) {
+        if (Thread.currentThread().getName().startsWith("knowledge-cache-")) {
+          try {
+            warmUpBlocked.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        return super.readOperationaltemplate(templateId);
+      }
+    };
+    coldStorage.setOptPath(folder.getPath());
+    CacheManager cacheManager = new ConcurrentMapCacheManager();
+    KnowledgeCacheService knowledge = new KnowledgeCacheService(coldStorage, cacheManager,
+        new CacheOptions());
+    try {
+      knowledge.initializeCaches();
+
+      List<JsonPathQueryResult> results = new Templates(knowledge).resolve(List.of(
+          new NodeId("OBSERVATION", "openEHR-EHR-OBSERVATION.sample_blood_pressure.v1")));
+
+      assertThat(results).extracting(JsonPathQueryResult::getTemplateId)
+          .containsExactly(bloodPressureId);
+      // only the WebTemplate of the template containing the observation is built
+      Cache webTemplates = cacheManager.getCache(CacheOptions.INTROSPECT_CACHE);
+      assertThat(webTemplates.get(bloodPressureUid)).isNotNull();
+      assertThat(webTemplates.get(problemListUid)).isNull();
+      assertThat(knowledge.getWarmUpProgress().getPercentDone()).isZero();
+    } finally {
+      warmUpBlocked.countDown();
+      knowledge.destroy();
+    }
+  }
+
+  @Test
+  public void testFailedTemplateNotRetried() throws Exception {
+    File folder = testFolder.newFolder("operational_templates");
+    TemplateFileStorageService storage = new TemplateFileStorageService();
+    storage.setOptPath(folder.getPath());
+    KnowledgeCacheService node = new KnowledgeCacheService(storage,
+        new ConcurrentMapCacheManager(), new CacheOptions());
+    node.addOperationalTemplate(OperationalTemplateTestData.IDCR_PROBLEM_LIST.getStream());
+    node.addOperationalTemplate(OperationalTemplateTestData.BLOOD_PRESSURE_SIMPLE.getStream());
+    String problemListId = OperationalTemplateTestData.IDCR_PROBLEM_LIST.getTemplateId();
+    String bloodPressureId = OperationalTemplateTestData.BLOOD_PRESSURE_SIMPLE.getTemplateId();
+
+    AtomicBoolean broken = new AtomicBoolean();
+    AtomicInteger brokenReads = new AtomicInteger();
+    TemplateFileStorageService coldStorage = new TemplateFileStorageService() {
+      @Override
+      public Optional<OPERATIONALTEMPLATE> readOperationaltemplate(String templateId) {
+        if (broken.get() && templateId.equals(problemListId)) {
+          brokenReads.incrementAndGet();
+          throw new IllegalStateException("unreadable");
+        }
+        return super.readOperationaltemplate(templateId);
+      }
+    };
+    coldStorage.setOptPath(folder.getPath());
+    KnowledgeCacheService knowledge = new KnowledgeCacheService(coldStorage,
+        new ConcurrentMapCacheManager(), new CacheOptions());
+    assertThat(knowledge.getAllTemplateIds()).containsExactlyInAnyOrder(problemListId,
+        bloodPressureId);
+    broken.set(true);
+
+    List<NodeId> composition = List.of(new NodeId("COMPOSITION", null));
+    Templates templates = new Templates(knowledge);
+    assertThat(templates.resolve(composition)).extracting(JsonPathQueryResult::getTemplateId)
+        .containsExactly(bloodPressureId);
+    assertThat(brokenReads).hasValue(1);
+
+    assertThat(knowledge.findTemplateIdsContaining(composition)).containsExactly(bloodPressureId);
+    assertThat(templates.resolve(composition)).extracting(JsonPathQueryResult::getTemplateId)
+        .containsExactly(bloodPressureId);
+    assertThat(brokenReads).hasValue(1);
+  }
+
+  @Test
+  public void testWebTemplateSnapshot() throws Exception {
+    Map<String, WebTemplateSnapshot> snapshots = new ConcurrentHashMap<>();
+    AtomicInteger templateReads = new AtomicInteger();
+    TemplateFileStorageService storage = new TemplateFileStorageService() {
+      @Override
+      public Optional<OPERATIONALTEMPLATE> readOperationaltemplate(String templateId) {
+        templateReads.incrementAndGet();
+        return super.readOperationaltemplate(templateId);
+      }
+
+      @Override
+      public Optional<WebTemplateSnapshot> readWebTemplate(String templateId) {
+        return Optional.ofNullable(snapshots.get(templateId));
+      }
+
+      @Override
+      public void storeWebTemplate(OPERATIONALTEMPLATE template, WebTemplate webTemplate) {
+        snapshots.put(TemplateUtils.getTemplateId(template),
+            new WebTemplateSnapshot(TemplateUtils.getUid(template), webTemplate));
+      }
+    };
+    storage.setOptPath(testFolder.newFolder("operational_templates").getPath());
+    String templateId = OperationalTemplateTestData.BLOOD_PRESSURE_SIMPLE.getTemplateId();
+
+    KnowledgeCacheService knowledge = new KnowledgeCacheService(storage,
+        new ConcurrentMapCacheManager(), new CacheOptions());
+    knowledge.addOperationalTemplate(OperationalTemplateTestData.BLOOD_PRESSURE_SIMPLE.getStream());
+    // stored in the background
+    for (int i = 0; i < 100 && !snapshots.containsKey(templateId); i++) {
+      Thread.sleep(100);
+    }
+    assertThat(snapshots).containsKey(templateId);
+
+    // another node does not parse the template
+    KnowledgeCacheService coldStarted = new KnowledgeCacheService(storage,
+        new ConcurrentMapCacheManager(), new CacheOptions());
+    templateReads.set(0);
+    assertThat(coldStarted.getQueryOptMetaData(templateId))
+        .isSameAs(snapshots.get(templateId).getWebTemplate());
+    assertThat(templateReads).hasValue(0);
+  }
+
+  @Test
+  public void testWebTemplateSnapshotStoredOnCommit() throws Exception {
+    Map<String, WebTemplate> snapshots = new ConcurrentHashMap<>();
+    TemplateFileStorageService storage = new TemplateFileStorageService() {
+      @Override
+      public void storeWebTemplate(OPERATIONALTEMPLATE template, WebTemplate webTemplate) {
+        snapshots.put(TemplateUtils.getTemplateId(template), webTemplate);
+      }
+    };
+    storage.setOptPath(testFolder.newFolder("operational_templates").getPath());
+    String templateId = OperationalTemplateTestData.BLOOD_PRESSURE_SIMPLE.getTemplateId();
+    KnowledgeCacheService knowledge = new KnowledgeCacheService(storage,
+        new ConcurrentMapCacheManager(), new CacheOptions());
+
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      knowledge.addOperationalTemplate(OperationalTemplateTestData.BLOOD_PRESSURE_SIMPLE.getStream());
+      // the template is not committed yet
+      Thread.sleep(200);
+      assertThat(snapshots).isEmpty();
+
+      TransactionSynchronizationManager.getSynchronizations()
+          .forEach(TransactionSynchronization::afterCommit);
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+    for (int i = 0; i < 100 && !snapshots.containsKey(templateId); i++) {
+      Thread.sleep(100);
+    }
+    assertThat(snapshots).containsKey(templateId);
+  }
+
+  @Test
+  public void testInvalidateCacheOfOtherNode() throws Exception {
+    TemplateFileStorageService storage = new TemplateFileStorageService();
+    storage.setOptPath(testFolder.newFolder("operational_templates").getPath());
+    InProcessCacheInvalidationBus bus = new InProcessCacheInvalidationBus();
+    KnowledgeCacheService node1 = new KnowledgeCacheService(storage,
+        new ConcurrentMapCacheManager(), new CacheOptions(), bus);
+    KnowledgeCacheService node2 = new KnowledgeCacheService(storage,
+        new ConcurrentMapCacheManager(), new CacheOptions(), bus.newNode());
+    String templateId = OperationalTemplateTestData.BLOOD_PRESSURE_SIMPLE.getTemplateId();
+
+    node1.addOperationalTemplate(OperationalTemplateTestData.BLOOD_PRESSURE_SIMPLE.getStream());
+    WebTemplate webTemplate = node2.getQueryOptMetaData(templateId);
+    long generation = node2.getTemplateSetGeneration();
+
+    node1.adminUpdateOperationalTemplate(
+        OperationalTemplateTestData.BLOOD_PRESSURE_SIMPLE.getStream());
+
+    assertThat(node2.getTemplateSetGeneration()).isGreaterThan(generation);
+    assertThat(node2.getQueryOptMetaData(templateId)).isNotSameAs(webTemplate);
+
+    node1.deleteOperationalTemplate(node1.retrieveOperationalTemplate(templateId).orElseThrow());
+    assertThat(node2.getAllTemplateIds()).isEmpty();
+  }
+
   @Test
   public void unsupportedTemplate() throws Exception {
     var knowledgeCacheService = buildKnowledgeCache(testFolder, cacheRule);
@@ -111,15 +432,57 @@ public class KnowledgeCacheServiceTest {
         () -> knowledgeCacheService.addOperationalTemplate(content));
   }
 
+  @Test
+  public void templatePublishedOnCommit() throws Exception {
+    KnowledgeCacheService knowledge = buildKnowledgeCache(testFolder, cacheRule);
+    String templateId = OperationalTemplateTestData.BLOOD_PRESSURE_SIMPLE.getTemplateId();
+    assertThat(knowledge.getAllTemplateIds()).isEmpty();
+
+    // a rejected template is not listed
+    var unsupported = TemplateTestData.CLINICAL_CONTENT_VALIDATION.getStream();
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> knowledge.addOperationalTemplate(unsupported));
+    assertThat(knowledge.getAllTemplateIds()).isEmpty();
+
+    // nor a rolled back one
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      knowledge.addOperationalTemplate(OperationalTemplateTestData.BLOOD_PRESSURE_SIMPLE.getStream());
+      assertThat(knowledge.getAllTemplateIds()).isEmpty();
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+    assertThat(knowledge.getAllTemplateIds()).isEmpty();
+
+    // the file storage has no rollback, the template is stored again
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      knowledge.adminUpdateOperationalTemplate(OperationalTemplateTestData.BLOOD_PRESSURE_SIMPLE.getStream());
+      assertThat(knowledge.getAllTemplateIds()).isEmpty();
+
+      TransactionSynchronizationManager.getSynchronizations()
+          .forEach(TransactionSynchronization::afterCommit);
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+    assertThat(knowledge.getAllTemplateIds()).containsExactly(templateId);
+  }
+
   public static KnowledgeCacheService buildKnowledgeCache(TemporaryFolder folder,
       CacheRule cacheRule) throws Exception {
 
+    return buildKnowledgeCache(folder, new ConcurrentMapCacheManager());
+  }
+
+  private static KnowledgeCacheService buildKnowledgeCache(TemporaryFolder folder,
+      CacheManager cacheManager) throws Exception {
+
     File operationalTemplatesemplates = folder.newFolder("operational_templates");
 
     TemplateFileStorageService templateFileStorageService = new TemplateFileStorageService();
     templateFileStorageService.setOptPath(operationalTemplatesemplates.getPath());
 
-    return new KnowledgeCacheService(templateFileStorageService, new ConcurrentMapCacheManager(),
+    return new KnowledgeCacheService(templateFileStorageService, cacheManager,
         new CacheOptions());
   }
 
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2022 Vitasystems GmbH and Hannover Medical School.
+ *
+ * This file is part of project EHRbase
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehrbase.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.ehrbase.jooq.pg.tables.TemplateStore.TEMPLATE_STORE;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+import org.ehrbase.dao.jooq.impl.DSLContextHelper;
+import org.ehrbase.ehr.knowledge.WebTemplateSnapshot;
+import org.ehrbase.webtemplate.model.WebTemplate;
+import org.jooq.DSLContext;
+import org.jooq.Record2;
+import org.jooq.Result;
+import org.jooq.tools.jdbc.MockResult;
+import org.junit.Test;
+import org.openehr.schemas.v1.OPERATIONALTEMPLATE;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.info.BuildProperties;
+
+public class TemplateDBStorageServiceTest {
+
+  @Test
+  public void testWebTemplateFormat() {
+    Properties properties = new Properties();
+    properties.setProperty(TemplateDBStorageService.SDK_VERSION_PROPERTY, "1.20.0");
+
+    assertThat(TemplateDBStorageService.webTemplateFormat(new BuildProperties(properties)))
+        .isEqualTo("java-gzip/1.20.0");
+  }
+
+  @Test
+  public void testWebTemplateFormatWithoutBuildInfo() {
+    String version = WebTemplate.class.getPackage().getImplementationVersion();
+
+    // the version of the SDK jar, no format at all if it is unknown
+    assertThat(TemplateDBStorageService.webTemplateFormat(null))
+        .isEqualTo(version != null ? "java-gzip/" + version : null);
+    assertThat(TemplateDBStorageService.webTemplateFormat(new BuildProperties(new Properties())))
+        .isEqualTo(version != null ? "java-gzip/" + version : null);
+  }
+
+  @Test
+  public void testStoreWebTemplateOnlyIfChanged() {
+    List<String> statements = new ArrayList<>();
+    TemplateDBStorageService cut = service(DSLContextHelper.buildContext(ctx -> {
+      statements.add(ctx.sql());
+      return new MockResult[]{new MockResult(0)};
+    }));
+    OPERATIONALTEMPLATE template = OPERATIONALTEMPLATE.Factory.newInstance();
+    template.addNewTemplateId().setValue("test");
+
+    cut.storeWebTemplate(template, new WebTemplate());
+
+    // the content is compared on its md5, the blob is not written again for the same key
+    assertThat(statements).hasSize(1);
+    assertThat(statements.get(0))
+        .contains("md5(\"ehr\".\"template_store\".\"content\") = ?")
+        .contains("\"ehr\".\"template_store\".\"web_template_key\" is distinct from ?")
+        .doesNotContain("\"ehr\".\"template_store\".\"content\" = ?");
+  }
+
+  @Test
+  public void testReadWebTemplate() throws IOException {
+    assertThat(readWebTemplate(serialize(new WebTemplate()))).isPresent();
+  }
+
+  @Test
+  public void testReadWebTemplateRejectsOtherClasses() throws IOException {
+    ArrayList<Serializable> other = new ArrayList<>();
+    other.add(new File("other"));
+
+    // not deserialized, the WebTemplate is built again
+    assertThat(readWebTemplate(serialize(other))).isEmpty();
+  }
+
+  private static Optional<WebTemplateSnapshot> readWebTemplate(byte[] webTemplate) {
+    DSLContext create = DSLContextHelper.buildContext();
+    return service(DSLContextHelper.buildContext(ctx -> {
+      Result<Record2<UUID, byte[]>> result = create.newResult(TEMPLATE_STORE.ID,
+          TEMPLATE_STORE.WEB_TEMPLATE);
+      result.add(create.newRecord(TEMPLATE_STORE.ID, TEMPLATE_STORE.WEB_TEMPLATE)
+          .values(UUID.randomUUID(), webTemplate));
+      return new MockResult[]{new MockResult(1, result)};
+    })).readWebTemplate("test");
+  }
+
+  @SuppressWarnings("unchecked")
+  private static TemplateDBStorageService service(DSLContext context) {
+    Properties properties = new Properties();
+    properties.setProperty(TemplateDBStorageService.SDK_VERSION_PROPERTY, "1.20.0");
+    ObjectProvider<BuildProperties> buildProperties = mock(ObjectProvider.class);
+    when(buildProperties.getIfAvailable()).thenReturn(new BuildProperties(properties));
+    return new TemplateDBStorageService(context, KnowledgeCacheHelper.buildServerConfig(),
+        buildProperties);
+  }
+
+  private static byte[] serialize(Object object) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(bytes))) {
+      out.writeObject(object);
+    }
+    return bytes.toByteArray();
+  }
+}